@@ -0,0 +1,53 @@
+package com.rawbank.siop.benchmark;
+
+import com.rawbank.siop.dto.SiopReportDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Lecture du montant d'une opération pour le rendu (octets alloués par ligne)
+ * 
+ * bigDecimal : montant lu par getMontantTx et mis au format comme avant (setScale, toPlainString) ;
+ * montantTx : seul BigDecimal recréé par l'accesseur ; montantCents : lecture compacte des rendus
+ */
+@State(Scope.Benchmark)
+public class AmountBenchmark {
+    
+    @Param({"10000"})
+    public int rows;
+    
+    private List<SiopReportDto> operations;
+    
+    @Setup
+    public void setup() {
+        operations = BenchmarkData.operations(rows, 20);
+    }
+    
+    @Benchmark
+    public void bigDecimal(Blackhole blackhole) {
+        for (SiopReportDto operation : operations) {
+            blackhole.consume(operation.getMontantTx().setScale(2, RoundingMode.HALF_EVEN).toPlainString());
+        }
+    }
+    
+    @Benchmark
+    public void montantTx(Blackhole blackhole) {
+        for (SiopReportDto operation : operations) {
+            blackhole.consume(operation.getMontantTx());
+        }
+    }
+    
+    @Benchmark
+    public void montantCents(Blackhole blackhole) {
+        for (SiopReportDto operation : operations) {
+            blackhole.consume(operation.getMontantCents());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.rawbank.siop.benchmark;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.SiopReportDto;
+import org.h2.tools.SimpleResultSet;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Données synthétiques des benchmarks
+ * 
+ * Volumes et longueurs de champs proches d'une journée VODACOM :
+ * opérations triées par code du gestionnaire, comme la requête SIOP.
+ */
+final class BenchmarkData {
+    
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2025, 10, 14, 8, 0);
+    
+    private static final String[] COLUMNS = {
+        "dcre", "incomtime", "filename", "idmsg_ampl", "idlot", "idtx", "canal", "service", "typemsg",
+        "benef", "montant_tx", "motif", "frais", "msgstatus", "lotstatus", "txtstatus",
+        "gest_code"
+    };
+    
+    private BenchmarkData() {
+    }
+    
+    /**
+     * Opérations synthétiques triées par gestionnaire
+     * 
+     * @param rows Nombre d'opérations
+     * @param rowsPerManager Opérations par gestionnaire
+     * @return Opérations
+     */
+    static List<SiopReportDto> operations(int rows, int rowsPerManager) {
+        List<SiopReportDto> operations = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Object[] row = row(i, rowsPerManager);
+            SiopReportDto dto = new SiopReportDto();
+            dto.setDateCreation(((Timestamp) row[0]).toLocalDateTime());
+            dto.setIncomTime(((Timestamp) row[1]).toLocalDateTime());
+            dto.setFilename((String) row[2]);
+            dto.setIdmsg((String) row[3]);
+            dto.setIdlot((String) row[4]);
+            dto.setIdtx((String) row[5]);
+            dto.setCanal((String) row[6]);
+            dto.setService((String) row[7]);
+            dto.setTypeMsg((String) row[8]);
+            dto.setBeneficiaire((String) row[9]);
+            dto.setMontantTx((BigDecimal) row[10]);
+            dto.setMotif((String) row[11]);
+            dto.setFrais((String) row[12]);
+            dto.setMsgStatus((String) row[13]);
+            dto.setLotStatus((String) row[14]);
+            dto.setTxtStatus((String) row[15]);
+            dto.setGestCode((String) row[16]);
+            
+            // Fiche du gestionnaire, complétée par ManagerDirectory en production
+            int manager = i / rowsPerManager;
+            dto.setNomGest("NOM" + manager);
+            dto.setPrenomGest("Prenom" + manager);
+            dto.setEmailGest(String.format("gestionnaire%05d@rawbank.cd", manager));
+            dto.setPhoneGest("+24381000" + (manager % 10000));
+            dto.setErrorMsg(i % 3 == 0 ? "Compte bénéficiaire inexistant au niveau de TX" : null);
+            operations.add(dto);
+        }
+        return operations;
+    }
+    
+    /**
+     * ResultSet synthétique aux colonnes de la requête SIOP, relisible via beforeFirst()
+     * 
+     * @param rows Nombre de lignes
+     * @param rowsPerManager Lignes par gestionnaire
+     * @return ResultSet en mémoire
+     */
+    static SimpleResultSet resultSet(int rows, int rowsPerManager) {
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.setAutoClose(false);
+        for (String column : COLUMNS) {
+            switch (column) {
+                case "dcre", "incomtime" -> rs.addColumn(column, Types.TIMESTAMP, 0, 0);
+                case "montant_tx" -> rs.addColumn(column, Types.DECIMAL, 18, 2);
+                default -> rs.addColumn(column, Types.VARCHAR, 255, 0);
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            rs.addRow(row(i, rowsPerManager));
+        }
+        return rs;
+    }
+    
+    /**
+     * Propriétés SIOP par défaut, mode Excel donné
+     * 
+     * @param excelMode streaming ou memory
+     * @return Propriétés
+     */
+    static SiopProperties properties(String excelMode) {
+        SiopProperties properties = new SiopProperties();
+        properties.getExcel().setMode(excelMode);
+        return properties;
+    }
+    
+    /**
+     * Injecte une dépendance @Autowired hors contexte Spring
+     * 
+     * @param target Bean cible
+     * @param field Nom du champ
+     * @param value Dépendance
+     */
+    static void inject(Object target, String field, Object value) {
+        try {
+            Field declared = target.getClass().getDeclaredField(field);
+            declared.setAccessible(true);
+            declared.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Injection impossible : " + field, e);
+        }
+    }
+    
+    private static Object[] row(int i, int rowsPerManager) {
+        int manager = i / rowsPerManager;
+        LocalDateTime time = BASE_TIME.plusSeconds(i);
+        return new Object[] {
+            Timestamp.valueOf(BASE_TIME),
+            Timestamp.valueOf(time),
+            "VODACOM_PAIE_20251014_" + (i / 500) + ".xml",
+            "MSG" + (100000 + i / 500),
+            "LOT" + (200000 + i / 50),
+            "TX" + (300000 + i),
+            "VODACOM",
+            "PAIE",
+            i % 2 == 0 ? "Transfert" : "Prélèvement",
+            "BENEFICIAIRE " + i,
+            BigDecimal.valueOf(1000 + (i % 9000), 2),
+            "Paiement salaire octobre " + i,
+            i % 4 == 0 ? "Oui" : "Non",
+            i % 5 == 0 ? "Rejeté" : "Accepté",
+            "En erreur",
+            i % 7 == 0 ? "Rejeté" : "En erreur",
+            String.format("G%05d", manager)
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package com.rawbank.siop.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * Point d'entrée des benchmarks SIOP
+ * 
+ * Lance JMH avec le profileur GC puis affiche, par benchmark et paramètres :
+ * débit (op/s et lignes/s), taux d'allocation (Mo/s) et octets alloués par ligne.
+ * 
+ * Les options JMH habituelles restent utilisables, par exemple :
+ *   java -jar siop-benchmarks.jar ExcelBenchmark -p rows=10000 -f 2
+ */
+public final class BenchmarkRunner {
+    
+    private BenchmarkRunner() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        
+        // Valeurs par défaut, uniquement si absentes de la ligne de commande
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include("com\\.rawbank\\.siop\\.benchmark\\..*Benchmark");
+        }
+        if (!commandLine.getForkCount().hasValue()) {
+            options.forks(1);
+        }
+        if (!commandLine.getWarmupIterations().hasValue()) {
+            options.warmupIterations(3);
+        }
+        if (!commandLine.getWarmupTime().hasValue()) {
+            options.warmupTime(TimeValue.seconds(2));
+        }
+        if (!commandLine.getMeasurementIterations().hasValue()) {
+            options.measurementIterations(5);
+        }
+        if (!commandLine.getMeasurementTime().hasValue()) {
+            options.measurementTime(TimeValue.seconds(2));
+        }
+        
+        Collection<RunResult> results = new Runner(options.build()).run();
+        printSummary(results);
+    }
+    
+    /**
+     * Affiche le résumé par ligne traitée
+     * 
+     * @param results Résultats JMH
+     */
+    private static void printSummary(Collection<RunResult> results) {
+        System.out.println();
+        System.out.printf("%-45s %-28s %14s %14s %12s %12s%n",
+            "Benchmark", "Paramètres", "op/s", "lignes/s", "alloc Mo/s", "octets/ligne");
+        
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            String params = result.getParams().getParamsKeys().stream()
+                .map(key -> key + "=" + result.getParams().getParam(key))
+                .collect(Collectors.joining(","));
+            
+            String rowsParam = result.getParams().getParam("rows");
+            int rows = rowsParam != null ? Integer.parseInt(rowsParam) : 1;
+            double opsPerSecond = result.getPrimaryResult().getScore();
+            Result<?> allocRate = result.getSecondaryResults().get("gc.alloc.rate");
+            Result<?> allocNorm = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            
+            System.out.printf("%-45s %-28s %14.2f %14.0f %12.1f %12.1f%n",
+                benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1),
+                params,
+                opsPerSecond,
+                opsPerSecond * rows,
+                allocRate != null ? allocRate.getScore() : Double.NaN,
+                allocNorm != null ? allocNorm.getScore() / rows : Double.NaN);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.rawbank.siop.benchmark;
+
+import com.rawbank.siop.dto.SiopReportDto;
+import com.rawbank.siop.service.CsvReportRenderer;
+import com.rawbank.siop.service.GzipCsvReportRenderer;
+import com.rawbank.siop.service.ReportRenderer;
+import com.rawbank.siop.service.XlsxReportRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Génération de la pièce jointe d'un gestionnaire, par format (ReportRenderer)
+ */
+@State(Scope.Benchmark)
+public class ExcelBenchmark {
+    
+    @Param({"100", "10000", "100000"})
+    public int rows;
+    
+    @Param({"xlsx-streaming", "xlsx-memory", "csv", "csv-gzip"})
+    public String format;
+    
+    private ReportRenderer renderer;
+    private List<SiopReportDto> operations;
+    
+    @Setup
+    public void setup() {
+        renderer = createRenderer(format);
+        operations = BenchmarkData.operations(rows, rows);
+    }
+    
+    @Benchmark
+    public byte[] render() {
+        return renderer.render(operations);
+    }
+    
+    private static ReportRenderer createRenderer(String format) {
+        switch (format) {
+            case "csv":
+                return new CsvReportRenderer();
+            case "csv-gzip":
+                return new GzipCsvReportRenderer();
+            default:
+                XlsxReportRenderer xlsx = new XlsxReportRenderer();
+                String mode = format.substring(format.indexOf('-') + 1);
+                BenchmarkData.inject(xlsx, "siopProperties", BenchmarkData.properties(mode));
+                return xlsx;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.rawbank.siop.benchmark;
+
+import com.rawbank.siop.dto.SiopReportDto;
+import com.rawbank.siop.service.ManagerGroupingHandler;
+import com.rawbank.siop.service.SiopReportRowMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Groupement en flux des opérations par gestionnaire (ManagerGroupingHandler)
+ */
+@State(Scope.Benchmark)
+public class GroupingBenchmark {
+    
+    @Param({"10000", "100000"})
+    public int rows;
+    
+    @Param({"20", "500"})
+    public int rowsPerManager;
+    
+    private List<SiopReportDto> operations;
+    
+    @Setup
+    public void setup() {
+        operations = BenchmarkData.operations(rows, rowsPerManager);
+    }
+    
+    @Benchmark
+    public int groupByManager(Blackhole blackhole) {
+        ManagerGroupingHandler handler = new ManagerGroupingHandler(new SiopReportRowMapper(), blackhole::consume);
+        for (SiopReportDto operation : operations) {
+            handler.accept(operation);
+        }
+        handler.finish();
+        return handler.getGroupCount();
+    }
+}
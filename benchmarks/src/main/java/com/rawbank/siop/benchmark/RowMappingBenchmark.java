@@ -0,0 +1,39 @@
+package com.rawbank.siop.benchmark;
+
+import com.rawbank.siop.service.SiopReportRowMapper;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+
+/**
+ * Mapping des lignes de la requête SIOP (SiopReportRowMapper) sur un ResultSet synthétique
+ */
+@State(Scope.Benchmark)
+public class RowMappingBenchmark {
+    
+    @Param({"10000"})
+    public int rows;
+    
+    private final SiopReportRowMapper rowMapper = new SiopReportRowMapper();
+    private SimpleResultSet resultSet;
+    
+    @Setup
+    public void setup() {
+        resultSet = BenchmarkData.resultSet(rows, 20);
+    }
+    
+    @Benchmark
+    public void mapRows(Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        int rowNum = 0;
+        while (resultSet.next()) {
+            blackhole.consume(rowMapper.mapRow(resultSet, rowNum++));
+        }
+    }
+}
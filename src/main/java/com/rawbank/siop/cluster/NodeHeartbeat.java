@@ -0,0 +1,80 @@
+package com.rawbank.siop.cluster;
+
+import com.rawbank.siop.config.SiopProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Battements des instances dans la base Oracle
+ * 
+ * Responsable de :
+ * - Signaler périodiquement l'instance dans SIOP_NODE_HEARTBEAT (script sql/siop_node_heartbeat.sql)
+ * - Lister les instances vivantes (battement plus récent que siop.shard.heartbeat-timeout-seconds)
+ * - Se retirer à l'arrêt pour que les autres instances reprennent sa part
+ */
+@Component
+@ConditionalOnProperty(name = "siop.shard.membership", havingValue = "heartbeat")
+public class NodeHeartbeat {
+    
+    private static final Logger logger = LoggerFactory.getLogger(NodeHeartbeat.class);
+    
+    private static final String BEAT =
+        "MERGE INTO SIOP_NODE_HEARTBEAT h "
+            + "USING (SELECT :nodeId AS node_id FROM dual) s ON (h.node_id = s.node_id) "
+            + "WHEN MATCHED THEN UPDATE SET h.last_seen = SYSTIMESTAMP "
+            + "WHEN NOT MATCHED THEN INSERT (node_id, last_seen) VALUES (:nodeId, SYSTIMESTAMP)";
+    
+    private static final String LIVE_NODES =
+        "SELECT node_id FROM SIOP_NODE_HEARTBEAT "
+            + "WHERE last_seen > SYSTIMESTAMP - NUMTODSINTERVAL(:timeoutSeconds, 'SECOND') ORDER BY node_id";
+    
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    /**
+     * Signale l'instance comme vivante
+     */
+    @Scheduled(fixedDelayString = "${siop.shard.heartbeat-interval-seconds:30}", timeUnit = TimeUnit.SECONDS)
+    public void beat() {
+        try {
+            namedParameterJdbcTemplate.update(BEAT, 
+                new MapSqlParameterSource("nodeId", siopProperties.getLock().resolveInstanceId()));
+        } catch (Exception e) {
+            logger.warn("Impossible d'enregistrer le battement de l'instance : {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Instances vivantes, triées par identifiant
+     * 
+     * @return Identifiants des instances
+     */
+    public List<String> liveNodes() {
+        return namedParameterJdbcTemplate.queryForList(LIVE_NODES, 
+            new MapSqlParameterSource("timeoutSeconds", siopProperties.getShard().getHeartbeatTimeoutSeconds()),
+            String.class);
+    }
+    
+    @PreDestroy
+    public void leave() {
+        try {
+            namedParameterJdbcTemplate.update("DELETE FROM SIOP_NODE_HEARTBEAT WHERE node_id = :nodeId",
+                new MapSqlParameterSource("nodeId", siopProperties.getLock().resolveInstanceId()));
+        } catch (Exception e) {
+            logger.warn("Impossible de retirer l'instance des battements : {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.rawbank.siop.cluster;
+
+/**
+ * Part des gestionnaires traitée par cette instance
+ * 
+ * Un gestionnaire appartient à la part ORA_HASH(code gestionnaire, count - 1) ;
+ * les codes qui partagent un email prennent tous la part du plus petit d'entre eux.
+ * Une seule part (count = 1) couvre tous les gestionnaires.
+ */
+public final class ShardAssignment {
+    
+    public static final ShardAssignment SINGLE = new ShardAssignment(0, 1);
+    
+    private final int index;
+    private final int count;
+    
+    public ShardAssignment(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException(
+                String.format("Part %d invalide pour %d part(s)", index, count));
+        }
+        this.index = index;
+        this.count = count;
+    }
+    
+    public int getIndex() { return index; }
+    
+    public int getCount() { return count; }
+    
+    public boolean isSharded() { return count > 1; }
+    
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+    
+    /**
+     * Relit une part écrite par toString
+     * 
+     * @param text Part au format index/count
+     * @return Part
+     * @throws IllegalArgumentException Format ou valeurs invalides
+     */
+    public static ShardAssignment parse(String text) {
+        int slash = text.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("Part invalide : " + text);
+        }
+        return new ShardAssignment(Integer.parseInt(text.substring(0, slash)), 
+            Integer.parseInt(text.substring(slash + 1)));
+    }
+}
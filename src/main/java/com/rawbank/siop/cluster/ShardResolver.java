@@ -0,0 +1,91 @@
+package com.rawbank.siop.cluster;
+
+import com.rawbank.siop.config.SiopProperties;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Détermine la part des gestionnaires de cette instance
+ * 
+ * Responsable de :
+ * - Mode static : part fixée par siop.shard.index et siop.shard.count
+ * - Mode heartbeat : rang de l'instance parmi les instances vivantes (SIOP_NODE_HEARTBEAT)
+ * 
+ * En mode heartbeat, chaque arrivée ou départ d'instance redistribue les gestionnaires :
+ * il exige des baux partagés (siop.lock.provider: database), et donc des marqueurs
+ * incrémentaux et un journal des notifications communs à toutes les instances.
+ * 
+ * La part est déterminée une fois par exécution et reste stable pendant celle-ci.
+ */
+@Component
+public class ShardResolver {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ShardResolver.class);
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    @Autowired(required = false)
+    private NodeHeartbeat nodeHeartbeat;
+    
+    @PostConstruct
+    public void init() {
+        SiopProperties.Shard shard = siopProperties.getShard();
+        if (isHeartbeat()) {
+            if (nodeHeartbeat == null) {
+                throw new IllegalStateException("Battements des instances indisponibles (siop.shard.membership)");
+            }
+            if (!siopProperties.getLock().isDatabase() || !siopProperties.getStore().isShared()) {
+                // Les parts changent avec les instances : marqueurs et journal doivent être communs
+                throw new IllegalStateException("siop.shard.membership: heartbeat requiert "
+                    + "siop.lock.provider: database et siop.store.shared: true");
+            }
+            logger.info("Répartition des gestionnaires par battements, instance {}", 
+                siopProperties.getLock().resolveInstanceId());
+        } else {
+            // Validation au démarrage plutôt qu'à la première exécution
+            ShardAssignment assignment = new ShardAssignment(shard.getIndex(), shard.getCount());
+            if (assignment.isSharded()) {
+                logger.info("Répartition des gestionnaires : part {}", assignment);
+            } else if (siopProperties.getLock().isDatabase() && !siopProperties.getStore().isShared()) {
+                // Le bail passe d'une instance à l'autre, chacune avec ses propres marqueurs et journal
+                logger.warn("Baux partagés sans répartition ni base partagée : les instances ne connaissent pas "
+                    + "les envois des autres (siop.shard.count ou siop.store.shared)");
+            }
+        }
+    }
+    
+    /**
+     * Part de cette instance pour l'exécution qui démarre
+     * 
+     * @return Part des gestionnaires
+     */
+    public ShardAssignment current() {
+        SiopProperties.Shard shard = siopProperties.getShard();
+        if (!isHeartbeat()) {
+            return new ShardAssignment(shard.getIndex(), shard.getCount());
+        }
+        
+        // Battement immédiat : l'instance figure toujours parmi les vivantes
+        nodeHeartbeat.beat();
+        String nodeId = siopProperties.getLock().resolveInstanceId();
+        List<String> nodes = nodeHeartbeat.liveNodes();
+        int index = nodes.indexOf(nodeId);
+        if (index < 0) {
+            throw new IllegalStateException("Instance " + nodeId + " absente des battements");
+        }
+        
+        ShardAssignment assignment = new ShardAssignment(index, nodes.size());
+        logger.info("Part {} parmi les instances {}", assignment, nodes);
+        return assignment;
+    }
+    
+    private boolean isHeartbeat() {
+        return "heartbeat".equalsIgnoreCase(siopProperties.getShard().getMembership());
+    }
+}
@@ -0,0 +1,88 @@
+package com.rawbank.siop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Budget de connexions du pool Oracle
+ * 
+ * Responsable de :
+ * - Calculer le nombre maximal de connexions Oracle prises simultanément
+ * - Refuser le démarrage s'il dépasse spring.datasource.hikari.maximum-pool-size
+ * 
+ * Passages planifiés, exécutions manuelles, jobs et rattrapages passent tous par les pools
+ * des canaux (siop.query.canal-parallelism) et de génération : leur nombre ne change pas
+ * le total, seule leur attente s'allonge. Les lectures à la demande (aperçu, téléchargement)
+ * sont bornées par siop.query.on-demand-parallelism.
+ * 
+ * Un pool trop petit ne produit pas d'erreur franche : les threads attendent une connexion
+ * jusqu'à connection-timeout, et un curseur ouvert qui en attend une seconde peut bloquer
+ * tout le pool.
+ */
+@Component
+public class ConnectionBudget {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionBudget.class);
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    @PostConstruct
+    public void check() {
+        if (!(dataSource instanceof HikariDataSource)) {
+            return;
+        }
+        
+        int poolSize = ((HikariDataSource) dataSource).getMaximumPoolSize();
+        Map<String, Integer> demand = demand(siopProperties);
+        int needed = demand.values().stream().mapToInt(Integer::intValue).sum();
+        if (needed > poolSize) {
+            throw new IllegalStateException(String.format(
+                "Pool Oracle de %d connexion(s) insuffisant : jusqu'à %d connexion(s) simultanée(s) %s. "
+                    + "Augmenter spring.datasource.hikari.maximum-pool-size ou réduire les parallélismes",
+                poolSize, needed, demand));
+        }
+        
+        logger.info("Pool Oracle : au plus {} connexion(s) simultanée(s) sur {} {}", needed, poolSize, demand);
+    }
+    
+    /**
+     * Connexions Oracle simultanées au pire, par usage
+     * 
+     * @param properties Configuration SIOP
+     * @return Connexions par usage, dans l'ordre du traitement
+     */
+    static Map<String, Integer> demand(SiopProperties properties) {
+        boolean sharedStore = properties.getStore().isShared();
+        boolean databaseLock = properties.getLock().isDatabase();
+        
+        Map<String, Integer> demand = new LinkedHashMap<>();
+        // Curseur ouvert, plus une recherche dans l'annuaire ou le journal partagé pendant la lecture
+        demand.put("extraction", Math.max(1, properties.getQuery().getCanalParallelism()) * 2);
+        // Messages d'erreur BKMOPERROR de chaque rapport
+        demand.put("génération", Math.max(1, properties.getPipeline().getRenderThreads()));
+        // Journal partagé consigné à chaque envoi
+        int senders = properties.getOutbox().isEnabled()
+            ? properties.getOutbox().getSenderThreads()
+            : properties.getPipeline().getSendThreads();
+        demand.put("envoi", sharedStore ? Math.max(1, senders) : 0);
+        // Curseur ouvert, plus l'annuaire ou les messages d'erreur du paquet en cours
+        demand.put("à la demande", Math.max(1, properties.getQuery().getOnDemandParallelism()) * 2);
+        // Battements de cœur, compactage, purges ; prolongation des baux partagés
+        demand.put("tâches planifiées", databaseLock ? 2 : 1);
+        // Préchargement ou rechargement de l'annuaire
+        demand.put("annuaire", 1);
+        return demand;
+    }
+}
@@ -3,7 +3,11 @@ package com.rawbank.siop.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Configuration des propriétés SIOP
@@ -18,6 +22,21 @@ public class SiopProperties {
     private Email email = new Email();
     private Query query = new Query();
     private Scheduler scheduler = new Scheduler();
+    private Excel excel = new Excel();
+    private Report report = new Report();
+    private Pipeline pipeline = new Pipeline();
+    private Smtp smtp = new Smtp();
+    private Store store = new Store();
+    private Ledger ledger = new Ledger();
+    private Backfill backfill = new Backfill();
+    private Jobs jobs = new Jobs();
+    private Lock lock = new Lock();
+    private Shard shard = new Shard();
+    private Loadtest loadtest = new Loadtest();
+    private Directory directory = new Directory();
+    private Snapshot snapshot = new Snapshot();
+    private Preview preview = new Preview();
+    private Outbox outbox = new Outbox();
     
     // Getters et Setters
     public Email getEmail() { return email; }
@@ -29,37 +48,438 @@ public class SiopProperties {
     public Scheduler getScheduler() { return scheduler; }
     public void setScheduler(Scheduler scheduler) { this.scheduler = scheduler; }
     
+    public Excel getExcel() { return excel; }
+    public void setExcel(Excel excel) { this.excel = excel; }
+    
+    public Report getReport() { return report; }
+    public void setReport(Report report) { this.report = report; }
+    
+    public Pipeline getPipeline() { return pipeline; }
+    public void setPipeline(Pipeline pipeline) { this.pipeline = pipeline; }
+    
+    public Smtp getSmtp() { return smtp; }
+    public void setSmtp(Smtp smtp) { this.smtp = smtp; }
+    
+    public Store getStore() { return store; }
+    public void setStore(Store store) { this.store = store; }
+    
+    public Ledger getLedger() { return ledger; }
+    public void setLedger(Ledger ledger) { this.ledger = ledger; }
+    
+    public Backfill getBackfill() { return backfill; }
+    public void setBackfill(Backfill backfill) { this.backfill = backfill; }
+    
+    public Jobs getJobs() { return jobs; }
+    public void setJobs(Jobs jobs) { this.jobs = jobs; }
+    
+    public Lock getLock() { return lock; }
+    public void setLock(Lock lock) { this.lock = lock; }
+    
+    public Shard getShard() { return shard; }
+    public void setShard(Shard shard) { this.shard = shard; }
+    
+    public Loadtest getLoadtest() { return loadtest; }
+    public void setLoadtest(Loadtest loadtest) { this.loadtest = loadtest; }
+    
+    public Directory getDirectory() { return directory; }
+    public void setDirectory(Directory directory) { this.directory = directory; }
+    
+    public Snapshot getSnapshot() { return snapshot; }
+    public void setSnapshot(Snapshot snapshot) { this.snapshot = snapshot; }
+    
+    public Preview getPreview() { return preview; }
+    public void setPreview(Preview preview) { this.preview = preview; }
+    
+    public Outbox getOutbox() { return outbox; }
+    public void setOutbox(Outbox outbox) { this.outbox = outbox; }
+    
     // Classes internes pour la configuration
     public static class Email {
         private List<String> cc;
         private String subject = "Virement SIOP nécessitant votre attention";
+        private long maxMessageBytes = 0; // Taille maximale d'un message encodé, 0 = pas de découpage
+        private long maxAttachmentBytes = 0; // Taille maximale d'une pièce jointe, 0 = seule la taille du message compte
+        private String splitMode = "messages"; // messages (une partie par email) ou attachments (parties regroupées)
         
         public List<String> getCc() { return cc; }
         public void setCc(List<String> cc) { this.cc = cc; }
         
         public String getSubject() { return subject; }
         public void setSubject(String subject) { this.subject = subject; }
+        
+        public long getMaxMessageBytes() { return maxMessageBytes; }
+        public void setMaxMessageBytes(long maxMessageBytes) { this.maxMessageBytes = maxMessageBytes; }
+        
+        public long getMaxAttachmentBytes() { return maxAttachmentBytes; }
+        public void setMaxAttachmentBytes(long maxAttachmentBytes) { this.maxAttachmentBytes = maxAttachmentBytes; }
+        
+        public String getSplitMode() { return splitMode; }
+        public void setSplitMode(String splitMode) { this.splitMode = splitMode; }
+        
+        public boolean isSplitIntoMessages() { return !"attachments".equalsIgnoreCase(splitMode); }
     }
     
     public static class Query {
         private String defaultDate = "14/10/2025";
-        private String sqlFile = "siop_send_mail.sql";
+        private String sqlFile = "siop_send_mail.sql"; // Relatif à classpath:sql/ ou URL de ressource
+        private List<String> canals = new ArrayList<>(List.of("VODACOM"));
+        private int canalParallelism = 2; // Requêtes par canal exécutées simultanément
+        private boolean streaming = true; // Lecture en flux, émission par gestionnaire
+        private int fetchSize = 500; // Lignes ramenées par aller-retour JDBC
+        private int errorBatchSize = 500; // Identifiants par liste IN sur BKMOPERROR (max Oracle : 1000)
+        private int onDemandParallelism = 2; // Aperçus et téléchargements simultanés, 503 au-delà
         
         public String getDefaultDate() { return defaultDate; }
         public void setDefaultDate(String defaultDate) { this.defaultDate = defaultDate; }
         
         public String getSqlFile() { return sqlFile; }
         public void setSqlFile(String sqlFile) { this.sqlFile = sqlFile; }
+        
+        public List<String> getCanals() { return canals; }
+        public void setCanals(List<String> canals) { this.canals = canals; }
+        
+        public int getCanalParallelism() { return canalParallelism; }
+        public void setCanalParallelism(int canalParallelism) { this.canalParallelism = canalParallelism; }
+        
+        public boolean isStreaming() { return streaming; }
+        public void setStreaming(boolean streaming) { this.streaming = streaming; }
+        
+        public int getFetchSize() { return fetchSize; }
+        public void setFetchSize(int fetchSize) { this.fetchSize = fetchSize; }
+        
+        public int getErrorBatchSize() { return errorBatchSize; }
+        public void setErrorBatchSize(int errorBatchSize) { this.errorBatchSize = errorBatchSize; }
+        
+        public int getOnDemandParallelism() { return onDemandParallelism; }
+        public void setOnDemandParallelism(int onDemandParallelism) { this.onDemandParallelism = onDemandParallelism; }
     }
     
     public static class Scheduler {
         private boolean enabled = true;
         private String cron = "0 */15 * * * *"; // Toutes les 15 minutes
+        private boolean incremental = true; // Uniquement les messages reçus depuis la dernière exécution
         
         public boolean isEnabled() { return enabled; }
         public void setEnabled(boolean enabled) { this.enabled = enabled; }
         
         public String getCron() { return cron; }
         public void setCron(String cron) { this.cron = cron; }
+        
+        public boolean isIncremental() { return incremental; }
+        public void setIncremental(boolean incremental) { this.incremental = incremental; }
+    }
+    
+    public static class Excel {
+        private String mode = "streaming"; // streaming (SXSSF) ou memory (XSSF)
+        private int windowSize = 100; // Nombre de lignes conservées en mémoire
+        private boolean compressTempFiles = true;
+        private int maxRowsPerSheet = 1048576; // Limite xlsx, en-tête compris
+        
+        public String getMode() { return mode; }
+        public void setMode(String mode) { this.mode = mode; }
+        
+        public boolean isStreaming() { return "streaming".equalsIgnoreCase(mode); }
+        
+        public int getWindowSize() { return windowSize; }
+        public void setWindowSize(int windowSize) { this.windowSize = windowSize; }
+        
+        public boolean isCompressTempFiles() { return compressTempFiles; }
+        public void setCompressTempFiles(boolean compressTempFiles) { this.compressTempFiles = compressTempFiles; }
+        
+        public int getMaxRowsPerSheet() { return maxRowsPerSheet; }
+        public void setMaxRowsPerSheet(int maxRowsPerSheet) { this.maxRowsPerSheet = maxRowsPerSheet; }
+    }
+    
+    public static class Report {
+        private String format = "xlsx"; // xlsx, csv ou csv-gzip
+        private Map<String, String> recipientFormats = new HashMap<>(); // Format par email de gestionnaire
+        private String tempDirectory = "./data/reports"; // Pièces jointes rendues, jusqu'à l'envoi ou la mise en file
+        
+        public String getFormat() { return format; }
+        public void setFormat(String format) { this.format = format; }
+        
+        public String getTempDirectory() { return tempDirectory; }
+        public void setTempDirectory(String tempDirectory) { this.tempDirectory = tempDirectory; }
+        
+        public Map<String, String> getRecipientFormats() { return recipientFormats; }
+        public void setRecipientFormats(Map<String, String> recipientFormats) { this.recipientFormats = recipientFormats; }
+    }
+    
+    public static class Pipeline {
+        private int renderThreads = 2;
+        private int sendThreads = 4;
+        private int queueCapacity = 20; // Capacité des files entre étapes
+        
+        public int getRenderThreads() { return renderThreads; }
+        public void setRenderThreads(int renderThreads) { this.renderThreads = renderThreads; }
+        
+        public int getSendThreads() { return sendThreads; }
+        public void setSendThreads(int sendThreads) { this.sendThreads = sendThreads; }
+        
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+    }
+    
+    public static class Smtp {
+        private boolean pooled = true;
+        private int poolSize = 4; // Connexions SMTP authentifiées maintenues ouvertes
+        private int maxMessagesPerConnection = 100; // Recyclage de la connexion au-delà
+        private long borrowTimeoutMs = 60000;
+        
+        public boolean isPooled() { return pooled; }
+        public void setPooled(boolean pooled) { this.pooled = pooled; }
+        
+        public int getPoolSize() { return poolSize; }
+        public void setPoolSize(int poolSize) { this.poolSize = poolSize; }
+        
+        public int getMaxMessagesPerConnection() { return maxMessagesPerConnection; }
+        public void setMaxMessagesPerConnection(int maxMessagesPerConnection) { this.maxMessagesPerConnection = maxMessagesPerConnection; }
+        
+        public long getBorrowTimeoutMs() { return borrowTimeoutMs; }
+        public void setBorrowTimeoutMs(long borrowTimeoutMs) { this.borrowTimeoutMs = borrowTimeoutMs; }
+    }
+    
+    public static class Store {
+        private String url = "jdbc:h2:file:./data/siop-store;DB_CLOSE_ON_EXIT=FALSE";
+        private String username = "sa";
+        private String password = "";
+        private int maxPoolSize = 4;
+        private boolean shared = false; // Marqueurs et journal dans le schéma Oracle (sql/siop_shared_store.sql)
+        
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+        
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+        
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+        
+        public int getMaxPoolSize() { return maxPoolSize; }
+        public void setMaxPoolSize(int maxPoolSize) { this.maxPoolSize = maxPoolSize; }
+        
+        public boolean isShared() { return shared; }
+        public void setShared(boolean shared) { this.shared = shared; }
+    }
+    
+    public static class Ledger {
+        private boolean enabled = true;
+        private int retentionDays = 7; // Compaction des dates plus anciennes
+        private long expectedEntries = 1000000; // Dimensionnement du filtre de Bloom
+        private double falsePositiveRate = 0.01;
+        private String compactionCron = "0 30 2 * * *";
+        
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        
+        public int getRetentionDays() { return retentionDays; }
+        public void setRetentionDays(int retentionDays) { this.retentionDays = retentionDays; }
+        
+        public long getExpectedEntries() { return expectedEntries; }
+        public void setExpectedEntries(long expectedEntries) { this.expectedEntries = expectedEntries; }
+        
+        public double getFalsePositiveRate() { return falsePositiveRate; }
+        public void setFalsePositiveRate(double falsePositiveRate) { this.falsePositiveRate = falsePositiveRate; }
+        
+        public String getCompactionCron() { return compactionCron; }
+        public void setCompactionCron(String compactionCron) { this.compactionCron = compactionCron; }
+    }
+    
+    public static class Backfill {
+        private int parallelism = 2; // Dates traitées simultanément
+        private int maxDays = 31; // Nombre maximal de dates par demande
+        
+        public int getParallelism() { return parallelism; }
+        public void setParallelism(int parallelism) { this.parallelism = parallelism; }
+        
+        public int getMaxDays() { return maxDays; }
+        public void setMaxDays(int maxDays) { this.maxDays = maxDays; }
+    }
+    
+    public static class Jobs {
+        private int threads = 2; // Jobs exécutés simultanément
+        private int queueCapacity = 10; // Jobs en attente avant refus (503)
+        private int retentionMinutes = 60; // Conservation des jobs terminés pour consultation
+        
+        public int getThreads() { return threads; }
+        public void setThreads(int threads) { this.threads = threads; }
+        
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+        
+        public int getRetentionMinutes() { return retentionMinutes; }
+        public void setRetentionMinutes(int retentionMinutes) { this.retentionMinutes = retentionMinutes; }
+    }
+    
+    public static class Lock {
+        private String provider = "local"; // local (une instance) ou database (SIOP_RUN_LOCK, plusieurs instances)
+        private int leaseSeconds = 600; // Durée d'un bail, prolongé au tiers tant que l'exécution dure
+        private String instanceId; // Identifiant de l'instance (baux, battements), pid@hôte par défaut
+        
+        public String getProvider() { return provider; }
+        public void setProvider(String provider) { this.provider = provider; }
+        
+        public int getLeaseSeconds() { return leaseSeconds; }
+        public void setLeaseSeconds(int leaseSeconds) { this.leaseSeconds = leaseSeconds; }
+        
+        public String getInstanceId() { return instanceId; }
+        public void setInstanceId(String instanceId) { this.instanceId = instanceId; }
+        
+        public String resolveInstanceId() {
+            return instanceId != null && !instanceId.isBlank() 
+                ? instanceId : ManagementFactory.getRuntimeMXBean().getName();
+        }
+        
+        public boolean isDatabase() { return "database".equals(provider); }
+    }
+    
+    public static class Shard {
+        private String membership = "static"; // static (index/count) ou heartbeat (SIOP_NODE_HEARTBEAT)
+        private int count = 1; // Nombre de parts, 1 = tous les gestionnaires
+        private int index = 0; // Part de cette instance, de 0 à count - 1
+        private int heartbeatIntervalSeconds = 30;
+        private int heartbeatTimeoutSeconds = 90; // Instance considérée arrêtée au-delà
+        
+        public String getMembership() { return membership; }
+        public void setMembership(String membership) { this.membership = membership; }
+        
+        public int getCount() { return count; }
+        public void setCount(int count) { this.count = count; }
+        
+        public int getIndex() { return index; }
+        public void setIndex(int index) { this.index = index; }
+        
+        public int getHeartbeatIntervalSeconds() { return heartbeatIntervalSeconds; }
+        public void setHeartbeatIntervalSeconds(int heartbeatIntervalSeconds) { this.heartbeatIntervalSeconds = heartbeatIntervalSeconds; }
+        
+        public int getHeartbeatTimeoutSeconds() { return heartbeatTimeoutSeconds; }
+        public void setHeartbeatTimeoutSeconds(int heartbeatTimeoutSeconds) { this.heartbeatTimeoutSeconds = heartbeatTimeoutSeconds; }
+    }
+    
+    public static class Loadtest {
+        private boolean runOnStartup = true; // Génération et exécution au démarrage (profil loadtest)
+        private String date = "14/10/2025"; // Date métier des données générées
+        private int managers = 200; // Gestionnaires par canal
+        private int rowsPerManager = 50;
+        private double errorDensity = 0.3; // Part des transactions avec erreur BKMOPERROR
+        private int smtpPort = 2525; // Port du serveur SMTP embarqué
+        private int smtpLatencyMs = 0; // Latence simulée par message
+        
+        public boolean isRunOnStartup() { return runOnStartup; }
+        public void setRunOnStartup(boolean runOnStartup) { this.runOnStartup = runOnStartup; }
+        
+        public String getDate() { return date; }
+        public void setDate(String date) { this.date = date; }
+        
+        public int getManagers() { return managers; }
+        public void setManagers(int managers) { this.managers = managers; }
+        
+        public int getRowsPerManager() { return rowsPerManager; }
+        public void setRowsPerManager(int rowsPerManager) { this.rowsPerManager = rowsPerManager; }
+        
+        public double getErrorDensity() { return errorDensity; }
+        public void setErrorDensity(double errorDensity) { this.errorDensity = errorDensity; }
+        
+        public int getSmtpPort() { return smtpPort; }
+        public void setSmtpPort(int smtpPort) { this.smtpPort = smtpPort; }
+        
+        public int getSmtpLatencyMs() { return smtpLatencyMs; }
+        public void setSmtpLatencyMs(int smtpLatencyMs) { this.smtpLatencyMs = smtpLatencyMs; }
+    }
+    
+    public static class Directory {
+        private int ttlMinutes = 60; // Durée de validité d'une fiche gestionnaire
+        private int maxSize = 5000; // Nombre maximal de fiches en cache (éviction LRU)
+        private int batchSize = 500; // Codes par liste IN lors d'un rechargement (max Oracle : 1000)
+        private boolean warmUp = true; // Chargement complet de BKNOM au démarrage
+        
+        public int getTtlMinutes() { return ttlMinutes; }
+        public void setTtlMinutes(int ttlMinutes) { this.ttlMinutes = ttlMinutes; }
+        
+        public int getMaxSize() { return maxSize; }
+        public void setMaxSize(int maxSize) { this.maxSize = maxSize; }
+        
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+        
+        public boolean isWarmUp() { return warmUp; }
+        public void setWarmUp(boolean warmUp) { this.warmUp = warmUp; }
+    }
+    
+    public static class Snapshot {
+        private boolean enabled = true;
+        private String directory = "./data/snapshots";
+        private int closedAfterDays = 1; // Une date est figée à partir de J+1
+        private int retentionDays = 90; // Purge des instantanés plus anciens
+        private String purgeCron = "0 45 2 * * *";
+        
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+        
+        public int getClosedAfterDays() { return closedAfterDays; }
+        public void setClosedAfterDays(int closedAfterDays) { this.closedAfterDays = closedAfterDays; }
+        
+        public int getRetentionDays() { return retentionDays; }
+        public void setRetentionDays(int retentionDays) { this.retentionDays = retentionDays; }
+        
+        public String getPurgeCron() { return purgeCron; }
+        public void setPurgeCron(String purgeCron) { this.purgeCron = purgeCron; }
+    }
+    
+    public static class Preview {
+        private int defaultLimit = 100; // Opérations par page sans paramètre limit
+        private int maxLimit = 1000;
+        private int errorBatchSize = 50; // Opérations dont les erreurs sont résolues avant d'être écrites
+        
+        public int getDefaultLimit() { return defaultLimit; }
+        public void setDefaultLimit(int defaultLimit) { this.defaultLimit = defaultLimit; }
+        
+        public int getMaxLimit() { return maxLimit; }
+        public void setMaxLimit(int maxLimit) { this.maxLimit = maxLimit; }
+        
+        public int getErrorBatchSize() { return errorBatchSize; }
+        public void setErrorBatchSize(int errorBatchSize) { this.errorBatchSize = errorBatchSize; }
+    }
+    
+    public static class Outbox {
+        private boolean enabled = true; // Envoi différé par la file persistante, sinon envoi direct par le pipeline
+        private String directory = "./data/outbox"; // Messages MIME rendus (.eml) en attente d'envoi
+        private int senderThreads = 4;
+        private long pollIntervalMs = 1000; // Attente maximale entre deux recherches de messages dus
+        private int maxAttempts = 8; // Au-delà, le message passe en lettre morte (DEAD)
+        private int initialBackoffSeconds = 30; // Délai avant le 2e essai, doublé à chaque échec
+        private int maxBackoffSeconds = 3600;
+        private int retentionDays = 7; // Purge des messages envoyés ou en lettre morte
+        private String purgeCron = "0 15 3 * * *";
+        
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+        
+        public int getSenderThreads() { return senderThreads; }
+        public void setSenderThreads(int senderThreads) { this.senderThreads = senderThreads; }
+        
+        public long getPollIntervalMs() { return pollIntervalMs; }
+        public void setPollIntervalMs(long pollIntervalMs) { this.pollIntervalMs = pollIntervalMs; }
+        
+        public int getMaxAttempts() { return maxAttempts; }
+        public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+        
+        public int getInitialBackoffSeconds() { return initialBackoffSeconds; }
+        public void setInitialBackoffSeconds(int initialBackoffSeconds) { this.initialBackoffSeconds = initialBackoffSeconds; }
+        
+        public int getMaxBackoffSeconds() { return maxBackoffSeconds; }
+        public void setMaxBackoffSeconds(int maxBackoffSeconds) { this.maxBackoffSeconds = maxBackoffSeconds; }
+        
+        public int getRetentionDays() { return retentionDays; }
+        public void setRetentionDays(int retentionDays) { this.retentionDays = retentionDays; }
+        
+        public String getPurgeCron() { return purgeCron; }
+        public void setPurgeCron(String purgeCron) { this.purgeCron = purgeCron; }
     }
 }
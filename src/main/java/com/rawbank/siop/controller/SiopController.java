@@ -1,17 +1,40 @@
 package com.rawbank.siop.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rawbank.siop.directory.ManagerDirectory;
+import com.rawbank.siop.dto.BackfillDateResultDto;
+import com.rawbank.siop.dto.ReportJobDto;
 import com.rawbank.siop.scheduler.SiopScheduler;
+import com.rawbank.siop.service.BackfillService;
+import com.rawbank.siop.service.OperationPreviewService;
+import com.rawbank.siop.service.ReportDownload;
+import com.rawbank.siop.service.ReportDownloadService;
+import com.rawbank.siop.service.ReportFormat;
+import com.rawbank.siop.service.ReportJobService;
+import com.rawbank.siop.service.ReportMode;
 import com.rawbank.siop.service.SiopService;
+import com.rawbank.siop.store.EmailOutbox;
+import com.rawbank.siop.store.SnapshotStore;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Contrôleur REST pour l'API SIOP
@@ -19,6 +42,18 @@ import java.util.Map;
  * Endpoints disponibles :
  * - GET /api/siop/health : Vérification de l'état
  * - POST /api/siop/generate : Génération manuelle du rapport
+ * - POST /api/siop/backfill : Rattrapage sur une plage de dates
+ * - POST /api/siop/jobs, /api/siop/jobs/backfill : Soumission asynchrone (202 + identifiant du job)
+ * - GET /api/siop/jobs, /api/siop/jobs/{jobId} : Suivi des jobs asynchrones
+ * - GET /api/siop/managers/cache : Statistiques de l'annuaire des gestionnaires
+ * - DELETE /api/siop/managers/cache : Invalidation de l'annuaire (complète ou par code)
+ * - POST /api/siop/managers/cache/reload : Rechargement complet de l'annuaire
+ * - GET /api/siop/snapshots : Instantanés des journées clôturées
+ * - DELETE /api/siop/snapshots : Invalidation des instantanés d'une date
+ * - GET /api/siop/operations : Aperçu JSON paginé des opérations d'une date (sans envoi)
+ * - GET /api/siop/reports/download : Téléchargement du rapport d'un gestionnaire
+ * - GET /api/siop/outbox : État de la file d'envoi des emails et lettres mortes
+ * - POST /api/siop/outbox/retry : Remise en file des lettres mortes
  * - GET /api/siop/status : Statut de l'application
  */
 @RestController
@@ -33,6 +68,30 @@ public class SiopController {
     @Autowired
     private SiopScheduler siopScheduler;
     
+    @Autowired
+    private BackfillService backfillService;
+    
+    @Autowired
+    private ReportJobService reportJobService;
+    
+    @Autowired
+    private ManagerDirectory managerDirectory;
+    
+    @Autowired
+    private SnapshotStore snapshotStore;
+    
+    @Autowired
+    private EmailOutbox emailOutbox;
+    
+    @Autowired
+    private OperationPreviewService operationPreviewService;
+    
+    @Autowired
+    private ReportDownloadService reportDownloadService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     /**
      * Vérification de l'état de l'application
      * 
@@ -53,16 +112,21 @@ public class SiopController {
      * Génération manuelle du rapport SIOP
      * 
      * @param date Date optionnelle (format DD/MM/YYYY)
+     * @param async Soumission en job asynchrone (réponse 202 immédiate)
      * @return Résultat de la génération
      */
     @PostMapping("/generate")
     public ResponseEntity<Map<String, Object>> generateReport(
-            @RequestParam(required = false) String date) {
+            @RequestParam(required = false) String date,
+            @RequestParam(defaultValue = "false") boolean async) {
+        
+        String queryDate = date != null ? date : 
+            LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+        if (async) {
+            return submitReportJob(queryDate);
+        }
         
         try {
-            String queryDate = date != null ? date : 
-                LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-            
             logger.info("Génération manuelle du rapport SIOP pour la date : {}", queryDate);
             
             siopService.generateAndSendReport(queryDate);
@@ -92,11 +156,17 @@ public class SiopController {
      * Exécution du rapport pour une date spécifique
      * 
      * @param date Date au format DD/MM/YYYY
+     * @param async Soumission en job asynchrone (réponse 202 immédiate)
      * @return Résultat de l'exécution
      */
     @PostMapping("/execute/{date}")
     public ResponseEntity<Map<String, Object>> executeForDate(
-            @PathVariable String date) {
+            @PathVariable String date,
+            @RequestParam(defaultValue = "false") boolean async) {
+        
+        if (async) {
+            return submitReportJob(date);
+        }
         
         try {
             logger.info("Exécution du rapport SIOP pour la date : {}", date);
@@ -125,6 +195,346 @@ public class SiopController {
         }
     }
     
+    /**
+     * Rattrapage du rapport sur une plage de dates
+     * 
+     * @param from Première date (format DD/MM/YYYY)
+     * @param to Dernière date incluse (format DD/MM/YYYY)
+     * @return Résultat et durée de chaque date
+     */
+    @PostMapping("/backfill")
+    public ResponseEntity<Map<String, Object>> backfill(
+            @RequestParam String from, @RequestParam String to) {
+        
+        try {
+            logger.info("Rattrapage du rapport SIOP du {} au {}", from, to);
+            
+            long start = System.currentTimeMillis();
+            List<BackfillDateResultDto> results = backfillService.backfill(from, to);
+            long failed = results.stream().filter(result -> !result.isSuccess()).count();
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", failed == 0);
+            response.put("message", failed == 0 
+                ? "Rattrapage SIOP exécuté avec succès" 
+                : String.format("Rattrapage SIOP terminé avec %d date(s) en échec", failed));
+            response.put("from", from);
+            response.put("to", to);
+            response.put("dates", results);
+            response.put("durationMs", System.currentTimeMillis() - start);
+            response.put("timestamp", System.currentTimeMillis());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Plage de dates invalide");
+            response.put("error", e.getMessage());
+            response.put("timestamp", System.currentTimeMillis());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * Soumission asynchrone de la génération du rapport
+     * 
+     * @param date Date optionnelle (format DD/MM/YYYY)
+     * @return Identifiant du job (202)
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<Map<String, Object>> submitJob(
+            @RequestParam(required = false) String date) {
+        
+        String queryDate = date != null ? date : 
+            LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+        return submitReportJob(queryDate);
+    }
+    
+    /**
+     * Soumission asynchrone d'un rattrapage sur une plage de dates
+     * 
+     * @param from Première date (format DD/MM/YYYY)
+     * @param to Dernière date incluse (format DD/MM/YYYY)
+     * @return Identifiant du job (202)
+     */
+    @PostMapping("/jobs/backfill")
+    public ResponseEntity<Map<String, Object>> submitBackfillJob(
+            @RequestParam String from, @RequestParam String to) {
+        
+        try {
+            logger.info("Soumission du rattrapage SIOP du {} au {}", from, to);
+            return jobAccepted(reportJobService.submitBackfill(from, to));
+            
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return jobRejected(HttpStatus.BAD_REQUEST, "Plage de dates invalide", e);
+        } catch (RejectedExecutionException e) {
+            return jobRejected(HttpStatus.SERVICE_UNAVAILABLE, "File des jobs pleine, réessayer plus tard", e);
+        }
+    }
+    
+    /**
+     * Statut d'un job asynchrone
+     * 
+     * @param jobId Identifiant du job
+     * @return Étape, compteurs et durée du job (404 si inconnu ou expiré)
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ReportJobDto> jobStatus(@PathVariable String jobId) {
+        return reportJobService.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Statut des jobs asynchrones connus
+     * 
+     * @return Jobs en attente, en cours et récemment terminés
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<List<ReportJobDto>> jobs() {
+        return ResponseEntity.ok(reportJobService.list());
+    }
+    
+    /**
+     * Statistiques de l'annuaire des gestionnaires
+     * 
+     * @return Taille, capacité, succès et échecs du cache
+     */
+    @GetMapping("/managers/cache")
+    public ResponseEntity<Map<String, Object>> managerCache() {
+        return ResponseEntity.ok(managerDirectory.stats());
+    }
+    
+    /**
+     * Invalidation de l'annuaire des gestionnaires
+     * 
+     * Les fiches invalidées sont relues dans BKNOM à la prochaine exécution
+     * 
+     * @param code Code gestionnaire optionnel (tout l'annuaire sinon)
+     * @return Statistiques du cache après invalidation
+     */
+    @DeleteMapping("/managers/cache")
+    public ResponseEntity<Map<String, Object>> invalidateManagerCache(@RequestParam(required = false) String code) {
+        Map<String, Object> response = new HashMap<>();
+        if (code != null && !code.trim().isEmpty()) {
+            response.put("invalidated", managerDirectory.invalidate(code));
+            response.put("code", code.trim());
+        } else {
+            managerDirectory.invalidateAll();
+            response.put("invalidated", true);
+        }
+        response.put("cache", managerDirectory.stats());
+        response.put("timestamp", System.currentTimeMillis());
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Rechargement complet de l'annuaire des gestionnaires
+     * 
+     * @return Nombre de fiches lues
+     */
+    @PostMapping("/managers/cache/reload")
+    public ResponseEntity<Map<String, Object>> reloadManagerCache() {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("managers", managerDirectory.reload());
+            response.put("timestamp", System.currentTimeMillis());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            logger.error("Erreur lors du rechargement de l'annuaire des gestionnaires", e);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Erreur lors du rechargement de l'annuaire");
+            response.put("error", e.getMessage());
+            response.put("timestamp", System.currentTimeMillis());
+            
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
+    /**
+     * Instantanés des journées clôturées présents sur disque
+     * 
+     * @return Fichier, taille et date de création de chaque instantané
+     */
+    @GetMapping("/snapshots")
+    public ResponseEntity<List<Map<String, Object>>> snapshots() {
+        return ResponseEntity.ok(snapshotStore.list());
+    }
+    
+    /**
+     * Invalidation des instantanés d'une date
+     * 
+     * La prochaine exécution de cette date relit Oracle et réécrit l'instantané
+     * 
+     * @param date Date au format DD/MM/YYYY
+     * @param canal Canal optionnel (tous les canaux sinon)
+     * @return Nombre d'instantanés supprimés, 400 si la date est invalide
+     */
+    @DeleteMapping("/snapshots")
+    public ResponseEntity<Map<String, Object>> invalidateSnapshots(
+            @RequestParam String date,
+            @RequestParam(required = false) String canal) {
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("date", date);
+        response.put("timestamp", System.currentTimeMillis());
+        try {
+            response.put("deleted", snapshotStore.invalidate(date, canal));
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+            
+        } catch (DateTimeParseException e) {
+            response.put("success", false);
+            response.put("message", "Date invalide");
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * État de la file d'envoi des emails
+     * 
+     * @return Nombre de messages par état et dernières lettres mortes
+     */
+    @GetMapping("/outbox")
+    public ResponseEntity<Map<String, Object>> outbox() {
+        return ResponseEntity.ok(emailOutbox.stats());
+    }
+    
+    /**
+     * Remise en file des lettres mortes (après correction du relais ou de l'adresse)
+     * 
+     * @param id Identifiant du message optionnel (toutes les lettres mortes sinon)
+     * @return Nombre de messages remis en file, 404 si le message n'est pas en lettre morte
+     */
+    @PostMapping("/outbox/retry")
+    public ResponseEntity<Map<String, Object>> retryDeadLetters(@RequestParam(required = false) Long id) {
+        int requeued = emailOutbox.requeue(id);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("requeued", requeued);
+        response.put("timestamp", System.currentTimeMillis());
+        if (id != null && requeued == 0) {
+            response.put("success", false);
+            response.put("message", "Aucune lettre morte avec l'identifiant " + id);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Aperçu des opérations d'une date, telles que les gestionnaires les recevraient
+     * 
+     * La réponse est écrite au fil de la lecture ; une page pleine porte nextCursor,
+     * à renvoyer dans cursor pour la page suivante avec les mêmes filtres.
+     * 
+     * @param date Date au format DD/MM/YYYY
+     * @param canal Canal optionnel (tous les canaux configurés sinon)
+     * @param manager Code gestionnaire optionnel
+     * @param status Statuts acceptés (message, lot ou transaction), répétable
+     * @param cursor Curseur de la page précédente
+     * @param limit Opérations par page (siop.preview.default-limit par défaut)
+     * @param response Réponse HTTP : 400 si un paramètre ou le curseur est invalide,
+     *                 503 si trop de lectures à la demande sont en cours
+     */
+    @GetMapping("/operations")
+    public void previewOperations(
+            @RequestParam String date,
+            @RequestParam(required = false) String canal,
+            @RequestParam(required = false) String manager,
+            @RequestParam(required = false) List<String> status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            HttpServletResponse response) throws IOException {
+        
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try {
+            operationPreviewService.writePreview(date, canal, manager, status, cursor, limit,
+                response.getOutputStream());
+            
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            writeError(response, HttpStatus.BAD_REQUEST, "Paramètres d'aperçu invalides", e.getMessage());
+        } catch (RejectedExecutionException e) {
+            writeError(response, HttpStatus.SERVICE_UNAVAILABLE, "Trop de lectures en cours, réessayer plus tard",
+                e.getMessage());
+        }
+    }
+    
+    /**
+     * Téléchargement du rapport d'un gestionnaire
+     * 
+     * Le fichier est écrit directement dans la réponse (transfert chunked, sans Content-Length) :
+     * il n'est jamais conservé entier en mémoire
+     * 
+     * @param date Date au format DD/MM/YYYY
+     * @param manager Code gestionnaire
+     * @param canal Canal optionnel (tous les canaux configurés sinon)
+     * @param format Format optionnel (xlsx, csv, csv-gzip), format du gestionnaire sinon
+     * @param response Réponse HTTP : 400 si un paramètre est invalide, 404 sans opération,
+     *                 503 si trop de lectures à la demande sont en cours
+     */
+    @GetMapping("/reports/download")
+    public void downloadReport(
+            @RequestParam String date,
+            @RequestParam String manager,
+            @RequestParam(required = false) String canal,
+            @RequestParam(required = false) String format,
+            HttpServletResponse response) throws IOException {
+        
+        ReportDownload download;
+        try {
+            logger.info("Téléchargement du rapport du gestionnaire {} pour la date : {}", manager, date);
+            
+            download = reportDownloadService.openReport(date, manager, canal);
+            
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            writeError(response, HttpStatus.BAD_REQUEST, "Paramètres de téléchargement invalides", e.getMessage());
+            return;
+        } catch (RejectedExecutionException e) {
+            writeError(response, HttpStatus.SERVICE_UNAVAILABLE, "Trop de lectures en cours, réessayer plus tard",
+                e.getMessage());
+            return;
+        } catch (Exception e) {
+            logger.error("Erreur lors de la préparation du rapport du gestionnaire {}", manager, e);
+            writeError(response, HttpStatus.INTERNAL_SERVER_ERROR, "Erreur lors de la préparation du rapport",
+                e.getMessage());
+            return;
+        }
+        if (download == null) {
+            writeError(response, HttpStatus.NOT_FOUND, "Aucune opération pour ce gestionnaire",
+                String.format("Gestionnaire %s sans opération le %s", manager, date));
+            return;
+        }
+        
+        // La lecture reste ouverte pendant l'écriture des paquets suivants
+        try (download) {
+            ReportFormat reportFormat;
+            try {
+                reportFormat = reportDownloadService.formatFor(download.getReport(), format);
+            } catch (IllegalArgumentException e) {
+                writeError(response, HttpStatus.BAD_REQUEST, "Paramètres de téléchargement invalides",
+                    e.getMessage());
+                return;
+            }
+            
+            response.setContentType(reportFormat.getContentType());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(reportDownloadService.filename(download.getReport(), date, manager, reportFormat))
+                .build().toString());
+            reportDownloadService.write(download, reportFormat, response.getOutputStream());
+        }
+    }
+    
     /**
      * Statut de l'application
      * 
@@ -173,6 +583,86 @@ public class SiopController {
         }
     }
     
+    /**
+     * Soumet la génération complète d'une date en job asynchrone
+     * 
+     * @param date Date au format DD/MM/YYYY
+     * @return Identifiant du job (202), 400 si la date est invalide, 503 si la file est pleine
+     */
+    private ResponseEntity<Map<String, Object>> submitReportJob(String date) {
+        try {
+            logger.info("Soumission du rapport SIOP pour la date : {}", date);
+            return jobAccepted(reportJobService.submitReport(date, ReportMode.FULL));
+            
+        } catch (DateTimeParseException e) {
+            return jobRejected(HttpStatus.BAD_REQUEST, "Date invalide", e);
+        } catch (RejectedExecutionException e) {
+            return jobRejected(HttpStatus.SERVICE_UNAVAILABLE, "File des jobs pleine, réessayer plus tard", e);
+        }
+    }
+    
+    /**
+     * Réponse 202 d'un job accepté
+     * 
+     * @param job Statut initial du job
+     * @return Identifiant et URL de suivi du job
+     */
+    private ResponseEntity<Map<String, Object>> jobAccepted(ReportJobDto job) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "Job soumis");
+        response.put("jobId", job.getJobId());
+        response.put("statusUrl", "/api/siop/jobs/" + job.getJobId());
+        response.put("job", job);
+        response.put("timestamp", System.currentTimeMillis());
+        
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+    
+    /**
+     * Réponse d'erreur d'un job refusé
+     * 
+     * @param status Statut HTTP
+     * @param message Message d'erreur
+     * @param e Cause du refus
+     * @return Réponse d'erreur
+     */
+    private ResponseEntity<Map<String, Object>> jobRejected(HttpStatus status, String message, Exception e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", message);
+        response.put("error", e.getMessage());
+        response.put("timestamp", System.currentTimeMillis());
+        
+        return ResponseEntity.status(status).body(response);
+    }
+    
+    /**
+     * Réponse d'erreur écrite directement, pour les endpoints en flux
+     * 
+     * @param response Réponse HTTP, encore vierge
+     * @param status Statut HTTP
+     * @param message Message d'erreur
+     * @param error Détail de l'erreur
+     */
+    private void writeError(HttpServletResponse response, HttpStatus status, String message, String error)
+            throws IOException {
+        if (response.isCommitted()) {
+            throw new IllegalStateException("Réponse déjà envoyée : " + error);
+        }
+        
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        Map<String, Object> body = new HashMap<>();
+        body.put("success", false);
+        body.put("message", message);
+        body.put("error", error);
+        body.put("timestamp", System.currentTimeMillis());
+        
+        response.setStatus(status.value());
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+    
     /**
      * Obtient le temps de démarrage de l'application
      * 
@@ -0,0 +1,325 @@
+package com.rawbank.siop.directory;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.SiopReportDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Annuaire des gestionnaires en cache
+ * 
+ * Responsable de :
+ * - Chargement en masse de BKNOM (ctab = '035') au démarrage
+ * - Résolution des codes gestionnaire (BKEVE.ges1) sans jointure dans la requête SIOP
+ * - Rechargement par lots des codes absents ou expirés (siop.directory.ttl-minutes)
+ * - Éviction des fiches les moins utilisées au-delà de siop.directory.max-size
+ * - Invalidation complète ou par code
+ * - Emails partagés par plusieurs codes, dont les rapports sont regroupés
+ * 
+ * Les codes inconnus de BKNOM sont aussi mis en cache (jusqu'à expiration),
+ * pour ne pas les redemander à chaque exécution.
+ */
+@Component
+public class ManagerDirectory {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ManagerDirectory.class);
+    
+    private static final String SELECT_ALL =
+        "SELECT TRIM(cacc) AS gest_code, lib1, lib2, lib4, lib5 FROM BKNOM WHERE ctab = '035'";
+    
+    // TRIM(cacc) : la table des gestionnaires est petite, la comparaison
+    // reste indépendante du type CHAR ou VARCHAR2 de la colonne
+    private static final String SELECT_CODES =
+        "SELECT TRIM(cacc) AS gest_code, lib1, lib2, lib4, lib5 FROM BKNOM "
+            + "WHERE ctab = '035' AND TRIM(cacc) IN (:codes)";
+    
+    private static final String SELECT_SHARED_EMAILS =
+        "SELECT LOWER(TRIM(lib4)) AS email FROM BKNOM WHERE ctab = '035' AND TRIM(lib4) IS NOT NULL "
+            + "GROUP BY LOWER(TRIM(lib4)) HAVING COUNT(*) > 1";
+    
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile long lastFullLoadMillis;
+    
+    // Ordre d'accès : l'entrée la plus ancienne est la moins récemment utilisée
+    private final LinkedHashMap<String, CachedEntry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedEntry> eldest) {
+            if (size() > Math.max(1, siopProperties.getDirectory().getMaxSize())) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+    
+    /**
+     * Préchargement de l'annuaire une fois l'application démarrée
+     * 
+     * Un échec n'empêche pas le démarrage : les fiches seront chargées à la demande
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!siopProperties.getDirectory().isWarmUp()) {
+            return;
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.warn("Préchargement de l'annuaire des gestionnaires impossible, chargement à la demande", e);
+        }
+    }
+    
+    /**
+     * Recharge tout l'annuaire depuis BKNOM
+     * 
+     * @return Nombre de gestionnaires lus
+     */
+    public int reload() {
+        long start = System.currentTimeMillis();
+        long loadedAt = System.nanoTime();
+        Map<String, ManagerEntry> loaded = new LinkedHashMap<>();
+        namedParameterJdbcTemplate.query(SELECT_ALL, new MapSqlParameterSource(), rs -> {
+            ManagerEntry entry = mapEntry(rs);
+            loaded.put(entry.getCode(), entry);
+        });
+        
+        synchronized (entries) {
+            entries.clear();
+            loaded.forEach((code, entry) -> entries.put(code, new CachedEntry(entry, loadedAt)));
+        }
+        lastFullLoadMillis = System.currentTimeMillis();
+        
+        int maxSize = siopProperties.getDirectory().getMaxSize();
+        if (loaded.size() > maxSize) {
+            logger.warn("Annuaire des gestionnaires tronqué : {} fiches pour une capacité de {}",
+                loaded.size(), maxSize);
+        }
+        logger.info("Annuaire des gestionnaires chargé : {} fiche(s) en {} ms",
+            loaded.size(), System.currentTimeMillis() - start);
+        return loaded.size();
+    }
+    
+    /**
+     * Fiche d'un gestionnaire
+     * 
+     * @param code Code gestionnaire (BKEVE.ges1)
+     * @return Fiche, ou null si le code est inconnu de BKNOM
+     */
+    public ManagerEntry find(String code) {
+        if (code == null || code.trim().isEmpty()) {
+            return null;
+        }
+        return resolve(List.of(code)).get(code.trim());
+    }
+    
+    /**
+     * Résout un ensemble de codes gestionnaire
+     * 
+     * Les codes absents du cache ou expirés sont relus en une requête par lot
+     * 
+     * @param codes Codes gestionnaire
+     * @return Fiches trouvées, par code normalisé (les codes inconnus sont absents)
+     */
+    public Map<String, ManagerEntry> resolve(Collection<String> codes) {
+        Map<String, ManagerEntry> resolved = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        long now = System.nanoTime();
+        long ttlNanos = TimeUnit.MINUTES.toNanos(siopProperties.getDirectory().getTtlMinutes());
+        
+        synchronized (entries) {
+            for (String rawCode : codes) {
+                if (rawCode == null || rawCode.trim().isEmpty()) {
+                    continue;
+                }
+                String code = rawCode.trim();
+                CachedEntry cached = entries.get(code);
+                if (cached != null && now - cached.loadedAt < ttlNanos) {
+                    hits.incrementAndGet();
+                    if (cached.entry != null) {
+                        resolved.put(code, cached.entry);
+                    }
+                } else if (missing.add(code)) {
+                    misses.incrementAndGet();
+                }
+            }
+        }
+        
+        if (!missing.isEmpty()) {
+            resolved.putAll(load(missing));
+        }
+        return resolved;
+    }
+    
+    /**
+     * Complète les opérations avec la fiche de leur gestionnaire
+     * 
+     * Les opérations dont le code est inconnu restent sans email
+     * 
+     * @param operations Opérations SIOP (gestCode renseigné)
+     */
+    public void enrich(List<SiopReportDto> operations) {
+        Set<String> codes = new LinkedHashSet<>();
+        for (SiopReportDto operation : operations) {
+            codes.add(operation.getGestCode());
+        }
+        
+        Map<String, ManagerEntry> managers = resolve(codes);
+        for (SiopReportDto operation : operations) {
+            String code = operation.getGestCode();
+            ManagerEntry manager = code != null ? managers.get(code.trim()) : null;
+            if (manager != null) {
+                operation.setNomGest(manager.getNom());
+                operation.setPrenomGest(manager.getPrenom());
+                operation.setEmailGest(manager.getEmail());
+                operation.setPhoneGest(manager.getPhone());
+            }
+        }
+    }
+    
+    /**
+     * Emails rattachés à plusieurs codes gestionnaire
+     * 
+     * Lus dans BKNOM à chaque appel, indépendamment du cache (éventuellement partiel) :
+     * les rapports de ces codes sont regroupés en un seul envoi par email
+     * 
+     * @return Emails normalisés (normalizeEmail)
+     */
+    public Set<String> findSharedEmails() {
+        return new HashSet<>(namedParameterJdbcTemplate.queryForList(
+            SELECT_SHARED_EMAILS, new MapSqlParameterSource(), String.class));
+    }
+    
+    /**
+     * Clé de regroupement d'un email : sans espaces et en minuscules
+     * 
+     * @param email Email d'une fiche
+     * @return Email normalisé, ou null
+     */
+    public static String normalizeEmail(String email) {
+        return email != null ? email.trim().toLowerCase(Locale.ROOT) : null;
+    }
+    
+    /**
+     * Vide tout le cache : les fiches seront relues à la prochaine résolution
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        logger.info("Annuaire des gestionnaires invalidé");
+    }
+    
+    /**
+     * Retire une fiche du cache
+     * 
+     * @param code Code gestionnaire
+     * @return true si la fiche était en cache
+     */
+    public boolean invalidate(String code) {
+        synchronized (entries) {
+            return entries.remove(code.trim()) != null;
+        }
+    }
+    
+    /**
+     * Statistiques du cache
+     * 
+     * @return Taille, capacité, succès, échecs, évictions et dernier chargement complet
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxSize", siopProperties.getDirectory().getMaxSize());
+        stats.put("ttlMinutes", siopProperties.getDirectory().getTtlMinutes());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("lastFullLoad", lastFullLoadMillis);
+        return stats;
+    }
+    
+    /**
+     * Charge des fiches depuis BKNOM, par lots de siop.directory.batch-size codes
+     * 
+     * @param codes Codes à charger
+     * @return Fiches trouvées
+     */
+    private Map<String, ManagerEntry> load(Set<String> codes) {
+        List<String> pending = new ArrayList<>(codes);
+        int batchSize = Math.max(1, Math.min(1000, siopProperties.getDirectory().getBatchSize()));
+        Map<String, ManagerEntry> loaded = new HashMap<>();
+        long loadedAt = System.nanoTime();
+        
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<String> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            namedParameterJdbcTemplate.query(SELECT_CODES, new MapSqlParameterSource("codes", batch), rs -> {
+                ManagerEntry entry = mapEntry(rs);
+                loaded.put(entry.getCode(), entry);
+            });
+        }
+        
+        synchronized (entries) {
+            for (String code : pending) {
+                // Entrée vide pour un code inconnu : pas de nouvelle requête avant expiration
+                entries.put(code, new CachedEntry(loaded.get(code), loadedAt));
+            }
+        }
+        
+        logger.debug("Annuaire : {} code(s) relu(s), {} trouvé(s)", pending.size(), loaded.size());
+        return loaded;
+    }
+    
+    private static ManagerEntry mapEntry(ResultSet rs) throws SQLException {
+        return new ManagerEntry(
+            rs.getString("gest_code"),
+            rs.getString("lib1"),
+            rs.getString("lib2"),
+            rs.getString("lib4"),
+            rs.getString("lib5"));
+    }
+    
+    /**
+     * Fiche en cache avec sa date de chargement (null si code inconnu)
+     */
+    private static final class CachedEntry {
+        
+        private final ManagerEntry entry;
+        private final long loadedAt;
+        
+        private CachedEntry(ManagerEntry entry, long loadedAt) {
+            this.entry = entry;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.rawbank.siop.directory;
+
+/**
+ * Fiche d'un gestionnaire (BKNOM, ctab = '035')
+ */
+public class ManagerEntry {
+    
+    private final String code;
+    private final String nom;
+    private final String prenom;
+    private final String email;
+    private final String phone;
+    
+    public ManagerEntry(String code, String nom, String prenom, String email, String phone) {
+        this.code = code;
+        this.nom = nom;
+        this.prenom = prenom;
+        this.email = email;
+        this.phone = phone;
+    }
+    
+    public String getCode() { return code; }
+    
+    public String getNom() { return nom; }
+    
+    public String getPrenom() { return prenom; }
+    
+    public String getEmail() { return email; }
+    
+    public String getPhone() { return phone; }
+    
+    public boolean hasEmail() { return email != null && !email.trim().isEmpty(); }
+}
@@ -0,0 +1,38 @@
+package com.rawbank.siop.dto;
+
+/**
+ * DTO pour le résultat d'une date rejouée
+ * 
+ * Contient le statut et la durée d'exécution
+ * d'une date d'un rattrapage
+ */
+public class BackfillDateResultDto {
+    
+    private String date;
+    private boolean success;
+    private long durationMs;
+    private String error;
+    
+    // Constructeurs
+    public BackfillDateResultDto() {}
+    
+    public BackfillDateResultDto(String date, boolean success, long durationMs, String error) {
+        this.date = date;
+        this.success = success;
+        this.durationMs = durationMs;
+        this.error = error;
+    }
+    
+    // Getters et Setters
+    public String getDate() { return date; }
+    public void setDate(String date) { this.date = date; }
+    
+    public boolean isSuccess() { return success; }
+    public void setSuccess(boolean success) { this.success = success; }
+    
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
+    
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
@@ -0,0 +1,50 @@
+package com.rawbank.siop.dto;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionnaire des libellés répétés des opérations SIOP
+ * 
+ * Canal, service, type de message, frais et statuts ne prennent qu'une poignée
+ * de valeurs, mais le driver JDBC crée une chaîne par ligne lue : chaque valeur
+ * est remplacée par son unique instance partagée.
+ * 
+ * Un dictionnaire vit le temps d'une lecture (requête ou instantané) et n'est pas
+ * partagé entre threads : il est libéré avec la lecture. Il est borné : au-delà
+ * de MAX_ENTRIES valeurs distinctes (colonne moins répétitive que prévu),
+ * les nouvelles valeurs de cette lecture sont gardées telles quelles.
+ */
+public final class LabelDictionary {
+    
+    static final int MAX_ENTRIES = 4096;
+    
+    private final Map<String, String> labels = new HashMap<>();
+    
+    /**
+     * Instance partagée d'un libellé
+     * 
+     * @param value Libellé lu
+     * @return Instance enregistrée égale à value, ou value elle-même
+     */
+    public String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        String shared = labels.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (labels.size() < MAX_ENTRIES) {
+            labels.put(value, value);
+        }
+        return value;
+    }
+    
+    /**
+     * Nombre de libellés enregistrés
+     */
+    public int size() {
+        return labels.size();
+    }
+}
@@ -10,6 +10,7 @@ import java.util.List;
  */
 public class ManagerReportDto {
     
+    private String gestCode;
     private String emailGest;
     private String nomGest;
     private String prenomGest;
@@ -29,6 +30,9 @@ public class ManagerReportDto {
     }
     
     // Getters et Setters
+    public String getGestCode() { return gestCode; }
+    public void setGestCode(String gestCode) { this.gestCode = gestCode; }
+    
     public String getEmailGest() { return emailGest; }
     public void setEmailGest(String emailGest) { this.emailGest = emailGest; }
     
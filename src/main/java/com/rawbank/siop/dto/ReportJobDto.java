@@ -0,0 +1,93 @@
+package com.rawbank.siop.dto;
+
+/**
+ * DTO pour le statut d'un job asynchrone
+ * 
+ * Contient l'étape, les compteurs et la durée
+ * d'une génération ou d'un rattrapage en cours ou terminé
+ */
+public class ReportJobDto {
+    
+    private String jobId;
+    private String type;
+    private String status;
+    private String stage;
+    private String from;
+    private String to;
+    private Integer rowCount;
+    private Integer managersSubmitted;
+    private Integer managersSent;
+    private Integer managersQueued;
+    private Integer managersFailed;
+    private Integer datesTotal;
+    private Integer datesCompleted;
+    private long submittedAt;
+    private Long startedAt;
+    private Long finishedAt;
+    private long elapsedMs;
+    private String error;
+    
+    // Constructeurs
+    public ReportJobDto() {}
+    
+    public ReportJobDto(String jobId, String type, String status) {
+        this.jobId = jobId;
+        this.type = type;
+        this.status = status;
+    }
+    
+    // Getters et Setters
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
+    
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public String getStage() { return stage; }
+    public void setStage(String stage) { this.stage = stage; }
+    
+    public String getFrom() { return from; }
+    public void setFrom(String from) { this.from = from; }
+    
+    public String getTo() { return to; }
+    public void setTo(String to) { this.to = to; }
+    
+    public Integer getRowCount() { return rowCount; }
+    public void setRowCount(Integer rowCount) { this.rowCount = rowCount; }
+    
+    public Integer getManagersSubmitted() { return managersSubmitted; }
+    public void setManagersSubmitted(Integer managersSubmitted) { this.managersSubmitted = managersSubmitted; }
+    
+    public Integer getManagersSent() { return managersSent; }
+    public void setManagersSent(Integer managersSent) { this.managersSent = managersSent; }
+    
+    public Integer getManagersQueued() { return managersQueued; }
+    public void setManagersQueued(Integer managersQueued) { this.managersQueued = managersQueued; }
+    
+    public Integer getManagersFailed() { return managersFailed; }
+    public void setManagersFailed(Integer managersFailed) { this.managersFailed = managersFailed; }
+    
+    public Integer getDatesTotal() { return datesTotal; }
+    public void setDatesTotal(Integer datesTotal) { this.datesTotal = datesTotal; }
+    
+    public Integer getDatesCompleted() { return datesCompleted; }
+    public void setDatesCompleted(Integer datesCompleted) { this.datesCompleted = datesCompleted; }
+    
+    public long getSubmittedAt() { return submittedAt; }
+    public void setSubmittedAt(long submittedAt) { this.submittedAt = submittedAt; }
+    
+    public Long getStartedAt() { return startedAt; }
+    public void setStartedAt(Long startedAt) { this.startedAt = startedAt; }
+    
+    public Long getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(Long finishedAt) { this.finishedAt = finishedAt; }
+    
+    public long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+    
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
@@ -1,6 +1,7 @@
 package com.rawbank.siop.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -10,18 +11,44 @@ import java.util.List;
  * 
  * Contient les informations nécessaires pour la génération
  * des rapports et l'envoi d'emails
+ * 
+ * Représentation compacte, une journée entière pouvant être gardée en mémoire :
+ * - Libellés répétés (canal, service, type, frais, statuts) partagés par le lecteur (LabelDictionary)
+ * - Montant en unités mineures (long + échelle) au lieu d'un BigDecimal par ligne,
+ *   BigDecimal conservé seulement pour un montant hors capacité (plus de 18 chiffres) ;
+ *   les rendus lisent le montant en centimes (getMontantCents) sans créer de BigDecimal
+ * - Champs du gestionnaire partagés avec sa fiche (ManagerDirectory)
  */
 public class SiopReportDto {
     
+    /**
+     * Montant absent, ou non représentable en centimes dans un long (getMontantCents)
+     */
+    public static final long NO_CENTS = Long.MIN_VALUE;
+    
+    private static final byte NO_AMOUNT = Byte.MIN_VALUE;
+    
+    // Puissances de 10 tenant dans un long, pour le passage aux centimes
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+        10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+        1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+    
     @JsonFormat(pattern = "dd/MM/yyyy HH:mm:ss")
     private LocalDateTime dateCreation;
     
+    @JsonFormat(pattern = "dd/MM/yyyy HH:mm:ss")
+    private LocalDateTime incomTime;
+    
     private String filename;
+    private String idmsg;
+    private String idlot;
+    private String idtx;
     private String canal;
     private String service;
     private String typeMsg;
     private String beneficiaire;
-    private BigDecimal montantTx;
     private String motif;
     private String frais;
     private String msgStatus;
@@ -29,7 +56,16 @@ public class SiopReportDto {
     private String txtStatus;
     private String errorMsg;
     
-    // Informations du gestionnaire
+    // Message d'erreur déjà résolu (null compris) : lu dans un instantané ou complété par ErrorMessageResolver
+    private boolean errorMsgResolved;
+    
+    // Montant : valeur non mise à l'échelle et échelle (NO_AMOUNT si absent ou hors capacité)
+    private long montantUnscaled;
+    private byte montantScale = NO_AMOUNT;
+    private BigDecimal montantOverflow;
+    
+    // Informations du gestionnaire (code lu par la requête, fiche complétée par ManagerDirectory)
+    private String gestCode;
     private String nomGest;
     private String prenomGest;
     private String emailGest;
@@ -49,9 +85,21 @@ public class SiopReportDto {
     public LocalDateTime getDateCreation() { return dateCreation; }
     public void setDateCreation(LocalDateTime dateCreation) { this.dateCreation = dateCreation; }
     
+    public LocalDateTime getIncomTime() { return incomTime; }
+    public void setIncomTime(LocalDateTime incomTime) { this.incomTime = incomTime; }
+    
     public String getFilename() { return filename; }
     public void setFilename(String filename) { this.filename = filename; }
     
+    public String getIdmsg() { return idmsg; }
+    public void setIdmsg(String idmsg) { this.idmsg = idmsg; }
+    
+    public String getIdlot() { return idlot; }
+    public void setIdlot(String idlot) { this.idlot = idlot; }
+    
+    public String getIdtx() { return idtx; }
+    public void setIdtx(String idtx) { this.idtx = idtx; }
+    
     public String getCanal() { return canal; }
     public void setCanal(String canal) { this.canal = canal; }
     
@@ -64,8 +112,67 @@ public class SiopReportDto {
     public String getBeneficiaire() { return beneficiaire; }
     public void setBeneficiaire(String beneficiaire) { this.beneficiaire = beneficiaire; }
     
-    public BigDecimal getMontantTx() { return montantTx; }
-    public void setMontantTx(BigDecimal montantTx) { this.montantTx = montantTx; }
+    public BigDecimal getMontantTx() {
+        if (montantOverflow != null) {
+            return montantOverflow;
+        }
+        return montantScale != NO_AMOUNT ? BigDecimal.valueOf(montantUnscaled, montantScale) : null;
+    }
+    
+    /**
+     * Montant arrondi au centime (HALF_EVEN), calculé depuis la valeur compacte sans allocation
+     * 
+     * @return Montant en centimes, ou NO_CENTS s'il est absent ou hors capacité : lire alors getMontantTx
+     */
+    @JsonIgnore
+    public long getMontantCents() {
+        if (montantScale == NO_AMOUNT) {
+            return NO_CENTS;
+        }
+        
+        int shift = 2 - montantScale;
+        if (shift >= 0) {
+            if (shift >= POWERS_OF_TEN.length) {
+                return montantUnscaled == 0 ? 0 : NO_CENTS;
+            }
+            long factor = POWERS_OF_TEN[shift];
+            long limit = Long.MAX_VALUE / factor;
+            if (montantUnscaled > limit || montantUnscaled < -limit) {
+                return NO_CENTS;
+            }
+            return montantUnscaled * factor;
+        }
+        
+        if (-shift >= POWERS_OF_TEN.length) {
+            return NO_CENTS;
+        }
+        long divisor = POWERS_OF_TEN[-shift];
+        long cents = montantUnscaled / divisor;
+        long remainder = Math.abs(montantUnscaled % divisor);
+        long toNext = divisor - remainder;
+        if (remainder > toNext || (remainder == toNext && (cents & 1) != 0)) {
+            cents += montantUnscaled < 0 ? -1 : 1;
+        }
+        return cents;
+    }
+    
+    /**
+     * Un montant qui ne tient pas dans un long (ou d'échelle hors octet) est conservé tel quel
+     */
+    public void setMontantTx(BigDecimal montantTx) {
+        montantScale = NO_AMOUNT;
+        montantOverflow = null;
+        if (montantTx == null) {
+            return;
+        }
+        if (montantTx.scale() <= NO_AMOUNT || montantTx.scale() > Byte.MAX_VALUE
+                || montantTx.unscaledValue().bitLength() > 63) {
+            montantOverflow = montantTx;
+            return;
+        }
+        montantUnscaled = montantTx.unscaledValue().longValue();
+        montantScale = (byte) montantTx.scale();
+    }
     
     public String getMotif() { return motif; }
     public void setMotif(String motif) { this.motif = motif; }
@@ -85,6 +192,13 @@ public class SiopReportDto {
     public String getErrorMsg() { return errorMsg; }
     public void setErrorMsg(String errorMsg) { this.errorMsg = errorMsg; }
     
+    @JsonIgnore
+    public boolean isErrorMsgResolved() { return errorMsgResolved; }
+    public void setErrorMsgResolved(boolean errorMsgResolved) { this.errorMsgResolved = errorMsgResolved; }
+    
+    public String getGestCode() { return gestCode; }
+    public void setGestCode(String gestCode) { this.gestCode = gestCode; }
+    
     public String getNomGest() { return nomGest; }
     public void setNomGest(String nomGest) { this.nomGest = nomGest; }
     
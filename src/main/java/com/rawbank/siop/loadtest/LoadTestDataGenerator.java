@@ -0,0 +1,193 @@
+package com.rawbank.siop.loadtest;
+
+import com.rawbank.siop.config.SiopProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Générateur de données BKMOP* du test de charge
+ * 
+ * Responsable de :
+ * - Créer le schéma H2 en mode Oracle (sql/loadtest/schema.sql)
+ * - Générer, par canal configuré, siop.loadtest.managers gestionnaires
+ *   de siop.loadtest.rows-per-manager transactions chacun
+ * - Rattacher des erreurs BKMOPERROR à une part siop.loadtest.error-density des transactions
+ * 
+ * La génération est déterministe (graine fixe) : deux exécutions produisent les mêmes données.
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestDataGenerator {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestDataGenerator.class);
+    
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    
+    private static final int TX_PER_LOT = 50;
+    private static final int BATCH_SIZE = 1000;
+    private static final long SEED = 20251014L;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private boolean schemaCreated;
+    
+    /**
+     * Crée le schéma si besoin puis régénère toutes les données
+     * 
+     * @return Volumes générés
+     */
+    public synchronized LoadTestVolumes generate() {
+        if (!schemaCreated) {
+            new ResourceDatabasePopulator(new ClassPathResource("sql/loadtest/schema.sql")).execute(dataSource);
+            schemaCreated = true;
+        }
+        for (String table : List.of("BKMOPERROR", "BKNOM", "BKEVE", "BKMOPTX", "BKMOPLOT", "BKMOPMSG")) {
+            jdbcTemplate.execute("TRUNCATE TABLE " + table);
+        }
+        
+        SiopProperties.Loadtest config = siopProperties.getLoadtest();
+        LocalDate businessDate = LocalDate.parse(config.getDate(), DATE_FORMAT);
+        Random random = new Random(SEED);
+        long start = System.currentTimeMillis();
+        
+        Batch managers = new Batch("INSERT INTO BKNOM (ctab, cacc, lib1, lib2, lib4, lib5) VALUES (?, ?, ?, ?, ?, ?)");
+        for (int m = 0; m < config.getManagers(); m++) {
+            // Un gestionnaire sur 50 détient aussi le code suivant, sous le même email (casse différente)
+            String email = m % 50 == 49
+                ? String.format("Gestionnaire%05d@RAWBANK.cd", m - 1)
+                : String.format("gestionnaire%05d@rawbank.cd", m);
+            managers.add("035", managerCode(m), "NOM" + m, "Prenom" + m, email, "+24381" + String.format("%07d", m));
+        }
+        managers.flush();
+        
+        Batch messages = new Batch("INSERT INTO BKMOPMSG (idmsg, msgid, dcre, incomtime, dco, nomfic, canal, typmsg, "
+            + "nbtx, ctrlsum, flowindicator, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        Batch lots = new Batch("INSERT INTO BKMOPLOT (idlot, idmsg, service_val, nbtx, name, acc_dev, pmtmtd, "
+            + "btchbookg, eta, bank_bic, age, ncp) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        Batch transactions = new Batch("INSERT INTO BKMOPTX (idtx, idlot, cdtr_name, instdamt_amt, fees, eta, age, "
+            + "ope, eve, typ, deve, age2, ncp2, cdtracc_nb) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        Batch events = new Batch("INSERT INTO BKEVE (age, ope, eve, typ, mon2, lib1, eta, desc1, etab, guib, nome, "
+            + "domi, adb2, ges1, uti) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        Batch errors = new Batch("INSERT INTO BKMOPERROR (idmsg, idlot, idtx, mess, lvl) VALUES (?, ?, ?, ?, ?)");
+        
+        Timestamp dcre = Timestamp.valueOf(businessDate.atStartOfDay());
+        Date dco = Date.valueOf(businessDate);
+        LocalDateTime firstIncomtime = businessDate.atTime(7, 0);
+        long sequence = 0;
+        int errorCount = 0;
+        
+        for (String canal : siopProperties.getQuery().getCanals()) {
+            for (int m = 0; m < config.getManagers(); m++) {
+                for (int first = 0; first < config.getRowsPerManager(); first += TX_PER_LOT) {
+                    int lotSize = Math.min(TX_PER_LOT, config.getRowsPerManager() - first);
+                    String id = canal.trim() + "-" + m + "-" + first;
+                    String idmsg = "MSG-" + id;
+                    String idlot = "LOT-" + id;
+                    BigDecimal lotTotal = BigDecimal.ZERO;
+                    
+                    for (int t = 0; t < lotSize; t++, sequence++) {
+                        String idtx = "TX-" + id + "-" + t;
+                        String age = String.format("%05d", sequence / 1_000_000);
+                        String eve = String.format("%06d", sequence % 1_000_000);
+                        BigDecimal amount = BigDecimal.valueOf(1_000 + random.nextInt(5_000_000), 2);
+                        lotTotal = lotTotal.add(amount);
+                        
+                        transactions.add(idtx, idlot, "BENEFICIAIRE " + sequence, amount, 
+                            random.nextBoolean() ? "O" : "N", random.nextInt(4) == 0 ? "RJ" : "ER",
+                            age, "001", eve, "001", dco, "-", "0" + sequence, "CD" + sequence);
+                        events.add(age, "001", eve, "001", amount, "Paiement " + canal.trim() + " " + sequence,
+                            random.nextInt(3) == 0 ? "VA" : "IG", "SIOP", "00011", "00001", 
+                            "BENEFICIAIRE " + sequence, "KINSHASA", "GOMBE", managerCode(m), "SIOP");
+                        
+                        if (random.nextDouble() < config.getErrorDensity()) {
+                            errors.add(null, null, idtx, "Compte bénéficiaire inexistant", "TX");
+                            errorCount++;
+                            if (random.nextInt(3) == 0) {
+                                errors.add(null, null, idtx, "Montant supérieur au plafond", "TX");
+                                errorCount++;
+                            }
+                        }
+                    }
+                    
+                    if (random.nextDouble() < config.getErrorDensity() / 5) {
+                        errors.add(null, idlot, null, "Lot rejeté par le contrôle technique", "LOT");
+                        errorCount++;
+                    }
+                    
+                    Timestamp incomtime = Timestamp.valueOf(firstIncomtime.plusSeconds(sequence));
+                    messages.add(idmsg, "FILE-" + id, dcre, incomtime, dco, canal.trim() + "_" + id + ".xml", 
+                        canal, "001", lotSize, lotTotal, "PAIE", random.nextBoolean() ? "OK" : "RJ");
+                    lots.add(idlot, idmsg, "PAIE", lotSize, "DONNEUR ORDRE " + m, "CDF", "TRF", 
+                        "1", "ER", "RAWBCDKI", "00011", "0" + m);
+                }
+            }
+        }
+        
+        messages.flush();
+        lots.flush();
+        transactions.flush();
+        events.flush();
+        errors.flush();
+        
+        LoadTestVolumes volumes = new LoadTestVolumes(
+            config.getManagers() * siopProperties.getQuery().getCanals().size(), (int) sequence, errorCount);
+        logger.info("Données de test générées en {} ms : {} gestionnaire(s), {} transaction(s), {} erreur(s)",
+            System.currentTimeMillis() - start, volumes.getManagers(), volumes.getRows(), volumes.getErrors());
+        return volumes;
+    }
+    
+    private static String managerCode(int manager) {
+        return "G" + manager;
+    }
+    
+    /**
+     * Insertions groupées par paquets de BATCH_SIZE
+     */
+    private final class Batch {
+        
+        private final String sql;
+        private final List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        
+        private Batch(String sql) {
+            this.sql = sql;
+        }
+        
+        private void add(Object... values) {
+            rows.add(values);
+            if (rows.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+        
+        private void flush() {
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(sql, rows);
+                rows.clear();
+            }
+        }
+    }
+}
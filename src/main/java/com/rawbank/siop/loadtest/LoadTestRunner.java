@@ -0,0 +1,172 @@
+package com.rawbank.siop.loadtest;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.directory.ManagerDirectory;
+import com.rawbank.siop.service.ReportMode;
+import com.rawbank.siop.service.SiopService;
+import com.rawbank.siop.store.EmailOutbox;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exécution du test de charge au démarrage (profil loadtest)
+ * 
+ * Responsable de :
+ * - Générer les données BKMOP* puis lancer un generateAndSendReport complet
+ * - Attendre que la file d'envoi soit vide avant de compter les emails reçus
+ * - Rapporter la latence par étape (timers Micrometer siop.*) et le débit d'emails
+ *   reçus par le serveur SMTP embarqué
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestRunner implements ApplicationRunner {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestRunner.class);
+    
+    // Étapes rapportées : timer Micrometer -> libellé
+    private static final Map<String, String> STAGES = new LinkedHashMap<>();
+    
+    private static final long OUTBOX_DRAIN_TIMEOUT_MS = 300000;
+    private static final long OUTBOX_POLL_MS = 100;
+    static {
+        STAGES.put("siop.query.duration", "Requête Oracle");
+        STAGES.put("siop.rows.mapping.duration", "Mapping des lignes");
+        STAGES.put("siop.excel.duration", "Génération Excel");
+        STAGES.put("siop.email.duration", "Envoi SMTP");
+    }
+    
+    @Autowired
+    private LoadTestDataGenerator dataGenerator;
+    
+    @Autowired
+    private SmtpSink smtpSink;
+    
+    @Autowired
+    private ManagerDirectory managerDirectory;
+    
+    @Autowired
+    private SiopService siopService;
+    
+    @Autowired
+    private EmailOutbox emailOutbox;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!siopProperties.getLoadtest().isRunOnStartup()) {
+            return;
+        }
+        
+        LoadTestVolumes volumes = dataGenerator.generate();
+        managerDirectory.reload(); // BKNOM régénérée : l'annuaire en cache est périmé
+        long messagesBefore = smtpSink.getMessages();
+        long bytesBefore = smtpSink.getBytes();
+        
+        logger.info("Début du test de charge pour la date : {}", siopProperties.getLoadtest().getDate());
+        long start = System.nanoTime();
+        siopService.generateAndSendReport(siopProperties.getLoadtest().getDate(), ReportMode.FULL);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        awaitOutboxDrained();
+        double deliverySeconds = (System.nanoTime() - start) / 1e9;
+        
+        long messages = smtpSink.getMessages() - messagesBefore;
+        long bytes = smtpSink.getBytes() - bytesBefore;
+        
+        StringBuilder report = new StringBuilder("\n=== Test de charge SIOP ===\n");
+        report.append(String.format("Données   : %d gestionnaire(s), %d ligne(s), %d erreur(s)%n",
+            volumes.getManagers(), volumes.getRows(), volumes.getErrors()));
+        report.append(String.format("Exécution : %.2f s, %.0f ligne(s)/s%n", seconds, volumes.getRows() / seconds));
+        report.append(String.format("Emails    : %d reçu(s) en %.2f s, %.1f email(s)/s, %.1f Mo%n",
+            messages, deliverySeconds, messages / deliverySeconds, bytes / 1024.0 / 1024.0));
+        report.append(String.format("%-20s %8s %10s %10s %10s %10s%n", 
+            "Étape", "nombre", "total s", "moy. ms", "p95 ms", "max ms"));
+        STAGES.forEach((name, label) -> report.append(stageLine(label, meterRegistry.find(name).timers())));
+        
+        logger.info(report.toString());
+    }
+    
+    /**
+     * Attend l'envoi des messages mis en file pendant l'exécution
+     * 
+     * Sans effet si la file d'envoi est désactivée (envoi direct par le pipeline)
+     */
+    private void awaitOutboxDrained() {
+        long deadline = System.currentTimeMillis() + OUTBOX_DRAIN_TIMEOUT_MS;
+        while (emailOutbox.count(EmailOutbox.Status.PENDING) + emailOutbox.count(EmailOutbox.Status.SENDING) > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                logger.warn("File d'envoi non vidée après {} ms", OUTBOX_DRAIN_TIMEOUT_MS);
+                return;
+            }
+            try {
+                Thread.sleep(OUTBOX_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Ligne du rapport d'une étape, tous canaux confondus
+     * 
+     * @param label Libellé de l'étape
+     * @param timers Timers de l'étape (un par canal)
+     * @return Ligne formatée
+     */
+    private String stageLine(String label, Collection<Timer> timers) {
+        long count = 0;
+        double totalMs = 0;
+        double maxMs = 0;
+        Map<Double, Double> buckets = new TreeMap<>();
+        
+        for (Timer timer : timers) {
+            count += timer.count();
+            totalMs += timer.totalTime(TimeUnit.MILLISECONDS);
+            maxMs = Math.max(maxMs, timer.max(TimeUnit.MILLISECONDS));
+            for (CountAtBucket bucket : timer.takeSnapshot().histogramCounts()) {
+                buckets.merge(bucket.bucket(TimeUnit.MILLISECONDS), bucket.count(), Double::sum);
+            }
+        }
+        
+        return String.format("%-20s %8d %10.2f %10.2f %10.2f %10.2f%n", label, count, totalMs / 1000,
+            count > 0 ? totalMs / count : 0, percentile(buckets, count, 0.95, maxMs), maxMs);
+    }
+    
+    /**
+     * Percentile approché par la borne du premier bucket cumulant la part demandée
+     * 
+     * @param buckets Comptes cumulés par borne (ms)
+     * @param count Nombre total de mesures
+     * @param percentile Part demandée (0.95)
+     * @param maxMs Maximum observé, borne du percentile
+     * @return Percentile en ms
+     */
+    private static double percentile(Map<Double, Double> buckets, long count, double percentile, double maxMs) {
+        double threshold = count * percentile;
+        for (Map.Entry<Double, Double> bucket : buckets.entrySet()) {
+            if (bucket.getValue() >= threshold) {
+                return Math.min(bucket.getKey(), maxMs);
+            }
+        }
+        return maxMs;
+    }
+}
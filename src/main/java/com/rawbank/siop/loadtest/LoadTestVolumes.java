@@ -0,0 +1,23 @@
+package com.rawbank.siop.loadtest;
+
+/**
+ * Volumes générés pour un test de charge
+ */
+public class LoadTestVolumes {
+    
+    private final int managers;
+    private final int rows;
+    private final int errors;
+    
+    public LoadTestVolumes(int managers, int rows, int errors) {
+        this.managers = managers;
+        this.rows = rows;
+        this.errors = errors;
+    }
+    
+    public int getManagers() { return managers; }
+    
+    public int getRows() { return rows; }
+    
+    public int getErrors() { return errors; }
+}
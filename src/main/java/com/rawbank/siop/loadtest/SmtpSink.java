@@ -0,0 +1,153 @@
+package com.rawbank.siop.loadtest;
+
+import com.rawbank.siop.config.SiopProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serveur SMTP embarqué du test de charge
+ * 
+ * Responsable de :
+ * - Accepter les connexions SMTP locales (siop.loadtest.smtp-port), persistantes comprises
+ * - Compter messages, destinataires et octets reçus, sans les conserver
+ * - Simuler la latence d'un relais réel (siop.loadtest.smtp-latency-ms par message)
+ * 
+ * Protocole minimal : EHLO/HELO, MAIL, RCPT, DATA, RSET, NOOP, QUIT.
+ */
+@Component
+@Profile("loadtest")
+public class SmtpSink {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SmtpSink.class);
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong recipients = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    
+    private ServerSocket serverSocket;
+    private ExecutorService connectionExecutor;
+    
+    @PostConstruct
+    public void start() throws IOException {
+        int port = siopProperties.getLoadtest().getSmtpPort();
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        connectionExecutor = Executors.newCachedThreadPool(new CustomizableThreadFactory("siop-smtp-sink-"));
+        connectionExecutor.execute(this::acceptLoop);
+        
+        logger.info("Serveur SMTP de test démarré sur le port {}", port);
+    }
+    
+    @PreDestroy
+    public void stop() throws IOException {
+        serverSocket.close();
+        connectionExecutor.shutdownNow();
+    }
+    
+    public long getMessages() { return messages.get(); }
+    
+    public long getRecipients() { return recipients.get(); }
+    
+    public long getBytes() { return bytes.get(); }
+    
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionExecutor.execute(() -> handle(socket));
+            } catch (SocketException e) {
+                // Arrêt du serveur
+                return;
+            } catch (IOException e) {
+                logger.warn("Connexion SMTP de test refusée : {}", e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Dialogue SMTP d'une connexion, jusqu'à QUIT ou fermeture
+     * 
+     * @param socket Connexion cliente
+     */
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(
+                 new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.ISO_8859_1)) {
+            
+            reply(out, "220 siop-smtp-sink ESMTP");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase(Locale.ROOT) : line;
+                switch (command) {
+                    case "EHLO" -> reply(out, "250-siop-smtp-sink\r\n250-8BITMIME\r\n250 SIZE 0");
+                    case "HELO", "MAIL", "RSET", "NOOP" -> reply(out, "250 OK");
+                    case "RCPT" -> {
+                        recipients.incrementAndGet();
+                        reply(out, "250 OK");
+                    }
+                    case "DATA" -> {
+                        reply(out, "354 Fin des données par <CRLF>.<CRLF>");
+                        readData(in);
+                        simulateLatency();
+                        messages.incrementAndGet();
+                        reply(out, "250 OK");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Commande non supportée");
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Connexion SMTP de test interrompue : {}", e.getMessage());
+        }
+    }
+    
+    private void readData(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null && !".".equals(line)) {
+            bytes.addAndGet(line.length() + 2);
+        }
+    }
+    
+    private void simulateLatency() {
+        int latency = siopProperties.getLoadtest().getSmtpLatencyMs();
+        if (latency <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void reply(PrintWriter out, String response) {
+        out.print(response + "\r\n");
+        out.flush();
+    }
+}
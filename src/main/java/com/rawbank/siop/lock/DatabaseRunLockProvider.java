@@ -0,0 +1,75 @@
+package com.rawbank.siop.lock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Baux d'exécution partagés dans la base Oracle
+ * 
+ * Responsable de :
+ * - Réserver une clé dans SIOP_RUN_LOCK (script sql/siop_run_lock.sql)
+ * - Reprendre un bail expiré d'une instance arrêtée
+ * - Prolonger et libérer les baux détenus
+ * 
+ * Les échéances sont calculées avec l'horloge Oracle (SYSTIMESTAMP) :
+ * un décalage d'horloge entre instances n'a pas d'effet.
+ */
+@Component
+@ConditionalOnProperty(name = "siop.lock.provider", havingValue = "database")
+public class DatabaseRunLockProvider implements RunLockProvider {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseRunLockProvider.class);
+    
+    private static final String ACQUIRE =
+        "MERGE INTO SIOP_RUN_LOCK l "
+            + "USING (SELECT :lockKey AS lock_key FROM dual) s ON (l.lock_key = s.lock_key) "
+            + "WHEN MATCHED THEN UPDATE SET l.owner = :owner, l.locked_at = SYSTIMESTAMP, "
+            + "l.locked_until = SYSTIMESTAMP + NUMTODSINTERVAL(:leaseSeconds, 'SECOND') "
+            + "WHERE l.locked_until < SYSTIMESTAMP OR l.owner = :owner "
+            + "WHEN NOT MATCHED THEN INSERT (lock_key, owner, locked_at, locked_until) "
+            + "VALUES (:lockKey, :owner, SYSTIMESTAMP, SYSTIMESTAMP + NUMTODSINTERVAL(:leaseSeconds, 'SECOND'))";
+    
+    private static final String RENEW =
+        "UPDATE SIOP_RUN_LOCK SET locked_until = SYSTIMESTAMP + NUMTODSINTERVAL(:leaseSeconds, 'SECOND') "
+            + "WHERE lock_key = :lockKey AND owner = :owner";
+    
+    private static final String RELEASE =
+        "DELETE FROM SIOP_RUN_LOCK WHERE lock_key = :lockKey AND owner = :owner";
+    
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    
+    @Override
+    public boolean tryAcquire(String key, String owner, int leaseSeconds) {
+        try {
+            return namedParameterJdbcTemplate.update(ACQUIRE, parameters(key, owner, leaseSeconds)) > 0;
+        } catch (DuplicateKeyException e) {
+            // Insertion concurrente par une autre instance
+            logger.debug("Bail {} obtenu par une autre instance", key);
+            return false;
+        }
+    }
+    
+    @Override
+    public boolean renew(String key, String owner, int leaseSeconds) {
+        return namedParameterJdbcTemplate.update(RENEW, parameters(key, owner, leaseSeconds)) > 0;
+    }
+    
+    @Override
+    public void release(String key, String owner) {
+        namedParameterJdbcTemplate.update(RELEASE, parameters(key, owner, 0));
+    }
+    
+    private MapSqlParameterSource parameters(String key, String owner, int leaseSeconds) {
+        return new MapSqlParameterSource()
+            .addValue("lockKey", key)
+            .addValue("owner", owner)
+            .addValue("leaseSeconds", leaseSeconds);
+    }
+}
@@ -0,0 +1,54 @@
+package com.rawbank.siop.lock;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Baux d'exécution en mémoire
+ * 
+ * Suffisant pour une instance unique, les tests et le développement :
+ * ne protège pas contre une seconde instance de l'application.
+ */
+@Component
+@ConditionalOnProperty(name = "siop.lock.provider", havingValue = "local", matchIfMissing = true)
+public class LocalRunLockProvider implements RunLockProvider {
+    
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    
+    @Override
+    public boolean tryAcquire(String key, String owner, int leaseSeconds) {
+        long now = System.currentTimeMillis();
+        Lease lease = leases.compute(key, (k, current) -> 
+            current == null || current.until < now || current.owner.equals(owner)
+                ? new Lease(owner, now + TimeUnit.SECONDS.toMillis(leaseSeconds))
+                : current);
+        return lease.owner.equals(owner);
+    }
+    
+    @Override
+    public boolean renew(String key, String owner, int leaseSeconds) {
+        long until = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(leaseSeconds);
+        Lease lease = leases.computeIfPresent(key, (k, current) -> 
+            current.owner.equals(owner) ? new Lease(owner, until) : current);
+        return lease != null && lease.owner.equals(owner);
+    }
+    
+    @Override
+    public void release(String key, String owner) {
+        leases.computeIfPresent(key, (k, current) -> current.owner.equals(owner) ? null : current);
+    }
+    
+    private static final class Lease {
+        private final String owner;
+        private final long until;
+        
+        private Lease(String owner, long until) {
+            this.owner = owner;
+            this.until = until;
+        }
+    }
+}
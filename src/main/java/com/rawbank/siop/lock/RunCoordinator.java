@@ -0,0 +1,231 @@
+package com.rawbank.siop.lock;
+
+import com.rawbank.siop.config.SiopProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Coordination des exécutions par date et canal
+ * 
+ * Responsable de :
+ * - Regrouper les demandes concurrentes d'une même clé dans l'instance :
+ *   une demande tardive de la même variante (mode) attend l'exécution en cours et en partage
+ *   le contexte (avancement) et le résultat ; une demande d'une autre variante attend sa fin
+ *   puis fait sa propre exécution
+ * - Réserver la clé entre instances via le fournisseur de baux (siop.lock.provider)
+ * - Prolonger le bail tant que l'exécution dure, puis le libérer
+ * 
+ * Une clé détenue par une autre instance n'est pas exécutée ici.
+ */
+@Component
+public class RunCoordinator {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RunCoordinator.class);
+    
+    @Autowired
+    private RunLockProvider runLockProvider;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    
+    private ScheduledExecutorService renewer;
+    private String owner;
+    
+    @PostConstruct
+    public void init() {
+        owner = siopProperties.getLock().resolveInstanceId();
+        renewer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("siop-lock-"));
+        
+        logger.info("Coordination des exécutions : fournisseur {}, instance {}", 
+            runLockProvider.getClass().getSimpleName(), owner);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+    
+    /**
+     * Exécute un traitement sous la clé donnée, ou rejoint l'exécution en cours
+     * 
+     * Le bail porte sur la seule clé : deux variantes d'une même clé ne s'exécutent
+     * jamais en même temps, ni dans l'instance ni entre instances.
+     * 
+     * @param key Clé d'exécution (date, canal, part)
+     * @param variant Variante du traitement (mode) : seules les demandes de même variante sont regroupées
+     * @param work Traitement à exécuter
+     * @return Résultat, partagé avec les demandes regroupées
+     */
+    public <T> Outcome<T> execute(String key, String variant, Supplier<T> work) {
+        return execute(key, variant, null, work, context -> { });
+    }
+    
+    /**
+     * Exécute un traitement sous la clé donnée, ou rejoint l'exécution en cours et son contexte
+     * 
+     * Le contexte est publié avec l'exécution : une demande regroupée le reçoit
+     * avant d'attendre le résultat (pour suivre l'avancement de l'exécution en cours).
+     * 
+     * @param key Clé d'exécution (date, canal, part)
+     * @param variant Variante du traitement (mode) : seules les demandes de même variante sont regroupées
+     * @param context Contexte de cette demande, transmis aux demandes regroupées avec elle
+     * @param work Traitement à exécuter
+     * @param onCoalesce Reçoit le contexte de l'exécution en cours si la demande lui est regroupée
+     * @return Résultat, partagé avec les demandes regroupées
+     */
+    @SuppressWarnings("unchecked")
+    public <T, C> Outcome<T> execute(String key, String variant, C context, Supplier<T> work,
+                                     Consumer<? super C> onCoalesce) {
+        Flight mine = new Flight(variant, context);
+        Flight running;
+        while ((running = inFlight.putIfAbsent(key, mine)) != null) {
+            if (running.variant.equals(variant)) {
+                logger.info("Exécution {} déjà en cours dans cette instance, attente de son résultat", key);
+                // Même variante, même site d'appel : le contexte est du même type
+                onCoalesce.accept((C) running.context);
+                return new Outcome<>(Status.COALESCED, (T) join(running.result));
+            }
+            
+            logger.info("Exécution {} en cours dans cette instance en {}, attente de sa fin avant l'exécution en {}",
+                key, running.variant, variant);
+            running.result.handle((result, error) -> null).join();
+        }
+        
+        T result = null;
+        RuntimeException error = null;
+        try {
+            if (!acquire(key)) {
+                logger.info("Exécution {} en cours sur une autre instance, ignorée", key);
+                return new Outcome<>(Status.SKIPPED, null);
+            }
+            
+            ScheduledFuture<?> renewal = scheduleRenewal(key);
+            try {
+                result = work.get();
+                return new Outcome<>(Status.EXECUTED, result);
+            } finally {
+                renewal.cancel(false);
+                release(key);
+            }
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            // Bail libéré avant de réveiller les demandes en attente : une autre variante peut le reprendre
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.result.completeExceptionally(error);
+            } else {
+                mine.result.complete(result);
+            }
+        }
+    }
+    
+    private boolean acquire(String key) {
+        return runLockProvider.tryAcquire(key, owner, siopProperties.getLock().getLeaseSeconds());
+    }
+    
+    private void release(String key) {
+        try {
+            runLockProvider.release(key, owner);
+        } catch (Exception e) {
+            // Le bail expirera de lui-même
+            logger.warn("Impossible de libérer le bail {} : {}", key, e.getMessage());
+        }
+    }
+    
+    /**
+     * Prolonge le bail au tiers de sa durée tant que l'exécution dure
+     * 
+     * @param key Clé d'exécution
+     * @return Tâche de prolongation, à annuler en fin d'exécution
+     */
+    private ScheduledFuture<?> scheduleRenewal(String key) {
+        int leaseSeconds = siopProperties.getLock().getLeaseSeconds();
+        long period = Math.max(1, leaseSeconds / 3);
+        return renewer.scheduleAtFixedRate(() -> {
+            try {
+                if (!runLockProvider.renew(key, owner, leaseSeconds)) {
+                    logger.warn("Bail {} perdu pendant l'exécution", key);
+                }
+            } catch (Exception e) {
+                logger.warn("Impossible de prolonger le bail {} : {}", key, e.getMessage());
+            }
+        }, period, period, TimeUnit.SECONDS);
+    }
+    
+    private static Object join(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException 
+                ? (RuntimeException) e.getCause() : e;
+        }
+    }
+    
+    /**
+     * Exécution en cours dans l'instance
+     */
+    private static final class Flight {
+        
+        private final String variant;
+        private final Object context;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        
+        private Flight(String variant, Object context) {
+            this.variant = variant;
+            this.context = context;
+        }
+    }
+    
+    /**
+     * Issue d'une demande d'exécution
+     */
+    public enum Status {
+        
+        /** Exécutée par cette demande */
+        EXECUTED,
+        
+        /** Regroupée avec l'exécution de même variante en cours dans cette instance */
+        COALESCED,
+        
+        /** Ignorée : exécution en cours sur une autre instance */
+        SKIPPED
+    }
+    
+    /**
+     * Résultat d'une demande d'exécution
+     */
+    public static final class Outcome<T> {
+        
+        private final Status status;
+        private final T result;
+        
+        private Outcome(Status status, T result) {
+            this.status = status;
+            this.result = result;
+        }
+        
+        public Status getStatus() { return status; }
+        
+        public T getResult() { return result; }
+    }
+}
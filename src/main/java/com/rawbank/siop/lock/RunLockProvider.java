@@ -0,0 +1,38 @@
+package com.rawbank.siop.lock;
+
+/**
+ * Fournisseur de baux d'exécution
+ * 
+ * Un bail réserve une clé (date, canal) à une instance pour une durée limitée ;
+ * il expire de lui-même si l'instance s'arrête sans le libérer.
+ */
+public interface RunLockProvider {
+    
+    /**
+     * Tente d'obtenir le bail d'une clé
+     * 
+     * @param key Clé d'exécution
+     * @param owner Identifiant de l'instance
+     * @param leaseSeconds Durée du bail
+     * @return true si le bail est obtenu (libre, expiré ou déjà détenu par owner)
+     */
+    boolean tryAcquire(String key, String owner, int leaseSeconds);
+    
+    /**
+     * Prolonge un bail détenu
+     * 
+     * @param key Clé d'exécution
+     * @param owner Identifiant de l'instance
+     * @param leaseSeconds Nouvelle durée du bail, à partir de maintenant
+     * @return false si le bail a été perdu
+     */
+    boolean renew(String key, String owner, int leaseSeconds);
+    
+    /**
+     * Libère un bail détenu
+     * 
+     * @param key Clé d'exécution
+     * @param owner Identifiant de l'instance
+     */
+    void release(String key, String owner);
+}
@@ -0,0 +1,134 @@
+package com.rawbank.siop.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Métriques Micrometer du rapport SIOP
+ * 
+ * Responsable de :
+ * - Durées par étape (requête Oracle, mapping des lignes, génération Excel, envoi SMTP)
+ *   avec histogrammes pour les percentiles Prometheus
+ * - Compteurs de lignes, gestionnaires, octets de pièces jointes, échecs et lettres mortes
+ * 
+ * Toutes les métriques sont étiquetées par canal (tag canal) ;
+ * exposées sur /actuator/prometheus.
+ */
+@Component
+public class SiopMetrics {
+    
+    public static final String STAGE_EXTRACTION = "extraction";
+    public static final String STAGE_RENDER = "render";
+    public static final String STAGE_SEND = "send";
+    public static final String STAGE_OUTBOX = "outbox";
+    
+    private static final String UNKNOWN_CANAL = "inconnu";
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    /**
+     * Durée d'exécution de la requête SIOP, lecture du ResultSet comprise
+     * 
+     * @param canal Canal des opérations
+     * @param nanos Durée en nanosecondes
+     */
+    public void recordQuery(String canal, long nanos) {
+        timer("siop.query.duration", "Exécution de la requête SIOP et lecture des lignes", canal)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Durée cumulée du mapping des lignes d'une requête
+     * 
+     * @param canal Canal des opérations
+     * @param nanos Durée en nanosecondes
+     */
+    public void recordRowMapping(String canal, long nanos) {
+        timer("siop.rows.mapping.duration", "Mapping des lignes d'une requête SIOP", canal)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Durée de génération de la pièce jointe d'un gestionnaire
+     * 
+     * Tous formats confondus (xlsx, csv, csv-gzip) ; le nom historique
+     * du timer est conservé pour les tableaux de bord existants
+     * 
+     * @param canal Canal des opérations
+     * @return Timer à utiliser autour de la génération
+     */
+    public Timer excelTimer(String canal) {
+        return timer("siop.excel.duration", "Génération de la pièce jointe par gestionnaire", canal);
+    }
+    
+    /**
+     * Durée d'envoi de l'email d'un gestionnaire
+     * 
+     * @param canal Canal des opérations
+     * @return Timer à utiliser autour de l'envoi
+     */
+    public Timer emailTimer(String canal) {
+        return timer("siop.email.duration", "Envoi SMTP par gestionnaire", canal);
+    }
+    
+    public void countRows(String canal, int rows) {
+        counter("siop.rows", "Lignes lues", canal).increment(rows);
+    }
+    
+    public void countManager(String canal) {
+        counter("siop.managers", "Gestionnaires soumis au pipeline", canal).increment();
+    }
+    
+    public void countAttachmentBytes(String canal, long bytes) {
+        counter("siop.attachment.bytes", "Octets de pièces jointes générés", canal).increment(bytes);
+    }
+    
+    /**
+     * Compte un échec d'étape
+     * 
+     * @param canal Canal des opérations
+     * @param stage Étape en échec (extraction, render, outbox, send)
+     */
+    public void countFailure(String canal, String stage) {
+        Counter.builder("siop.failures")
+            .description("Échecs par étape")
+            .tag("canal", canalTag(canal))
+            .tag("stage", stage)
+            .register(meterRegistry)
+            .increment();
+    }
+    
+    /**
+     * Compte un email passé en lettre morte dans la file d'envoi
+     * 
+     * @param canal Canal des opérations
+     */
+    public void countDeadLetter(String canal) {
+        counter("siop.outbox.dead", "Emails abandonnés après le dernier essai", canal).increment();
+    }
+    
+    private Timer timer(String name, String description, String canal) {
+        return Timer.builder(name)
+            .description(description)
+            .tag("canal", canalTag(canal))
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+    
+    private Counter counter(String name, String description, String canal) {
+        return Counter.builder(name)
+            .description(description)
+            .tag("canal", canalTag(canal))
+            .register(meterRegistry);
+    }
+    
+    private static String canalTag(String canal) {
+        return canal != null && !canal.isBlank() ? canal.trim() : UNKNOWN_CANAL;
+    }
+}
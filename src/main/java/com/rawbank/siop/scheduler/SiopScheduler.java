@@ -1,6 +1,7 @@
 package com.rawbank.siop.scheduler;
 
 import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.service.ReportMode;
 import com.rawbank.siop.service.SiopService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,8 +50,10 @@ public class SiopScheduler {
             // Utilisation de la date du jour
             String today = LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
             
-            // Exécution du rapport
-            siopService.generateAndSendReport(today);
+            // Exécution du rapport (incrémentale par défaut), sans les opérations déjà notifiées
+            ReportMode mode = siopProperties.getScheduler().isIncremental() 
+                ? ReportMode.INCREMENTAL : ReportMode.FULL_UNNOTIFIED;
+            siopService.generateAndSendReport(today, mode);
             
             logger.info("Exécution automatique du rapport SIOP terminée avec succès");
             
@@ -62,13 +65,15 @@ public class SiopScheduler {
     /**
      * Exécution du rapport pour une date spécifique
      * 
+     * Toujours en mode journée complète
+     * 
      * @param date Date au format DD/MM/YYYY
      */
     public void executeSiopReportForDate(String date) {
         try {
             logger.info("Exécution du rapport SIOP pour la date : {}", date);
             
-            siopService.generateAndSendReport(date);
+            siopService.generateAndSendReport(date, ReportMode.FULL);
             
             logger.info("Rapport SIOP exécuté avec succès pour la date : {}", date);
             
@@ -0,0 +1,159 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.BackfillDateResultDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Service de rattrapage sur une plage de dates
+ * 
+ * Responsable de :
+ * - Rejouer le rapport complet de chaque date d'une plage
+ * - Répartir les dates sur un pool borné (siop.backfill.parallelism)
+ * - Mesurer la durée et le résultat de chaque date
+ * 
+ * Une date ne prend pas de connexion Oracle elle-même : ses canaux passent par le pool
+ * partagé des canaux, dont les connexions sont comptées par ConnectionBudget. Le pool
+ * de rattrapage est plafonné à siop.query.canal-parallelism : au-delà, les dates
+ * supplémentaires ne feraient qu'attendre un thread de canal.
+ */
+@Service
+public class BackfillService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BackfillService.class);
+    
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    
+    @Autowired
+    private SiopService siopService;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private ExecutorService backfillExecutor;
+    
+    @PostConstruct
+    public void init() {
+        int parallelism = Math.max(1, siopProperties.getBackfill().getParallelism());
+        int canalParallelism = Math.max(1, siopProperties.getQuery().getCanalParallelism());
+        if (parallelism > canalParallelism) {
+            logger.warn("Rattrapage : {} dates simultanées demandées, plafonnées à "
+                + "siop.query.canal-parallelism ({})", parallelism, canalParallelism);
+            parallelism = canalParallelism;
+        }
+        backfillExecutor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("siop-backfill-"));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdown();
+    }
+    
+    /**
+     * Rejoue le rapport pour chaque date de la plage
+     * 
+     * @param from Première date (format DD/MM/YYYY)
+     * @param to Dernière date incluse (format DD/MM/YYYY)
+     * @return Résultat de chaque date, dans l'ordre chronologique
+     */
+    public List<BackfillDateResultDto> backfill(String from, String to) {
+        return backfill(from, to, ReportProgress::new);
+    }
+    
+    /**
+     * Rejoue le rapport pour chaque date de la plage en publiant l'avancement de chaque date
+     * 
+     * @param from Première date (format DD/MM/YYYY)
+     * @param to Dernière date incluse (format DD/MM/YYYY)
+     * @param progressFactory Fournit l'avancement de chaque date, appelé dans l'ordre chronologique
+     * @return Résultat de chaque date, dans l'ordre chronologique
+     */
+    public List<BackfillDateResultDto> backfill(String from, String to, Supplier<ReportProgress> progressFactory) {
+        List<String> dates = expandRange(from, to);
+        logger.info("Début du rattrapage SIOP du {} au {} ({} date(s))", from, to, dates.size());
+        
+        long start = System.currentTimeMillis();
+        AtomicInteger completed = new AtomicInteger();
+        
+        List<CompletableFuture<BackfillDateResultDto>> executions = new ArrayList<>();
+        for (String date : dates) {
+            ReportProgress progress = progressFactory.get();
+            executions.add(CompletableFuture.supplyAsync(() -> {
+                BackfillDateResultDto result = executeDate(date, progress);
+                logger.info("Rattrapage : {}/{} date(s) traitée(s) ({} en {} ms, {})", 
+                    completed.incrementAndGet(), dates.size(), date, result.getDurationMs(),
+                    result.isSuccess() ? "succès" : "échec");
+                return result;
+            }, backfillExecutor));
+        }
+        
+        List<BackfillDateResultDto> results = new ArrayList<>();
+        executions.forEach(execution -> results.add(execution.join()));
+        
+        logger.info("Rattrapage SIOP terminé en {} ms", System.currentTimeMillis() - start);
+        return results;
+    }
+    
+    /**
+     * Exécute le rapport complet d'une date, en isolant les erreurs
+     * 
+     * @param date Date au format DD/MM/YYYY
+     * @param progress Avancement de la date
+     * @return Résultat de la date
+     */
+    private BackfillDateResultDto executeDate(String date, ReportProgress progress) {
+        long start = System.currentTimeMillis();
+        try {
+            siopService.generateAndSendReport(date, ReportMode.FULL, progress);
+            return new BackfillDateResultDto(date, true, System.currentTimeMillis() - start, null);
+        } catch (Exception e) {
+            logger.error("Erreur lors du rattrapage de la date : {}", date, e);
+            return new BackfillDateResultDto(date, false, System.currentTimeMillis() - start, e.getMessage());
+        }
+    }
+    
+    /**
+     * Liste les dates d'une plage, bornes incluses
+     * 
+     * @param from Première date
+     * @param to Dernière date
+     * @return Dates au format DD/MM/YYYY
+     */
+    List<String> expandRange(String from, String to) {
+        LocalDate fromDate = LocalDate.parse(from, DATE_FORMAT);
+        LocalDate toDate = LocalDate.parse(to, DATE_FORMAT);
+        if (toDate.isBefore(fromDate)) {
+            throw new IllegalArgumentException("La date de fin précède la date de début");
+        }
+        
+        long days = ChronoUnit.DAYS.between(fromDate, toDate) + 1;
+        int maxDays = siopProperties.getBackfill().getMaxDays();
+        if (days > maxDays) {
+            throw new IllegalArgumentException(
+                String.format("Plage de %d jour(s) supérieure au maximum autorisé (%d)", days, maxDays));
+        }
+        
+        List<String> dates = new ArrayList<>();
+        for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
+            dates.add(date.format(DATE_FORMAT));
+        }
+        return dates;
+    }
+}
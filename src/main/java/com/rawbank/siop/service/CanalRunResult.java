@@ -0,0 +1,30 @@
+package com.rawbank.siop.service;
+
+/**
+ * Résultat de l'exécution d'un canal
+ * 
+ * Extraction, envois et opérations déjà notifiées,
+ * partagé avec les demandes regroupées sur la même exécution
+ */
+final class CanalRunResult {
+    
+    private final ExtractionSummary summary;
+    private final int sent;
+    private final int failed;
+    private final int alreadyNotified;
+    
+    CanalRunResult(ExtractionSummary summary, int sent, int failed, int alreadyNotified) {
+        this.summary = summary;
+        this.sent = sent;
+        this.failed = failed;
+        this.alreadyNotified = alreadyNotified;
+    }
+    
+    ExtractionSummary getSummary() { return summary; }
+    
+    int getSent() { return sent; }
+    
+    int getFailed() { return failed; }
+    
+    int getAlreadyNotified() { return alreadyNotified; }
+}
@@ -0,0 +1,126 @@
+package com.rawbank.siop.service;
+
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Estimation rapide de la largeur des colonnes Excel
+ * 
+ * Remplace Sheet.autoSizeColumn : la longueur maximale affichée
+ * est suivie pendant le remplissage, sans mesure de police AWT.
+ * Compatible avec les feuilles en flux (SXSSF) dont les lignes
+ * ne sont plus accessibles une fois écrites.
+ */
+final class ColumnWidthEstimator {
+    
+    private static final int MAX_WIDTH_CHARS = 50; // Limite de 50 caractères
+    private static final int PADDING_CHARS = 2;
+    private static final int CHAR_UNITS = 256; // Unités Excel par caractère
+    
+    // Longueur affichée du format "dd/mm/yyyy hh:mm"
+    private static final int DATE_WIDTH_CHARS = 16;
+    
+    private final int[] maxLengths;
+    
+    ColumnWidthEstimator(String[] headers) {
+        this.maxLengths = new int[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            track(i, headers[i]);
+        }
+    }
+    
+    /**
+     * Prend en compte une valeur texte
+     * 
+     * @param column Index de la colonne
+     * @param value Valeur de la cellule
+     */
+    void track(int column, String value) {
+        if (value != null) {
+            update(column, value.length());
+        }
+    }
+    
+    /**
+     * Prend en compte une date au format "dd/mm/yyyy hh:mm"
+     * 
+     * @param column Index de la colonne
+     */
+    void trackDate(int column) {
+        update(column, DATE_WIDTH_CHARS);
+    }
+    
+    /**
+     * Prend en compte un montant au format "#,##0.00"
+     * 
+     * @param column Index de la colonne
+     * @param amount Montant
+     */
+    void trackAmount(int column, BigDecimal amount) {
+        if (amount != null) {
+            update(column, amountLength(amount));
+        }
+    }
+    
+    /**
+     * Prend en compte un montant en centimes au format "#,##0.00"
+     * 
+     * @param column Index de la colonne
+     * @param cents Montant en centimes
+     */
+    void trackAmount(int column, long cents) {
+        update(column, amountLength(cents));
+    }
+    
+    /**
+     * Applique les largeurs estimées à la feuille
+     * 
+     * @param sheet Feuille Excel
+     */
+    void applyTo(Sheet sheet) {
+        for (int i = 0; i < maxLengths.length; i++) {
+            int widthChars = Math.min(maxLengths[i] + PADDING_CHARS, MAX_WIDTH_CHARS);
+            sheet.setColumnWidth(i, widthChars * CHAR_UNITS);
+        }
+    }
+    
+    /**
+     * Longueur d'un montant formaté en "#,##0.00", sans le formater
+     * 
+     * @param amount Montant
+     * @return Nombre de caractères affichés
+     */
+    static int amountLength(BigDecimal amount) {
+        BigDecimal rounded = amount.setScale(2, RoundingMode.HALF_EVEN);
+        int integerDigits = Math.max(1, rounded.precision() - rounded.scale());
+        int separators = (integerDigits - 1) / 3;
+        int sign = rounded.signum() < 0 ? 1 : 0;
+        return sign + integerDigits + separators + 3; // ".00"
+    }
+    
+    /**
+     * Longueur d'un montant en centimes formaté en "#,##0.00"
+     * 
+     * @param cents Montant en centimes
+     * @return Nombre de caractères affichés
+     */
+    static int amountLength(long cents) {
+        long units = Math.abs(cents / 100);
+        int integerDigits = 1;
+        while (units >= 10) {
+            units /= 10;
+            integerDigits++;
+        }
+        int separators = (integerDigits - 1) / 3;
+        int sign = cents < 0 ? 1 : 0;
+        return sign + integerDigits + separators + 3; // ".00"
+    }
+    
+    private void update(int column, int length) {
+        if (length > maxLengths[column]) {
+            maxLengths[column] = length;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.rawbank.siop.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Flux qui compte les octets transmis au flux sous-jacent
+ * 
+ * Utilisé par les rendus pour suivre la taille d'une partie pendant son écriture
+ */
+class CountingOutputStream extends FilterOutputStream {
+    
+    private long count;
+    
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+    
+    long getCount() {
+        return count;
+    }
+}
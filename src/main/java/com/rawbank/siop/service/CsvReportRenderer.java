@@ -0,0 +1,348 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.SiopReportDto;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rendu CSV des rapports SIOP
+ * 
+ * Responsable de :
+ * - Écriture en flux, ligne par ligne, sans modèle intermédiaire
+ * - Format compatible Excel (UTF-8 avec BOM, séparateur ';', virgule décimale)
+ * - Échappement RFC 4180 et neutralisation des formules (=, +, -, @)
+ * 
+ * Les valeurs sont écrites caractère par caractère dans un tampon :
+ * aucune chaîne intermédiaire n'est allouée pour les textes ni les dates.
+ * Pour une partie sous budget (renderPart), chaque ligne passe par un tampon
+ * réutilisé qui donne sa taille encodée avant son ajout au fichier.
+ */
+@Component
+public class CsvReportRenderer implements ReportRenderer {
+    
+    static final int BUFFER_SIZE = 64 * 1024;
+    
+    private static final char SEPARATOR = ';';
+    private static final char QUOTE = '"';
+    private static final String LINE_END = "\r\n";
+    private static final char BOM = '\uFEFF'; // Détection UTF-8 par Excel
+    
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    
+    /**
+     * Taille du fichier d'une partie en cours d'écriture
+     */
+    @FunctionalInterface
+    interface PartMeter {
+        
+        /**
+         * @param written Octets CSV (UTF-8) déjà écrits dans la partie
+         * @return Taille qu'aurait le fichier si la partie se terminait maintenant, jamais sous-estimée
+         * @throws IOException Erreur d'écriture
+         */
+        long size(long written) throws IOException;
+    }
+    
+    @Override
+    public ReportFormat format() {
+        return ReportFormat.CSV;
+    }
+    
+    /**
+     * Écrit le fichier CSV
+     * 
+     * Le flux est vidé mais pas fermé
+     * 
+     * @param operations Opérations SIOP
+     * @param out Flux de sortie
+     * @throws IOException Erreur d'écriture
+     */
+    @Override
+    public void render(Iterable<SiopReportDto> operations, OutputStream out) throws IOException {
+        Writer writer = newWriter(out);
+        
+        writer.write(BOM);
+        writeHeaders(writer);
+        for (SiopReportDto operation : operations) {
+            writeRow(writer, operation);
+        }
+        
+        writer.flush();
+    }
+    
+    /**
+     * Écrit une partie du fichier CSV, la taille étant celle du texte encodé
+     * 
+     * @param operations Opérations SIOP du rapport complet
+     * @param from Index de la première opération de la partie
+     * @param out Flux de sortie
+     * @param maxBytes Taille maximale de la partie en octets
+     * @return Index de la première opération non écrite
+     * @throws IOException Erreur d'écriture
+     */
+    @Override
+    public int renderPart(List<SiopReportDto> operations, int from, OutputStream out, long maxBytes)
+            throws IOException {
+        Writer writer = newWriter(out);
+        int end = writePart(writer, operations, from, maxBytes, written -> written);
+        writer.flush();
+        return end;
+    }
+    
+    Writer newWriter(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+    
+    /**
+     * Écrit l'en-tête puis les opérations tant que la partie reste sous le budget
+     * 
+     * Chaque ligne est d'abord écrite dans un tampon réutilisé : elle n'est ajoutée
+     * que si la taille de la partie, augmentée de la sienne, reste sous le budget.
+     * Sinon elle ouvre la partie suivante, où elle sera réécrite (une ligne par partie).
+     * 
+     * @param writer Destination, non vidée
+     * @param operations Opérations SIOP du rapport complet
+     * @param from Index de la première opération de la partie
+     * @param maxBytes Taille maximale de la partie en octets
+     * @param meter Taille du fichier selon les octets CSV écrits
+     * @return Index de la première opération non écrite
+     * @throws IOException Erreur d'écriture
+     */
+    int writePart(Writer writer, List<SiopReportDto> operations, int from, long maxBytes, PartMeter meter)
+            throws IOException {
+        RowBuffer row = new RowBuffer();
+        row.write(BOM);
+        writeHeaders(row);
+        long written = row.writeTo(writer);
+        
+        int index = from;
+        while (index < operations.size()) {
+            row.reset();
+            writeRow(row, operations.get(index));
+            if (index > from && meter.size(written) + row.encodedLength() > maxBytes) {
+                break;
+            }
+            written += row.writeTo(writer);
+            index++;
+        }
+        return index;
+    }
+    
+    private void writeHeaders(Writer writer) throws IOException {
+        for (ReportColumn column : ReportColumn.COLUMNS) {
+            if (column.ordinal() > 0) {
+                writer.write(SEPARATOR);
+            }
+            writeText(writer, column.getHeader());
+        }
+        writer.write(LINE_END);
+    }
+    
+    private void writeRow(Writer writer, SiopReportDto operation) throws IOException {
+        for (ReportColumn column : ReportColumn.COLUMNS) {
+            if (column.ordinal() > 0) {
+                writer.write(SEPARATOR);
+            }
+            
+            long cents = column.cents(operation);
+            if (cents != SiopReportDto.NO_CENTS) {
+                writeAmount(writer, cents);
+                continue;
+            }
+            
+            Object value = column.value(operation);
+            if (value == null) {
+                continue;
+            }
+            
+            switch (column.getType()) {
+                case DATE -> DATE_FORMAT.formatTo((LocalDateTime) value, writer);
+                case AMOUNT -> writeAmount(writer, (BigDecimal) value);
+                default -> writeText(writer, (String) value);
+            }
+        }
+        writer.write(LINE_END);
+    }
+    
+    /**
+     * Écrit un montant en centimes avec deux décimales et une virgule décimale, chiffre par chiffre
+     * 
+     * @param writer Destination
+     * @param cents Montant en centimes (différent de SiopReportDto.NO_CENTS)
+     * @throws IOException Erreur d'écriture
+     */
+    private void writeAmount(Writer writer, long cents) throws IOException {
+        if (cents < 0) {
+            writer.write('-');
+        }
+        long units = Math.abs(cents / 100);
+        int fraction = (int) Math.abs(cents % 100);
+        
+        long divisor = 1;
+        while (divisor <= units / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            writer.write((int) ('0' + units / divisor % 10));
+        }
+        writer.write(',');
+        writer.write('0' + fraction / 10);
+        writer.write('0' + fraction % 10);
+    }
+    
+    /**
+     * Écrit un montant hors capacité avec deux décimales et une virgule décimale
+     * 
+     * @param writer Destination
+     * @param amount Montant
+     * @throws IOException Erreur d'écriture
+     */
+    private void writeAmount(Writer writer, BigDecimal amount) throws IOException {
+        String plain = amount.setScale(2, RoundingMode.HALF_EVEN).toPlainString();
+        int dot = plain.length() - 3; // Toujours deux décimales après setScale
+        writer.write(plain, 0, dot);
+        writer.write(',');
+        writer.write(plain, dot + 1, 2);
+    }
+    
+    /**
+     * Écrit un texte, entre guillemets uniquement si nécessaire
+     * 
+     * Un texte commençant par un caractère de formule est préfixé d'une
+     * apostrophe pour qu'Excel ne l'interprète pas à l'ouverture
+     * 
+     * @param writer Destination
+     * @param value Texte
+     * @throws IOException Erreur d'écriture
+     */
+    private void writeText(Writer writer, String value) throws IOException {
+        int length = value.length();
+        if (length == 0) {
+            return;
+        }
+        
+        boolean formula = isFormulaStart(value.charAt(0));
+        boolean quoted = false;
+        for (int i = 0; i < length && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r';
+        }
+        
+        if (!quoted && !formula) {
+            writer.write(value);
+            return;
+        }
+        
+        if (quoted) {
+            writer.write(QUOTE);
+        }
+        if (formula) {
+            writer.write('\'');
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == QUOTE) {
+                writer.write(QUOTE);
+            }
+            writer.write(c);
+        }
+        if (quoted) {
+            writer.write(QUOTE);
+        }
+    }
+    
+    private static boolean isFormulaStart(char c) {
+        return c == '=' || c == '+' || c == '-' || c == '@';
+    }
+    
+    /**
+     * Tampon d'une ligne, réutilisé d'une ligne à l'autre, et sa taille en UTF-8
+     */
+    private static final class RowBuffer extends Writer {
+        
+        private char[] chars = new char[1024];
+        private int length;
+        
+        @Override
+        public void write(int c) {
+            ensureCapacity(1);
+            chars[length++] = (char) c;
+        }
+        
+        @Override
+        public void write(char[] buffer, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(buffer, offset, chars, length, count);
+            length += count;
+        }
+        
+        @Override
+        public void write(String text, int offset, int count) {
+            ensureCapacity(count);
+            text.getChars(offset, offset + count, chars, length);
+            length += count;
+        }
+        
+        @Override
+        public void flush() {
+        }
+        
+        @Override
+        public void close() {
+        }
+        
+        void reset() {
+            length = 0;
+        }
+        
+        /**
+         * Taille de la ligne encodée en UTF-8
+         * 
+         * @return Nombre d'octets
+         */
+        long encodedLength() {
+            long bytes = 0;
+            for (int i = 0; i < length; i++) {
+                char c = chars[i];
+                if (c < 0x80) {
+                    bytes++;
+                } else if (c < 0x800 || Character.isSurrogate(c)) {
+                    bytes += 2; // Une paire de substitution fait 4 octets
+                } else {
+                    bytes += 3;
+                }
+            }
+            return bytes;
+        }
+        
+        /**
+         * Ajoute la ligne à une destination
+         * 
+         * @param writer Destination
+         * @return Taille de la ligne encodée en UTF-8
+         * @throws IOException Erreur d'écriture
+         */
+        long writeTo(Writer writer) throws IOException {
+            writer.write(chars, 0, length);
+            return encodedLength();
+        }
+        
+        private void ensureCapacity(int count) {
+            if (length + count > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + count));
+            }
+        }
+    }
+}
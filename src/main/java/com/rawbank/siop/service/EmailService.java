@@ -5,13 +5,13 @@ import com.rawbank.siop.dto.ManagerReportDto;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -19,17 +19,30 @@ import java.util.List;
  * 
  * Responsable de :
  * - Envoi d'emails individuels aux gestionnaires
- * - Gestion des pièces jointes Excel
+ * - Gestion des pièces jointes (xlsx, csv, csv-gzip)
+ * - Envoi en plusieurs parties sous la taille maximale des messages du relais
  * - Configuration des CC
+ * - Envoi sur des connexions SMTP persistantes (SmtpTransportPool)
+ * - Construction des messages seuls, pour la file d'envoi (EmailOutbox)
  */
 @Service
 public class EmailService {
     
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
     
+    // En-têtes, corps texte et délimiteurs MIME, hors pièces jointes
+    private static final long MESSAGE_OVERHEAD_BYTES = 16 * 1024;
+    
+    // Base64 : 57 octets bruts par ligne de 76 caractères + CRLF
+    private static final int BASE64_RAW_PER_LINE = 57;
+    private static final int BASE64_LINE_BYTES = 78;
+    
     @Autowired
     private JavaMailSender mailSender;
     
+    @Autowired
+    private SmtpTransportPool transportPool;
+    
     @Autowired
     private SiopProperties siopProperties;
     
@@ -41,14 +54,149 @@ public class EmailService {
      * @param excelFile Fichier Excel en pièce jointe
      */
     public void sendEmailToManager(ManagerReportDto managerReport, String queryDate, byte[] excelFile) {
+        sendEmailToManager(managerReport, queryDate, new ReportAttachment(excelFile, ReportFormat.XLSX));
+    }
+    
+    /**
+     * Envoie un email à un gestionnaire
+     * 
+     * @param managerReport Rapport du gestionnaire
+     * @param queryDate Date de la requête
+     * @param attachment Pièce jointe dans le format du gestionnaire
+     */
+    public void sendEmailToManager(ManagerReportDto managerReport, String queryDate, ReportAttachment attachment) {
+        sendEmailToManager(managerReport, queryDate, List.of(attachment));
+    }
+    
+    /**
+     * Envoie le rapport d'un gestionnaire, éventuellement découpé en parties
+     * 
+     * Les parties sont réparties en messages selon siop.email.split-mode :
+     * une partie par message, ou plusieurs par message sous la taille maximale.
+     * Tous les messages partent sur la même connexion SMTP.
+     * 
+     * @param managerReport Rapport du gestionnaire
+     * @param queryDate Date de la requête
+     * @param attachments Parties numérotées du rapport
+     */
+    public void sendEmailToManager(ManagerReportDto managerReport, String queryDate, List<ReportAttachment> attachments) {
+        List<MimeMessage> messages = createMessages(managerReport, queryDate, attachments);
+        
+        // Envoi des emails sur une connexion SMTP persistante
+        transportPool.sendBatch(messages);
+        
+        logger.info("Email envoyé avec succès à {} ({} message(s), CC: {})", 
+            managerReport.getEmailGest(), messages.size(), siopProperties.getEmail().getCc());
+    }
+    
+    /**
+     * Construit les emails d'un gestionnaire, sans les envoyer
+     * 
+     * Même répartition des parties que sendEmailToManager ; utilisé
+     * pour la mise en file d'envoi (EmailOutbox)
+     * 
+     * @param managerReport Rapport du gestionnaire
+     * @param queryDate Date de la requête
+     * @param attachments Parties numérotées du rapport
+     * @return Messages prêts à l'envoi, dans l'ordre des parties
+     */
+    public List<MimeMessage> createMessages(ManagerReportDto managerReport, String queryDate,
+                                            List<ReportAttachment> attachments) {
+        return createGroupedMessages(managerReport, queryDate, groupIntoMessages(attachments));
+    }
+    
+    /**
+     * Construit un email par groupe de parties (groupIntoMessages)
+     * 
+     * @param managerReport Rapport du gestionnaire
+     * @param queryDate Date de la requête
+     * @param groups Parties de chaque message
+     * @return Messages prêts à l'envoi, dans l'ordre des groupes
+     */
+    List<MimeMessage> createGroupedMessages(ManagerReportDto managerReport, String queryDate,
+                                            List<List<ReportAttachment>> groups) {
+        List<MimeMessage> messages = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            messages.add(createMessage(managerReport, queryDate, groups.get(i), i + 1, groups.size()));
+        }
+        return messages;
+    }
+    
+    /**
+     * Taille maximale d'une pièce jointe avant encodage
+     * 
+     * Minimum entre siop.email.max-attachment-bytes et la part utile de
+     * siop.email.max-message-bytes (en-têtes retirés, expansion base64 compensée)
+     * 
+     * @return Budget en octets, 0 si aucune limite n'est configurée
+     */
+    public long getAttachmentBudget() {
+        long messageBudget = getMessageAttachmentBudget();
+        long attachmentLimit = siopProperties.getEmail().getMaxAttachmentBytes();
+        if (attachmentLimit <= 0) {
+            return messageBudget;
+        }
+        return messageBudget > 0 ? Math.min(messageBudget, attachmentLimit) : attachmentLimit;
+    }
+    
+    /**
+     * Octets bruts de pièces jointes que peut porter un message
+     * 
+     * @return Budget en octets, 0 si la taille des messages n'est pas limitée
+     */
+    private long getMessageAttachmentBudget() {
+        long maxMessageBytes = siopProperties.getEmail().getMaxMessageBytes();
+        if (maxMessageBytes <= 0) {
+            return 0;
+        }
+        long encodedBudget = Math.max(BASE64_LINE_BYTES, maxMessageBytes - MESSAGE_OVERHEAD_BYTES);
+        return encodedBudget / BASE64_LINE_BYTES * BASE64_RAW_PER_LINE;
+    }
+    
+    /**
+     * Construit l'email destiné à un gestionnaire
+     * 
+     * @param managerReport Rapport du gestionnaire
+     * @param queryDate Date de la requête
+     * @param excelFile Fichier Excel en pièce jointe
+     * @return Message prêt à l'envoi
+     */
+    public MimeMessage createMessage(ManagerReportDto managerReport, String queryDate, byte[] excelFile) {
+        return createMessage(managerReport, queryDate, new ReportAttachment(excelFile, ReportFormat.XLSX));
+    }
+    
+    /**
+     * Construit l'email destiné à un gestionnaire
+     * 
+     * @param managerReport Rapport du gestionnaire
+     * @param queryDate Date de la requête
+     * @param attachment Pièce jointe dans le format du gestionnaire
+     * @return Message prêt à l'envoi
+     */
+    public MimeMessage createMessage(ManagerReportDto managerReport, String queryDate, ReportAttachment attachment) {
+        return createMessage(managerReport, queryDate, List.of(attachment), 1, 1);
+    }
+    
+    /**
+     * Construit un des emails destinés à un gestionnaire
+     * 
+     * @param managerReport Rapport du gestionnaire
+     * @param queryDate Date de la requête
+     * @param attachments Parties jointes à ce message
+     * @param messageNumber Numéro du message (à partir de 1)
+     * @param messageCount Nombre de messages pour ce gestionnaire
+     * @return Message prêt à l'envoi
+     */
+    private MimeMessage createMessage(ManagerReportDto managerReport, String queryDate,
+                                      List<ReportAttachment> attachments, int messageNumber, int messageCount) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
             
             // Configuration de l'email
             helper.setTo(managerReport.getEmailGest());
-            helper.setSubject(buildSubject(managerReport));
-            helper.setText(buildEmailBody(managerReport, queryDate), false);
+            helper.setSubject(buildSubject(managerReport, messageNumber, messageCount));
+            helper.setText(buildEmailBody(managerReport, queryDate, attachments), false);
             
             // Ajout des CC
             List<String> ccList = siopProperties.getEmail().getCc();
@@ -56,34 +204,72 @@ public class EmailService {
                 helper.setCc(ccList.toArray(new String[0]));
             }
             
-            // Pièce jointe Excel
-            if (excelFile != null && excelFile.length > 0) {
-                String filename = buildExcelFilename(managerReport.getEmailGest(), queryDate);
-                helper.addAttachment(filename, new ByteArrayResource(excelFile));
+            // Pièces jointes, type MIME selon le format
+            for (ReportAttachment attachment : attachments) {
+                if (attachment.getSize() > 0) {
+                    String filename = buildAttachmentFilename(managerReport, queryDate, attachment);
+                    // Contenu relu depuis son fichier à l'écriture du message, sans copie en mémoire
+                    helper.addAttachment(filename, attachment.getSource(), attachment.getFormat().getContentType());
+                }
             }
             
-            // Envoi de l'email
-            mailSender.send(message);
-            
-            logger.info("Email envoyé avec succès à {} (CC: {})", 
-                managerReport.getEmailGest(), ccList);
+            return message;
                 
         } catch (MessagingException e) {
-            logger.error("Erreur lors de l'envoi de l'email à {}", 
+            logger.error("Erreur lors de la construction de l'email pour {}", 
                 managerReport.getEmailGest(), e);
-            throw new RuntimeException("Erreur lors de l'envoi de l'email", e);
+            throw new RuntimeException("Erreur lors de la construction de l'email", e);
         }
     }
     
+    /**
+     * Répartit les parties d'un rapport entre les messages à envoyer
+     * 
+     * @param attachments Parties du rapport, dans l'ordre
+     * @return Parties de chaque message
+     */
+    List<List<ReportAttachment>> groupIntoMessages(List<ReportAttachment> attachments) {
+        if (attachments.size() <= 1) {
+            return List.of(attachments);
+        }
+        
+        List<List<ReportAttachment>> groups = new ArrayList<>();
+        long budget = getMessageAttachmentBudget();
+        if (siopProperties.getEmail().isSplitIntoMessages()) {
+            for (ReportAttachment attachment : attachments) {
+                groups.add(List.of(attachment));
+            }
+            return groups;
+        }
+        
+        // Remplissage séquentiel : l'ordre des parties est conservé
+        List<ReportAttachment> current = new ArrayList<>();
+        long currentBytes = 0;
+        for (ReportAttachment attachment : attachments) {
+            if (!current.isEmpty() && budget > 0 && currentBytes + attachment.getSize() > budget) {
+                groups.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(attachment);
+            currentBytes += attachment.getSize();
+        }
+        groups.add(current);
+        return groups;
+    }
+    
     /**
      * Construit le sujet de l'email
      * 
      * @param managerReport Rapport du gestionnaire
+     * @param messageNumber Numéro du message
+     * @param messageCount Nombre de messages pour ce gestionnaire
      * @return Sujet de l'email
      */
-    private String buildSubject(ManagerReportDto managerReport) {
-        return String.format("Virement SIOP nécessitant votre attention - Canal %s", 
+    private String buildSubject(ManagerReportDto managerReport, int messageNumber, int messageCount) {
+        String subject = String.format("Virement SIOP nécessitant votre attention - Canal %s", 
             managerReport.getCanal());
+        return messageCount > 1 ? String.format("%s (%d/%d)", subject, messageNumber, messageCount) : subject;
     }
     
     /**
@@ -91,9 +277,12 @@ public class EmailService {
      * 
      * @param managerReport Rapport du gestionnaire
      * @param queryDate Date de la requête
+     * @param attachments Parties jointes à ce message
      * @return Corps de l'email
      */
-    private String buildEmailBody(ManagerReportDto managerReport, String queryDate) {
+    private String buildEmailBody(ManagerReportDto managerReport, String queryDate, List<ReportAttachment> attachments) {
+        ReportAttachment first = attachments.get(0);
+        
         StringBuilder body = new StringBuilder();
         
         body.append(String.format("Bonjour %s %s,\n\n", 
@@ -108,7 +297,17 @@ public class EmailService {
         body.append(String.format("- Canal: %s\n\n", managerReport.getCanal()));
         
         body.append("Veuillez traiter ces opérations dans les plus brefs délais.\n\n");
-        body.append("Le fichier Excel en pièce jointe contient tous les détails de vos opérations.\n\n");
+        if (first.isPart()) {
+            ReportAttachment last = attachments.get(attachments.size() - 1);
+            body.append(String.format("Le rapport %s est découpé en %d parties en raison de sa taille. ",
+                first.getFormat().getLabel(), first.getPartCount()));
+            body.append(first == last
+                ? String.format("Ce message contient la partie %d.\n\n", first.getPart())
+                : String.format("Ce message contient les parties %d à %d.\n\n", first.getPart(), last.getPart()));
+        } else {
+            body.append(String.format("Le fichier %s en pièce jointe contient tous les détails de vos opérations.\n\n",
+                first.getFormat().getLabel()));
+        }
         body.append("Cordialement,\n");
         body.append("Système SIOP");
         
@@ -116,15 +315,48 @@ public class EmailService {
     }
     
     /**
-     * Construit le nom du fichier Excel
+     * Construit le nom de la pièce jointe
+     * 
+     * @param managerReport Rapport du gestionnaire
+     * @param queryDate Date de la requête
+     * @param attachment Pièce jointe
+     * @return Nom du fichier, numéro de partie et extension selon le format
+     */
+    private String buildAttachmentFilename(ManagerReportDto managerReport, String queryDate, 
+                                           ReportAttachment attachment) {
+        String base = reportBasename(managerReport.getEmailGest(), managerReport.getGestCode(), queryDate);
+        if (attachment.isPart()) {
+            return String.format("%s_partie%d_sur_%d.%s", base, attachment.getPart(), attachment.getPartCount(),
+                attachment.getFormat().getExtension());
+        }
+        return base + "." + attachment.getFormat().getExtension();
+    }
+    
+    /**
+     * Nom du fichier de rapport d'un gestionnaire, en pièce jointe comme en téléchargement
+     * 
+     * Le code gestionnaire est ajouté à l'email quand le rapport n'en couvre qu'un ;
+     * le rapport envoyé à un email rattaché à plusieurs codes les regroupe et n'en porte aucun.
      * 
      * @param emailGest Email du gestionnaire
+     * @param gestCode Code gestionnaire, ou null
      * @param queryDate Date de la requête
-     * @return Nom du fichier Excel
+     * @param format Format du fichier
+     * @return Nom du fichier avec l'extension du format
      */
-    private String buildExcelFilename(String emailGest, String queryDate) {
-        String cleanEmail = emailGest.replace("@", "_").replace(".", "_");
-        String cleanDate = queryDate.replace("/", "_");
-        return String.format("siop_operations_%s_%s.xlsx", cleanEmail, cleanDate);
+    static String reportFilename(String emailGest, String gestCode, String queryDate, ReportFormat format) {
+        return reportBasename(emailGest, gestCode, queryDate) + "." + format.getExtension();
+    }
+    
+    private static String reportBasename(String emailGest, String gestCode, String queryDate) {
+        String owner = cleanEmail(emailGest);
+        if (gestCode != null && !gestCode.trim().isEmpty()) {
+            owner = owner + "_" + gestCode.trim();
+        }
+        return String.format("siop_operations_%s_%s", owner, queryDate.replace("/", "_"));
+    }
+    
+    private static String cleanEmail(String emailGest) {
+        return emailGest.replace("@", "_").replace(".", "_");
     }
 }
@@ -0,0 +1,203 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.SiopReportDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Résolution des messages d'erreur BKMOPERROR
+ * 
+ * Remplace la sous-requête LISTAGG corrélée de la requête principale :
+ * les erreurs des identifiants distincts (transaction, lot, message)
+ * sont lues par lots IN indexables, puis fusionnées en Java.
+ * 
+ * Le texte produit est celui de LISTAGG : "mess au niveau de lvl", séparés
+ * par " | " et triés par lvl. Comme avec la condition OR de la sous-requête,
+ * une ligne BKMOPERROR retrouvée par plusieurs identifiants n'est listée qu'une fois,
+ * mais deux lignes identiques de BKMOPERROR sont listées deux fois.
+ * Un lvl numérique est écrit comme la conversion implicite Oracle (0.5 donne .5).
+ */
+@Component
+public class ErrorMessageResolver {
+    
+    private static final String ERROR_COLUMNS = 
+        "SELECT idtx, idlot, idmsg, TRIM(mess) AS mess, lvl FROM BKMOPERROR WHERE ";
+    
+    private static final Comparator<ErrorRow> BY_LEVEL = 
+        Comparator.comparing(ErrorRow::getLevelKey, Comparator.nullsLast(ErrorMessageResolver::compareLevels));
+    
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    /**
+     * Complète le message d'erreur de chaque opération
+     * 
+     * Les opérations déjà résolues (relues d'un instantané, ou complétées
+     * lors de son écriture) sont laissées telles quelles, sans lecture de BKMOPERROR
+     * 
+     * @param operations Opérations SIOP
+     */
+    public void resolve(List<SiopReportDto> operations) {
+        List<SiopReportDto> unresolved = operations.stream()
+            .filter(operation -> !operation.isErrorMsgResolved())
+            .collect(Collectors.toList());
+        if (unresolved.isEmpty()) {
+            return;
+        }
+        
+        Map<String, List<ErrorRow>> byTx = findErrors("idtx", distinctIds(unresolved, SiopReportDto::getIdtx));
+        Map<String, List<ErrorRow>> byLot = findErrors("idlot", distinctIds(unresolved, SiopReportDto::getIdlot));
+        Map<String, List<ErrorRow>> byMsg = findErrors("idmsg", distinctIds(unresolved, SiopReportDto::getIdmsg));
+        
+        for (SiopReportDto operation : unresolved) {
+            // Condition OR de LISTAGG : une ligne déjà retenue par un identifiant précédent est écartée
+            List<ErrorRow> matched = new ArrayList<>(byTx.getOrDefault(operation.getIdtx(), Collections.emptyList()));
+            for (ErrorRow error : byLot.getOrDefault(operation.getIdlot(), Collections.emptyList())) {
+                if (!sameId(error.idtx, operation.getIdtx())) {
+                    matched.add(error);
+                }
+            }
+            for (ErrorRow error : byMsg.getOrDefault(operation.getIdmsg(), Collections.emptyList())) {
+                if (!sameId(error.idtx, operation.getIdtx()) && !sameId(error.idlot, operation.getIdlot())) {
+                    matched.add(error);
+                }
+            }
+            
+            operation.setErrorMsg(matched.isEmpty() ? null : matched.stream()
+                .sorted(BY_LEVEL)
+                .map(ErrorRow::toText)
+                .collect(Collectors.joining(" | ")));
+            operation.setErrorMsgResolved(true);
+        }
+    }
+    
+    /**
+     * Lit les erreurs d'une colonne d'identifiant, par lots
+     * 
+     * @param column Colonne BKMOPERROR (idtx, idlot ou idmsg)
+     * @param ids Identifiants distincts
+     * @return Erreurs indexées par identifiant
+     */
+    private Map<String, List<ErrorRow>> findErrors(String column, List<String> ids) {
+        Map<String, List<ErrorRow>> errors = new HashMap<>();
+        int batchSize = Math.max(1, Math.min(1000, siopProperties.getQuery().getErrorBatchSize()));
+        
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            List<String> batch = ids.subList(i, Math.min(i + batchSize, ids.size()));
+            namedParameterJdbcTemplate.query(
+                ERROR_COLUMNS + column + " IN (:ids)",
+                new MapSqlParameterSource("ids", batch),
+                rs -> {
+                    ErrorRow error = new ErrorRow(rs);
+                    errors.computeIfAbsent(rs.getString(column), key -> new ArrayList<>()).add(error);
+                });
+        }
+        return errors;
+    }
+    
+    /**
+     * Égalité SQL : NULL ne correspond à aucun identifiant
+     */
+    private static boolean sameId(String errorId, String operationId) {
+        return operationId != null && operationId.equals(errorId);
+    }
+    
+    /**
+     * Conversion implicite Oracle d'un NUMBER en texte (|| lvl)
+     * 
+     * Notation décimale sans zéros superflus ni zéro avant la virgule : 0.5 donne .5, -0.5 donne -.5
+     * 
+     * @param level Niveau numérique
+     * @return Texte tel qu'Oracle le concatène
+     */
+    static String oracleNumberText(BigDecimal level) {
+        if (level.signum() == 0) {
+            return "0";
+        }
+        String text = level.stripTrailingZeros().toPlainString();
+        if (text.startsWith("0.")) {
+            return text.substring(1);
+        }
+        if (text.startsWith("-0.")) {
+            return "-" + text.substring(2);
+        }
+        return text;
+    }
+    
+    private static List<String> distinctIds(Collection<SiopReportDto> operations, 
+                                            Function<SiopReportDto, String> idGetter) {
+        return operations.stream()
+            .map(idGetter)
+            .filter(Objects::nonNull)
+            .distinct()
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Ordre de lvl : numérique si la colonne est numérique, alphabétique sinon
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareLevels(Comparable left, Comparable right) {
+        if (left.getClass() != right.getClass()) {
+            return left.toString().compareTo(right.toString());
+        }
+        return left.compareTo(right);
+    }
+    
+    /**
+     * Ligne de BKMOPERROR
+     */
+    private static final class ErrorRow {
+        
+        private final String idtx;
+        private final String idlot;
+        private final String mess;
+        private final String level;
+        private final Comparable<?> levelKey;
+        
+        ErrorRow(ResultSet rs) throws SQLException {
+            this.idtx = rs.getString("idtx");
+            this.idlot = rs.getString("idlot");
+            this.mess = rs.getString("mess");
+            
+            Object lvl = rs.getObject("lvl");
+            if (lvl instanceof Number) {
+                BigDecimal numericLevel = new BigDecimal(lvl.toString()).stripTrailingZeros();
+                this.level = oracleNumberText(numericLevel);
+                this.levelKey = numericLevel;
+            } else {
+                this.level = lvl != null ? lvl.toString() : null;
+                this.levelKey = level;
+            }
+        }
+        
+        Comparable<?> getLevelKey() { return levelKey; }
+        
+        /**
+         * Équivalent Java de TRIM(mess) || ' au niveau de ' || lvl
+         */
+        String toText() {
+            return (mess != null ? mess : "") + " au niveau de " + (level != null ? level : "");
+        }
+    }
+}
@@ -1,36 +1,93 @@
 package com.rawbank.siop.service;
 
+import com.rawbank.siop.config.SiopProperties;
 import com.rawbank.siop.dto.SiopReportDto;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.time.format.DateTimeFormatter;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
- * Service pour la génération de fichiers Excel
+ * Service pour la génération des fichiers de rapport
  * 
  * Responsable de :
- * - Génération de fichiers Excel avec style
- * - Formatage des données
- * - Optimisation des colonnes
+ * - Sélection du format (xlsx, csv, csv-gzip), global ou par destinataire
+ * - Délégation au ReportRenderer correspondant
+ * - Découpage en parties numérotées sous un budget de taille, en un seul passage
+ * - Écriture des pièces jointes dans des fichiers temporaires (siop.report.temp-directory)
+ * - Génération Excel historique (generateExcel)
+ * 
+ * Les pièces jointes ne sont jamais conservées en mémoire : le rendu est écrit
+ * dans un fichier, joint aux messages par référence puis supprimé après l'envoi
+ * ou la mise en file (ReportAttachment.delete).
  */
 @Service
 public class ExcelService {
     
     private static final Logger logger = LoggerFactory.getLogger(ExcelService.class);
     
-    private static final String[] HEADERS = {
-        "Date", "Fichier", "Canal", "Service", "Type Message", 
-        "Bénéficiaire", "Montant", "Motif", "Frais", 
-        "Status Message", "Status Lot", "Status TX", "Erreur"
-    };
+    private static final String TEMP_PREFIX = "siop-report-";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    @Autowired
+    private List<ReportRenderer> renderers;
+    
+    private final Map<ReportFormat, ReportRenderer> renderersByFormat = new EnumMap<>(ReportFormat.class);
+    
+    // Formats par email normalisé, résolus et validés au démarrage
+    private final Map<String, ReportFormat> recipientFormats = new HashMap<>();
+    
+    private ReportFormat defaultFormat;
+    
+    private Path tempDirectory;
+    
+    @PostConstruct
+    public void init() {
+        for (ReportRenderer renderer : renderers) {
+            renderersByFormat.put(renderer.format(), renderer);
+        }
+        
+        SiopProperties.Report report = siopProperties.getReport();
+        defaultFormat = ReportFormat.fromCode(report.getFormat());
+        requireRenderer(defaultFormat);
+        
+        if (report.getRecipientFormats() != null) {
+            report.getRecipientFormats().forEach((email, format) -> {
+                ReportFormat resolved = ReportFormat.fromCode(format);
+                requireRenderer(resolved);
+                recipientFormats.put(normalizeEmail(email), resolved);
+            });
+        }
+        
+        tempDirectory = Paths.get(report.getTempDirectory()).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(tempDirectory);
+            deleteLeftoverFiles();
+        } catch (IOException e) {
+            throw new RuntimeException("Impossible de préparer le répertoire des pièces jointes " + tempDirectory, e);
+        }
+        
+        logger.info("Format de rapport par défaut : {} ({} destinataire(s) avec format spécifique)",
+            defaultFormat.getCode(), recipientFormats.size());
+    }
     
     /**
      * Génère un fichier Excel à partir des opérations SIOP
@@ -39,250 +96,216 @@ public class ExcelService {
      * @return Fichier Excel sous forme de byte array
      */
     public byte[] generateExcel(List<SiopReportDto> operations) {
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("Opérations SIOP");
-            
-            // Création des styles
-            CellStyle headerStyle = createHeaderStyle(workbook);
-            CellStyle dataStyle = createDataStyle(workbook);
-            CellStyle dateStyle = createDateStyle(workbook);
-            CellStyle numberStyle = createNumberStyle(workbook);
-            
-            // Création des en-têtes
-            createHeaders(sheet, headerStyle);
-            
-            // Remplissage des données
-            fillData(sheet, operations, dataStyle, dateStyle, numberStyle);
-            
-            // Ajustement automatique des colonnes
-            autoSizeColumns(sheet);
-            
-            // Conversion en byte array
-            return convertToByteArray(workbook);
-            
-        } catch (IOException e) {
-            logger.error("Erreur lors de la génération du fichier Excel", e);
-            throw new RuntimeException("Erreur lors de la génération Excel", e);
-        }
+        return requireRenderer(ReportFormat.XLSX).render(operations);
     }
     
     /**
-     * Crée le style pour les en-têtes
+     * Génère la pièce jointe d'un destinataire dans son format
      * 
-     * @param workbook Workbook Excel
-     * @return Style des en-têtes
+     * @param operations Liste des opérations SIOP
+     * @param recipient Email du destinataire
+     * @return Pièce jointe générée
      */
-    private CellStyle createHeaderStyle(Workbook workbook) {
-        CellStyle style = workbook.createCellStyle();
-        
-        // Police en gras et blanc
-        Font font = workbook.createFont();
-        font.setBold(true);
-        font.setColor(IndexedColors.WHITE.getIndex());
-        style.setFont(font);
-        
-        // Couleur de fond bleue
-        style.setFillForegroundColor(IndexedColors.DARK_BLUE.getIndex());
-        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-        
-        // Alignement centré
-        style.setAlignment(HorizontalAlignment.CENTER);
-        style.setVerticalAlignment(VerticalAlignment.CENTER);
-        
-        // Bordures
-        style.setBorderTop(BorderStyle.THIN);
-        style.setBorderBottom(BorderStyle.THIN);
-        style.setBorderLeft(BorderStyle.THIN);
-        style.setBorderRight(BorderStyle.THIN);
-        
-        return style;
+    public ReportAttachment generateReport(List<SiopReportDto> operations, String recipient) {
+        ReportFormat format = formatFor(recipient);
+        return new ReportAttachment(renderToFile(requireRenderer(format), operations), format, operations.size());
     }
     
     /**
-     * Crée le style pour les données
+     * Génère la pièce jointe d'un destinataire, découpée si elle dépasse un budget
      * 
-     * @param workbook Workbook Excel
-     * @return Style des données
+     * Le rapport est écrit en un seul passage : chaque partie suit sa taille pendant
+     * l'écriture (ReportRenderer.renderPart) et la suivante commence à la première
+     * opération qui ne tient plus. Une partie xlsx dont l'estimation a manqué le budget
+     * est réécrite en deux moitiés. Une ligne seule plus grande que le budget forme
+     * une partie à part entière. Chaque partie est un fichier temporaire, à supprimer
+     * par l'appelant.
+     * 
+     * @param operations Liste des opérations SIOP
+     * @param recipient Email du destinataire
+     * @param maxBytes Taille maximale d'une partie en octets, 0 = pas de découpage
+     * @return Parties numérotées, une seule si le rapport tient dans le budget
      */
-    private CellStyle createDataStyle(Workbook workbook) {
-        CellStyle style = workbook.createCellStyle();
+    public List<ReportAttachment> generateReportParts(List<SiopReportDto> operations, String recipient, long maxBytes) {
+        ReportFormat format = formatFor(recipient);
+        ReportRenderer renderer = requireRenderer(format);
         
-        // Bordures
-        style.setBorderTop(BorderStyle.THIN);
-        style.setBorderBottom(BorderStyle.THIN);
-        style.setBorderLeft(BorderStyle.THIN);
-        style.setBorderRight(BorderStyle.THIN);
+        if (maxBytes <= 0 || operations.size() <= 1) {
+            return List.of(new ReportAttachment(renderToFile(renderer, operations), format, operations.size()));
+        }
         
-        // Alignement
-        style.setVerticalAlignment(VerticalAlignment.CENTER);
+        List<Path> files = new ArrayList<>();
+        List<Integer> rowCounts = new ArrayList<>();
+        try {
+            int from = 0;
+            while (from < operations.size()) {
+                int start = from;
+                int[] end = new int[1];
+                Path content = renderToFile(renderer,
+                    out -> end[0] = renderer.renderPart(operations, start, out, maxBytes));
+                from = end[0];
+                add(renderer, operations.subList(start, from), content, maxBytes, files, rowCounts);
+            }
+        } catch (RuntimeException e) {
+            files.forEach(this::deleteFile);
+            throw e;
+        }
         
-        return style;
-    }
-    
-    /**
-     * Crée le style pour les dates
-     * 
-     * @param workbook Workbook Excel
-     * @return Style des dates
-     */
-    private CellStyle createDateStyle(Workbook workbook) {
-        CellStyle style = createDataStyle(workbook);
+        if (files.size() == 1) {
+            return List.of(new ReportAttachment(files.get(0), format, operations.size()));
+        }
         
-        // Format de date
-        CreationHelper createHelper = workbook.getCreationHelper();
-        style.setDataFormat(createHelper.createDataFormat().getFormat("dd/mm/yyyy hh:mm"));
+        List<ReportAttachment> parts = new ArrayList<>(files.size());
+        long totalBytes = 0;
+        for (int i = 0; i < files.size(); i++) {
+            ReportAttachment part = new ReportAttachment(files.get(i), format, rowCounts.get(i), i + 1, files.size());
+            totalBytes += part.getSize();
+            parts.add(part);
+        }
         
-        return style;
+        logger.info("Rapport de {} découpé en {} partie(s) ({} octets, limite {} par partie)",
+            recipient, parts.size(), totalBytes, maxBytes);
+        return parts;
     }
     
     /**
-     * Crée le style pour les nombres
+     * Retient une partie écrite, ou la réécrit en deux moitiés si elle dépasse le budget
      * 
-     * @param workbook Workbook Excel
-     * @return Style des nombres
+     * @param renderer Rendu du format
+     * @param chunk Opérations de la partie
+     * @param content Fichier de la partie
+     * @param maxBytes Taille maximale d'une partie
+     * @param parts Fichiers des parties retenues, dans l'ordre des opérations
+     * @param rowCounts Nombre d'opérations de chaque partie retenue
      */
-    private CellStyle createNumberStyle(Workbook workbook) {
-        CellStyle style = createDataStyle(workbook);
-        
-        // Format numérique
-        CreationHelper createHelper = workbook.getCreationHelper();
-        style.setDataFormat(createHelper.createDataFormat().getFormat("#,##0.00"));
+    private void add(ReportRenderer renderer, List<SiopReportDto> chunk, Path content, long maxBytes,
+                     List<Path> parts, List<Integer> rowCounts) {
+        long contentBytes = size(content);
+        if (contentBytes > maxBytes && chunk.size() > 1) {
+            deleteFile(content);
+            logger.debug("Partie de {} ligne(s) au-delà du budget ({} > {} octets), réécrite en deux",
+                chunk.size(), contentBytes, maxBytes);
+            int half = chunk.size() / 2;
+            for (List<SiopReportDto> halfChunk : List.of(chunk.subList(0, half), chunk.subList(half, chunk.size()))) {
+                add(renderer, halfChunk, renderToFile(renderer, halfChunk), maxBytes, parts, rowCounts);
+            }
+            return;
+        }
         
-        return style;
+        if (contentBytes > maxBytes) {
+            logger.warn("Une opération seule dépasse la taille maximale ({} > {} octets)", contentBytes, maxBytes);
+        }
+        parts.add(content);
+        rowCounts.add(chunk.size());
     }
     
     /**
-     * Crée les en-têtes du tableau
+     * Écrit le rendu d'opérations dans un nouveau fichier temporaire
      * 
-     * @param sheet Feuille Excel
-     * @param headerStyle Style des en-têtes
+     * @param renderer Rendu du format
+     * @param operations Opérations à écrire
+     * @return Fichier écrit, supprimé en cas d'échec
      */
-    private void createHeaders(Sheet sheet, CellStyle headerStyle) {
-        Row headerRow = sheet.createRow(0);
-        
-        for (int i = 0; i < HEADERS.length; i++) {
-            Cell cell = headerRow.createCell(i);
-            cell.setCellValue(HEADERS[i]);
-            cell.setCellStyle(headerStyle);
-        }
+    private Path renderToFile(ReportRenderer renderer, Iterable<SiopReportDto> operations) {
+        return renderToFile(renderer, out -> renderer.render(operations, out));
     }
     
     /**
-     * Remplit les données dans le tableau
+     * Écrit un rendu dans un nouveau fichier temporaire
      * 
-     * @param sheet Feuille Excel
-     * @param operations Liste des opérations
-     * @param dataStyle Style des données
-     * @param dateStyle Style des dates
-     * @param numberStyle Style des nombres
+     * @param renderer Rendu du format
+     * @param rendering Écriture du contenu
+     * @return Fichier écrit, supprimé en cas d'échec
      */
-    private void fillData(Sheet sheet, List<SiopReportDto> operations, 
-                         CellStyle dataStyle, CellStyle dateStyle, CellStyle numberStyle) {
-        
-        int rowNum = 1;
-        for (SiopReportDto operation : operations) {
-            Row row = sheet.createRow(rowNum++);
-            
-            // Date
-            Cell dateCell = row.createCell(0);
-            if (operation.getDateCreation() != null) {
-                dateCell.setCellValue(operation.getDateCreation());
-                dateCell.setCellStyle(dateStyle);
+    private Path renderToFile(ReportRenderer renderer, Rendering rendering) {
+        Path file = null;
+        try {
+            file = Files.createTempFile(tempDirectory, TEMP_PREFIX, "." + renderer.format().getExtension());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+                rendering.writeTo(out);
             }
-            
-            // Fichier
-            Cell filenameCell = row.createCell(1);
-            filenameCell.setCellValue(operation.getFilename());
-            filenameCell.setCellStyle(dataStyle);
-            
-            // Canal
-            Cell canalCell = row.createCell(2);
-            canalCell.setCellValue(operation.getCanal());
-            canalCell.setCellStyle(dataStyle);
-            
-            // Service
-            Cell serviceCell = row.createCell(3);
-            serviceCell.setCellValue(operation.getService());
-            serviceCell.setCellStyle(dataStyle);
-            
-            // Type Message
-            Cell typeMsgCell = row.createCell(4);
-            typeMsgCell.setCellValue(operation.getTypeMsg());
-            typeMsgCell.setCellStyle(dataStyle);
-            
-            // Bénéficiaire
-            Cell benefCell = row.createCell(5);
-            benefCell.setCellValue(operation.getBeneficiaire());
-            benefCell.setCellStyle(dataStyle);
-            
-            // Montant
-            Cell montantCell = row.createCell(6);
-            if (operation.getMontantTx() != null) {
-                montantCell.setCellValue(operation.getMontantTx().doubleValue());
-                montantCell.setCellStyle(numberStyle);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            if (file != null) {
+                deleteFile(file);
             }
-            
-            // Motif
-            Cell motifCell = row.createCell(7);
-            motifCell.setCellValue(operation.getMotif());
-            motifCell.setCellStyle(dataStyle);
-            
-            // Frais
-            Cell fraisCell = row.createCell(8);
-            fraisCell.setCellValue(operation.getFrais());
-            fraisCell.setCellStyle(dataStyle);
-            
-            // Status Message
-            Cell msgStatusCell = row.createCell(9);
-            msgStatusCell.setCellValue(operation.getMsgStatus());
-            msgStatusCell.setCellStyle(dataStyle);
-            
-            // Status Lot
-            Cell lotStatusCell = row.createCell(10);
-            lotStatusCell.setCellValue(operation.getLotStatus());
-            lotStatusCell.setCellStyle(dataStyle);
-            
-            // Status TX
-            Cell txtStatusCell = row.createCell(11);
-            txtStatusCell.setCellValue(operation.getTxtStatus());
-            txtStatusCell.setCellStyle(dataStyle);
-            
-            // Erreur
-            Cell errorCell = row.createCell(12);
-            errorCell.setCellValue(operation.getErrorMsg());
-            errorCell.setCellStyle(dataStyle);
+            throw new RuntimeException("Erreur lors de la génération du rapport " + renderer.format().getCode(), e);
+        }
+    }
+    
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Pièce jointe illisible : " + file, e);
+        }
+    }
+    
+    private void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Impossible de supprimer la pièce jointe temporaire {}", file, e);
         }
     }
     
     /**
-     * Ajuste automatiquement la largeur des colonnes
-     * 
-     * @param sheet Feuille Excel
+     * Supprime les pièces jointes laissées par un arrêt pendant une génération ou un envoi
      */
-    private void autoSizeColumns(Sheet sheet) {
-        for (int i = 0; i < HEADERS.length; i++) {
-            sheet.autoSizeColumn(i);
-            
-            // Limite la largeur maximale à 50 caractères
-            int currentWidth = sheet.getColumnWidth(i);
-            int maxWidth = 50 * 256; // 50 caractères en unités Excel
-            if (currentWidth > maxWidth) {
-                sheet.setColumnWidth(i, maxWidth);
+    private void deleteLeftoverFiles() throws IOException {
+        int deleted = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(tempDirectory, TEMP_PREFIX + "*")) {
+            for (Path file : stream) {
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                }
             }
         }
+        if (deleted > 0) {
+            logger.warn("{} pièce(s) jointe(s) temporaire(s) d'une exécution précédente supprimée(s)", deleted);
+        }
     }
     
     /**
-     * Convertit le workbook en byte array
+     * Écrit le rapport dans un flux, sans le conserver en mémoire
      * 
-     * @param workbook Workbook Excel
-     * @return Byte array du fichier Excel
+     * @param operations Opérations SIOP, éventuellement lues au fil de l'écriture
+     * @param format Format du fichier
+     * @param out Flux de sortie (non fermé)
      * @throws IOException Erreur d'écriture
      */
-    private byte[] convertToByteArray(Workbook workbook) throws IOException {
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            workbook.write(outputStream);
-            return outputStream.toByteArray();
+    public void writeReport(Iterable<SiopReportDto> operations, ReportFormat format, OutputStream out)
+            throws IOException {
+        requireRenderer(format).render(operations, out);
+    }
+    
+    /**
+     * Format de pièce jointe d'un destinataire
+     * 
+     * @param recipient Email du destinataire
+     * @return Format spécifique s'il est configuré, sinon le format par défaut
+     */
+    public ReportFormat formatFor(String recipient) {
+        if (recipient == null || recipientFormats.isEmpty()) {
+            return defaultFormat;
+        }
+        return recipientFormats.getOrDefault(normalizeEmail(recipient), defaultFormat);
+    }
+    
+    private ReportRenderer requireRenderer(ReportFormat format) {
+        ReportRenderer renderer = renderersByFormat.get(format);
+        if (renderer == null) {
+            throw new IllegalStateException("Aucun rendu disponible pour le format " + format.getCode());
         }
+        return renderer;
+    }
+    
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    @FunctionalInterface
+    private interface Rendering {
+        void writeTo(OutputStream out) throws IOException;
     }
 }
@@ -0,0 +1,28 @@
+package com.rawbank.siop.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Résumé d'une extraction SIOP
+ * 
+ * Nombre de lignes lues, nombre de gestionnaires et plus grand incomtime
+ * rencontré, utilisé comme marqueur pour l'exécution incrémentale suivante
+ */
+public class ExtractionSummary {
+    
+    private final int rowCount;
+    private final int groupCount;
+    private final LocalDateTime maxIncomTime;
+    
+    public ExtractionSummary(int rowCount, int groupCount, LocalDateTime maxIncomTime) {
+        this.rowCount = rowCount;
+        this.groupCount = groupCount;
+        this.maxIncomTime = maxIncomTime;
+    }
+    
+    public int getRowCount() { return rowCount; }
+    
+    public int getGroupCount() { return groupCount; }
+    
+    public LocalDateTime getMaxIncomTime() { return maxIncomTime; }
+}
@@ -0,0 +1,107 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.SiopReportDto;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rendu CSV compressé en gzip
+ * 
+ * Même contenu que CsvReportRenderer, compressé à la volée :
+ * adapté aux gros volumes soumis à une limite de taille de pièce jointe
+ */
+@Component
+public class GzipCsvReportRenderer extends CsvReportRenderer {
+    
+    // Texte compressé au plus tard tous les SYNC_INTERVAL octets pour suivre la taille d'une partie
+    private static final int SYNC_INTERVAL = 64 * 1024;
+    
+    // Fin du flux gzip (dernier bloc, CRC, taille) et en-têtes des blocs non compressés
+    private static final int GZIP_OVERHEAD_BYTES = 64;
+    
+    @Override
+    public ReportFormat format() {
+        return ReportFormat.CSV_GZIP;
+    }
+    
+    /**
+     * Écrit le fichier CSV compressé
+     * 
+     * Le flux gzip est terminé mais le flux de sortie n'est pas fermé
+     * 
+     * @param operations Opérations SIOP
+     * @param out Flux de sortie
+     * @throws IOException Erreur d'écriture
+     */
+    @Override
+    public void render(Iterable<SiopReportDto> operations, OutputStream out) throws IOException {
+        ReleasableGzipOutputStream gzip = new ReleasableGzipOutputStream(out);
+        try {
+            super.render(operations, gzip);
+            gzip.finish();
+        } finally {
+            gzip.release();
+        }
+    }
+    
+    /**
+     * Écrit une partie du fichier CSV compressé
+     * 
+     * La taille compressée n'est connue qu'une fois le texte passé par le Deflater :
+     * une compression complète (SYNC_FLUSH) tous les SYNC_INTERVAL octets borne le texte
+     * en attente, compté non compressé pour ne jamais sous-estimer la partie.
+     * 
+     * @param operations Opérations SIOP du rapport complet
+     * @param from Index de la première opération de la partie
+     * @param out Flux de sortie
+     * @param maxBytes Taille maximale de la partie en octets
+     * @return Index de la première opération non écrite
+     * @throws IOException Erreur d'écriture
+     */
+    @Override
+    public int renderPart(List<SiopReportDto> operations, int from, OutputStream out, long maxBytes)
+            throws IOException {
+        CountingOutputStream compressed = new CountingOutputStream(out);
+        ReleasableGzipOutputStream gzip = new ReleasableGzipOutputStream(compressed, true);
+        try {
+            Writer writer = newWriter(gzip);
+            long[] synced = {0};
+            int end = writePart(writer, operations, from, maxBytes, written -> {
+                if (written - synced[0] >= SYNC_INTERVAL) {
+                    writer.flush(); // SYNC_FLUSH : tout le texte écrit est compressé et compté
+                    synced[0] = written;
+                }
+                return compressed.getCount() + written - synced[0] + GZIP_OVERHEAD_BYTES;
+            });
+            writer.flush();
+            gzip.finish();
+            return end;
+        } finally {
+            gzip.release();
+        }
+    }
+    
+    /**
+     * Flux gzip dont le Deflater natif peut être libéré sans fermer
+     * le flux sous-jacent (close() fermerait celui de l'appelant)
+     */
+    private static final class ReleasableGzipOutputStream extends GZIPOutputStream {
+        
+        ReleasableGzipOutputStream(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+        }
+        
+        ReleasableGzipOutputStream(OutputStream out, boolean syncFlush) throws IOException {
+            super(out, BUFFER_SIZE, syncFlush);
+        }
+        
+        void release() {
+            def.end();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.SiopReportDto;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Groupement en flux des lignes SIOP par gestionnaire
+ * 
+ * La requête étant triée par code du gestionnaire, un groupe est complet
+ * dès qu'une ligne d'un autre gestionnaire arrive : il est alors émis
+ * immédiatement, sans attendre la fin du ResultSet.
+ * Seules les lignes du gestionnaire en cours sont conservées en mémoire.
+ */
+public class ManagerGroupingHandler implements RowCallbackHandler {
+    
+    private final RowMapper<SiopReportDto> rowMapper;
+    private final Consumer<List<SiopReportDto>> groupConsumer;
+    
+    private List<SiopReportDto> currentGroup = new ArrayList<>();
+    private String currentCode;
+    private int rowCount;
+    private int groupCount;
+    private LocalDateTime maxIncomTime;
+    
+    public ManagerGroupingHandler(RowMapper<SiopReportDto> rowMapper, Consumer<List<SiopReportDto>> groupConsumer) {
+        this.rowMapper = rowMapper;
+        this.groupConsumer = groupConsumer;
+    }
+    
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        SiopReportDto operation = rowMapper.mapRow(rs, rowCount);
+        accept(operation);
+    }
+    
+    /**
+     * Ajoute une opération au groupe en cours, ou émet le groupe précédent
+     * 
+     * @param operation Opération SIOP
+     */
+    public void accept(SiopReportDto operation) {
+        rowCount++;
+        LocalDateTime incomTime = operation.getIncomTime();
+        if (incomTime != null && (maxIncomTime == null || incomTime.isAfter(maxIncomTime))) {
+            maxIncomTime = incomTime;
+        }
+        
+        String code = operation.getGestCode();
+        if (code == null || code.isEmpty()) {
+            return;
+        }
+        
+        if (!code.equals(currentCode)) {
+            emitCurrentGroup();
+            currentCode = code;
+        }
+        currentGroup.add(operation);
+    }
+    
+    /**
+     * Émet le dernier groupe en attente
+     * 
+     * À appeler une fois le ResultSet entièrement parcouru
+     */
+    public void finish() {
+        emitCurrentGroup();
+        currentCode = null;
+    }
+    
+    public int getRowCount() { return rowCount; }
+    
+    public int getGroupCount() { return groupCount; }
+    
+    public LocalDateTime getMaxIncomTime() { return maxIncomTime; }
+    
+    private void emitCurrentGroup() {
+        if (currentGroup.isEmpty()) {
+            return;
+        }
+        List<SiopReportDto> group = currentGroup;
+        currentGroup = new ArrayList<>();
+        groupCount++;
+        groupConsumer.accept(group);
+    }
+}
@@ -0,0 +1,47 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.config.SiopProperties;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Lectures à la demande simultanées (aperçu, téléchargement)
+ * 
+ * Chaque lecture garde un curseur Oracle ouvert pendant l'écriture de la réponse :
+ * leur nombre est borné par siop.query.on-demand-parallelism pour rester dans le budget
+ * du pool Oracle (ConnectionBudget). Au-delà, la requête est refusée sans attendre.
+ */
+@Component
+public class OnDemandReadLimiter {
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private Semaphore permits;
+    
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(Math.max(1, siopProperties.getQuery().getOnDemandParallelism()));
+    }
+    
+    /**
+     * Réserve une lecture, à libérer par release()
+     * 
+     * @throws RejectedExecutionException Toutes les lectures sont en cours
+     */
+    public void acquire() {
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException(String.format(
+                "%d lecture(s) à la demande déjà en cours (siop.query.on-demand-parallelism)",
+                siopProperties.getQuery().getOnDemandParallelism()));
+        }
+    }
+    
+    public void release() {
+        permits.release();
+    }
+}
@@ -0,0 +1,280 @@
+package com.rawbank.siop.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.SiopReportDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Aperçu en lecture seule des opérations d'une date
+ * 
+ * Responsable de :
+ * - Lecture des opérations telles que les gestionnaires les recevraient (sans envoi)
+ * - Filtres par gestionnaire, canal et statut
+ * - Pagination par clé (PreviewCursor) sur l'ordre de la requête
+ * - Messages d'erreur résolus par paquets de siop.preview.error-batch-size (ErrorMessageResolver)
+ * - Écriture JSON de la page au fil de la lecture (générateur Jackson)
+ * 
+ * Comme pour les rapports, les opérations des gestionnaires sans email sont exclues.
+ * Un aperçu occupe une lecture à la demande (OnDemandReadLimiter) jusqu'à la fin de sa page.
+ * La lecture commence après le curseur et s'arrête dès que la page est pleine :
+ * ni les pages précédentes ni le reste de la journée ne sont lus, et seul le paquet
+ * en cours est gardé en mémoire.
+ */
+@Service
+public class OperationPreviewService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OperationPreviewService.class);
+    
+    private static final DateTimeFormatter QUERY_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    
+    @Autowired
+    private SiopQueryService siopQueryService;
+    
+    @Autowired
+    private ErrorMessageResolver errorMessageResolver;
+    
+    @Autowired
+    private OnDemandReadLimiter onDemandReadLimiter;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    /**
+     * Écrit une page de l'aperçu en JSON
+     * 
+     * La page est lue après le curseur (pagination par clé dans la requête) et écrite
+     * paquet par paquet, une fois les messages d'erreur du paquet résolus. Une erreur de
+     * paramètre, ou de lecture avant le premier paquet, laisse le flux vierge pour une réponse
+     * d'erreur ; une erreur plus tardive laisse un JSON tronqué.
+     * Une page pleine porte nextCursor, même si aucune opération ne suit.
+     * 
+     * @param date Date des opérations (format DD/MM/YYYY)
+     * @param canal Canal, ou null pour tous les canaux configurés
+     * @param manager Code gestionnaire, ou null pour tous
+     * @param statuses Statuts acceptés (message, lot ou transaction), vide pour tous
+     * @param cursor Curseur de la page précédente, ou null pour la première page
+     * @param limit Opérations par page, ou null pour siop.preview.default-limit
+     * @param out Flux de sortie (non fermé)
+     * @throws IllegalArgumentException Date, limite ou curseur invalide
+     * @throws java.util.concurrent.RejectedExecutionException Trop de lectures à la demande en cours
+     * @throws IOException Erreur d'écriture
+     */
+    public void writePreview(String date, String canal, String manager, List<String> statuses,
+                             String cursor, Integer limit, OutputStream out) throws IOException {
+        LocalDate.parse(date, QUERY_DATE);
+        String gestCode = manager != null && !manager.trim().isEmpty() ? manager.trim() : null;
+        Set<String> statusFilter = normalizeStatuses(statuses);
+        int pageSize = pageSize(limit);
+        
+        List<String> canals = canal != null && !canal.trim().isEmpty()
+            ? List.of(canal.trim()) : siopProperties.getQuery().getCanals();
+        
+        PreviewCursor after = cursor != null && !cursor.isEmpty() ? PreviewCursor.decode(cursor) : null;
+        int firstCanal = 0;
+        if (after != null) {
+            firstCanal = canals.indexOf(after.getCanal());
+            if (!date.equals(after.getDate()) || firstCanal < 0) {
+                throw new IllegalArgumentException("Curseur d'une autre date ou d'un autre canal");
+            }
+        }
+        
+        long start = System.currentTimeMillis();
+        int batchSize = Math.max(1, Math.min(pageSize, siopProperties.getPreview().getErrorBatchSize()));
+        PageWriter page = new PageWriter(out, date, canal, gestCode, statusFilter, pageSize, batchSize);
+        String nextCursor = null;
+        onDemandReadLimiter.acquire();
+        try (page) {
+            for (int i = firstCanal; i < canals.size() && nextCursor == null; i++) {
+                String currentCanal = canals.get(i);
+                // Le curseur ne porte que sur son canal ; les canaux suivants sont lus depuis le début
+                PreviewCursor canalCursor = i == firstCanal ? after : null;
+                try (Stream<SiopReportDto> operations = 
+                         siopQueryService.streamOperations(date, currentCanal, gestCode, canalCursor)) {
+                    Iterator<SiopReportDto> rows = operations.iterator();
+                    while (rows.hasNext()) {
+                        SiopReportDto operation = rows.next();
+                        if (!hasEmail(operation) || !matchesStatus(operation, statusFilter)) {
+                            continue;
+                        }
+                        
+                        page.add(operation);
+                        if (page.getCount() == pageSize) {
+                            nextCursor = PreviewCursor.encode(date, currentCanal, operation);
+                            break;
+                        }
+                    }
+                }
+            }
+            
+            page.finish(nextCursor);
+        } finally {
+            onDemandReadLimiter.release();
+        }
+        
+        logger.info("Aperçu du {} (canal {}, gestionnaire {}) : {} opération(s) en {} ms",
+            date, canal != null ? canal : "tous", gestCode != null ? gestCode : "tous",
+            page.getCount(), System.currentTimeMillis() - start);
+    }
+    
+    /**
+     * Page de l'aperçu écrite au fil de la lecture
+     * 
+     * Les opérations retenues sont gardées par paquet : les messages d'erreur du paquet
+     * sont résolus en une requête, puis le paquet est écrit et vidé vers le client.
+     * La réponse n'est ouverte qu'à l'écriture du premier paquet.
+     */
+    private final class PageWriter implements Closeable {
+        
+        private final OutputStream out;
+        private final String date;
+        private final String canal;
+        private final String gestCode;
+        private final Set<String> statuses;
+        private final int pageSize;
+        private final int batchSize;
+        private final List<SiopReportDto> batch;
+        private JsonGenerator generator;
+        private int count;
+        
+        PageWriter(OutputStream out, String date, String canal, String gestCode, Set<String> statuses,
+                   int pageSize, int batchSize) {
+            this.out = out;
+            this.date = date;
+            this.canal = canal;
+            this.gestCode = gestCode;
+            this.statuses = statuses;
+            this.pageSize = pageSize;
+            this.batchSize = batchSize;
+            this.batch = new ArrayList<>(batchSize);
+        }
+        
+        void add(SiopReportDto operation) throws IOException {
+            batch.add(operation);
+            count++;
+            if (batch.size() == batchSize) {
+                flush();
+            }
+        }
+        
+        /**
+         * Écrit le dernier paquet et ferme la page
+         * 
+         * @param nextCursor Curseur de la page suivante, ou null pour la dernière page
+         */
+        void finish(String nextCursor) throws IOException {
+            flush();
+            generator.writeEndArray();
+            generator.writeNumberField("count", count);
+            generator.writeStringField("nextCursor", nextCursor);
+            generator.writeEndObject();
+        }
+        
+        int getCount() { return count; }
+        
+        private void flush() throws IOException {
+            errorMessageResolver.resolve(batch);
+            if (generator == null) {
+                generator = startPage();
+            }
+            for (SiopReportDto operation : batch) {
+                generator.writeObject(operation);
+            }
+            batch.clear();
+            generator.flush();
+        }
+        
+        /**
+         * Ouvre la réponse JSON jusqu'au tableau des opérations
+         */
+        private JsonGenerator startPage() throws IOException {
+            JsonGenerator page = objectMapper.createGenerator(out);
+            page.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Une erreur en cours de lecture doit laisser un JSON tronqué, pas une page complète en apparence
+            page.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            
+            page.writeStartObject();
+            page.writeStringField("date", date);
+            page.writeStringField("canal", canal);
+            page.writeStringField("manager", gestCode);
+            page.writeArrayFieldStart("status");
+            for (String status : statuses) {
+                page.writeString(status);
+            }
+            page.writeEndArray();
+            page.writeNumberField("limit", pageSize);
+            page.writeArrayFieldStart("operations");
+            return page;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (generator != null) {
+                generator.close();
+            }
+        }
+    }
+    
+    /**
+     * Taille de page demandée, plafonnée à siop.preview.max-limit
+     */
+    private int pageSize(Integer limit) {
+        SiopProperties.Preview preview = siopProperties.getPreview();
+        if (limit == null) {
+            return preview.getDefaultLimit();
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("La limite doit être positive");
+        }
+        return Math.min(limit, preview.getMaxLimit());
+    }
+    
+    private static Set<String> normalizeStatuses(List<String> statuses) {
+        if (statuses == null) {
+            return Set.of();
+        }
+        return statuses.stream()
+            .filter(status -> status != null && !status.trim().isEmpty())
+            .map(OperationPreviewService::normalize)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+    
+    /**
+     * Une opération est retenue si l'un de ses statuts (message, lot, transaction) est demandé
+     */
+    private static boolean matchesStatus(SiopReportDto operation, Set<String> statuses) {
+        return statuses.isEmpty()
+            || (operation.getMsgStatus() != null && statuses.contains(normalize(operation.getMsgStatus())))
+            || (operation.getLotStatus() != null && statuses.contains(normalize(operation.getLotStatus())))
+            || (operation.getTxtStatus() != null && statuses.contains(normalize(operation.getTxtStatus())));
+    }
+    
+    private static boolean hasEmail(SiopReportDto operation) {
+        return operation.getEmailGest() != null && !operation.getEmailGest().trim().isEmpty();
+    }
+    
+    private static String normalize(String status) {
+        return status.trim().toLowerCase(Locale.ROOT);
+    }
+}
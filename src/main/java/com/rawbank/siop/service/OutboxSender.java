@@ -0,0 +1,239 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.metrics.SiopMetrics;
+import com.rawbank.siop.store.EmailOutbox;
+import com.rawbank.siop.store.HighWaterMarkStore;
+import com.rawbank.siop.store.NotificationLedger;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads d'envoi de la file persistante des emails
+ * 
+ * Responsable de :
+ * - Vider la file (EmailOutbox) avec siop.outbox.sender-threads threads
+ * - Relire chaque message rendu et l'envoyer sur le pool SMTP
+ * - Reprogrammer les échecs temporaires, abandonner les échecs définitifs (lettre morte)
+ * - Consigner les opérations d'un message envoyé dans le journal des notifications
+ * - Faire reculer le marqueur incrémental d'un message en lettre morte, pour qu'il soit reconstruit
+ * 
+ * Les threads sont réveillés à chaque mise en file et, à défaut, recherchent
+ * les messages dus toutes les siop.outbox.poll-interval-ms millisecondes.
+ * La file est vidée même si siop.outbox.enabled est désactivé :
+ * les messages inscrits avant le changement de configuration partent quand même.
+ */
+@Component
+public class OutboxSender {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OutboxSender.class);
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    
+    @Autowired
+    private EmailOutbox emailOutbox;
+    
+    @Autowired
+    private SmtpTransportPool transportPool;
+    
+    @Autowired
+    private NotificationLedger notificationLedger;
+    
+    @Autowired
+    private HighWaterMarkStore highWaterMarkStore;
+    
+    @Autowired
+    private JavaMailSender mailSender;
+    
+    @Autowired
+    private SiopMetrics siopMetrics;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private ExecutorService executor;
+    private volatile boolean running;
+    
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, siopProperties.getOutbox().getSenderThreads());
+        executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("siop-outbox-"));
+        running = true;
+        for (int i = 0; i < threads; i++) {
+            executor.execute(this::drain);
+        }
+        
+        logger.info("Envoi de la file d'emails démarré ({} thread(s), {} essai(s) au plus par message)",
+            threads, siopProperties.getOutbox().getMaxAttempts());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        emailOutbox.wakeUp();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                // Les envois interrompus restent à l'état SENDING et sont rejoués au redémarrage
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Boucle d'un thread d'envoi : un message dû à la fois, jusqu'à l'arrêt
+     */
+    private void drain() {
+        long pollIntervalMs = siopProperties.getOutbox().getPollIntervalMs();
+        while (running) {
+            try {
+                EmailOutbox.Entry entry = emailOutbox.claimNext();
+                if (entry == null) {
+                    emailOutbox.awaitWork(pollIntervalMs);
+                } else {
+                    deliver(entry);
+                }
+            } catch (Exception e) {
+                // Base locale indisponible : nouvel essai au prochain intervalle
+                logger.error("Erreur lors de la lecture de la file d'envoi", e);
+                emailOutbox.awaitWork(pollIntervalMs);
+            }
+        }
+    }
+    
+    /**
+     * Envoie un message de la file et enregistre son issue
+     * 
+     * @param entry Message attribué à ce thread
+     */
+    private void deliver(EmailOutbox.Entry entry) {
+        Timer.Sample sample = Timer.start();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(entry.getFile()), BUFFER_SIZE)) {
+            MimeMessage message = mailSender.createMimeMessage(in);
+            transportPool.send(message);
+            
+        } catch (Exception e) {
+            siopMetrics.countFailure(entry.getCanal(), SiopMetrics.STAGE_SEND);
+            EmailOutbox.Status status = emailOutbox.markFailed(entry, describe(e), isPermanent(e));
+            if (status == EmailOutbox.Status.DEAD) {
+                siopMetrics.countDeadLetter(entry.getCanal());
+                logger.error("Email {} pour {} abandonné après {} essai(s) (lettre morte)",
+                    entry.getId(), entry.getRecipient(), entry.getAttempts() + 1, e);
+                rewindHighWaterMark(entry);
+            } else {
+                logger.warn("Échec de l'envoi de l'email {} à {} (essai {}), nouvel essai programmé : {}",
+                    entry.getId(), entry.getRecipient(), entry.getAttempts() + 1, describe(e));
+            }
+            return;
+        }
+        
+        sample.stop(siopMetrics.emailTimer(entry.getCanal()));
+        recordNotified(entry);
+        emailOutbox.markSent(entry);
+        logger.info("Email {} envoyé à {} (date {})", entry.getId(), entry.getRecipient(), entry.getQueryDate());
+    }
+    
+    /**
+     * Consigne les opérations d'un message envoyé dans le journal des notifications
+     * 
+     * Un échec est journalisé sans bloquer le message : il est envoyé, ses opérations
+     * pourront seulement être notifiées à nouveau
+     * 
+     * @param entry Message envoyé
+     */
+    private void recordNotified(EmailOutbox.Entry entry) {
+        if (entry.getBusinessDate() == null) {
+            return;
+        }
+        try {
+            notificationLedger.recordKeys(entry.getBusinessDate(), emailOutbox.notifiedKeys(entry));
+        } catch (Exception e) {
+            logger.error("Impossible de consigner les opérations de l'email {} dans le journal", entry.getId(), e);
+        }
+    }
+    
+    /**
+     * Fait reculer le marqueur incrémental avant les opérations d'une lettre morte
+     * 
+     * Ses opérations ne sont pas dans le journal : l'exécution incrémentale suivante
+     * les relit et les renvoie dans un nouveau message
+     * 
+     * @param entry Message passé en lettre morte
+     */
+    private void rewindHighWaterMark(EmailOutbox.Entry entry) {
+        if (entry.getBusinessDate() == null || entry.getHighWaterKey() == null) {
+            return;
+        }
+        try {
+            LocalDateTime earliest = emailOutbox.earliestIncomTime(entry);
+            // Une seconde avant : le marqueur est exclusif (incomtime > marqueur)
+            if (earliest != null && highWaterMarkStore.rewind(entry.getBusinessDate(), entry.getHighWaterKey(), 
+                    earliest.minusSeconds(1))) {
+                logger.warn("Canal {} : marqueur incrémental du {} ramené avant {} (lettre morte {})",
+                    entry.getHighWaterKey(), entry.getBusinessDate(), earliest, entry.getId());
+            }
+        } catch (Exception e) {
+            logger.error("Impossible de faire reculer le marqueur pour la lettre morte {}", entry.getId(), e);
+        }
+    }
+    
+    /**
+     * Un échec est définitif si le message a disparu ou si le relais refuse un destinataire
+     * 
+     * @param e Erreur d'envoi
+     * @return true si un nouvel essai ne peut pas réussir
+     */
+    static boolean isPermanent(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NoSuchFileException) {
+                return true;
+            }
+            if (cause instanceof SendFailedException) {
+                Object[] invalid = ((SendFailedException) cause).getInvalidAddresses();
+                if (invalid != null && invalid.length > 0) {
+                    return true;
+                }
+            }
+            if (cause instanceof MailSendException) {
+                // Le pool SMTP regroupe les erreurs par message, sans cause chaînée
+                for (Exception messageError : ((MailSendException) cause).getFailedMessages().values()) {
+                    if (isPermanent(messageError)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static String describe(Throwable e) {
+        Throwable root = e;
+        if (e instanceof MailSendException && !((MailSendException) e).getFailedMessages().isEmpty()) {
+            root = ((MailSendException) e).getFailedMessages().values().iterator().next();
+        }
+        return root.getClass().getSimpleName() + ": " + root.getMessage();
+    }
+}
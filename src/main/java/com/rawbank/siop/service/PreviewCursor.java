@@ -0,0 +1,152 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.SiopReportDto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Curseur de pagination de l'aperçu des opérations
+ * 
+ * Identifie la dernière opération renvoyée par sa clé dans l'ordre de la requête
+ * (canal, gestionnaire, incomtime, message, lot, transaction) : la page suivante
+ * lit les lignes situées après cette clé, filtrées par la requête elle-même.
+ * Elle reste valable si l'opération du curseur a disparu entre-temps.
+ * Les opérations sans gestionnaire ne sont pas lues par l'aperçu : la clé porte toujours un code.
+ * 
+ * Le jeton est opaque pour le client (Base64 URL des champs de la clé).
+ */
+final class PreviewCursor {
+    
+    private static final String SEPARATOR = "\u001F";
+    private static final String NULL = "\u0000";
+    private static final int FIELDS = 7;
+    
+    private final String date;
+    private final String canal;
+    private final String gestCode;
+    private final LocalDateTime incomTime;
+    private final String idmsg;
+    private final String idlot;
+    private final String idtx;
+    
+    private PreviewCursor(String[] fields) {
+        this.date = fields[0];
+        this.canal = fields[1];
+        this.gestCode = fields[2];
+        this.incomTime = fields[3] != null ? LocalDateTime.parse(fields[3]) : null;
+        this.idmsg = fields[4];
+        this.idlot = fields[5];
+        this.idtx = fields[6];
+    }
+    
+    /**
+     * Jeton désignant une opération
+     * 
+     * @param date Date de l'aperçu (format DD/MM/YYYY)
+     * @param canal Canal interrogé
+     * @param operation Dernière opération de la page
+     * @return Jeton à transmettre pour la page suivante
+     */
+    static String encode(String date, String canal, SiopReportDto operation) {
+        String key = String.join(SEPARATOR, date, canal, field(operation.getGestCode()),
+            field(incomTime(operation.getIncomTime())), field(operation.getIdmsg()),
+            field(operation.getIdlot()), field(operation.getIdtx()));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Relit un jeton
+     * 
+     * @param token Jeton reçu du client
+     * @return Curseur
+     * @throws IllegalArgumentException Jeton mal formé
+     */
+    static PreviewCursor decode(String token) {
+        String key;
+        try {
+            key = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Curseur invalide", e);
+        }
+        
+        String[] fields = key.split(SEPARATOR, -1);
+        if (fields.length != FIELDS) {
+            throw new IllegalArgumentException("Curseur invalide");
+        }
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = NULL.equals(fields[i]) ? null : fields[i];
+        }
+        if (fields[2] == null) {
+            throw new IllegalArgumentException("Curseur invalide");
+        }
+        try {
+            return new PreviewCursor(fields);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Curseur invalide", e);
+        }
+    }
+    
+    /**
+     * Indique si une opération du canal du curseur vient après lui dans l'ordre de la requête
+     * 
+     * Même comparaison que le prédicat de la requête : gestionnaire croissant,
+     * incomtime décroissant (absent en premier), puis message, lot et transaction croissants.
+     * Une opération sans gestionnaire n'est jamais retenue.
+     * Sert à la relecture des instantanés, déjà triés dans cet ordre.
+     */
+    boolean precedes(SiopReportDto operation) {
+        if (operation.getGestCode() == null) {
+            return false;
+        }
+        int order = compare(operation.getGestCode(), gestCode);
+        if (order == 0) {
+            order = compare(incomTime, operation.getIncomTime());
+        }
+        if (order == 0) {
+            order = compare(operation.getIdmsg(), idmsg);
+        }
+        if (order == 0) {
+            order = compare(operation.getIdlot(), idlot);
+        }
+        if (order == 0) {
+            order = compare(operation.getIdtx(), idtx);
+        }
+        return order > 0;
+    }
+    
+    String getDate() { return date; }
+    
+    String getCanal() { return canal; }
+    
+    String getGestCode() { return gestCode; }
+    
+    LocalDateTime getIncomTime() { return incomTime; }
+    
+    String getIdmsg() { return idmsg; }
+    
+    String getIdlot() { return idlot; }
+    
+    String getIdtx() { return idtx; }
+    
+    private static String incomTime(LocalDateTime value) {
+        return value != null ? value.toString() : null;
+    }
+    
+    /**
+     * Comparaison croissante, valeur absente en dernier (ordre Oracle par défaut) :
+     * inversée pour incomtime, elle place l'absence en premier comme DESC NULLS FIRST
+     */
+    private static <T extends Comparable<T>> int compare(T left, T right) {
+        if (left == null || right == null) {
+            return left == null ? (right == null ? 0 : 1) : -1;
+        }
+        return left.compareTo(right);
+    }
+    
+    private static String field(String value) {
+        return value != null ? value : NULL;
+    }
+}
@@ -0,0 +1,115 @@
+package com.rawbank.siop.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pièce jointe générée pour un gestionnaire : contenu et format
+ * 
+ * Le contenu est conservé dans un fichier temporaire (rendu par ExcelService) et
+ * joint aux messages par référence : il est relu au moment de l'écriture du message,
+ * sans être chargé en mémoire. Le fichier est supprimé par delete() une fois
+ * le message envoyé ou mis en file d'envoi.
+ * 
+ * Un rapport découpé pour respecter la taille maximale des messages
+ * produit plusieurs pièces jointes numérotées (part sur partCount)
+ */
+public class ReportAttachment {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReportAttachment.class);
+    
+    private final byte[] content;
+    private final Path file;
+    private final long size;
+    private final ReportFormat format;
+    private final int rowCount;
+    private final int part;
+    private final int partCount;
+    
+    public ReportAttachment(byte[] content, ReportFormat format) {
+        this.content = content;
+        this.file = null;
+        this.size = content != null ? content.length : 0;
+        this.format = format;
+        this.rowCount = 0;
+        this.part = 1;
+        this.partCount = 1;
+    }
+    
+    public ReportAttachment(Path file, ReportFormat format, int rowCount) {
+        this(file, format, rowCount, 1, 1);
+    }
+    
+    public ReportAttachment(Path file, ReportFormat format, int rowCount, int part, int partCount) {
+        this.content = null;
+        this.file = file;
+        this.format = format;
+        this.rowCount = rowCount;
+        this.part = part;
+        this.partCount = partCount;
+        try {
+            this.size = Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Pièce jointe introuvable : " + file, e);
+        }
+    }
+    
+    /**
+     * Source du contenu, relue à chaque écriture du message
+     * 
+     * @return Fichier temporaire, ou contenu en mémoire
+     */
+    public InputStreamSource getSource() {
+        return file != null ? new FileSystemResource(file) : new ByteArrayResource(content);
+    }
+    
+    /**
+     * Supprime le fichier temporaire ; sans effet pour un contenu en mémoire
+     */
+    public void delete() {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Impossible de supprimer la pièce jointe temporaire {}", file, e);
+        }
+    }
+    
+    /**
+     * Supprime les fichiers temporaires d'un rapport
+     * 
+     * @param attachments Parties du rapport, ou null
+     */
+    public static void deleteAll(Iterable<ReportAttachment> attachments) {
+        if (attachments != null) {
+            attachments.forEach(ReportAttachment::delete);
+        }
+    }
+    
+    public Path getFile() { return file; }
+    
+    public ReportFormat getFormat() { return format; }
+    
+    public long getSize() { return size; }
+    
+    /**
+     * Nombre d'opérations de cette partie, consécutives dans le rapport du gestionnaire
+     */
+    public int getRowCount() { return rowCount; }
+    
+    public int getPart() { return part; }
+    
+    public int getPartCount() { return partCount; }
+    
+    public boolean isPart() { return partCount > 1; }
+}
@@ -0,0 +1,95 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.SiopReportDto;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Modèle de colonnes commun à tous les formats de rapport
+ * 
+ * L'ordre de déclaration fixe l'ordre des colonnes (ordinal = index),
+ * partagé par les rendus xlsx et CSV
+ */
+enum ReportColumn {
+    
+    DATE("Date", Type.DATE, SiopReportDto::getDateCreation),
+    FICHIER("Fichier", Type.TEXT, SiopReportDto::getFilename),
+    CANAL("Canal", Type.TEXT, SiopReportDto::getCanal),
+    SERVICE("Service", Type.TEXT, SiopReportDto::getService),
+    TYPE_MESSAGE("Type Message", Type.TEXT, SiopReportDto::getTypeMsg),
+    BENEFICIAIRE("Bénéficiaire", Type.TEXT, SiopReportDto::getBeneficiaire),
+    MONTANT("Montant", SiopReportDto::getMontantTx, SiopReportDto::getMontantCents),
+    MOTIF("Motif", Type.TEXT, SiopReportDto::getMotif),
+    FRAIS("Frais", Type.TEXT, SiopReportDto::getFrais),
+    STATUS_MESSAGE("Status Message", Type.TEXT, SiopReportDto::getMsgStatus),
+    STATUS_LOT("Status Lot", Type.TEXT, SiopReportDto::getLotStatus),
+    STATUS_TX("Status TX", Type.TEXT, SiopReportDto::getTxtStatus),
+    ERREUR("Erreur", Type.TEXT, SiopReportDto::getErrorMsg);
+    
+    /**
+     * Nature de la valeur d'une colonne
+     * 
+     * TEXT : String, DATE : LocalDateTime, AMOUNT : BigDecimal, lu d'abord en centimes (cents)
+     */
+    enum Type { TEXT, DATE, AMOUNT }
+    
+    // Copie unique de values(), qui alloue un nouveau tableau à chaque appel
+    static final ReportColumn[] COLUMNS = values();
+    
+    private final String header;
+    private final Type type;
+    private final Function<SiopReportDto, Object> accessor;
+    private final ToLongFunction<SiopReportDto> cents;
+    
+    ReportColumn(String header, Type type, Function<SiopReportDto, Object> accessor) {
+        this.header = header;
+        this.type = type;
+        this.accessor = accessor;
+        this.cents = operation -> SiopReportDto.NO_CENTS;
+    }
+    
+    ReportColumn(String header, Function<SiopReportDto, Object> accessor, ToLongFunction<SiopReportDto> cents) {
+        this.header = header;
+        this.type = Type.AMOUNT;
+        this.accessor = accessor;
+        this.cents = cents;
+    }
+    
+    String getHeader() { return header; }
+    
+    Type getType() { return type; }
+    
+    /**
+     * Valeur de la colonne pour une opération
+     * 
+     * @param operation Opération SIOP
+     * @return Valeur brute, éventuellement null
+     */
+    Object value(SiopReportDto operation) {
+        return accessor.apply(operation);
+    }
+    
+    /**
+     * Montant de la colonne en centimes, lu sans créer de BigDecimal
+     * 
+     * @param operation Opération SIOP
+     * @return Centimes, ou SiopReportDto.NO_CENTS : le montant (absent ou hors capacité) est alors lu par value
+     */
+    long cents(SiopReportDto operation) {
+        return cents.applyAsLong(operation);
+    }
+    
+    /**
+     * Libellés des colonnes, dans l'ordre
+     * 
+     * @return Nouveau tableau des en-têtes
+     */
+    static String[] headers() {
+        String[] headers = new String[COLUMNS.length];
+        for (ReportColumn column : COLUMNS) {
+            headers[column.ordinal()] = column.header;
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,152 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.ManagerReportDto;
+import com.rawbank.siop.dto.SiopReportDto;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Rapport d'un gestionnaire en cours de téléchargement
+ * 
+ * Les opérations sont lues par paquets de taille fixe, canal après canal :
+ * les messages d'erreur de chaque paquet sont résolus en une fois, puis ses
+ * lignes sont transmises au rendu. Un seul paquet est en mémoire à la fois.
+ * 
+ * Le parcours n'est possible qu'une fois. Le curseur JDBC (ou l'instantané)
+ * du canal en cours reste ouvert jusqu'à close().
+ */
+public final class ReportDownload implements Iterable<SiopReportDto>, AutoCloseable {
+    
+    private final Iterator<String> canals;
+    private final Function<String, Stream<SiopReportDto>> reader;
+    private final Consumer<List<SiopReportDto>> resolver;
+    private final List<SiopReportDto> chunk;
+    private final int chunkSize;
+    
+    private Stream<SiopReportDto> stream;
+    private Iterator<SiopReportDto> rows;
+    private int position;
+    private int count;
+    private boolean iterated;
+    private ManagerReportDto report;
+    private Runnable onClose;
+    
+    /**
+     * @param canals Canaux à lire, dans l'ordre
+     * @param reader Ouvre la lecture des opérations d'un canal
+     * @param resolver Complète les messages d'erreur d'un paquet
+     * @param chunkSize Opérations par paquet
+     */
+    ReportDownload(List<String> canals, Function<String, Stream<SiopReportDto>> reader,
+                   Consumer<List<SiopReportDto>> resolver, int chunkSize) {
+        this.canals = canals.iterator();
+        this.reader = reader;
+        this.resolver = resolver;
+        this.chunkSize = chunkSize;
+        this.chunk = new ArrayList<>(chunkSize);
+    }
+    
+    /**
+     * Lit le premier paquet
+     * 
+     * @return Première opération, ou null si le gestionnaire n'en a aucune
+     */
+    SiopReportDto open() {
+        return nextChunk() ? chunk.get(0) : null;
+    }
+    
+    /**
+     * Parcours des opérations, premier paquet compris
+     * 
+     * @return Itérateur à usage unique
+     * @throws IllegalStateException Opérations déjà parcourues
+     */
+    @Override
+    public Iterator<SiopReportDto> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("Opérations du rapport déjà parcourues");
+        }
+        iterated = true;
+        
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return position < chunk.size() || nextChunk();
+            }
+            
+            @Override
+            public SiopReportDto next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                count++;
+                return chunk.get(position++);
+            }
+        };
+    }
+    
+    /**
+     * Remplace le paquet courant par les opérations suivantes
+     * 
+     * @return true si au moins une opération a été lue
+     */
+    private boolean nextChunk() {
+        chunk.clear();
+        position = 0;
+        while (chunk.size() < chunkSize) {
+            if (rows == null || !rows.hasNext()) {
+                closeStream();
+                if (!canals.hasNext()) {
+                    break;
+                }
+                stream = reader.apply(canals.next());
+                rows = stream.iterator();
+                continue;
+            }
+            chunk.add(rows.next());
+        }
+        
+        if (chunk.isEmpty()) {
+            return false;
+        }
+        resolver.accept(chunk);
+        return true;
+    }
+    
+    private void closeStream() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+            rows = null;
+        }
+    }
+    
+    @Override
+    public void close() {
+        closeStream();
+        if (onClose != null) {
+            Runnable action = onClose;
+            onClose = null;
+            action.run();
+        }
+    }
+    
+    /**
+     * Action exécutée une seule fois à la fermeture, après celle du curseur
+     */
+    void onClose(Runnable onClose) { this.onClose = onClose; }
+    
+    public ManagerReportDto getReport() { return report; }
+    void setReport(ManagerReportDto report) { this.report = report; }
+    
+    /**
+     * Nombre d'opérations transmises au rendu
+     */
+    public int getCount() { return count; }
+}
@@ -0,0 +1,150 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.ManagerReportDto;
+import com.rawbank.siop.dto.SiopReportDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Téléchargement à la demande du rapport d'un gestionnaire
+ * 
+ * Responsable de :
+ * - Lecture des opérations d'un gestionnaire pour une date (un canal ou tous), par paquets
+ * - Résolution des messages d'erreur de chaque paquet, comme pour l'envoi par email
+ * - Format du gestionnaire (siop.report) ou format demandé
+ * - Écriture du fichier directement dans le flux de réponse
+ * 
+ * Ni les opérations ni le fichier ne sont conservés entiers en mémoire : chaque paquet
+ * lu est écrit dans le flux au fur et à mesure (xlsx en flux SXSSF, csv ligne à ligne).
+ * Un téléchargement occupe une lecture à la demande (OnDemandReadLimiter) jusqu'à sa fermeture.
+ */
+@Service
+public class ReportDownloadService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReportDownloadService.class);
+    
+    private static final DateTimeFormatter QUERY_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    
+    @Autowired
+    private SiopQueryService siopQueryService;
+    
+    @Autowired
+    private ErrorMessageResolver errorMessageResolver;
+    
+    @Autowired
+    private ExcelService excelService;
+    
+    @Autowired
+    private OnDemandReadLimiter onDemandReadLimiter;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    /**
+     * Ouvre le rapport d'un gestionnaire pour une date, tel qu'il serait envoyé
+     * 
+     * Seul le premier paquet d'opérations est lu : il donne la fiche du gestionnaire
+     * et permet de répondre 404 avant d'écrire quoi que ce soit.
+     * Les paquets suivants sont lus pendant l'écriture (write).
+     * 
+     * @param date Date au format DD/MM/YYYY
+     * @param manager Code gestionnaire
+     * @param canal Canal, ou null pour tous les canaux configurés
+     * @return Rapport à écrire puis fermer, ou null si le gestionnaire n'a aucune opération
+     * @throws IllegalArgumentException Code gestionnaire absent
+     * @throws java.util.concurrent.RejectedExecutionException Trop de lectures à la demande en cours
+     */
+    public ReportDownload openReport(String date, String manager, String canal) {
+        LocalDate.parse(date, QUERY_DATE);
+        if (manager == null || manager.trim().isEmpty()) {
+            throw new IllegalArgumentException("Code gestionnaire obligatoire");
+        }
+        String gestCode = manager.trim();
+        List<String> canals = canal != null && !canal.trim().isEmpty()
+            ? List.of(canal.trim()) : siopProperties.getQuery().getCanals();
+        
+        // Un paquet par liste IN sur BKMOPERROR
+        int chunkSize = Math.max(1, siopProperties.getQuery().getErrorBatchSize());
+        onDemandReadLimiter.acquire();
+        ReportDownload download = new ReportDownload(canals,
+            currentCanal -> siopQueryService.streamOperations(date, currentCanal, gestCode),
+            errorMessageResolver::resolve, chunkSize);
+        download.onClose(onDemandReadLimiter::release);
+        
+        SiopReportDto first;
+        try {
+            first = download.open();
+        } catch (RuntimeException e) {
+            download.close();
+            throw e;
+        }
+        if (first == null) {
+            download.close();
+            return null;
+        }
+        
+        ManagerReportDto report = new ManagerReportDto(first.getEmailGest(), first.getNomGest(),
+            first.getPrenomGest(), canals.size() == 1 ? canals.get(0) : null, null);
+        report.setGestCode(gestCode);
+        download.setReport(report);
+        return download;
+    }
+    
+    /**
+     * Format du fichier téléchargé
+     * 
+     * @param report Rapport du gestionnaire
+     * @param format Code du format demandé, ou null pour le format du gestionnaire
+     * @return Format du fichier
+     * @throws IllegalArgumentException Format inconnu
+     */
+    public ReportFormat formatFor(ManagerReportDto report, String format) {
+        if (format != null && !format.trim().isEmpty()) {
+            return ReportFormat.fromCode(format);
+        }
+        return excelService.formatFor(report.getEmailGest());
+    }
+    
+    /**
+     * Nom du fichier téléchargé, identique à celui de la pièce jointe
+     * 
+     * @param report Rapport du gestionnaire
+     * @param date Date au format DD/MM/YYYY
+     * @param manager Code gestionnaire, ajouté à l'email ou seul si la fiche n'en a pas
+     * @param format Format du fichier
+     * @return Nom du fichier
+     */
+    public String filename(ManagerReportDto report, String date, String manager, ReportFormat format) {
+        if (report.getEmailGest() == null) {
+            return EmailService.reportFilename(manager.trim(), null, date, format);
+        }
+        return EmailService.reportFilename(report.getEmailGest(), manager.trim(), date, format);
+    }
+    
+    /**
+     * Écrit le rapport dans le flux de réponse, paquet par paquet
+     * 
+     * @param download Rapport ouvert par openReport (non fermé)
+     * @param format Format du fichier
+     * @param out Flux de sortie (non fermé)
+     * @throws IOException Erreur d'écriture, y compris une interruption côté client
+     */
+    public void write(ReportDownload download, ReportFormat format, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        excelService.writeReport(download, format, out);
+        
+        ManagerReportDto report = download.getReport();
+        report.setCount(download.getCount());
+        logger.info("Rapport de {} téléchargé : {} opération(s) en {} ({} ms)",
+            report.getEmailGest(), report.getCount(), format.getCode(), System.currentTimeMillis() - start);
+    }
+}
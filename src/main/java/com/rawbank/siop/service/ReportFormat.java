@@ -0,0 +1,66 @@
+package com.rawbank.siop.service;
+
+import java.util.Locale;
+
+/**
+ * Formats de pièce jointe disponibles pour les rapports SIOP
+ */
+public enum ReportFormat {
+    
+    XLSX("xlsx", "xlsx", "Excel", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+    CSV("csv", "csv", "CSV", "text/csv; charset=UTF-8"),
+    CSV_GZIP("csv-gzip", "csv.gz", "CSV compressé (gzip)", "application/gzip");
+    
+    private final String code;
+    private final String extension;
+    private final String label;
+    private final String contentType;
+    
+    ReportFormat(String code, String extension, String label, String contentType) {
+        this.code = code;
+        this.extension = extension;
+        this.label = label;
+        this.contentType = contentType;
+    }
+    
+    /**
+     * Code utilisé dans la configuration (siop.report.format)
+     */
+    public String getCode() { return code; }
+    
+    /**
+     * Extension du fichier, sans le point
+     */
+    public String getExtension() { return extension; }
+    
+    /**
+     * Libellé affiché dans le corps de l'email
+     */
+    public String getLabel() { return label; }
+    
+    public String getContentType() { return contentType; }
+    
+    /**
+     * Résout un format depuis sa valeur de configuration
+     * 
+     * Accepte le code ("csv-gzip"), le nom ("CSV_GZIP") ou l'extension ("csv.gz"),
+     * sans tenir compte de la casse
+     * 
+     * @param value Valeur configurée
+     * @return Format correspondant
+     * @throws IllegalArgumentException Format inconnu
+     */
+    public static ReportFormat fromCode(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Format de rapport non renseigné");
+        }
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (ReportFormat format : values()) {
+            if (format.code.equals(normalized) || format.extension.equals(normalized)
+                    || format.name().equalsIgnoreCase(normalized)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Format de rapport inconnu : " + value);
+    }
+}
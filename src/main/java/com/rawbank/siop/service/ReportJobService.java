@@ -0,0 +1,242 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.BackfillDateResultDto;
+import com.rawbank.siop.dto.ReportJobDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Service des jobs asynchrones
+ * 
+ * Responsable de :
+ * - Soumettre générations et rattrapages sur un pool dédié (siop.jobs.threads), hors threads HTTP
+ * - Refuser les soumissions au-delà de la file d'attente (siop.jobs.queue-capacity)
+ * - Exposer l'étape, les compteurs et la durée de chaque job
+ * - Oublier les jobs terminés après siop.jobs.retention-minutes
+ */
+@Service
+public class ReportJobService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReportJobService.class);
+    
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    
+    @Autowired
+    private SiopService siopService;
+    
+    @Autowired
+    private BackfillService backfillService;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    
+    private ThreadPoolExecutor jobExecutor;
+    
+    @PostConstruct
+    public void init() {
+        SiopProperties.Jobs config = siopProperties.getJobs();
+        int threads = Math.max(1, config.getThreads());
+        
+        // Politique par défaut : file pleine = RejectedExecutionException
+        jobExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+            new CustomizableThreadFactory("siop-job-"));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdown();
+    }
+    
+    /**
+     * Soumet la génération du rapport d'une date
+     * 
+     * @param queryDate Date de la requête (format DD/MM/YYYY)
+     * @param mode Journée complète ou incrémental
+     * @return Statut initial du job
+     * @throws RejectedExecutionException si la file des jobs est pleine
+     */
+    public ReportJobDto submitReport(String queryDate, ReportMode mode) {
+        LocalDate.parse(queryDate, DATE_FORMAT);
+        
+        ReportJob job = new ReportJob("REPORT", queryDate, queryDate);
+        ReportProgress progress = job.newProgress();
+        return submit(job, () -> siopService.generateAndSendReport(queryDate, mode, progress));
+    }
+    
+    /**
+     * Soumet le rattrapage d'une plage de dates
+     * 
+     * @param from Première date (format DD/MM/YYYY)
+     * @param to Dernière date incluse (format DD/MM/YYYY)
+     * @return Statut initial du job
+     * @throws IllegalArgumentException si la plage est invalide
+     * @throws RejectedExecutionException si la file des jobs est pleine
+     */
+    public ReportJobDto submitBackfill(String from, String to) {
+        backfillService.expandRange(from, to);
+        
+        ReportJob job = new ReportJob("BACKFILL", from, to);
+        return submit(job, () -> {
+            List<BackfillDateResultDto> results = backfillService.backfill(from, to, job::newProgress);
+            long failed = results.stream().filter(result -> !result.isSuccess()).count();
+            if (failed > 0) {
+                throw new RuntimeException(String.format("%d date(s) en échec", failed));
+            }
+        });
+    }
+    
+    /**
+     * Statut d'un job
+     * 
+     * @param jobId Identifiant du job
+     * @return Statut, vide si le job est inconnu ou expiré
+     */
+    public Optional<ReportJobDto> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(ReportJob::toDto);
+    }
+    
+    /**
+     * Statut de tous les jobs connus, les plus récents en premier
+     * 
+     * @return Statuts des jobs
+     */
+    public List<ReportJobDto> list() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong((ReportJob job) -> job.submittedAt).reversed())
+                .map(ReportJob::toDto)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Enregistre puis soumet un job au pool dédié
+     * 
+     * @param job Job à exécuter
+     * @param task Traitement du job
+     * @return Statut initial du job
+     */
+    private ReportJobDto submit(ReportJob job, Runnable task) {
+        purgeExpired();
+        
+        jobs.put(job.id, job);
+        try {
+            jobExecutor.execute(() -> job.run(task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            logger.warn("File des jobs pleine, job {} refusé", job.type);
+            throw e;
+        }
+        
+        logger.info("Job {} {} soumis ({} - {})", job.type, job.id, job.from, job.to);
+        return job.toDto();
+    }
+    
+    /**
+     * Supprime les jobs terminés depuis plus de siop.jobs.retention-minutes
+     */
+    private void purgeExpired() {
+        long limit = System.currentTimeMillis() 
+            - TimeUnit.MINUTES.toMillis(siopProperties.getJobs().getRetentionMinutes());
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt < limit);
+    }
+    
+    /**
+     * Job asynchrone et avancement de ses exécutions (une par date)
+     */
+    private static final class ReportJob {
+        
+        private final String id = UUID.randomUUID().toString();
+        private final String type;
+        private final String from;
+        private final String to;
+        private final long submittedAt = System.currentTimeMillis();
+        private final List<ReportProgress> progresses = new CopyOnWriteArrayList<>();
+        private volatile String status = "QUEUED";
+        private volatile Long startedAt;
+        private volatile Long finishedAt;
+        private volatile String error;
+        
+        private ReportJob(String type, String from, String to) {
+            this.type = type;
+            this.from = from;
+            this.to = to;
+        }
+        
+        private ReportProgress newProgress() {
+            ReportProgress progress = new ReportProgress();
+            progresses.add(progress);
+            return progress;
+        }
+        
+        private void run(Runnable task) {
+            startedAt = System.currentTimeMillis();
+            status = "RUNNING";
+            logger.info("Début du job {} {}", type, id);
+            try {
+                task.run();
+                status = "COMPLETED";
+                logger.info("Job {} {} terminé en {} ms", type, id, System.currentTimeMillis() - startedAt);
+            } catch (Exception e) {
+                error = e.getMessage();
+                status = "FAILED";
+                logger.error("Échec du job {} {}", type, id, e);
+            } finally {
+                finishedAt = System.currentTimeMillis();
+            }
+        }
+        
+        private ReportJobDto toDto() {
+            ReportJobDto dto = new ReportJobDto(id, type, status);
+            dto.setFrom(from);
+            dto.setTo(to);
+            dto.setSubmittedAt(submittedAt);
+            dto.setStartedAt(startedAt);
+            dto.setFinishedAt(finishedAt);
+            dto.setError(error);
+            
+            Long start = startedAt;
+            Long end = finishedAt;
+            dto.setElapsedMs(start == null ? 0 : (end != null ? end : System.currentTimeMillis()) - start);
+            
+            dto.setRowCount(progresses.stream().mapToInt(ReportProgress::getRowCount).sum());
+            dto.setManagersSubmitted(progresses.stream().mapToInt(ReportProgress::getManagersSubmitted).sum());
+            dto.setManagersSent(progresses.stream().mapToInt(ReportProgress::getManagersSent).sum());
+            dto.setManagersQueued(progresses.stream().mapToInt(ReportProgress::getManagersQueued).sum());
+            dto.setManagersFailed(progresses.stream().mapToInt(ReportProgress::getManagersFailed).sum());
+            
+            if ("BACKFILL".equals(type)) {
+                dto.setDatesTotal(progresses.size());
+                dto.setDatesCompleted((int) progresses.stream()
+                    .filter(progress -> progress.getStage() == ReportStage.COMPLETED 
+                        || progress.getStage() == ReportStage.FAILED)
+                    .count());
+            } else if (!progresses.isEmpty()) {
+                dto.setStage(progresses.get(0).getStage().name());
+            }
+            return dto;
+        }
+    }
+}
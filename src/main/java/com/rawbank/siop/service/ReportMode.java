@@ -0,0 +1,27 @@
+package com.rawbank.siop.service;
+
+/**
+ * Mode d'exécution du rapport SIOP
+ */
+public enum ReportMode {
+    
+    /** Toute la journée demandée, opérations déjà notifiées comprises (exécution manuelle, rattrapage) */
+    FULL(false),
+    
+    /** Toute la journée, sans les opérations déjà notifiées (passage planifié non incrémental) */
+    FULL_UNNOTIFIED(true),
+    
+    /** Uniquement les messages reçus depuis la dernière exécution réussie, sans les opérations déjà notifiées */
+    INCREMENTAL(true);
+    
+    private final boolean ledgerFiltered;
+    
+    ReportMode(boolean ledgerFiltered) {
+        this.ledgerFiltered = ledgerFiltered;
+    }
+    
+    /**
+     * Les opérations déjà notifiées sans changement de statut sont écartées (journal des notifications)
+     */
+    public boolean isLedgerFiltered() { return ledgerFiltered; }
+}
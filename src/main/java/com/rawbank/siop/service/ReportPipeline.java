@@ -0,0 +1,361 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.ManagerReportDto;
+import com.rawbank.siop.dto.SiopReportDto;
+import com.rawbank.siop.metrics.SiopMetrics;
+import com.rawbank.siop.store.EmailOutbox;
+import com.rawbank.siop.store.NotificationLedger;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipeline de génération et d'envoi des rapports par gestionnaire
+ * 
+ * Étapes :
+ * - Groupement : thread appelant, soumet chaque gestionnaire
+ * - Génération : pool dédié, messages d'erreur puis pièce jointe (xlsx ou CSV)
+ * - Envoi : mise en file persistante (EmailOutbox) sur le thread de génération,
+ *   ou envoi direct sur un pool dédié si siop.outbox.enabled est désactivé
+ * 
+ * Avec la file d'envoi, une exécution se termine dès que les rapports sont rendus ;
+ * les emails partent ensuite via OutboxSender, avec nouveaux essais.
+ * Les opérations sont consignées dans le journal des notifications une fois envoyées :
+ * ici pour un envoi direct, par OutboxSender pour un message mis en file.
+ * Les files entre étapes sont bornées : un producteur trop rapide
+ * est bloqué jusqu'à ce que l'étape suivante libère de la place.
+ * Un échec pour un gestionnaire n'interrompt pas les autres.
+ */
+@Component
+public class ReportPipeline {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReportPipeline.class);
+    
+    @Autowired
+    private ErrorMessageResolver errorMessageResolver;
+    
+    @Autowired
+    private ExcelService excelService;
+    
+    @Autowired
+    private EmailService emailService;
+    
+    @Autowired
+    private EmailOutbox emailOutbox;
+    
+    @Autowired
+    private NotificationLedger notificationLedger;
+    
+    @Autowired
+    private SiopMetrics siopMetrics;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private ThreadPoolExecutor renderExecutor;
+    private ThreadPoolExecutor sendExecutor;
+    
+    @PostConstruct
+    public void init() {
+        SiopProperties.Pipeline pipeline = siopProperties.getPipeline();
+        renderExecutor = createExecutor("siop-render-", pipeline.getRenderThreads(), pipeline.getQueueCapacity());
+        sendExecutor = createExecutor("siop-send-", pipeline.getSendThreads(), pipeline.getQueueCapacity());
+        
+        logger.info("Pipeline SIOP initialisé ({} thread(s) de génération, {} thread(s) d'envoi)",
+            pipeline.getRenderThreads(), pipeline.getSendThreads());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        renderExecutor.shutdown();
+        sendExecutor.shutdown();
+    }
+    
+    /**
+     * Démarre une exécution du pipeline pour une date
+     * 
+     * @param queryDate Date de la requête
+     * @param businessDate Date métier, sous laquelle les opérations envoyées sont consignées
+     * @param highWaterKey Canal du marqueur incrémental, reculé si un message passe en lettre morte ;
+     *                     null hors exécution incrémentale
+     * @return Exécution à alimenter puis à attendre
+     */
+    public Run start(String queryDate, LocalDate businessDate, String highWaterKey) {
+        return new Run(queryDate, businessDate, highWaterKey);
+    }
+    
+    /**
+     * Crée un pool à taille fixe avec file bornée
+     * 
+     * @param prefix Préfixe des noms de threads
+     * @param threads Nombre de threads
+     * @param queueCapacity Capacité de la file
+     * @return Pool de threads
+     */
+    private ThreadPoolExecutor createExecutor(String prefix, int threads, int queueCapacity) {
+        int poolSize = Math.max(1, threads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            poolSize, poolSize, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            new CustomizableThreadFactory(prefix),
+            blockWhenFull());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    /**
+     * Politique de rejet bloquante : attend une place dans la file
+     * 
+     * @return Politique de rejet
+     */
+    private static RejectedExecutionHandler blockWhenFull() {
+        return (task, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Pipeline SIOP arrêté");
+            }
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Attente interrompue", e);
+            }
+        };
+    }
+    
+    /**
+     * Exécution du pipeline pour une date donnée
+     */
+    public class Run {
+        
+        private final String queryDate;
+        private final LocalDate businessDate;
+        private final String highWaterKey;
+        private final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        private final AtomicInteger sent = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final Map<String, AtomicInteger> failedByCanal = new ConcurrentHashMap<>();
+        
+        private Run(String queryDate, LocalDate businessDate, String highWaterKey) {
+            this.queryDate = queryDate;
+            this.businessDate = businessDate;
+            this.highWaterKey = highWaterKey;
+        }
+        
+        /**
+         * Soumet le rapport d'un gestionnaire aux étapes génération puis envoi
+         * 
+         * Bloque si la file de génération est pleine
+         * 
+         * @param managerReport Rapport du gestionnaire
+         */
+        public void submit(ManagerReportDto managerReport) {
+            try {
+                CompletableFuture<List<ReportAttachment>> rendered = CompletableFuture
+                    .supplyAsync(() -> render(managerReport), renderExecutor);
+                CompletableFuture<Void> task = siopProperties.getOutbox().isEnabled()
+                    ? rendered.thenAccept(attachments -> enqueue(managerReport, attachments))
+                    : rendered.thenAcceptAsync(attachments -> send(managerReport, attachments), sendExecutor);
+                
+                synchronized (tasks) {
+                    tasks.add(task);
+                }
+            } catch (RejectedExecutionException e) {
+                recordFailure(managerReport);
+                logger.error("Impossible de soumettre le rapport de {}", managerReport.getEmailGest(), e);
+            }
+        }
+        
+        /**
+         * Attend la fin de toutes les générations et de tous les envois ou mises en file
+         */
+        public void awaitCompletion() {
+            CompletableFuture<?>[] pending;
+            synchronized (tasks) {
+                pending = tasks.toArray(new CompletableFuture<?>[0]);
+            }
+            CompletableFuture.allOf(pending).join();
+            
+            logger.info("Pipeline terminé pour le {} : {} rapport(s) envoyé(s), {} mis en file d'envoi, {} échec(s)",
+                queryDate, sent.get(), queued.get(), failed.get());
+        }
+        
+        public int getSent() { return sent.get(); }
+        
+        public int getQueued() { return queued.get(); }
+        
+        public int getFailed() { return failed.get(); }
+        
+        /**
+         * Nombre d'échecs pour un canal
+         * 
+         * @param canal Canal des opérations
+         * @return Nombre de rapports non générés, non envoyés ou non mis en file
+         */
+        public int getFailed(String canal) {
+            AtomicInteger canalFailures = failedByCanal.get(canal.trim());
+            return canalFailures != null ? canalFailures.get() : 0;
+        }
+        
+        private void recordFailure(ManagerReportDto managerReport) {
+            failed.incrementAndGet();
+            if (managerReport.getCanal() != null) {
+                failedByCanal.computeIfAbsent(managerReport.getCanal().trim(), canal -> new AtomicInteger())
+                    .incrementAndGet();
+            }
+        }
+        
+        /**
+         * Étape de génération de la pièce jointe
+         * 
+         * Les messages d'erreur BKMOPERROR sont résolus ici, en parallèle
+         * sur les threads de génération, et uniquement pour les opérations à envoyer
+         * (ceux des opérations d'un instantané sont déjà résolus).
+         * Le rapport est découpé en parties si la taille des messages est limitée.
+         * 
+         * @param managerReport Rapport du gestionnaire
+         * @return Parties dans le format du gestionnaire, ou null en cas d'échec
+         */
+        private List<ReportAttachment> render(ManagerReportDto managerReport) {
+            try {
+                errorMessageResolver.resolve(managerReport.getOperations());
+                long budget = emailService.getAttachmentBudget();
+                List<ReportAttachment> attachments = siopMetrics.excelTimer(managerReport.getCanal())
+                    .recordCallable(() -> excelService.generateReportParts(
+                        managerReport.getOperations(), managerReport.getEmailGest(), budget));
+                for (ReportAttachment attachment : attachments) {
+                    siopMetrics.countAttachmentBytes(managerReport.getCanal(), attachment.getSize());
+                }
+                return attachments;
+            } catch (Exception e) {
+                recordFailure(managerReport);
+                siopMetrics.countFailure(managerReport.getCanal(), SiopMetrics.STAGE_RENDER);
+                logger.error("Erreur lors de la génération du rapport pour {}",
+                    managerReport.getEmailGest(), e);
+                return null;
+            }
+        }
+        
+        /**
+         * Étape d'envoi de l'email
+         * 
+         * Les fichiers des pièces jointes sont supprimés après l'envoi, réussi ou non
+         * 
+         * @param managerReport Rapport du gestionnaire
+         * @param attachments Parties générées
+         */
+        private void send(ManagerReportDto managerReport, List<ReportAttachment> attachments) {
+            if (attachments == null) {
+                return;
+            }
+            
+            try {
+                Timer.Sample sample = Timer.start();
+                emailService.sendEmailToManager(managerReport, queryDate, attachments);
+                sample.stop(siopMetrics.emailTimer(managerReport.getCanal()));
+                sent.incrementAndGet();
+                
+                logger.info("Email envoyé à {} ({} opérations)", 
+                    managerReport.getEmailGest(), managerReport.getCount());
+                    
+            } catch (Exception e) {
+                recordFailure(managerReport);
+                siopMetrics.countFailure(managerReport.getCanal(), SiopMetrics.STAGE_SEND);
+                logger.error("Erreur lors de l'envoi de l'email à {}", 
+                    managerReport.getEmailGest(), e);
+                return;
+            } finally {
+                ReportAttachment.deleteAll(attachments);
+            }
+            
+            try {
+                notificationLedger.record(businessDate, managerReport.getOperations());
+            } catch (Exception e) {
+                logger.error("Erreur lors du suivi de l'envoi à {}", managerReport.getEmailGest(), e);
+            }
+        }
+        
+        /**
+         * Étape de mise en file d'envoi, sur le thread de génération
+         * 
+         * Les messages sont rendus puis conservés dans la file persistante :
+         * un échec SMTP ultérieur est réessayé par OutboxSender sans nouvelle génération.
+         * Les fichiers des pièces jointes, recopiés dans les messages, sont ensuite supprimés.
+         * Chaque message est inscrit avec ses opérations, consignées à son envoi.
+         * 
+         * @param managerReport Rapport du gestionnaire
+         * @param attachments Parties générées
+         */
+        private void enqueue(ManagerReportDto managerReport, List<ReportAttachment> attachments) {
+            if (attachments == null) {
+                return;
+            }
+            
+            try {
+                List<List<ReportAttachment>> groups = emailService.groupIntoMessages(attachments);
+                List<MimeMessage> messages = emailService.createGroupedMessages(managerReport, queryDate, groups);
+                EmailOutbox.Notification notification = new EmailOutbox.Notification(businessDate, highWaterKey,
+                    operationsPerMessage(managerReport.getOperations(), groups));
+                emailOutbox.enqueue(managerReport.getEmailGest(), managerReport.getCanal(), queryDate, messages,
+                    notification);
+                notificationLedger.markInFlight(managerReport.getOperations());
+                queued.incrementAndGet();
+                
+                logger.info("Rapport de {} mis en file d'envoi ({} message(s), {} opérations)",
+                    managerReport.getEmailGest(), messages.size(), managerReport.getCount());
+                    
+            } catch (Exception e) {
+                recordFailure(managerReport);
+                siopMetrics.countFailure(managerReport.getCanal(), SiopMetrics.STAGE_OUTBOX);
+                logger.error("Erreur lors de la mise en file de l'email de {}",
+                    managerReport.getEmailGest(), e);
+                return;
+            } finally {
+                ReportAttachment.deleteAll(attachments);
+            }
+        }
+        
+        /**
+         * Répartit les opérations d'un rapport entre ses messages
+         * 
+         * Les parties contiennent des opérations consécutives : chaque message
+         * reçoit celles de ses parties, dans l'ordre
+         * 
+         * @param operations Opérations du rapport
+         * @param groups Parties de chaque message
+         * @return Opérations de chaque message
+         */
+        private List<List<SiopReportDto>> operationsPerMessage(List<SiopReportDto> operations,
+                                                               List<List<ReportAttachment>> groups) {
+            List<List<SiopReportDto>> slices = new ArrayList<>(groups.size());
+            int from = 0;
+            for (int i = 0; i < groups.size(); i++) {
+                int rows = groups.get(i).stream().mapToInt(ReportAttachment::getRowCount).sum();
+                int to = i == groups.size() - 1 ? operations.size() : Math.min(operations.size(), from + rows);
+                slices.add(operations.subList(from, to));
+                from = to;
+            }
+            return slices;
+        }
+    }
+}
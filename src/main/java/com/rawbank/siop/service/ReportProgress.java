@@ -0,0 +1,80 @@
+package com.rawbank.siop.service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Avancement d'une exécution du rapport SIOP
+ * 
+ * Mis à jour par SiopService pendant l'exécution et lu
+ * à tout moment depuis un autre thread (suivi des jobs)
+ * 
+ * Les compteurs sont ceux des exécutions de canal suivies (Canal) : une demande
+ * regroupée avec l'exécution en cours d'un canal (RunCoordinator) suit l'avancement
+ * de cette exécution plutôt que des compteurs restés à zéro.
+ */
+public class ReportProgress {
+    
+    private volatile ReportStage stage = ReportStage.QUEUED;
+    private final List<Canal> canals = new CopyOnWriteArrayList<>();
+    
+    public ReportStage getStage() { return stage; }
+    public void setStage(ReportStage stage) { this.stage = stage; }
+    
+    public int getRowCount() {
+        return canals.stream().mapToInt(canal -> canal.rowCount.get()).sum();
+    }
+    
+    public int getManagersSubmitted() {
+        return canals.stream().mapToInt(canal -> canal.managersSubmitted.get()).sum();
+    }
+    
+    public int getManagersSent() {
+        return runs().mapToInt(ReportPipeline.Run::getSent).sum();
+    }
+    
+    public int getManagersQueued() {
+        return runs().mapToInt(ReportPipeline.Run::getQueued).sum();
+    }
+    
+    public int getManagersFailed() {
+        return runs().mapToInt(ReportPipeline.Run::getFailed).sum();
+    }
+    
+    /**
+     * Suit l'avancement d'une exécution de canal, propre ou rejointe
+     * 
+     * @param canal Avancement du canal
+     */
+    void track(Canal canal) {
+        canals.add(canal);
+    }
+    
+    private Stream<ReportPipeline.Run> runs() {
+        return canals.stream().map(canal -> canal.run).filter(Objects::nonNull);
+    }
+    
+    /**
+     * Avancement de l'exécution d'un canal, partagé avec les demandes qui la rejoignent
+     */
+    static final class Canal {
+        
+        private final AtomicInteger rowCount = new AtomicInteger();
+        private final AtomicInteger managersSubmitted = new AtomicInteger();
+        private volatile ReportPipeline.Run run;
+        
+        void addRows(int rows) { rowCount.addAndGet(rows); }
+        
+        void managerSubmitted() { managersSubmitted.incrementAndGet(); }
+        
+        /**
+         * Rattache l'exécution du pipeline du canal, dont les compteurs sont suivis
+         * 
+         * @param run Exécution du pipeline
+         */
+        void attach(ReportPipeline.Run run) { this.run = run; }
+    }
+}
@@ -0,0 +1,69 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.SiopReportDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Rendu d'une liste d'opérations SIOP dans un format de fichier
+ * 
+ * Les implémentations sont des beans Spring, sélectionnés par
+ * ExcelService selon le format configuré (global ou par destinataire)
+ */
+public interface ReportRenderer {
+    
+    /**
+     * Format produit par ce rendu
+     * 
+     * @return Format du fichier
+     */
+    ReportFormat format();
+    
+    /**
+     * Écrit le rapport dans un flux
+     * 
+     * Les opérations sont parcourues une seule fois, dans l'ordre :
+     * elles peuvent être lues au fil de l'écriture (téléchargement par paquets).
+     * Le flux n'est pas fermé : il reste à la charge de l'appelant
+     * 
+     * @param operations Opérations SIOP
+     * @param out Flux de sortie
+     * @throws IOException Erreur d'écriture
+     */
+    void render(Iterable<SiopReportDto> operations, OutputStream out) throws IOException;
+    
+    /**
+     * Écrit une partie du rapport sous un budget de taille
+     * 
+     * Les opérations sont écrites à partir de from tant que le fichier reste sous maxBytes :
+     * la taille est suivie pendant l'écriture, sans rendu préalable du rapport complet.
+     * La première opération est toujours écrite, même seule plus grande que le budget.
+     * Le flux n'est pas fermé
+     * 
+     * @param operations Opérations SIOP du rapport complet
+     * @param from Index de la première opération de la partie
+     * @param out Flux de sortie
+     * @param maxBytes Taille maximale de la partie en octets
+     * @return Index de la première opération non écrite, début de la partie suivante
+     * @throws IOException Erreur d'écriture
+     */
+    int renderPart(List<SiopReportDto> operations, int from, OutputStream out, long maxBytes) throws IOException;
+    
+    /**
+     * Produit le rapport en mémoire
+     * 
+     * @param operations Liste des opérations SIOP
+     * @return Contenu du fichier
+     */
+    default byte[] render(List<SiopReportDto> operations) {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            render(operations, out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur lors de la génération du rapport " + format().getCode(), e);
+        }
+    }
+}
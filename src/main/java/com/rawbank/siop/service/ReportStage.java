@@ -0,0 +1,22 @@
+package com.rawbank.siop.service;
+
+/**
+ * Étape d'une exécution du rapport SIOP
+ */
+public enum ReportStage {
+    
+    /** En attente d'un thread d'exécution */
+    QUEUED,
+    
+    /** Requêtes Oracle et groupement par gestionnaire */
+    EXTRACTION,
+    
+    /** Fin des générations Excel et des envois */
+    DELIVERY,
+    
+    /** Exécution terminée avec succès */
+    COMPLETED,
+    
+    /** Exécution interrompue par une erreur */
+    FAILED
+}
@@ -0,0 +1,74 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.directory.ManagerDirectory;
+import com.rawbank.siop.dto.SiopReportDto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Regroupement par email des groupes de gestionnaires lus en flux
+ * 
+ * Les lignes arrivent groupées par code gestionnaire (ManagerGroupingHandler). Un groupe
+ * dont l'email n'appartient qu'à un code passe immédiatement ; ceux d'un email partagé
+ * par plusieurs codes (ManagerDirectory.findSharedEmails) sont retenus jusqu'à finish(),
+ * puis émis en un seul groupe par email, dans l'ordre de leur premier code.
+ * Seules les lignes des emails partagés restent en mémoire jusqu'à la fin de la lecture.
+ */
+public class SharedEmailMerger implements Consumer<List<SiopReportDto>> {
+    
+    private final Set<String> sharedEmails;
+    private final Consumer<List<SiopReportDto>> groupConsumer;
+    
+    private final Map<String, List<SiopReportDto>> heldGroups = new LinkedHashMap<>();
+    private int groupCount;
+    
+    /**
+     * @param sharedEmails Emails normalisés rattachés à plusieurs codes
+     * @param groupConsumer Reçoit les opérations de chaque email
+     */
+    public SharedEmailMerger(Set<String> sharedEmails, Consumer<List<SiopReportDto>> groupConsumer) {
+        this.sharedEmails = sharedEmails;
+        this.groupConsumer = groupConsumer;
+    }
+    
+    /**
+     * Transmet ou retient le groupe d'un code gestionnaire, complété par l'annuaire
+     * 
+     * @param group Opérations d'un même code, avec email
+     */
+    @Override
+    public void accept(List<SiopReportDto> group) {
+        String email = ManagerDirectory.normalizeEmail(group.get(0).getEmailGest());
+        if (!sharedEmails.contains(email)) {
+            emit(group);
+            return;
+        }
+        heldGroups.computeIfAbsent(email, key -> new ArrayList<>()).addAll(group);
+    }
+    
+    /**
+     * Émet les groupes retenus, un par email partagé
+     * 
+     * À appeler une fois la lecture terminée
+     */
+    public void finish() {
+        List<List<SiopReportDto>> groups = new ArrayList<>(heldGroups.values());
+        heldGroups.clear();
+        groups.forEach(this::emit);
+    }
+    
+    /**
+     * Nombre de groupes émis, un par email
+     */
+    public int getGroupCount() { return groupCount; }
+    
+    private void emit(List<SiopReportDto> group) {
+        groupCount++;
+        groupConsumer.accept(group);
+    }
+}
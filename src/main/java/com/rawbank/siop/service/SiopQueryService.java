@@ -0,0 +1,389 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.cluster.ShardAssignment;
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.directory.ManagerDirectory;
+import com.rawbank.siop.dto.SiopReportDto;
+import com.rawbank.siop.metrics.SiopMetrics;
+import com.rawbank.siop.store.SnapshotStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Service d'accès aux données SIOP
+ * 
+ * Responsable de :
+ * - Chargement unique du script SQL (siop.query.sql-file)
+ * - Exécution paramétrée de la requête (variables de liaison Oracle)
+ * - Mapping des lignes en SiopReportDto (un SiopReportRowMapper par requête)
+ * - Fiche du gestionnaire complétée par l'annuaire en cache (ManagerDirectory)
+ * - Lecture en flux groupée par gestionnaire
+ * - Filtrage incrémental sur BKMOPMSG.incomtime
+ * - Filtrage sur la part des gestionnaires de l'instance
+ * - Lecture des journées clôturées depuis leur instantané (SnapshotStore)
+ * - Lecture à la demande des opérations d'un gestionnaire (aperçu), paginée par clé
+ * 
+ * Le texte de la requête ne varie jamais : Oracle partage le curseur
+ * entre les exécutions au lieu de réanalyser une requête par date.
+ */
+@Service
+public class SiopQueryService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SiopQueryService.class);
+    
+    private static final String SQL_LOCATION = "classpath:sql/";
+    
+    // Borne basse utilisée en mode journée complète (le filtre incomtime est alors neutralisé)
+    private static final Timestamp NO_HIGH_WATER = Timestamp.valueOf("1900-01-01 00:00:00");
+    
+    // Code lié quand tous les gestionnaires sont lus (le filtre gestionnaire est alors neutralisé)
+    private static final String ALL_MANAGERS = "*";
+    
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    
+    @Autowired
+    private ResourceLoader resourceLoader;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    @Autowired
+    private SiopMetrics siopMetrics;
+    
+    @Autowired
+    private ManagerDirectory managerDirectory;
+    
+    @Autowired
+    private SnapshotStore snapshotStore;
+    
+    @Autowired
+    private ErrorMessageResolver errorMessageResolver;
+    
+    private String sqlQuery;
+    
+    @PostConstruct
+    public void init() {
+        sqlQuery = loadSqlQuery(siopProperties.getQuery().getSqlFile());
+    }
+    
+    /**
+     * Exécute la requête SQL SIOP
+     * 
+     * @param queryDate Date de la requête (format DD/MM/YYYY)
+     * @param canal Canal des opérations
+     * @param sinceIncomtime Dernier incomtime traité, ou null pour toute la journée
+     * @param shard Part des gestionnaires à lire
+     * @return Liste des opérations SIOP
+     */
+    public List<SiopReportDto> findOperations(String queryDate, String canal, LocalDateTime sinceIncomtime,
+                                              ShardAssignment shard) {
+        if (snapshotStore.exists(queryDate, canal, shard)) {
+            List<SiopReportDto> operations = new ArrayList<>();
+            readSnapshot(queryDate, canal, sinceIncomtime, shard, operations::add);
+            managerDirectory.enrich(operations);
+            return operations;
+        }
+        
+        logger.debug("Exécution de la requête SQL pour la date : {} (canal {})", queryDate, canal);
+        
+        TimedRowMapper<SiopReportDto> timedMapper = new TimedRowMapper<>(new SiopReportRowMapper());
+        long start = System.nanoTime();
+        try {
+            List<SiopReportDto> operations = namedParameterJdbcTemplate.query(sqlQuery, 
+                buildParameters(queryDate, canal, sinceIncomtime, shard, null, null, false), timedMapper);
+            
+            siopMetrics.recordQuery(canal, System.nanoTime() - start);
+            siopMetrics.recordRowMapping(canal, timedMapper.getNanos());
+            siopMetrics.countRows(canal, operations.size());
+            
+            if (isSnapshotCandidate(queryDate, sinceIncomtime)) {
+                try (SnapshotStore.Writer writer =
+                         snapshotStore.openWriter(queryDate, canal, shard, errorMessageResolver::resolve)) {
+                    operations.forEach(writer::write);
+                    writer.commit();
+                }
+            }
+            
+            managerDirectory.enrich(operations);
+            return operations;
+            
+        } catch (Exception e) {
+            siopMetrics.countFailure(canal, SiopMetrics.STAGE_EXTRACTION);
+            logger.error("Erreur lors de l'exécution de la requête SQL", e);
+            throw new RuntimeException("Erreur lors de l'exécution de la requête", e);
+        }
+    }
+    
+    /**
+     * Exécute la requête SQL SIOP en flux, groupée par gestionnaire
+     * 
+     * Les lignes sont lues par paquets (siop.query.fetch-size) et chaque groupe
+     * est transmis dès que sa dernière ligne est lue. Le résultat complet
+     * de la journée n'est jamais chargé en mémoire.
+     * 
+     * Chaque groupe est complété par l'annuaire des gestionnaires ; un groupe
+     * dont le gestionnaire n'a pas d'email est ignoré. Les codes qui partagent
+     * un email sont regroupés en un seul groupe, émis en fin de lecture (SharedEmailMerger).
+     * 
+     * Une journée clôturée est relue depuis son instantané s'il existe ; sinon
+     * une lecture complète en écrit un au fil des lignes, publié en fin de requête.
+     * 
+     * La durée de requête mesurée exclut le temps passé dans groupConsumer
+     * (attente du pipeline), qui ne dépend pas d'Oracle.
+     * 
+     * @param queryDate Date de la requête (format DD/MM/YYYY)
+     * @param canal Canal des opérations
+     * @param sinceIncomtime Dernier incomtime traité, ou null pour toute la journée
+     * @param shard Part des gestionnaires à lire
+     * @param groupConsumer Reçoit les opérations de chaque email de gestionnaire
+     * @return Résumé de l'extraction
+     */
+    public ExtractionSummary streamManagerGroups(String queryDate, String canal, LocalDateTime sinceIncomtime,
+                                                 ShardAssignment shard, Consumer<List<SiopReportDto>> groupConsumer) {
+        logger.debug("Exécution en flux de la requête SQL pour la date : {} (canal {})", queryDate, canal);
+        
+        boolean fromSnapshot = snapshotStore.exists(queryDate, canal, shard);
+        SnapshotStore.Writer writer = !fromSnapshot && isSnapshotCandidate(queryDate, sinceIncomtime)
+            ? snapshotStore.openWriter(queryDate, canal, shard, errorMessageResolver::resolve) : null;
+        
+        long[] consumerNanos = new long[1];
+        SharedEmailMerger merger = new SharedEmailMerger(managerDirectory.findSharedEmails(), group -> {
+            long consumerStart = System.nanoTime();
+            try {
+                groupConsumer.accept(group);
+            } finally {
+                consumerNanos[0] += System.nanoTime() - consumerStart;
+            }
+        });
+        Consumer<List<SiopReportDto>> enrichedConsumer = group -> {
+            if (writer != null) {
+                // Lignes du groupe écrites dans l'instantané, avec leurs messages d'erreur
+                writer.flush();
+            }
+            managerDirectory.enrich(group);
+            if (!hasEmail(group.get(0))) {
+                logger.debug("Gestionnaire {} sans email, {} opération(s) ignorée(s)",
+                    group.get(0).getGestCode(), group.size());
+                return;
+            }
+            merger.accept(group);
+        };
+        
+        if (fromSnapshot) {
+            ManagerGroupingHandler handler = new ManagerGroupingHandler(new SiopReportRowMapper(), enrichedConsumer);
+            readSnapshot(queryDate, canal, sinceIncomtime, shard, handler::accept);
+            handler.finish();
+            merger.finish();
+            return new ExtractionSummary(handler.getRowCount(), merger.getGroupCount(), handler.getMaxIncomTime());
+        }
+        
+        TimedRowMapper<SiopReportDto> timedMapper = new TimedRowMapper<>(new SiopReportRowMapper());
+        RowMapper<SiopReportDto> mapper = writer == null ? timedMapper : (rs, rowNum) -> {
+            SiopReportDto operation = timedMapper.mapRow(rs, rowNum);
+            writer.write(operation);
+            return operation;
+        };
+        ManagerGroupingHandler handler = new ManagerGroupingHandler(mapper, enrichedConsumer);
+        
+        long start = System.nanoTime();
+        try {
+            namedParameterJdbcTemplate.query(sqlQuery, 
+                buildParameters(queryDate, canal, sinceIncomtime, shard, null, null, false), handler);
+            handler.finish();
+            merger.finish();
+            if (writer != null) {
+                writer.commit();
+            }
+            
+            siopMetrics.recordQuery(canal, System.nanoTime() - start - consumerNanos[0]);
+            siopMetrics.recordRowMapping(canal, timedMapper.getNanos());
+            siopMetrics.countRows(canal, handler.getRowCount());
+            return new ExtractionSummary(handler.getRowCount(), merger.getGroupCount(), handler.getMaxIncomTime());
+            
+        } catch (Exception e) {
+            siopMetrics.countFailure(canal, SiopMetrics.STAGE_EXTRACTION);
+            logger.error("Erreur lors de l'exécution de la requête SQL", e);
+            throw new RuntimeException("Erreur lors de l'exécution de la requête", e);
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+    
+    /**
+     * Lit à la demande les opérations d'une journée, toutes parts confondues
+     * 
+     * Les lignes arrivent dans l'ordre de la requête, complétées par l'annuaire ;
+     * le curseur JDBC (ou l'instantané) reste ouvert jusqu'à la fermeture du flux,
+     * qui peut être abandonné dès que l'appelant a ce qu'il lui faut.
+     * Aucun instantané n'est écrit : la lecture peut s'arrêter avant la fin.
+     * Les opérations sans code gestionnaire, qui n'ont pas de destinataire, ne sont pas lues.
+     * 
+     * @param queryDate Date de la requête (format DD/MM/YYYY)
+     * @param canal Canal des opérations
+     * @param gestCode Code du seul gestionnaire à lire, ou null pour tous
+     * @return Flux des opérations, à fermer après usage
+     */
+    public Stream<SiopReportDto> streamOperations(String queryDate, String canal, String gestCode) {
+        return streamOperations(queryDate, canal, gestCode, null);
+    }
+    
+    /**
+     * Lit à la demande les opérations d'une journée situées après un curseur d'aperçu
+     * 
+     * Le curseur est lié à la requête (pagination par clé) : Oracle ne renvoie
+     * que les lignes suivantes, sans relire ni transférer les pages précédentes.
+     * L'instantané d'une journée clôturée est filtré de la même façon.
+     * 
+     * @param queryDate Date de la requête (format DD/MM/YYYY)
+     * @param canal Canal des opérations, celui du curseur s'il y en a un
+     * @param gestCode Code du seul gestionnaire à lire, ou null pour tous
+     * @param after Dernière opération déjà lue, ou null pour lire depuis le début
+     * @return Flux des opérations, à fermer après usage
+     */
+    Stream<SiopReportDto> streamOperations(String queryDate, String canal, String gestCode, PreviewCursor after) {
+        Stream<SiopReportDto> operations;
+        if (snapshotStore.exists(queryDate, canal, ShardAssignment.SINGLE)) {
+            operations = snapshotStore.stream(queryDate, canal, ShardAssignment.SINGLE)
+                .filter(operation -> operation.getGestCode() != null);
+            if (gestCode != null) {
+                operations = operations.filter(operation -> gestCode.equals(operation.getGestCode()));
+            }
+            if (after != null) {
+                operations = operations.filter(after::precedes);
+            }
+        } else {
+            logger.debug("Lecture à la demande pour la date : {} (canal {}, gestionnaire {})",
+                queryDate, canal, gestCode != null ? gestCode : "tous");
+            operations = namedParameterJdbcTemplate.queryForStream(sqlQuery,
+                buildParameters(queryDate, canal, null, ShardAssignment.SINGLE, gestCode, after, true),
+                new SiopReportRowMapper());
+        }
+        
+        return operations.map(operation -> {
+            managerDirectory.enrich(List.of(operation));
+            return operation;
+        });
+    }
+    
+    /**
+     * Relit les opérations d'une journée clôturée depuis son instantané
+     * 
+     * Le filtre incrémental de la requête (incomtime strictement postérieur) est appliqué ici
+     * 
+     * @param queryDate Date de la requête
+     * @param canal Canal des opérations
+     * @param sinceIncomtime Dernier incomtime traité, ou null pour toute la journée
+     * @param shard Part des gestionnaires
+     * @param consumer Reçoit les opérations retenues, dans l'ordre de la requête
+     */
+    private void readSnapshot(String queryDate, String canal, LocalDateTime sinceIncomtime,
+                              ShardAssignment shard, Consumer<SiopReportDto> consumer) {
+        int[] rows = new int[1];
+        snapshotStore.read(queryDate, canal, shard, operation -> {
+            if (sinceIncomtime == null
+                    || (operation.getIncomTime() != null && operation.getIncomTime().isAfter(sinceIncomtime))) {
+                rows[0]++;
+                consumer.accept(operation);
+            }
+        });
+        
+        siopMetrics.countRows(canal, rows[0]);
+        logger.info("{} opération(s) du {} (canal {}) relue(s) depuis l'instantané",
+            rows[0], queryDate, canal);
+    }
+    
+    /**
+     * Une lecture complète d'une journée clôturée peut être figée
+     */
+    private boolean isSnapshotCandidate(String queryDate, LocalDateTime sinceIncomtime) {
+        return sinceIncomtime == null && snapshotStore.isClosed(queryDate);
+    }
+    
+    private static boolean hasEmail(SiopReportDto operation) {
+        return operation.getEmailGest() != null && !operation.getEmailGest().trim().isEmpty();
+    }
+    
+    /**
+     * Construit les variables de liaison de la requête
+     * 
+     * @param queryDate Date de la requête
+     * @param canal Canal des opérations
+     * @param sinceIncomtime Dernier incomtime traité, ou null pour toute la journée
+     * @param shard Part des gestionnaires à lire
+     * @param gestCode Code du seul gestionnaire à lire, ou null pour tous
+     * @param after Curseur d'aperçu, ou null pour lire depuis le début
+     * @param managedOnly Écarte les opérations sans code gestionnaire (lectures à la demande)
+     * @return Paramètres nommés
+     */
+    private MapSqlParameterSource buildParameters(String queryDate, String canal, LocalDateTime sinceIncomtime,
+                                                  ShardAssignment shard, String gestCode, PreviewCursor after,
+                                                  boolean managedOnly) {
+        // Sans curseur, les bornes liées ne servent pas : le texte de la requête reste le même
+        boolean paged = after != null;
+        return new MapSqlParameterSource()
+            .addValue("queryDate", queryDate)
+            .addValue("canal", canal)
+            .addValue("fullDay", sinceIncomtime == null ? 1 : 0)
+            .addValue("sinceIncomtime", sinceIncomtime == null ? NO_HIGH_WATER : Timestamp.valueOf(sinceIncomtime))
+            .addValue("shardCount", shard.getCount())
+            .addValue("shardIndex", shard.getIndex())
+            .addValue("allManagers", gestCode == null ? 1 : 0)
+            .addValue("gestCode", gestCode == null ? ALL_MANAGERS : gestCode)
+            .addValue("managedOnly", managedOnly ? 1 : 0)
+            .addValue("afterCursor", paged ? 1 : 0)
+            .addValue("cursorGestCode", paged ? after.getGestCode() : ALL_MANAGERS)
+            // Un incomtime absent est lié à NULL et comparé par son propre indicateur
+            .addValue("cursorIncomtimeNull", paged && after.getIncomTime() == null ? 1 : 0)
+            .addValue("cursorIncomtime", !paged ? NO_HIGH_WATER
+                : after.getIncomTime() != null ? Timestamp.valueOf(after.getIncomTime()) : null, Types.TIMESTAMP)
+            .addValue("cursorIdmsg", paged ? after.getIdmsg() : ALL_MANAGERS)
+            .addValue("cursorIdlot", paged ? after.getIdlot() : ALL_MANAGERS)
+            .addValue("cursorIdtx", paged ? after.getIdtx() : ALL_MANAGERS);
+    }
+    
+    /**
+     * Charge le script SQL configuré
+     * 
+     * @param sqlFile Nom du fichier (relatif à classpath:sql/) ou URL de ressource
+     * @return Contenu du script SQL, sans point-virgule final
+     */
+    private String loadSqlQuery(String sqlFile) {
+        String location = sqlFile.contains(":") ? sqlFile : SQL_LOCATION + sqlFile;
+        try {
+            Resource resource = resourceLoader.getResource(location);
+            String sql = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            
+            // Le driver JDBC refuse le terminateur SQL*Plus
+            if (sql.endsWith(";")) {
+                sql = sql.substring(0, sql.length() - 1);
+            }
+            
+            logger.info("Script SQL chargé depuis {}", location);
+            return sql;
+        } catch (IOException e) {
+            logger.error("Erreur lors du chargement du script SQL {}", location, e);
+            throw new RuntimeException("Impossible de charger le script SQL", e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.LabelDictionary;
+import com.rawbank.siop.dto.SiopReportDto;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Mapping d'une ligne de la requête SIOP en SiopReportDto
+ * 
+ * Les messages d'erreur ne font pas partie de la requête principale :
+ * ils sont complétés ensuite par ErrorMessageResolver.
+ * De même, seul le code gestionnaire est lu : nom, prénom, email et
+ * téléphone viennent de ManagerDirectory.
+ * 
+ * Les colonnes sont résolues une seule fois par ResultSet (ResultSetMetaData),
+ * puis lues par index. Les lignes arrivant triées par gestionnaire, message et lot,
+ * une valeur identique à celle de la ligne précédente (date, fichier, message,
+ * lot, gestionnaire) réutilise son instance au lieu d'en conserver une copie.
+ * Les libellés répétés passent par le dictionnaire de la requête (LabelDictionary).
+ * 
+ * Le mapper garde l'état de la lecture en cours : une instance par requête.
+ */
+public class SiopReportRowMapper implements RowMapper<SiopReportDto> {
+    
+    private static final String[] COLUMNS = {
+        "dcre", "incomtime", "filename", "idmsg_ampl", "idlot", "idtx", "canal", "service", "typemsg",
+        "benef", "montant_tx", "motif", "frais", "msgstatus", "lotstatus", "txtstatus", "gest_code"
+    };
+    
+    private static final int DCRE = 0;
+    private static final int INCOMTIME = 1;
+    private static final int FILENAME = 2;
+    private static final int IDMSG = 3;
+    private static final int IDLOT = 4;
+    private static final int IDTX = 5;
+    private static final int CANAL = 6;
+    private static final int SERVICE = 7;
+    private static final int TYPEMSG = 8;
+    private static final int BENEF = 9;
+    private static final int MONTANT = 10;
+    private static final int MOTIF = 11;
+    private static final int FRAIS = 12;
+    private static final int MSGSTATUS = 13;
+    private static final int LOTSTATUS = 14;
+    private static final int TXTSTATUS = 15;
+    private static final int GEST_CODE = 16;
+    
+    private final int[] columns = new int[COLUMNS.length];
+    private final LabelDictionary labels = new LabelDictionary();
+    private ResultSet compiledFor;
+    private SiopReportDto previous = new SiopReportDto();
+    
+    @Override
+    public SiopReportDto mapRow(ResultSet rs, int rowNum) throws SQLException {
+        if (rs != compiledFor) {
+            compile(rs);
+        }
+        
+        SiopReportDto dto = new SiopReportDto();
+        dto.setDateCreation(reuse(previous.getDateCreation(), toLocalDateTime(rs.getTimestamp(columns[DCRE]))));
+        dto.setIncomTime(reuse(previous.getIncomTime(), toLocalDateTime(rs.getTimestamp(columns[INCOMTIME]))));
+        dto.setFilename(reuse(previous.getFilename(), rs.getString(columns[FILENAME])));
+        dto.setIdmsg(reuse(previous.getIdmsg(), rs.getString(columns[IDMSG])));
+        dto.setIdlot(reuse(previous.getIdlot(), rs.getString(columns[IDLOT])));
+        dto.setIdtx(rs.getString(columns[IDTX]));
+        dto.setCanal(labels.canonical(rs.getString(columns[CANAL])));
+        dto.setService(labels.canonical(rs.getString(columns[SERVICE])));
+        dto.setTypeMsg(labels.canonical(rs.getString(columns[TYPEMSG])));
+        dto.setBeneficiaire(rs.getString(columns[BENEF]));
+        dto.setMontantTx(rs.getBigDecimal(columns[MONTANT]));
+        dto.setMotif(rs.getString(columns[MOTIF]));
+        dto.setFrais(labels.canonical(rs.getString(columns[FRAIS])));
+        dto.setMsgStatus(labels.canonical(rs.getString(columns[MSGSTATUS])));
+        dto.setLotStatus(labels.canonical(rs.getString(columns[LOTSTATUS])));
+        dto.setTxtStatus(labels.canonical(rs.getString(columns[TXTSTATUS])));
+        
+        // Code du gestionnaire (BKEVE.ges1)
+        String gestCode = rs.getString(columns[GEST_CODE]);
+        dto.setGestCode(reuse(previous.getGestCode(), gestCode != null ? gestCode.trim() : null));
+        
+        previous = dto;
+        return dto;
+    }
+    
+    /**
+     * Résout l'index de chaque colonne lue d'après les libellés du ResultSet
+     * 
+     * @param rs ResultSet de la requête
+     * @throws SQLException Colonne attendue absente de la requête
+     */
+    private void compile(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = metaData.getColumnCount(); i >= 1; i--) {
+            // En cas de doublon, la première colonne l'emporte (comme findColumn)
+            indexes.put(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+        
+        for (int i = 0; i < COLUMNS.length; i++) {
+            Integer index = indexes.get(COLUMNS[i]);
+            if (index == null) {
+                throw new SQLException("Colonne absente de la requête SIOP : " + COLUMNS[i]);
+            }
+            columns[i] = index;
+        }
+        compiledFor = rs;
+    }
+    
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+    
+    private static <T> T reuse(T previousValue, T value) {
+        return value != null && value.equals(previousValue) ? previousValue : value;
+    }
+}
@@ -1,194 +1,476 @@
 package com.rawbank.siop.service;
 
+import com.rawbank.siop.cluster.ShardAssignment;
+import com.rawbank.siop.cluster.ShardResolver;
 import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.directory.ManagerDirectory;
 import com.rawbank.siop.dto.ManagerReportDto;
 import com.rawbank.siop.dto.SiopReportDto;
+import com.rawbank.siop.lock.RunCoordinator;
+import com.rawbank.siop.metrics.SiopMetrics;
+import com.rawbank.siop.store.HighWaterMarkStore;
+import com.rawbank.siop.store.NotificationLedger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
  * Service principal pour la gestion des rapports SIOP
  * 
  * Responsable de :
- * - Exécution des requêtes Oracle
+ * - Exécution des requêtes Oracle (via SiopQueryService), une par canal
+ * - Une seule exécution par date et canal (via RunCoordinator)
+ * - Lecture de la seule part des gestionnaires de l'instance (via ShardResolver)
  * - Groupement des données par gestionnaire
- * - Orchestration des services
+ * - Filtrage des opérations déjà notifiées (journal des notifications), pour les passages planifiés
+ * - Orchestration des services (via le pipeline de génération et d'envoi)
  */
 @Service
 public class SiopService {
     
     private static final Logger logger = LoggerFactory.getLogger(SiopService.class);
     
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    
+    @Autowired
+    private SiopQueryService siopQueryService;
+    
+    @Autowired
+    private ReportPipeline reportPipeline;
+    
+    @Autowired
+    private HighWaterMarkStore highWaterMarkStore;
+    
     @Autowired
-    private JdbcTemplate jdbcTemplate;
+    private NotificationLedger notificationLedger;
     
     @Autowired
-    private EmailService emailService;
+    private RunCoordinator runCoordinator;
     
     @Autowired
-    private ExcelService excelService;
+    private ShardResolver shardResolver;
+    
+    @Autowired
+    private SiopMetrics siopMetrics;
     
     @Autowired
     private SiopProperties siopProperties;
     
+    private ExecutorService canalExecutor;
+    
+    @PostConstruct
+    public void init() {
+        canalExecutor = Executors.newFixedThreadPool(
+            Math.max(1, siopProperties.getQuery().getCanalParallelism()),
+            new CustomizableThreadFactory("siop-canal-"));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        canalExecutor.shutdown();
+    }
+    
     /**
-     * Génère et envoie le rapport SIOP
+     * Génère et envoie le rapport SIOP pour toute la journée
      * 
      * @param queryDate Date de la requête (format DD/MM/YYYY)
      */
     public void generateAndSendReport(String queryDate) {
-        logger.info("Début de génération du rapport SIOP pour la date : {}", queryDate);
+        generateAndSendReport(queryDate, ReportMode.FULL);
+    }
+    
+    /**
+     * Génère et envoie le rapport SIOP
+     * 
+     * Chaque canal configuré est extrait par sa propre requête, en parallèle borné
+     * (siop.query.canal-parallelism), et alimente sa propre exécution du pipeline.
+     * En mode incrémental, seuls les messages reçus après le dernier incomtime
+     * traité sont relus ; le marqueur d'un canal n'avance que si tous ses envois
+     * (ou mises en file d'envoi) ont réussi.
+     * 
+     * Les passages planifiés (INCREMENTAL, FULL_UNNOTIFIED) écartent les opérations déjà notifiées
+     * sans changement de statut ; une exécution FULL (manuelle, job, rattrapage) renvoie toute la journée.
+     * 
+     * Un canal déjà en cours pour la même date dans le même mode rejoint l'exécution en cours ;
+     * dans l'autre mode, il attend sa fin puis fait sa propre passe (un FULL manuel pendant
+     * un passage incrémental n'en reprend pas le résultat). Un canal en cours sur une autre
+     * instance est ignoré.
+     * 
+     * @param queryDate Date de la requête (format DD/MM/YYYY)
+     * @param mode Journée complète ou incrémental
+     */
+    public void generateAndSendReport(String queryDate, ReportMode mode) {
+        generateAndSendReport(queryDate, mode, new ReportProgress());
+    }
+    
+    /**
+     * Génère et envoie le rapport SIOP en publiant son avancement
+     * 
+     * @param queryDate Date de la requête (format DD/MM/YYYY)
+     * @param mode Journée complète ou incrémental
+     * @param progress Avancement, consultable pendant l'exécution
+     */
+    public void generateAndSendReport(String queryDate, ReportMode mode, ReportProgress progress) {
+        logger.info("Début de génération du rapport SIOP pour la date : {} (mode {})", queryDate, mode);
         
         try {
-            // 1. Exécution de la requête SQL
-            List<SiopReportDto> operations = executeSiopQuery(queryDate);
+            LocalDate businessDate = LocalDate.parse(queryDate, DATE_FORMAT);
+            ShardAssignment shard = shardResolver.current();
+            progress.setStage(ReportStage.EXTRACTION);
             
-            if (operations.isEmpty()) {
-                logger.info("Aucune opération trouvée pour la date : {}", queryDate);
-                return;
+            // 1. Exécution des requêtes SQL, 2. groupement par gestionnaire et 3. envois, par canal
+            Map<String, Future<RunCoordinator.Outcome<CanalRunResult>>> executions = new LinkedHashMap<>();
+            for (String canal : siopProperties.getQuery().getCanals()) {
+                // Regroupée avec une exécution en cours, la demande en suit l'avancement
+                ReportProgress.Canal canalProgress = new ReportProgress.Canal();
+                executions.put(canal, canalExecutor.submit(() -> runCoordinator.execute(
+                    runKey(businessDate, canal, shard), mode.name(), canalProgress,
+                    () -> {
+                        progress.track(canalProgress);
+                        return runCanal(queryDate, businessDate, canal, shard, mode, progress, canalProgress);
+                    },
+                    progress::track)));
             }
             
-            logger.info("{} opération(s) trouvée(s)", operations.size());
-            
-            // 2. Groupement par gestionnaire
-            Map<String, List<SiopReportDto>> groupedByManager = 
-                operations.stream()
-                    .filter(op -> op.getEmailGest() != null && !op.getEmailGest().trim().isEmpty())
-                    .collect(Collectors.groupingBy(SiopReportDto::getEmailGest));
+            List<CanalRunResult> results = new ArrayList<>();
+            RuntimeException canalError = null;
+            for (Map.Entry<String, Future<RunCoordinator.Outcome<CanalRunResult>>> execution : executions.entrySet()) {
+                try {
+                    RunCoordinator.Outcome<CanalRunResult> outcome = execution.getValue().get();
+                    if (outcome.getStatus() != RunCoordinator.Status.EXECUTED) {
+                        logger.info("Canal {} : {}", execution.getKey(), 
+                            outcome.getStatus() == RunCoordinator.Status.COALESCED 
+                                ? "résultat de l'exécution en cours repris" 
+                                : "exécuté par une autre instance");
+                    }
+                    if (outcome.getResult() != null) {
+                        results.add(outcome.getResult());
+                    }
+                } catch (ExecutionException e) {
+                    logger.error("Erreur lors du traitement du canal {}", execution.getKey(), e.getCause());
+                    canalError = new RuntimeException("Erreur lors du traitement du canal " 
+                        + execution.getKey(), e.getCause());
+                }
+            }
             
-            logger.info("{} gestionnaire(s) trouvé(s)", groupedByManager.size());
+            if (canalError != null) {
+                throw canalError;
+            }
             
-            // 3. Envoi d'emails individuels
-            for (Map.Entry<String, List<SiopReportDto>> entry : groupedByManager.entrySet()) {
-                String emailGest = entry.getKey();
-                List<SiopReportDto> managerOperations = entry.getValue();
-                
-                ManagerReportDto managerReport = new ManagerReportDto(
-                    emailGest,
-                    managerOperations.get(0).getNomGest(),
-                    managerOperations.get(0).getPrenomGest(),
-                    managerOperations.get(0).getCanal(),
-                    managerOperations.size()
-                );
-                managerReport.setOperations(managerOperations);
-                
-                sendEmailToManager(managerReport, queryDate);
+            int operationCount = results.stream().mapToInt(result -> result.getSummary().getRowCount()).sum();
+            int managerCount = results.stream().mapToInt(result -> result.getSummary().getGroupCount()).sum();
+            int alreadyNotified = results.stream().mapToInt(CanalRunResult::getAlreadyNotified).sum();
+            progress.setStage(ReportStage.COMPLETED);
+            if (operationCount == 0) {
+                logger.info("Aucune opération trouvée pour la date : {}", queryDate);
+                return;
             }
             
+            logger.info("{} opération(s) trouvée(s)", operationCount);
+            logger.info("{} gestionnaire(s) trouvé(s)", managerCount);
+            if (alreadyNotified > 0) {
+                logger.info("{} opération(s) déjà notifiée(s) sans changement de statut ignorée(s)", 
+                    alreadyNotified);
+            }
             logger.info("Rapport SIOP généré et envoyé avec succès");
             
         } catch (Exception e) {
+            progress.setStage(ReportStage.FAILED);
             logger.error("Erreur lors de la génération du rapport SIOP", e);
             throw new RuntimeException("Erreur lors de la génération du rapport", e);
         }
     }
     
     /**
-     * Exécute la requête SQL SIOP
+     * Clé de coordination d'une exécution
      * 
-     * @param queryDate Date de la requête
-     * @return Liste des opérations SIOP
+     * @param businessDate Date métier
+     * @param canal Canal des opérations
+     * @param shard Part des gestionnaires
+     * @return Clé date|canal, suivie de la part si les gestionnaires sont répartis
      */
-    private List<SiopReportDto> executeSiopQuery(String queryDate) {
-        try {
-            // Chargement du script SQL
-            String sqlQuery = loadSqlQuery();
-            
-            // Remplacement de la date dans la requête
-            sqlQuery = sqlQuery.replace("TO_DATE('14/10/2025', 'DD/MM/YYYY')", 
-                "TO_DATE('" + queryDate + "', 'DD/MM/YYYY')");
-            
-            logger.debug("Exécution de la requête SQL pour la date : {}", queryDate);
-            
-            // Exécution de la requête
-            return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> {
-                SiopReportDto dto = new SiopReportDto();
-                
-                dto.setDateCreation(rs.getTimestamp("dcre") != null ? 
-                    rs.getTimestamp("dcre").toLocalDateTime() : null);
-                dto.setFilename(rs.getString("filename"));
-                dto.setCanal(rs.getString("canal"));
-                dto.setService(rs.getString("service"));
-                dto.setTypeMsg(rs.getString("typemsg"));
-                dto.setBeneficiaire(rs.getString("benef"));
-                dto.setMontantTx(rs.getBigDecimal("montant_tx"));
-                dto.setMotif(rs.getString("motif"));
-                dto.setFrais(rs.getString("frais"));
-                dto.setMsgStatus(rs.getString("msgstatus"));
-                dto.setLotStatus(rs.getString("lotstatus"));
-                dto.setTxtStatus(rs.getString("txtstatus"));
-                dto.setErrorMsg(rs.getString("errormsg"));
-                
-                // Informations du gestionnaire
-                dto.setNomGest(rs.getString("nom_gest"));
-                dto.setPrenomGest(rs.getString("prenom_gest"));
-                dto.setEmailGest(rs.getString("email_gest"));
-                dto.setPhoneGest(rs.getString("phone_gest"));
-                
-                return dto;
-            });
-            
-        } catch (Exception e) {
-            logger.error("Erreur lors de l'exécution de la requête SQL", e);
-            throw new RuntimeException("Erreur lors de l'exécution de la requête", e);
+    private String runKey(LocalDate businessDate, String canal, ShardAssignment shard) {
+        String key = businessDate + "|" + canal.trim();
+        return shard.isSharded() ? key + "|" + shard : key;
+    }
+    
+    /**
+     * Canal sous lequel le marqueur incrémental est conservé
+     * 
+     * Une part sans marqueur (instances ajoutées ou retirées) reprend au marqueur commun
+     * de la répartition précédente (resumeHighWaterMark).
+     * 
+     * @param canal Canal des opérations
+     * @param shard Part des gestionnaires
+     * @return Canal, suivi de la part si les gestionnaires sont répartis
+     */
+    private String highWaterMarkCanal(String canal, ShardAssignment shard) {
+        return shard.isSharded() ? canal.trim() + "#" + shard : canal;
+    }
+    
+    /**
+     * Incomtime de reprise d'une part sans marqueur
+     * 
+     * Une part sans marqueur vient d'une nouvelle répartition : ses gestionnaires étaient
+     * traités par d'autres parts. Avec des marqueurs partagés, la reprise se fait au plus
+     * ancien marqueur d'une répartition complète, borne sûre pour tous les gestionnaires ;
+     * les opérations relues en trop sont écartées par le journal partagé.
+     * Sinon (ou sans répartition complète), la journée est relue en entier.
+     * 
+     * @param businessDate Date métier
+     * @param canal Canal des opérations
+     * @param shard Part des gestionnaires
+     * @return Incomtime de reprise, ou null pour toute la journée
+     */
+    private LocalDateTime resumeHighWaterMark(LocalDate businessDate, String canal, ShardAssignment shard) {
+        if (!siopProperties.getStore().isShared()) {
+            return null;
+        }
+        
+        LocalDateTime covering = coveringHighWaterMark(canal.trim(), 
+            highWaterMarkStore.findByPrefix(businessDate, canal.trim()));
+        if (covering != null) {
+            logger.info("Canal {} : nouvelle part {}, reprise au marqueur de la répartition précédente", 
+                canal, shard);
         }
+        return covering;
     }
     
     /**
-     * Charge le script SQL depuis les ressources
+     * Marqueur commun à toutes les parts d'une répartition complète
      * 
-     * @return Contenu du script SQL
+     * Pour chaque nombre de parts dont chaque part a un marqueur, le plus ancien
+     * de ses marqueurs couvre tous les gestionnaires ; le plus récent de ces
+     * minimums est retenu.
+     * 
+     * @param canal Canal des opérations, sans part
+     * @param marks Marqueurs de la date par canal enregistré (canal seul ou suivi d'une part)
+     * @return Marqueur commun, ou null si aucune répartition n'est complète
      */
-    private String loadSqlQuery() {
-        try {
-            ClassPathResource resource = new ClassPathResource("sql/siop_send_mail.sql");
-            return new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            logger.error("Erreur lors du chargement du script SQL", e);
-            throw new RuntimeException("Impossible de charger le script SQL", e);
+    static LocalDateTime coveringHighWaterMark(String canal, Map<String, LocalDateTime> marks) {
+        Map<Integer, Map<Integer, LocalDateTime>> layouts = new HashMap<>();
+        marks.forEach((key, mark) -> {
+            ShardAssignment part;
+            if (key.trim().equals(canal)) {
+                part = ShardAssignment.SINGLE;
+            } else if (key.startsWith(canal + "#")) {
+                try {
+                    part = ShardAssignment.parse(key.substring(canal.length() + 1));
+                } catch (IllegalArgumentException e) {
+                    return;
+                }
+            } else {
+                return;
+            }
+            layouts.computeIfAbsent(part.getCount(), count -> new HashMap<>()).put(part.getIndex(), mark);
+        });
+        
+        LocalDateTime covering = null;
+        for (Map.Entry<Integer, Map<Integer, LocalDateTime>> layout : layouts.entrySet()) {
+            if (layout.getValue().size() < layout.getKey()) {
+                continue;
+            }
+            LocalDateTime lowest = Collections.min(layout.getValue().values());
+            if (covering == null || lowest.isAfter(covering)) {
+                covering = lowest;
+            }
         }
+        return covering;
     }
     
     /**
-     * Envoie un email à un gestionnaire
+     * Exécute un canal : extraction, générations et envois, puis marqueur incrémental
      * 
-     * @param managerReport Rapport du gestionnaire
      * @param queryDate Date de la requête
+     * @param businessDate Date métier
+     * @param canal Canal des opérations
+     * @param shard Part des gestionnaires
+     * @param mode Journée complète ou incrémental
+     * @param progress Avancement de l'exécution
+     * @param canalProgress Avancement du canal, partagé avec les demandes regroupées
+     * @return Résultat du canal
      */
-    private void sendEmailToManager(ManagerReportDto managerReport, String queryDate) {
+    private CanalRunResult runCanal(String queryDate, LocalDate businessDate, String canal, ShardAssignment shard,
+                                    ReportMode mode, ReportProgress progress, ReportProgress.Canal canalProgress) {
+        String highWaterKey = highWaterMarkCanal(canal, shard);
+        LocalDateTime storedMark = null;
+        LocalDateTime since = null;
+        if (mode == ReportMode.INCREMENTAL) {
+            storedMark = highWaterMarkStore.find(businessDate, highWaterKey).orElse(null);
+            since = storedMark != null ? storedMark : resumeHighWaterMark(businessDate, canal, shard);
+        }
+        
+        // Les opérations envoyées sont consignées par le pipeline (ou à l'envoi depuis la file) ;
+        // seul le marqueur d'une exécution incrémentale recule sur lettre morte
+        ReportPipeline.Run run = reportPipeline.start(queryDate, businessDate, 
+            mode == ReportMode.INCREMENTAL ? highWaterKey : null);
+        AtomicInteger alreadyNotified = new AtomicInteger();
+        canalProgress.attach(run);
+        
+        ExtractionSummary summary;
         try {
-            // Génération du fichier Excel
-            byte[] excelFile = excelService.generateExcel(managerReport.getOperations());
-            
-            // Envoi de l'email
-            emailService.sendEmailToManager(managerReport, queryDate, excelFile);
-            
-            logger.info("Email envoyé à {} ({} opérations)", 
-                managerReport.getEmailGest(), managerReport.getCount());
-                
-        } catch (Exception e) {
-            logger.error("Erreur lors de l'envoi de l'email à {}", 
-                managerReport.getEmailGest(), e);
+            summary = extractCanal(queryDate, canal, shard, mode, since, run, canalProgress, alreadyNotified);
+        } finally {
+            // Attente des générations et envois (ou mises en file) déjà soumis, même si l'extraction a échoué
+            progress.setStage(ReportStage.DELIVERY);
+            run.awaitCompletion();
+        }
+        
+        if (mode == ReportMode.INCREMENTAL) {
+            saveHighWaterMark(businessDate, highWaterKey, storedMark, summary, run);
+        }
+        return new CanalRunResult(summary, run.getSent(), run.getFailed(), alreadyNotified.get());
+    }
+    
+    /**
+     * Extrait les opérations d'un canal et les soumet au pipeline par gestionnaire
+     * 
+     * @param queryDate Date de la requête
+     * @param canal Canal des opérations
+     * @param shard Part des gestionnaires
+     * @param mode Journée complète ou incrémental
+     * @param since Dernier incomtime traité, ou null pour toute la journée
+     * @param run Exécution du pipeline
+     * @param progress Avancement du canal
+     * @param alreadyNotified Compteur des opérations déjà notifiées
+     * @return Résumé de l'extraction du canal
+     */
+    private ExtractionSummary extractCanal(String queryDate, String canal, ShardAssignment shard, ReportMode mode,
+                                           LocalDateTime since, ReportPipeline.Run run, 
+                                           ReportProgress.Canal progress, AtomicInteger alreadyNotified) {
+        if (since != null) {
+            logger.info("Canal {} : reprise incrémentale après incomtime {}", canal, since);
+        }
+        
+        if (siopProperties.getQuery().isStreaming()) {
+            // Chaque gestionnaire part en génération dès sa dernière ligne lue
+            return siopQueryService.streamManagerGroups(queryDate, canal, since, shard, 
+                managerOperations -> submitUnnotified(run, managerOperations, mode, progress, alreadyNotified));
         }
+        
+        List<SiopReportDto> operations = siopQueryService.findOperations(queryDate, canal, since, shard);
+        LocalDateTime maxIncomTime = operations.stream()
+            .map(SiopReportDto::getIncomTime)
+            .filter(Objects::nonNull)
+            .max(Comparator.naturalOrder())
+            .orElse(null);
+        
+        // Même regroupement que le flux : un rapport par email résolu, dans l'ordre de la requête
+        Map<String, List<SiopReportDto>> groupedByManager = 
+            operations.stream()
+                .filter(op -> op.getEmailGest() != null && !op.getEmailGest().trim().isEmpty())
+                .collect(Collectors.groupingBy(op -> ManagerDirectory.normalizeEmail(op.getEmailGest()),
+                    LinkedHashMap::new, Collectors.toList()));
+        
+        groupedByManager.values().forEach(managerOperations -> 
+            submitUnnotified(run, managerOperations, mode, progress, alreadyNotified));
+        
+        return new ExtractionSummary(operations.size(), groupedByManager.size(), maxIncomTime);
+    }
+    
+    /**
+     * Avance le marqueur incrémental d'un canal sans échec d'envoi
+     * 
+     * Un marqueur reculé pendant l'exécution (lettre morte) n'est pas écrasé
+     * 
+     * @param businessDate Date métier
+     * @param canal Canal des opérations
+     * @param storedMark Marqueur lu en début d'exécution, ou null
+     * @param summary Résumé d'extraction du canal
+     * @param run Exécution du pipeline terminée
+     */
+    private void saveHighWaterMark(LocalDate businessDate, String canal, LocalDateTime storedMark,
+                                   ExtractionSummary summary, ReportPipeline.Run run) {
+        if (summary.getMaxIncomTime() == null) {
+            return;
+        }
+        int failed = run.getFailed();
+        if (failed > 0) {
+            logger.warn("Canal {} : {} échec(s), marqueur incrémental conservé", canal, failed);
+        } else if (!highWaterMarkStore.advance(businessDate, canal, storedMark, summary.getMaxIncomTime())) {
+            logger.warn("Canal {} : marqueur incrémental reculé pendant l'exécution, conservé", canal);
+        }
+    }
+    
+    /**
+     * Soumet au pipeline les opérations d'un gestionnaire non encore notifiées
+     * 
+     * Hors passage planifié (mode FULL), toutes les opérations sont soumises
+     * 
+     * @param run Exécution du pipeline
+     * @param managerOperations Opérations d'un même gestionnaire
+     * @param mode Mode de l'exécution
+     * @param progress Avancement du canal
+     * @param alreadyNotified Compteur des opérations écartées
+     */
+    private void submitUnnotified(ReportPipeline.Run run, List<SiopReportDto> managerOperations, ReportMode mode,
+                                  ReportProgress.Canal progress, AtomicInteger alreadyNotified) {
+        progress.addRows(managerOperations.size());
+        
+        List<SiopReportDto> unnotified = mode.isLedgerFiltered()
+            ? notificationLedger.filterUnnotified(managerOperations)
+            : managerOperations;
+        alreadyNotified.addAndGet(managerOperations.size() - unnotified.size());
+        
+        if (!unnotified.isEmpty()) {
+            progress.managerSubmitted();
+            siopMetrics.countManager(unnotified.get(0).getCanal());
+            run.submit(buildManagerReport(unnotified));
+        }
+    }
+    
+    /**
+     * Construit le rapport d'un gestionnaire à partir de ses opérations
+     * 
+     * Le code gestionnaire n'est renseigné que si toutes les opérations le partagent :
+     * un rapport qui regroupe les codes d'un même email n'en porte aucun.
+     * 
+     * @param managerOperations Opérations d'un même email de gestionnaire
+     * @return Rapport du gestionnaire
+     */
+    private ManagerReportDto buildManagerReport(List<SiopReportDto> managerOperations) {
+        SiopReportDto first = managerOperations.get(0);
+        String gestCode = first.getGestCode();
+        boolean singleCode = managerOperations.stream().allMatch(op -> Objects.equals(gestCode, op.getGestCode()));
+        ManagerReportDto managerReport = new ManagerReportDto(
+            first.getEmailGest(),
+            first.getNomGest(),
+            first.getPrenomGest(),
+            first.getCanal(),
+            managerOperations.size()
+        );
+        managerReport.setGestCode(singleCode ? gestCode : null);
+        managerReport.setOperations(managerOperations);
+        return managerReport;
     }
     
     /**
      * Génère le rapport pour la date du jour
      */
     public void generateAndSendReport() {
-        String today = LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+        String today = LocalDate.now().format(DATE_FORMAT);
         generateAndSendReport(today);
     }
 }
@@ -0,0 +1,192 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.config.SiopProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool de connexions SMTP persistantes
+ * 
+ * Responsable de :
+ * - Maintenir N connexions authentifiées ouvertes (STARTTLS et AUTH une seule fois)
+ * - Envoyer des lots de messages sur une même connexion
+ * - Recycler chaque connexion après un nombre de messages configurable
+ * 
+ * Si le pool est désactivé, les envois passent par JavaMailSender.
+ */
+@Component
+public class SmtpTransportPool {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SmtpTransportPool.class);
+    
+    @Autowired
+    private JavaMailSender mailSender;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private JavaMailSenderImpl senderImpl;
+    private BlockingQueue<PooledTransport> available;
+    
+    @PostConstruct
+    public void init() {
+        SiopProperties.Smtp smtp = siopProperties.getSmtp();
+        if (!smtp.isPooled() || !(mailSender instanceof JavaMailSenderImpl)) {
+            logger.info("Pool SMTP désactivé, envoi via JavaMailSender");
+            return;
+        }
+        
+        senderImpl = (JavaMailSenderImpl) mailSender;
+        int poolSize = Math.max(1, smtp.getPoolSize());
+        available = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            available.add(new PooledTransport());
+        }
+        
+        logger.info("Pool SMTP initialisé ({} connexion(s), recyclage après {} message(s))",
+            poolSize, smtp.getMaxMessagesPerConnection());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (available == null) {
+            return;
+        }
+        for (PooledTransport pooled : available) {
+            pooled.close();
+        }
+    }
+    
+    /**
+     * Envoie un message sur une connexion du pool
+     * 
+     * @param message Message à envoyer
+     */
+    public void send(MimeMessage message) {
+        sendBatch(List.of(message));
+    }
+    
+    /**
+     * Envoie un lot de messages sur une même connexion
+     * 
+     * Les échecs sont collectés et remontés ensemble à la fin du lot
+     * 
+     * @param messages Messages à envoyer
+     * @throws MailSendException si au moins un message n'a pas pu être envoyé
+     */
+    public void sendBatch(List<MimeMessage> messages) {
+        if (available == null) {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+            return;
+        }
+        
+        PooledTransport pooled = borrow();
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        try {
+            for (MimeMessage message : messages) {
+                try {
+                    pooled.send(message);
+                } catch (MessagingException e) {
+                    // Connexion potentiellement corrompue : reconnexion au prochain message
+                    pooled.close();
+                    failedMessages.put(message, e);
+                }
+            }
+        } finally {
+            available.offer(pooled);
+        }
+        
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+    
+    /**
+     * Emprunte une connexion au pool
+     * 
+     * @return Connexion du pool
+     */
+    private PooledTransport borrow() {
+        try {
+            PooledTransport pooled = available.poll(
+                siopProperties.getSmtp().getBorrowTimeoutMs(), TimeUnit.MILLISECONDS);
+            if (pooled == null) {
+                throw new MailSendException("Aucune connexion SMTP disponible dans le délai imparti");
+            }
+            return pooled;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Attente d'une connexion SMTP interrompue", e);
+        }
+    }
+    
+    /**
+     * Connexion SMTP réutilisable
+     */
+    private class PooledTransport {
+        
+        private Transport transport;
+        private int messageCount;
+        
+        /**
+         * Envoie un message, en ouvrant ou recyclant la connexion si nécessaire
+         * 
+         * @param message Message à envoyer
+         * @throws MessagingException Erreur SMTP
+         */
+        void send(MimeMessage message) throws MessagingException {
+            if (messageCount >= siopProperties.getSmtp().getMaxMessagesPerConnection()) {
+                close();
+            }
+            if (transport == null || !transport.isConnected()) {
+                connect();
+            }
+            
+            message.saveChanges();
+            transport.sendMessage(message, message.getAllRecipients());
+            messageCount++;
+        }
+        
+        private void connect() throws MessagingException {
+            close();
+            
+            Session session = senderImpl.getSession();
+            String protocol = senderImpl.getProtocol() != null ? senderImpl.getProtocol() : "smtp";
+            transport = session.getTransport(protocol);
+            transport.connect(senderImpl.getHost(), senderImpl.getPort(),
+                senderImpl.getUsername(), senderImpl.getPassword());
+            
+            logger.debug("Connexion SMTP ouverte vers {}:{}", senderImpl.getHost(), senderImpl.getPort());
+        }
+        
+        void close() {
+            if (transport != null) {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    logger.debug("Erreur lors de la fermeture de la connexion SMTP", e);
+                }
+            }
+            transport = null;
+            messageCount = 0;
+        }
+    }
+}
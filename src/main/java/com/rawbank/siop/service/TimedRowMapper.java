@@ -0,0 +1,33 @@
+package com.rawbank.siop.service;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Mapper cumulant le temps passé à mapper les lignes d'une requête
+ * 
+ * Une instance par exécution de requête (non partagée entre threads)
+ */
+final class TimedRowMapper<T> implements RowMapper<T> {
+    
+    private final RowMapper<T> delegate;
+    private long nanos;
+    
+    TimedRowMapper(RowMapper<T> delegate) {
+        this.delegate = delegate;
+    }
+    
+    @Override
+    public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return delegate.mapRow(rs, rowNum);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+    
+    long getNanos() { return nanos; }
+}
@@ -0,0 +1,457 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.SiopReportDto;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.streaming.GZIPSheetDataWriter;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.streaming.SheetDataWriter;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rendu xlsx des rapports SIOP
+ * 
+ * Responsable de :
+ * - Génération de fichiers Excel avec style
+ * - Formatage des données
+ * - Optimisation des colonnes
+ * - Rendu en flux (SXSSF) à mémoire bornée pour les gros volumes
+ * - Parties sous un budget de taille, suivie pendant l'écriture
+ */
+@Component
+public class XlsxReportRenderer implements ReportRenderer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(XlsxReportRenderer.class);
+    
+    private static final String SHEET_NAME = "Opérations SIOP";
+    
+    private static final String[] HEADERS = ReportColumn.headers();
+    
+    // Centimes représentés exactement par un double : cents / 100.0 est alors l'arrondi exact du montant
+    private static final long MAX_EXACT_CENTS = 1L << 53;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    @Override
+    public ReportFormat format() {
+        return ReportFormat.XLSX;
+    }
+    
+    /**
+     * Écrit un fichier Excel à partir des opérations SIOP
+     * 
+     * @param operations Opérations SIOP
+     * @param out Flux de sortie
+     * @throws IOException Erreur d'écriture
+     */
+    @Override
+    public void render(Iterable<SiopReportDto> operations, OutputStream out) throws IOException {
+        Workbook workbook = createWorkbook();
+        try {
+            // Création des styles
+            CellStyle headerStyle = createHeaderStyle(workbook);
+            CellStyle dataStyle = createDataStyle(workbook);
+            CellStyle dateStyle = createDateStyle(workbook);
+            CellStyle numberStyle = createNumberStyle(workbook);
+            
+            // Remplissage des données (création des feuilles et en-têtes incluse)
+            fillData(workbook, operations.iterator(), headerStyle, dataStyle, dateStyle, numberStyle, () -> false);
+            
+            workbook.write(out);
+            
+        } finally {
+            closeWorkbook(workbook);
+        }
+    }
+    
+    /**
+     * Écrit une partie du fichier Excel sous un budget de taille
+     * 
+     * Toujours en mode streaming, quel que soit siop.excel.mode : la taille compressée
+     * des feuilles est suivie pendant l'écriture (MeteredWorkbook), avant chaque ligne.
+     * L'estimation peut rarement dépasser le budget de quelques lignes, ce que
+     * l'appelant vérifie sur le fichier produit.
+     * 
+     * @param operations Opérations SIOP du rapport complet
+     * @param from Index de la première opération de la partie
+     * @param out Flux de sortie
+     * @param maxBytes Taille maximale de la partie en octets
+     * @return Index de la première opération non écrite
+     * @throws IOException Erreur d'écriture
+     */
+    @Override
+    public int renderPart(List<SiopReportDto> operations, int from, OutputStream out, long maxBytes)
+            throws IOException {
+        MeteredWorkbook workbook = new MeteredWorkbook(siopProperties.getExcel().getWindowSize());
+        try {
+            CellStyle headerStyle = createHeaderStyle(workbook);
+            CellStyle dataStyle = createDataStyle(workbook);
+            CellStyle dateStyle = createDateStyle(workbook);
+            CellStyle numberStyle = createNumberStyle(workbook);
+            
+            int written = fillData(workbook, operations.subList(from, operations.size()).iterator(),
+                headerStyle, dataStyle, dateStyle, numberStyle, () -> workbook.size() > maxBytes);
+            
+            workbook.write(out);
+            return from + written;
+            
+        } finally {
+            closeWorkbook(workbook);
+        }
+    }
+    
+    /**
+     * Crée le workbook selon le mode configuré
+     * 
+     * En mode streaming, seules les dernières lignes (fenêtre glissante)
+     * restent en mémoire, les autres sont écrites dans un fichier temporaire
+     * 
+     * @return Workbook Excel
+     */
+    private Workbook createWorkbook() {
+        SiopProperties.Excel excel = siopProperties.getExcel();
+        if (!excel.isStreaming()) {
+            return new XSSFWorkbook();
+        }
+        
+        SXSSFWorkbook workbook = new SXSSFWorkbook(excel.getWindowSize());
+        workbook.setCompressTempFiles(excel.isCompressTempFiles());
+        return workbook;
+    }
+    
+    /**
+     * Ferme le workbook et supprime les fichiers temporaires éventuels
+     * 
+     * @param workbook Workbook Excel
+     */
+    private void closeWorkbook(Workbook workbook) {
+        try {
+            workbook.close();
+        } catch (IOException e) {
+            logger.warn("Erreur lors de la fermeture du workbook Excel", e);
+        } finally {
+            if (workbook instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) workbook).dispose();
+            }
+        }
+    }
+    
+    /**
+     * Crée une nouvelle feuille avec ses en-têtes
+     * 
+     * @param workbook Workbook Excel
+     * @param headerStyle Style des en-têtes
+     * @return Feuille Excel
+     */
+    private Sheet createSheet(Workbook workbook, CellStyle headerStyle) {
+        int sheetIndex = workbook.getNumberOfSheets();
+        String sheetName = sheetIndex == 0 ? SHEET_NAME : String.format("%s (%d)", SHEET_NAME, sheetIndex + 1);
+        Sheet sheet = workbook.createSheet(sheetName);
+        createHeaders(sheet, headerStyle);
+        return sheet;
+    }
+    
+    /**
+     * Nombre maximal de lignes par feuille, en-tête compris
+     * 
+     * @return Nombre maximal de lignes
+     */
+    private int getMaxRowsPerSheet() {
+        int maxRows = SpreadsheetVersion.EXCEL2007.getMaxRows();
+        int configured = siopProperties.getExcel().getMaxRowsPerSheet();
+        return configured > 1 ? Math.min(configured, maxRows) : maxRows;
+    }
+    
+    /**
+     * Crée le style pour les en-têtes
+     * 
+     * @param workbook Workbook Excel
+     * @return Style des en-têtes
+     */
+    private CellStyle createHeaderStyle(Workbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+        
+        // Police en gras et blanc
+        Font font = workbook.createFont();
+        font.setBold(true);
+        font.setColor(IndexedColors.WHITE.getIndex());
+        style.setFont(font);
+        
+        // Couleur de fond bleue
+        style.setFillForegroundColor(IndexedColors.DARK_BLUE.getIndex());
+        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        
+        // Alignement centré
+        style.setAlignment(HorizontalAlignment.CENTER);
+        style.setVerticalAlignment(VerticalAlignment.CENTER);
+        
+        // Bordures
+        style.setBorderTop(BorderStyle.THIN);
+        style.setBorderBottom(BorderStyle.THIN);
+        style.setBorderLeft(BorderStyle.THIN);
+        style.setBorderRight(BorderStyle.THIN);
+        
+        return style;
+    }
+    
+    /**
+     * Crée le style pour les données
+     * 
+     * @param workbook Workbook Excel
+     * @return Style des données
+     */
+    private CellStyle createDataStyle(Workbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+        
+        // Bordures
+        style.setBorderTop(BorderStyle.THIN);
+        style.setBorderBottom(BorderStyle.THIN);
+        style.setBorderLeft(BorderStyle.THIN);
+        style.setBorderRight(BorderStyle.THIN);
+        
+        // Alignement
+        style.setVerticalAlignment(VerticalAlignment.CENTER);
+        
+        return style;
+    }
+    
+    /**
+     * Crée le style pour les dates
+     * 
+     * @param workbook Workbook Excel
+     * @return Style des dates
+     */
+    private CellStyle createDateStyle(Workbook workbook) {
+        CellStyle style = createDataStyle(workbook);
+        
+        // Format de date
+        CreationHelper createHelper = workbook.getCreationHelper();
+        style.setDataFormat(createHelper.createDataFormat().getFormat("dd/mm/yyyy hh:mm"));
+        
+        return style;
+    }
+    
+    /**
+     * Crée le style pour les nombres
+     * 
+     * @param workbook Workbook Excel
+     * @return Style des nombres
+     */
+    private CellStyle createNumberStyle(Workbook workbook) {
+        CellStyle style = createDataStyle(workbook);
+        
+        // Format numérique
+        CreationHelper createHelper = workbook.getCreationHelper();
+        style.setDataFormat(createHelper.createDataFormat().getFormat("#,##0.00"));
+        
+        return style;
+    }
+    
+    /**
+     * Crée les en-têtes du tableau
+     * 
+     * @param sheet Feuille Excel
+     * @param headerStyle Style des en-têtes
+     */
+    private void createHeaders(Sheet sheet, CellStyle headerStyle) {
+        Row headerRow = sheet.createRow(0);
+        
+        for (int i = 0; i < HEADERS.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(HEADERS[i]);
+            cell.setCellStyle(headerStyle);
+        }
+    }
+    
+    /**
+     * Remplit les données dans le tableau
+     * 
+     * Bascule automatiquement sur une nouvelle feuille lorsque
+     * la limite de lignes du format xlsx est atteinte
+     * 
+     * @param workbook Workbook Excel
+     * @param operations Opérations, parcourues une seule fois
+     * @param headerStyle Style des en-têtes
+     * @param dataStyle Style des données
+     * @param dateStyle Style des dates
+     * @param numberStyle Style des nombres
+     * @param full Vrai quand le fichier est plein, vérifié avant chaque ligne sauf la première
+     * @return Nombre d'opérations écrites
+     * @throws IOException Erreur d'écriture des lignes déjà produites
+     */
+    private int fillData(Workbook workbook, Iterator<SiopReportDto> operations, CellStyle headerStyle,
+                         CellStyle dataStyle, CellStyle dateStyle, CellStyle numberStyle,
+                         FullCheck full) throws IOException {
+        
+        int maxRows = getMaxRowsPerSheet();
+        Sheet sheet = createSheet(workbook, headerStyle);
+        ColumnWidthEstimator widths = new ColumnWidthEstimator(HEADERS);
+        
+        int rowNum = 1;
+        int written = 0;
+        while (operations.hasNext() && (written == 0 || !full.isFull())) {
+            SiopReportDto operation = operations.next();
+            written++;
+            if (rowNum >= maxRows) {
+                // Ajustement des colonnes de la feuille pleine avant bascule
+                widths.applyTo(sheet);
+                sheet = createSheet(workbook, headerStyle);
+                widths = new ColumnWidthEstimator(HEADERS);
+                rowNum = 1;
+            }
+            
+            Row row = sheet.createRow(rowNum++);
+            
+            for (ReportColumn column : ReportColumn.COLUMNS) {
+                int index = column.ordinal();
+                Cell cell = row.createCell(index);
+                
+                switch (column.getType()) {
+                    case DATE -> {
+                        Object value = column.value(operation);
+                        if (value != null) {
+                            cell.setCellValue((LocalDateTime) value);
+                            cell.setCellStyle(dateStyle);
+                            widths.trackDate(index);
+                        }
+                    }
+                    case AMOUNT -> {
+                        // Centimes exacts en double : valeur de la cellule sans BigDecimal
+                        long cents = column.cents(operation);
+                        if (cents != SiopReportDto.NO_CENTS && Math.abs(cents) <= MAX_EXACT_CENTS) {
+                            cell.setCellValue(cents / 100.0);
+                            cell.setCellStyle(numberStyle);
+                            widths.trackAmount(index, cents);
+                        } else {
+                            BigDecimal amount = (BigDecimal) column.value(operation);
+                            if (amount != null) {
+                                cell.setCellValue(amount.doubleValue());
+                                cell.setCellStyle(numberStyle);
+                                widths.trackAmount(index, amount);
+                            }
+                        }
+                    }
+                    default -> {
+                        String text = (String) column.value(operation);
+                        cell.setCellValue(text);
+                        cell.setCellStyle(dataStyle);
+                        widths.track(index, text);
+                    }
+                }
+            }
+        }
+        
+        // Ajustement des colonnes selon les longueurs estimées
+        widths.applyTo(sheet);
+        return written;
+    }
+    
+    @FunctionalInterface
+    private interface FullCheck {
+        boolean isFull() throws IOException;
+    }
+    
+    /**
+     * Workbook SXSSF dont la taille compressée est suivie pendant l'écriture
+     * 
+     * Les lignes de chaque feuille sont compressées à la volée dans leur fichier temporaire,
+     * au même niveau que dans le fichier xlsx final : les octets compressés approchent ceux
+     * de la feuille dans l'archive.
+     */
+    private static final class MeteredWorkbook extends SXSSFWorkbook {
+        
+        // Styles, classeur, types de contenu et en-têtes de l'archive, compressés
+        private static final int PACKAGE_BYTES = 8 * 1024;
+        
+        private final List<MeteredSheetDataWriter> writers = new ArrayList<>();
+        
+        MeteredWorkbook(int windowSize) {
+            super(windowSize);
+        }
+        
+        @Override
+        protected SheetDataWriter createSheetDataWriter() throws IOException {
+            MeteredSheetDataWriter writer = new MeteredSheetDataWriter(getSharedStringSource());
+            writers.add(writer);
+            return writer;
+        }
+        
+        /**
+         * Taille du fichier xlsx si l'écriture s'arrêtait maintenant
+         * 
+         * @return Estimation en octets
+         * @throws IOException Erreur d'écriture des lignes en mémoire
+         */
+        long size() throws IOException {
+            long size = PACKAGE_BYTES;
+            for (Sheet sheet : this) {
+                ((SXSSFSheet) sheet).flushRows();
+            }
+            for (MeteredSheetDataWriter writer : writers) {
+                size += writer.size();
+            }
+            return size;
+        }
+    }
+    
+    /**
+     * Fichier temporaire d'une feuille, compressé en gzip et compté
+     * 
+     * Une compression complète (SYNC_FLUSH) tous les SYNC_INTERVAL octets borne le XML
+     * en attente : il est compté avec les tampons d'écriture, au taux de compression
+     * observé jusque-là sur la feuille.
+     */
+    private static final class MeteredSheetDataWriter extends GZIPSheetDataWriter {
+        
+        private static final int SYNC_INTERVAL = 64 * 1024;
+        
+        // Tampons du Writer de SheetDataWriter (caractères et encodeur UTF-8)
+        private static final int WRITER_BUFFER_BYTES = 32 * 1024;
+        
+        // Affectés par decorateOutputStream, appelé depuis le constructeur parent : pas d'initialiseur
+        private CountingOutputStream compressed;
+        private CountingOutputStream xml;
+        private long synced;
+        
+        MeteredSheetDataWriter(SharedStringsTable sharedStrings) throws IOException {
+            super(sharedStrings);
+        }
+        
+        @Override
+        protected OutputStream decorateOutputStream(FileOutputStream fos) throws IOException {
+            compressed = new CountingOutputStream(fos);
+            xml = new CountingOutputStream(new GZIPOutputStream(compressed, true));
+            return xml;
+        }
+        
+        long size() throws IOException {
+            if (xml.getCount() - synced >= SYNC_INTERVAL) {
+                _out.flush();
+                synced = xml.getCount();
+            }
+            long pending = xml.getCount() - synced + WRITER_BUFFER_BYTES;
+            if (synced == 0) {
+                return compressed.getCount() + pending;
+            }
+            return compressed.getCount() + pending * compressed.getCount() / synced;
+        }
+    }
+}
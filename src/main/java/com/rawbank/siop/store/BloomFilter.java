@@ -0,0 +1,67 @@
+package com.rawbank.siop.store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+/**
+ * Filtre de Bloom en mémoire pour des clés texte
+ * 
+ * Répond "absent" avec certitude, "peut-être présent" avec un taux
+ * de faux positifs borné par le dimensionnement.
+ */
+class BloomFilter {
+    
+    private final BitSet bits;
+    private final int bitCount;
+    private final int hashCount;
+    
+    BloomFilter(long expectedEntries, double falsePositiveRate) {
+        long entries = Math.max(1, expectedEntries);
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bitCount = (int) Math.max(64, Math.min(Integer.MAX_VALUE - 64, optimalBits));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / entries * ln2));
+        this.bits = new BitSet(bitCount);
+    }
+    
+    synchronized void add(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            bits.set(index(h1, h2, i));
+        }
+    }
+    
+    synchronized boolean mightContain(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            if (!bits.get(index(h1, h2, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private int index(int h1, int h2, int i) {
+        int combined = h1 + i * h2;
+        return (combined & Integer.MAX_VALUE) % bitCount;
+    }
+    
+    /**
+     * FNV-1a 64 bits, suivi d'un brassage final pour décorréler les deux moitiés
+     */
+    private static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,679 @@
+package com.rawbank.siop.store;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.SiopReportDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * File persistante des emails à envoyer (outbox)
+ * 
+ * Responsable de :
+ * - Conserver les messages MIME rendus (fichiers .eml) et leur état dans la base locale
+ * - Attribuer les messages dus aux threads d'envoi (OutboxSender)
+ * - Reprogrammer un message en échec avec un délai exponentiel, puis le passer en lettre morte
+ * - Remettre en file les lettres mortes et purger les messages anciens
+ * - Conserver les opérations de chaque message jusqu'à son envoi (journal des notifications)
+ * 
+ * Un message est écrit dans un fichier temporaire puis renommé avant d'être inscrit :
+ * une ligne de la table référence toujours un fichier complet. Un message en cours d'envoi
+ * lors d'un arrêt est renvoyé au redémarrage (livraison au moins une fois).
+ * 
+ * Les opérations d'un message (siop_email_outbox_operation) sont inscrites dans la même
+ * transaction que lui. Elles sont consignées dans le journal des notifications une fois
+ * le message envoyé ; tant qu'il est en attente, elles sont considérées comme en cours
+ * de notification et ne sont pas reconstruites par les exécutions suivantes. Une lettre
+ * morte libère ses opérations.
+ */
+@Component
+public class EmailOutbox {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutbox.class);
+    
+    private static final String CREATE_TABLE =
+        "CREATE TABLE IF NOT EXISTS siop_email_outbox ("
+            + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "recipient VARCHAR(320) NOT NULL, "
+            + "canal VARCHAR(50), "
+            + "query_date VARCHAR(10) NOT NULL, "
+            + "subject VARCHAR(500), "
+            + "message_file VARCHAR(100) NOT NULL, "
+            + "message_bytes BIGINT NOT NULL, "
+            + "status VARCHAR(10) NOT NULL, "
+            + "attempts INT NOT NULL, "
+            + "next_attempt_at TIMESTAMP NOT NULL, "
+            + "last_error VARCHAR(1000), "
+            + "created_at TIMESTAMP NOT NULL, "
+            + "updated_at TIMESTAMP NOT NULL)";
+    
+    private static final String CREATE_DUE_INDEX =
+        "CREATE INDEX IF NOT EXISTS idx_siop_outbox_due ON siop_email_outbox (status, next_attempt_at)";
+    
+    // Colonnes ajoutées aux bases locales existantes
+    private static final String[] ADD_NOTIFICATION_COLUMNS = {
+        "ALTER TABLE siop_email_outbox ADD COLUMN IF NOT EXISTS business_date DATE",
+        "ALTER TABLE siop_email_outbox ADD COLUMN IF NOT EXISTS high_water_key VARCHAR(100)"
+    };
+    
+    private static final String CREATE_OPERATION_TABLE =
+        "CREATE TABLE IF NOT EXISTS siop_email_outbox_operation ("
+            + "message_id BIGINT NOT NULL, "
+            + "op_key VARCHAR(100) NOT NULL, "
+            + "status_key VARCHAR(200) NOT NULL, "
+            + "incom_time TIMESTAMP)";
+    
+    private static final String CREATE_OPERATION_MESSAGE_INDEX =
+        "CREATE INDEX IF NOT EXISTS idx_siop_outbox_op_message ON siop_email_outbox_operation (message_id)";
+    
+    private static final String CREATE_OPERATION_KEY_INDEX =
+        "CREATE INDEX IF NOT EXISTS idx_siop_outbox_op_key ON siop_email_outbox_operation (op_key)";
+    
+    private static final String INSERT =
+        "INSERT INTO siop_email_outbox (recipient, canal, query_date, subject, message_file, message_bytes, "
+            + "status, attempts, next_attempt_at, created_at, updated_at, business_date, high_water_key) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?, ?, ?, ?, ?)";
+    
+    private static final String INSERT_OPERATION =
+        "INSERT INTO siop_email_outbox_operation (message_id, op_key, status_key, incom_time) VALUES (?, ?, ?, ?)";
+    
+    private static final String DELETE_ORPHAN_OPERATIONS =
+        "DELETE FROM siop_email_outbox_operation o "
+            + "WHERE NOT EXISTS (SELECT 1 FROM siop_email_outbox m WHERE m.id = o.message_id AND m.status <> ?)";
+    
+    private static final String EXTENSION = ".eml";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final int DEAD_LETTER_LIMIT = 100;
+    
+    /**
+     * État d'un message de la file
+     */
+    public enum Status {
+        PENDING,
+        SENDING,
+        SENT,
+        DEAD
+    }
+    
+    @Autowired
+    private LocalStore localStore;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+    private Path directory;
+    
+    // Réveil des threads d'envoi à chaque mise en file
+    private final Object signal = new Object();
+    
+    @PostConstruct
+    public void init() {
+        directory = Paths.get(siopProperties.getOutbox().getDirectory()).toAbsolutePath().normalize();
+        localStore.getJdbcTemplate().execute(CREATE_TABLE);
+        localStore.getJdbcTemplate().execute(CREATE_DUE_INDEX);
+        for (String statement : ADD_NOTIFICATION_COLUMNS) {
+            localStore.getJdbcTemplate().execute(statement);
+        }
+        localStore.getJdbcTemplate().execute(CREATE_OPERATION_TABLE);
+        localStore.getJdbcTemplate().execute(CREATE_OPERATION_MESSAGE_INDEX);
+        localStore.getJdbcTemplate().execute(CREATE_OPERATION_KEY_INDEX);
+        namedJdbcTemplate = new NamedParameterJdbcTemplate(localStore.getJdbcTemplate());
+        
+        // Envois interrompus par un arrêt : leur issue est inconnue, ils sont rejoués
+        int interrupted = localStore.getJdbcTemplate().update(
+            "UPDATE siop_email_outbox SET status = ? WHERE status = ?",
+            Status.PENDING.name(), Status.SENDING.name());
+        
+        try {
+            Files.createDirectories(directory);
+            deleteUnreferencedFiles();
+        } catch (IOException e) {
+            throw new RuntimeException("Impossible de préparer le répertoire de la file d'envoi " + directory, e);
+        }
+        
+        logger.info("File d'envoi des emails dans {} ({} message(s) en attente, dont {} envoi(s) interrompu(s))",
+            directory, count(Status.PENDING), interrupted);
+    }
+    
+    /**
+     * Met en file les messages rendus d'un gestionnaire
+     * 
+     * Les messages sont inscrits ensemble : en cas d'échec, aucun n'est mis en file.
+     * 
+     * @param recipient Email du gestionnaire
+     * @param canal Canal des opérations
+     * @param queryDate Date de la requête
+     * @param messages Messages prêts à l'envoi
+     * @return Nombre de messages mis en file
+     */
+    public int enqueue(String recipient, String canal, String queryDate, List<MimeMessage> messages) {
+        return enqueue(recipient, canal, queryDate, messages, null);
+    }
+    
+    /**
+     * Met en file les messages rendus d'un gestionnaire avec les opérations qu'ils notifient
+     * 
+     * Les messages et leurs opérations sont inscrits ensemble : en cas d'échec, rien n'est mis en file.
+     * 
+     * @param recipient Email du gestionnaire
+     * @param canal Canal des opérations
+     * @param queryDate Date de la requête
+     * @param messages Messages prêts à l'envoi
+     * @param notification Opérations de chaque message, ou null
+     * @return Nombre de messages mis en file
+     */
+    public int enqueue(String recipient, String canal, String queryDate, List<MimeMessage> messages,
+                       Notification notification) {
+        if (notification != null && notification.getOperations().size() != messages.size()) {
+            throw new IllegalArgumentException("Opérations notifiées : une liste attendue par message");
+        }
+        
+        List<String> files = new ArrayList<>(messages.size());
+        List<Object[]> rows = new ArrayList<>(messages.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        java.sql.Date businessDate = notification != null 
+            ? java.sql.Date.valueOf(notification.getBusinessDate()) 
+            : null;
+        String highWaterKey = notification != null ? notification.getHighWaterKey() : null;
+        try {
+            for (MimeMessage message : messages) {
+                String file = write(message);
+                files.add(file);
+                rows.add(new Object[] { recipient, canal, queryDate, truncate(message.getSubject(), 500), file,
+                    Files.size(directory.resolve(file)), Status.PENDING.name(), now, now, now,
+                    businessDate, highWaterKey });
+            }
+            insertAll(rows, notification);
+        } catch (IOException | MessagingException | RuntimeException e) {
+            files.forEach(this::deleteFile);
+            throw new RuntimeException("Impossible de mettre en file les emails de " + recipient, e);
+        }
+        
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        return messages.size();
+    }
+    
+    /**
+     * Attribue le prochain message dû à l'appelant
+     * 
+     * @return Message passé à l'état SENDING, ou null si aucun n'est dû
+     */
+    public synchronized Entry claimNext() {
+        List<Entry> due = localStore.getJdbcTemplate().query(
+            "SELECT id, recipient, canal, query_date, message_file, attempts, business_date, high_water_key "
+                + "FROM siop_email_outbox WHERE status = ? AND next_attempt_at <= ? "
+                + "ORDER BY next_attempt_at, id LIMIT 1",
+            (rs, rowNum) -> new Entry(rs.getLong("id"), rs.getString("recipient"), rs.getString("canal"),
+                rs.getString("query_date"), directory.resolve(rs.getString("message_file")), rs.getInt("attempts"),
+                toLocalDate(rs.getDate("business_date")), rs.getString("high_water_key")),
+            Status.PENDING.name(), Timestamp.valueOf(LocalDateTime.now()));
+        if (due.isEmpty()) {
+            return null;
+        }
+        
+        Entry entry = due.get(0);
+        localStore.getJdbcTemplate().update(
+            "UPDATE siop_email_outbox SET status = ?, updated_at = ? WHERE id = ?",
+            Status.SENDING.name(), Timestamp.valueOf(LocalDateTime.now()), entry.getId());
+        return entry;
+    }
+    
+    /**
+     * Attend une mise en file, au plus le délai indiqué
+     * 
+     * @param timeoutMs Attente maximale en millisecondes
+     */
+    public void awaitWork(long timeoutMs) {
+        synchronized (signal) {
+            try {
+                signal.wait(Math.max(1, timeoutMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Réveille les threads en attente (arrêt de l'application)
+     */
+    public void wakeUp() {
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+    
+    /**
+     * Marque un message comme envoyé ; son fichier et ses opérations ne sont plus conservés
+     * 
+     * Les opérations sont à consigner dans le journal des notifications avant cet appel
+     * (notifiedKeys)
+     * 
+     * @param entry Message envoyé
+     */
+    public void markSent(Entry entry) {
+        localStore.getJdbcTemplate().update(
+            "UPDATE siop_email_outbox SET status = ?, attempts = attempts + 1, last_error = NULL, updated_at = ? "
+                + "WHERE id = ?",
+            Status.SENT.name(), Timestamp.valueOf(LocalDateTime.now()), entry.getId());
+        localStore.getJdbcTemplate().update(
+            "DELETE FROM siop_email_outbox_operation WHERE message_id = ?", entry.getId());
+        deleteFile(entry.getFile().getFileName().toString());
+    }
+    
+    /**
+     * Clés du journal des notifications des opérations d'un message
+     * 
+     * @param entry Message de la file
+     * @return Clés opération et statuts (NotificationLedger), vide si le message n'en porte pas
+     */
+    public List<String> notifiedKeys(Entry entry) {
+        return localStore.getJdbcTemplate().query(
+            "SELECT op_key, status_key FROM siop_email_outbox_operation WHERE message_id = ?",
+            (rs, rowNum) -> NotificationLedger.ledgerKey(rs.getString("op_key"), rs.getString("status_key")),
+            entry.getId());
+    }
+    
+    /**
+     * Plus petit incomtime des opérations d'un message
+     * 
+     * @param entry Message de la file
+     * @return Incomtime le plus ancien, ou null si aucune opération n'en a
+     */
+    public LocalDateTime earliestIncomTime(Entry entry) {
+        Timestamp earliest = localStore.getJdbcTemplate().queryForObject(
+            "SELECT MIN(incom_time) FROM siop_email_outbox_operation WHERE message_id = ?",
+            Timestamp.class, entry.getId());
+        return earliest != null ? earliest.toLocalDateTime() : null;
+    }
+    
+    /**
+     * Opérations en cours de notification : messages en attente ou en cours d'envoi
+     * 
+     * @param operationKeys Clés d'opération recherchées (au plus 1000)
+     * @return Clés du journal (opération et statuts) des opérations trouvées
+     */
+    public Set<String> findInFlight(Collection<String> operationKeys) {
+        Set<String> inFlight = new HashSet<>();
+        if (operationKeys.isEmpty()) {
+            return inFlight;
+        }
+        namedJdbcTemplate.query(
+            "SELECT o.op_key, o.status_key FROM siop_email_outbox_operation o "
+                + "JOIN siop_email_outbox m ON m.id = o.message_id "
+                + "WHERE o.op_key IN (:keys) AND m.status IN (:statuses)",
+            new MapSqlParameterSource()
+                .addValue("keys", operationKeys)
+                .addValue("statuses", List.of(Status.PENDING.name(), Status.SENDING.name())),
+            rs -> {
+                inFlight.add(NotificationLedger.ledgerKey(rs.getString("op_key"), rs.getString("status_key")));
+            });
+        return inFlight;
+    }
+    
+    /**
+     * Parcourt les clés du journal des opérations en cours de notification
+     * 
+     * @param consumer Reçoit chaque clé (opération et statuts)
+     */
+    void forEachInFlight(Consumer<String> consumer) {
+        localStore.getJdbcTemplate().query(
+            "SELECT o.op_key, o.status_key FROM siop_email_outbox_operation o "
+                + "JOIN siop_email_outbox m ON m.id = o.message_id WHERE m.status IN (?, ?)",
+            rs -> {
+                consumer.accept(NotificationLedger.ledgerKey(rs.getString("op_key"), rs.getString("status_key")));
+            },
+            Status.PENDING.name(), Status.SENDING.name());
+    }
+    
+    /**
+     * Enregistre l'échec d'un envoi
+     * 
+     * Le message est reprogrammé après siop.outbox.initial-backoff-seconds, doublé à chaque échec
+     * et plafonné à siop.outbox.max-backoff-seconds. Un échec définitif ou le dernier essai autorisé
+     * le passe en lettre morte ; son fichier est conservé pour une remise en file.
+     * 
+     * @param entry Message en échec
+     * @param error Cause de l'échec
+     * @param permanent true si un nouvel essai ne peut pas réussir (destinataire refusé, fichier absent)
+     * @return Nouvel état du message (PENDING ou DEAD)
+     */
+    public Status markFailed(Entry entry, String error, boolean permanent) {
+        SiopProperties.Outbox outbox = siopProperties.getOutbox();
+        int attempts = entry.getAttempts() + 1;
+        Status status = permanent || attempts >= outbox.getMaxAttempts() ? Status.DEAD : Status.PENDING;
+        
+        LocalDateTime now = LocalDateTime.now();
+        long delaySeconds = Math.min((long) outbox.getInitialBackoffSeconds() << Math.min(attempts - 1, 20),
+            outbox.getMaxBackoffSeconds());
+        localStore.getJdbcTemplate().update(
+            "UPDATE siop_email_outbox SET status = ?, attempts = ?, next_attempt_at = ?, last_error = ?, "
+                + "updated_at = ? WHERE id = ?",
+            status.name(), attempts, Timestamp.valueOf(now.plusSeconds(delaySeconds)),
+            truncate(error, MAX_ERROR_LENGTH), Timestamp.valueOf(now), entry.getId());
+        return status;
+    }
+    
+    /**
+     * Remet en file des lettres mortes, compteur d'essais remis à zéro
+     * 
+     * @param id Identifiant du message, ou null pour toutes les lettres mortes
+     * @return Nombre de messages remis en file
+     */
+    public int requeue(Long id) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String sql = "UPDATE siop_email_outbox SET status = ?, attempts = 0, next_attempt_at = ?, updated_at = ? "
+            + "WHERE status = ?";
+        int requeued = id != null
+            ? localStore.getJdbcTemplate().update(sql + " AND id = ?",
+                Status.PENDING.name(), now, now, Status.DEAD.name(), id)
+            : localStore.getJdbcTemplate().update(sql, Status.PENDING.name(), now, now, Status.DEAD.name());
+        
+        if (requeued > 0) {
+            logger.info("{} lettre(s) morte(s) remise(s) en file d'envoi", requeued);
+            wakeUp();
+        }
+        return requeued;
+    }
+    
+    /**
+     * Nombre de messages dans un état
+     * 
+     * @param status État recherché
+     * @return Nombre de messages
+     */
+    public long count(Status status) {
+        Long count = localStore.getJdbcTemplate().queryForObject(
+            "SELECT COUNT(*) FROM siop_email_outbox WHERE status = ?", Long.class, status.name());
+        return count != null ? count : 0;
+    }
+    
+    /**
+     * État de la file : nombre de messages par état et dernières lettres mortes
+     * 
+     * @return Compteurs et lettres mortes (au plus 100, les plus récentes d'abord)
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        for (Status status : Status.values()) {
+            counts.put(status.name(), 0L);
+        }
+        localStore.getJdbcTemplate().query(
+            "SELECT status, COUNT(*) AS total FROM siop_email_outbox GROUP BY status",
+            rs -> {
+                counts.put(rs.getString("status"), rs.getLong("total"));
+            });
+        
+        List<Map<String, Object>> deadLetters = localStore.getJdbcTemplate().query(
+            "SELECT id, recipient, canal, query_date, subject, attempts, last_error, updated_at "
+                + "FROM siop_email_outbox WHERE status = ? ORDER BY updated_at DESC, id DESC LIMIT " + DEAD_LETTER_LIMIT,
+            (rs, rowNum) -> {
+                Map<String, Object> deadLetter = new LinkedHashMap<>();
+                deadLetter.put("id", rs.getLong("id"));
+                deadLetter.put("recipient", rs.getString("recipient"));
+                deadLetter.put("canal", rs.getString("canal"));
+                deadLetter.put("date", rs.getString("query_date"));
+                deadLetter.put("subject", rs.getString("subject"));
+                deadLetter.put("attempts", rs.getInt("attempts"));
+                deadLetter.put("lastError", rs.getString("last_error"));
+                deadLetter.put("failedAt", rs.getTimestamp("updated_at").getTime());
+                return deadLetter;
+            },
+            Status.DEAD.name());
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", siopProperties.getOutbox().isEnabled());
+        stats.put("counts", counts);
+        stats.put("deadLetters", deadLetters);
+        return stats;
+    }
+    
+    /**
+     * Supprime les messages envoyés ou en lettre morte au-delà de la rétention
+     * 
+     * @return Nombre de messages supprimés
+     */
+    @Scheduled(cron = "${siop.outbox.purge-cron:0 15 3 * * *}")
+    public int purgeExpired() {
+        Timestamp limit = Timestamp.valueOf(LocalDateTime.now().minusDays(siopProperties.getOutbox().getRetentionDays()));
+        List<String> deadFiles = localStore.getJdbcTemplate().queryForList(
+            "SELECT message_file FROM siop_email_outbox WHERE status = ? AND updated_at < ?",
+            String.class, Status.DEAD.name(), limit);
+        int deleted = localStore.getJdbcTemplate().update(
+            "DELETE FROM siop_email_outbox WHERE status IN (?, ?) AND updated_at < ?",
+            Status.SENT.name(), Status.DEAD.name(), limit);
+        localStore.getJdbcTemplate().update(DELETE_ORPHAN_OPERATIONS, Status.SENT.name());
+        deadFiles.forEach(this::deleteFile);
+        
+        logger.info("Purge de la file d'envoi : {} message(s) antérieur(s) au {} supprimé(s)", deleted, limit);
+        return deleted;
+    }
+    
+    /**
+     * Écrit un message rendu dans un fichier temporaire puis le publie
+     * 
+     * @param message Message MIME
+     * @return Nom du fichier publié
+     */
+    private String write(MimeMessage message) throws IOException, MessagingException {
+        String name = UUID.randomUUID() + EXTENSION;
+        Path temp = directory.resolve(name + TEMP_SUFFIX);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+            message.writeTo(out);
+        } catch (IOException | MessagingException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        
+        Path target = directory.resolve(name);
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target);
+        }
+        return name;
+    }
+    
+    /**
+     * Inscrit les messages et leurs opérations dans une seule transaction
+     * 
+     * @param rows Valeurs de chaque ligne, dans l'ordre de INSERT
+     * @param notification Opérations de chaque message, ou null
+     */
+    private void insertAll(List<Object[]> rows, Notification notification) {
+        localStore.getJdbcTemplate().execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT, new String[] { "ID" });
+                 PreparedStatement operationStatement = connection.prepareStatement(INSERT_OPERATION)) {
+                for (int r = 0; r < rows.size(); r++) {
+                    Object[] row = rows.get(r);
+                    for (int i = 0; i < row.length; i++) {
+                        statement.setObject(i + 1, row[i]);
+                    }
+                    statement.executeUpdate();
+                    if (notification == null) {
+                        continue;
+                    }
+                    
+                    long messageId;
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        keys.next();
+                        messageId = keys.getLong(1);
+                    }
+                    for (SiopReportDto operation : notification.getOperations().get(r)) {
+                        operationStatement.setLong(1, messageId);
+                        operationStatement.setString(2, NotificationLedger.operationKey(operation));
+                        operationStatement.setString(3, NotificationLedger.statusKey(operation));
+                        operationStatement.setTimestamp(4, operation.getIncomTime() != null 
+                            ? Timestamp.valueOf(operation.getIncomTime()) : null);
+                        operationStatement.addBatch();
+                    }
+                }
+                operationStatement.executeBatch();
+                connection.commit();
+                return null;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+    
+    /**
+     * Supprime les fichiers temporaires et les messages sans ligne dans la table
+     * (arrêt entre l'écriture du fichier et son inscription)
+     */
+    private void deleteUnreferencedFiles() throws IOException {
+        Set<String> referenced = new HashSet<>(localStore.getJdbcTemplate().queryForList(
+            "SELECT message_file FROM siop_email_outbox WHERE status <> ?", String.class, Status.SENT.name()));
+        
+        int deleted = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                boolean orphan = name.endsWith(EXTENSION) && !referenced.contains(name);
+                if ((orphan || name.endsWith(TEMP_SUFFIX)) && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0) {
+            logger.warn("File d'envoi : {} fichier(s) sans message associé supprimé(s)", deleted);
+        }
+    }
+    
+    private void deleteFile(String name) {
+        try {
+            Files.deleteIfExists(directory.resolve(name));
+        } catch (IOException e) {
+            logger.warn("Impossible de supprimer le message {} de la file d'envoi", name, e);
+        }
+    }
+    
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+    
+    private static LocalDate toLocalDate(java.sql.Date date) {
+        return date != null ? date.toLocalDate() : null;
+    }
+    
+    /**
+     * Opérations notifiées par les messages d'un gestionnaire
+     */
+    public static final class Notification {
+        
+        private final LocalDate businessDate;
+        private final String highWaterKey;
+        private final List<List<SiopReportDto>> operations;
+        
+        /**
+         * @param businessDate Date métier des opérations
+         * @param highWaterKey Canal du marqueur incrémental à faire reculer si un message passe en lettre morte
+         * @param operations Opérations de chaque message, dans l'ordre des messages
+         */
+        public Notification(LocalDate businessDate, String highWaterKey, List<List<SiopReportDto>> operations) {
+            this.businessDate = businessDate;
+            this.highWaterKey = highWaterKey;
+            this.operations = operations;
+        }
+        
+        public LocalDate getBusinessDate() { return businessDate; }
+        
+        public String getHighWaterKey() { return highWaterKey; }
+        
+        public List<List<SiopReportDto>> getOperations() { return operations; }
+    }
+    
+    /**
+     * Message attribué à un thread d'envoi
+     */
+    public static final class Entry {
+        
+        private final long id;
+        private final String recipient;
+        private final String canal;
+        private final String queryDate;
+        private final Path file;
+        private final int attempts;
+        private final LocalDate businessDate;
+        private final String highWaterKey;
+        
+        private Entry(long id, String recipient, String canal, String queryDate, Path file, int attempts,
+                      LocalDate businessDate, String highWaterKey) {
+            this.id = id;
+            this.recipient = recipient;
+            this.canal = canal;
+            this.queryDate = queryDate;
+            this.file = file;
+            this.attempts = attempts;
+            this.businessDate = businessDate;
+            this.highWaterKey = highWaterKey;
+        }
+        
+        public long getId() { return id; }
+        
+        public String getRecipient() { return recipient; }
+        
+        public String getCanal() { return canal; }
+        
+        public String getQueryDate() { return queryDate; }
+        
+        public Path getFile() { return file; }
+        
+        /**
+         * Essais déjà effectués avant celui-ci
+         */
+        public int getAttempts() { return attempts; }
+        
+        /**
+         * Date métier des opérations notifiées, null pour un message sans opérations suivies
+         */
+        public LocalDate getBusinessDate() { return businessDate; }
+        
+        /**
+         * Canal du marqueur incrémental de l'exécution qui a produit le message
+         */
+        public String getHighWaterKey() { return highWaterKey; }
+    }
+}
@@ -0,0 +1,226 @@
+package com.rawbank.siop.store;
+
+import com.rawbank.siop.config.SiopProperties;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Marqueurs d'exécution incrémentale
+ * 
+ * Conserve, par date métier et par canal, le plus grand BKMOPMSG.incomtime
+ * traité lors de la dernière exécution réussie.
+ * 
+ * Les marqueurs restent dans la base locale (LocalStore). Sur option
+ * (siop.store.shared), ils sont dans SIOP_HIGH_WATER_MARK (script sql/siop_shared_store.sql),
+ * dans le schéma Oracle : l'instance qui obtient le bail suivant reprend là où la précédente
+ * s'est arrêtée. Les marqueurs locaux ne sont pas repris au passage à la base partagée :
+ * la première exécution incrémentale relit la journée, le journal partagé écarte le déjà notifié.
+ * 
+ * Un marqueur recule (rewind) quand un email passe en lettre morte : ses opérations
+ * sont relues et reconstruites par l'exécution incrémentale suivante.
+ */
+@Component
+public class HighWaterMarkStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(HighWaterMarkStore.class);
+    
+    private static final String CREATE_TABLE =
+        "CREATE TABLE IF NOT EXISTS siop_high_water_mark ("
+            + "business_date DATE NOT NULL, "
+            + "canal VARCHAR(50) NOT NULL, "
+            + "high_water TIMESTAMP NOT NULL, "
+            + "updated_at TIMESTAMP NOT NULL, "
+            + "PRIMARY KEY (business_date, canal))";
+    
+    private static final String FIND =
+        "SELECT high_water FROM siop_high_water_mark WHERE business_date = :businessDate AND canal = :canal";
+    
+    private static final String FIND_BY_PREFIX =
+        "SELECT canal, high_water FROM siop_high_water_mark "
+            + "WHERE business_date = :businessDate AND SUBSTR(canal, 1, :prefixLength) = :prefix";
+    
+    private static final String SAVE_LOCAL =
+        "MERGE INTO siop_high_water_mark (business_date, canal, high_water, updated_at) "
+            + "KEY (business_date, canal) VALUES (:businessDate, :canal, :highWater, :updatedAt)";
+    
+    private static final String SAVE_SHARED =
+        "MERGE INTO SIOP_HIGH_WATER_MARK m "
+            + "USING (SELECT CAST(:businessDate AS DATE) AS business_date, "
+            + "CAST(:canal AS VARCHAR2(50)) AS canal FROM dual) s "
+            + "ON (m.business_date = s.business_date AND m.canal = s.canal) "
+            + "WHEN MATCHED THEN UPDATE SET m.high_water = :highWater, m.updated_at = :updatedAt "
+            + "WHEN NOT MATCHED THEN INSERT (business_date, canal, high_water, updated_at) "
+            + "VALUES (:businessDate, :canal, :highWater, :updatedAt)";
+    
+    private static final String REWIND =
+        "UPDATE siop_high_water_mark SET high_water = :highWater, updated_at = :updatedAt "
+            + "WHERE business_date = :businessDate AND canal = :canal AND high_water > :highWater";
+    
+    // Base locale comme Oracle : n'écrase pas un marqueur créé entre-temps
+    private static final String INSERT_IF_ABSENT =
+        "MERGE INTO siop_high_water_mark m "
+            + "USING (SELECT CAST(:businessDate AS DATE) AS business_date, "
+            + "CAST(:canal AS VARCHAR(50)) AS canal FROM dual) s "
+            + "ON (m.business_date = s.business_date AND m.canal = s.canal) "
+            + "WHEN NOT MATCHED THEN INSERT (business_date, canal, high_water, updated_at) "
+            + "VALUES (:businessDate, :canal, :highWater, :updatedAt)";
+    
+    private static final String ADVANCE =
+        "UPDATE siop_high_water_mark SET high_water = :highWater, updated_at = :updatedAt "
+            + "WHERE business_date = :businessDate AND canal = :canal AND high_water = :expected";
+    
+    @Autowired
+    private LocalStore localStore;
+    
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private boolean shared;
+    
+    @PostConstruct
+    public void init() {
+        shared = siopProperties.getStore().isShared();
+        if (shared) {
+            jdbcTemplate = namedParameterJdbcTemplate;
+        } else {
+            localStore.getJdbcTemplate().execute(CREATE_TABLE);
+            jdbcTemplate = new NamedParameterJdbcTemplate(localStore.getJdbcTemplate());
+        }
+        
+        logger.info("Marqueurs incrémentaux : {}", shared ? "SIOP_HIGH_WATER_MARK (Oracle)" : "base locale");
+    }
+    
+    /**
+     * Recherche le marqueur d'une date et d'un canal
+     * 
+     * @param businessDate Date métier
+     * @param canal Canal des opérations
+     * @return Dernier incomtime traité, s'il existe
+     */
+    public Optional<LocalDateTime> find(LocalDate businessDate, String canal) {
+        List<Timestamp> marks = jdbcTemplate.queryForList(FIND, 
+            new MapSqlParameterSource()
+                .addValue("businessDate", java.sql.Date.valueOf(businessDate))
+                .addValue("canal", canal),
+            Timestamp.class);
+        
+        return marks.stream().findFirst().map(Timestamp::toLocalDateTime);
+    }
+    
+    /**
+     * Recherche les marqueurs d'une date dont le canal commence par un préfixe
+     * 
+     * @param businessDate Date métier
+     * @param prefix Début du canal (canal des opérations, suivi ou non d'une part)
+     * @return Dernier incomtime traité par canal enregistré
+     */
+    public Map<String, LocalDateTime> findByPrefix(LocalDate businessDate, String prefix) {
+        Map<String, LocalDateTime> marks = new HashMap<>();
+        jdbcTemplate.query(FIND_BY_PREFIX, 
+            new MapSqlParameterSource()
+                .addValue("businessDate", java.sql.Date.valueOf(businessDate))
+                .addValue("prefix", prefix)
+                .addValue("prefixLength", prefix.length()),
+            rs -> {
+                marks.put(rs.getString("canal"), rs.getTimestamp("high_water").toLocalDateTime());
+            });
+        return marks;
+    }
+    
+    /**
+     * Avance le marqueur lu en début d'exécution, s'il n'a pas été modifié entre-temps
+     * 
+     * Un marqueur reculé pendant l'exécution (lettre morte) est conservé :
+     * l'exécution suivante relit à partir de lui.
+     * 
+     * @param businessDate Date métier
+     * @param canal Canal des opérations
+     * @param expected Marqueur lu en début d'exécution, null s'il n'existait pas
+     * @param highWater Plus grand incomtime traité
+     * @return true si le marqueur a été enregistré
+     */
+    public boolean advance(LocalDate businessDate, String canal, LocalDateTime expected, LocalDateTime highWater) {
+        if (expected == null) {
+            return insertIfAbsent(businessDate, canal, highWater);
+        }
+        return jdbcTemplate.update(ADVANCE, parameters(businessDate, canal, highWater)
+            .addValue("expected", Timestamp.valueOf(expected))) > 0;
+    }
+    
+    /**
+     * Fait reculer le marqueur d'une date et d'un canal, s'il est plus récent
+     * 
+     * Sans marqueur, l'exécution qui a produit le message n'a pas encore enregistré le sien :
+     * le marqueur est créé, et cette exécution le conserve (advance).
+     * 
+     * @param businessDate Date métier
+     * @param canal Canal des opérations
+     * @param highWater Nouveau marqueur : les messages reçus après lui seront relus
+     * @return true si le marqueur a reculé ou a été créé
+     */
+    public boolean rewind(LocalDate businessDate, String canal, LocalDateTime highWater) {
+        if (jdbcTemplate.update(REWIND, parameters(businessDate, canal, highWater)) > 0
+                || insertIfAbsent(businessDate, canal, highWater)) {
+            return true;
+        }
+        // Marqueur créé entre-temps (autre lettre morte, fin d'exécution) : nouvel essai du recul
+        return jdbcTemplate.update(REWIND, parameters(businessDate, canal, highWater)) > 0;
+    }
+    
+    /**
+     * Enregistre le marqueur d'une date et d'un canal
+     * 
+     * @param businessDate Date métier
+     * @param canal Canal des opérations
+     * @param highWater Plus grand incomtime traité
+     */
+    public void save(LocalDate businessDate, String canal, LocalDateTime highWater) {
+        MapSqlParameterSource parameters = parameters(businessDate, canal, highWater);
+        if (!shared) {
+            jdbcTemplate.update(SAVE_LOCAL, parameters);
+            return;
+        }
+        
+        try {
+            jdbcTemplate.update(SAVE_SHARED, parameters);
+        } catch (DuplicateKeyException e) {
+            // Insertion concurrente par une autre instance : la ligne existe désormais
+            jdbcTemplate.update(SAVE_SHARED, parameters);
+        }
+    }
+    
+    private boolean insertIfAbsent(LocalDate businessDate, String canal, LocalDateTime highWater) {
+        try {
+            return jdbcTemplate.update(INSERT_IF_ABSENT, parameters(businessDate, canal, highWater)) > 0;
+        } catch (DuplicateKeyException e) {
+            // Insertion concurrente : le marqueur existant est conservé
+            return false;
+        }
+    }
+    
+    private static MapSqlParameterSource parameters(LocalDate businessDate, String canal, LocalDateTime highWater) {
+        return new MapSqlParameterSource()
+            .addValue("businessDate", java.sql.Date.valueOf(businessDate))
+            .addValue("canal", canal)
+            .addValue("highWater", Timestamp.valueOf(highWater))
+            .addValue("updatedAt", Timestamp.valueOf(LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,59 @@
+package com.rawbank.siop.store;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Base locale embarquée (H2)
+ * 
+ * Conserve l'état propre à l'application (marqueurs d'exécution, etc.)
+ * sans écrire dans la base Oracle métier.
+ * 
+ * Le DataSource n'est volontairement pas exposé comme bean Spring
+ * afin de ne pas remplacer le DataSource Oracle auto-configuré.
+ */
+@Component
+public class LocalStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LocalStore.class);
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    
+    @PostConstruct
+    public void init() {
+        SiopProperties.Store store = siopProperties.getStore();
+        
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("siop-store");
+        config.setJdbcUrl(store.getUrl());
+        config.setUsername(store.getUsername());
+        config.setPassword(store.getPassword());
+        config.setMaximumPoolSize(store.getMaxPoolSize());
+        
+        dataSource = new HikariDataSource(config);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        
+        logger.info("Base locale SIOP ouverte : {}", store.getUrl());
+    }
+    
+    @PreDestroy
+    public void close() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+    
+    public JdbcTemplate getJdbcTemplate() { return jdbcTemplate; }
+}
@@ -0,0 +1,341 @@
+package com.rawbank.siop.store;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.SiopReportDto;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Journal des notifications envoyées
+ * 
+ * Responsable de :
+ * - Mémoriser chaque opération notifiée avec son triplet de statuts
+ * - Filtrer les opérations déjà notifiées sans changement de statut
+ * - Compacter le journal par date métier
+ * 
+ * Un filtre de Bloom en mémoire écarte sans accès disque
+ * les opérations jamais notifiées ; seuls les "peut-être" sont vérifiés en base.
+ * 
+ * Une opération est consignée une fois son email envoyé. Avec la file d'envoi, c'est
+ * OutboxSender qui la consigne ; d'ici là, les opérations des messages en attente
+ * (EmailOutbox) sont traitées comme déjà notifiées, et une lettre morte les libère.
+ * 
+ * Le journal reste dans la base locale (LocalStore). Sur option (siop.store.shared),
+ * il est dans SIOP_NOTIFICATION_LEDGER (script sql/siop_shared_store.sql), commun à toutes
+ * les instances. Le filtre d'une instance ignore alors les envois des autres : il n'est
+ * pas utilisé et chaque opération est vérifiée en base, par lots IN. Au passage à la base
+ * partagée, les entrées du journal local y sont reprises une fois.
+ */
+@Component
+public class NotificationLedger {
+    
+    private static final Logger logger = LoggerFactory.getLogger(NotificationLedger.class);
+    
+    private static final String CREATE_TABLE =
+        "CREATE TABLE IF NOT EXISTS siop_notification_ledger ("
+            + "op_key VARCHAR(100) NOT NULL, "
+            + "status_key VARCHAR(200) NOT NULL, "
+            + "business_date DATE NOT NULL, "
+            + "notified_at TIMESTAMP NOT NULL, "
+            + "PRIMARY KEY (op_key, status_key))";
+    
+    private static final String CREATE_DATE_INDEX =
+        "CREATE INDEX IF NOT EXISTS idx_siop_ledger_date ON siop_notification_ledger (business_date)";
+    
+    private static final String RECORD_LOCAL =
+        "MERGE INTO siop_notification_ledger (op_key, status_key, business_date, notified_at) "
+            + "KEY (op_key, status_key) VALUES (?, ?, ?, ?)";
+    
+    private static final String RECORD_SHARED =
+        "MERGE INTO SIOP_NOTIFICATION_LEDGER l "
+            + "USING (SELECT CAST(? AS VARCHAR2(100)) AS op_key, CAST(? AS VARCHAR2(200)) AS status_key, "
+            + "CAST(? AS DATE) AS business_date, CAST(? AS TIMESTAMP) AS notified_at FROM dual) s "
+            + "ON (l.op_key = s.op_key AND l.status_key = s.status_key) "
+            + "WHEN MATCHED THEN UPDATE SET l.business_date = s.business_date, l.notified_at = s.notified_at "
+            + "WHEN NOT MATCHED THEN INSERT (op_key, status_key, business_date, notified_at) "
+            + "VALUES (s.op_key, s.status_key, s.business_date, s.notified_at)";
+    
+    private static final String LOCAL_TABLE_EXISTS =
+        "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'SIOP_NOTIFICATION_LEDGER'";
+    
+    private static final int LOOKUP_BATCH_SIZE = 500;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final char SEPARATOR = '\u001F';
+    
+    @Autowired
+    private LocalStore localStore;
+    
+    @Autowired
+    private EmailOutbox emailOutbox;
+    
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private JdbcTemplate jdbcTemplate;
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+    private boolean shared;
+    private volatile BloomFilter bloomFilter;
+    
+    @PostConstruct
+    public void init() {
+        shared = siopProperties.getStore().isShared();
+        if (shared) {
+            namedJdbcTemplate = namedParameterJdbcTemplate;
+            jdbcTemplate = namedParameterJdbcTemplate.getJdbcTemplate();
+            importLocalEntries();
+        } else {
+            jdbcTemplate = localStore.getJdbcTemplate();
+            jdbcTemplate.execute(CREATE_TABLE);
+            jdbcTemplate.execute(CREATE_DATE_INDEX);
+            namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+            bloomFilter = loadBloomFilter();
+        }
+        
+        logger.info("Journal des notifications : {}", 
+            shared ? "SIOP_NOTIFICATION_LEDGER (Oracle)" : "base locale");
+    }
+    
+    /**
+     * Reprend dans le journal partagé les entrées du journal local, puis les supprime
+     * 
+     * Sans effet après la première reprise ; une reprise interrompue est rejouée
+     * au démarrage suivant (les entrées déjà reprises sont fusionnées).
+     */
+    private void importLocalEntries() {
+        JdbcTemplate local = localStore.getJdbcTemplate();
+        Integer tables = local.queryForObject(LOCAL_TABLE_EXISTS, Integer.class);
+        if (tables == null || tables == 0) {
+            return;
+        }
+        
+        List<Object[]> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        int[] imported = new int[1];
+        local.query("SELECT op_key, status_key, business_date, notified_at FROM siop_notification_ledger", rs -> {
+            batch.add(new Object[] { rs.getString("op_key"), rs.getString("status_key"),
+                rs.getDate("business_date"), rs.getTimestamp("notified_at") });
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(RECORD_SHARED, batch);
+                imported[0] += batch.size();
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(RECORD_SHARED, batch);
+            imported[0] += batch.size();
+        }
+        
+        local.update("DELETE FROM siop_notification_ledger");
+        if (imported[0] > 0) {
+            logger.info("Journal des notifications : {} entrée(s) locale(s) reprise(s) dans SIOP_NOTIFICATION_LEDGER",
+                imported[0]);
+        }
+    }
+    
+    /**
+     * Conserve les opérations nouvelles ou dont le statut a changé
+     * 
+     * @param operations Opérations d'un gestionnaire
+     * @return Opérations à notifier, dans l'ordre d'origine
+     */
+    public List<SiopReportDto> filterUnnotified(List<SiopReportDto> operations) {
+        if (!siopProperties.getLedger().isEnabled()) {
+            return operations;
+        }
+        
+        BloomFilter filter = bloomFilter;
+        List<SiopReportDto> suspects = filter == null ? operations : operations.stream()
+            .filter(op -> filter.mightContain(ledgerKey(op)))
+            .collect(Collectors.toList());
+        if (suspects.isEmpty()) {
+            return operations;
+        }
+        
+        Set<String> notified = findNotified(suspects);
+        return operations.stream()
+            .filter(op -> !notified.contains(ledgerKey(op)))
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Enregistre les opérations notifiées
+     * 
+     * @param businessDate Date métier des opérations
+     * @param operations Opérations notifiées
+     */
+    public void record(LocalDate businessDate, List<SiopReportDto> operations) {
+        recordKeys(businessDate, operations.stream()
+            .map(NotificationLedger::ledgerKey)
+            .collect(Collectors.toList()));
+    }
+    
+    /**
+     * Enregistre les opérations notifiées par un message de la file d'envoi
+     * 
+     * @param businessDate Date métier des opérations
+     * @param keys Clés opération et statuts (EmailOutbox.notifiedKeys)
+     */
+    public synchronized void recordKeys(LocalDate businessDate, Collection<String> keys) {
+        if (!siopProperties.getLedger().isEnabled() || keys.isEmpty()) {
+            return;
+        }
+        
+        java.sql.Date date = java.sql.Date.valueOf(businessDate);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            int separator = key.indexOf(SEPARATOR);
+            rows.add(new Object[] { key.substring(0, separator), key.substring(separator + 1), date, now });
+        }
+        
+        if (!shared) {
+            jdbcTemplate.batchUpdate(RECORD_LOCAL, rows);
+            keys.forEach(bloomFilter::add);
+            return;
+        }
+        
+        try {
+            jdbcTemplate.batchUpdate(RECORD_SHARED, rows);
+        } catch (DuplicateKeyException e) {
+            // Insertion concurrente par une autre instance : les lignes existent désormais
+            jdbcTemplate.batchUpdate(RECORD_SHARED, rows);
+        }
+    }
+    
+    /**
+     * Signale des opérations mises en file d'envoi, consignées seulement à l'envoi
+     * 
+     * Le filtre doit les laisser passer jusqu'à la vérification des messages en attente
+     * 
+     * @param operations Opérations des messages mis en file
+     */
+    public void markInFlight(List<SiopReportDto> operations) {
+        BloomFilter filter = bloomFilter;
+        if (filter != null && siopProperties.getLedger().isEnabled()) {
+            operations.forEach(op -> filter.add(ledgerKey(op)));
+        }
+    }
+    
+    /**
+     * Supprime les entrées plus anciennes que la rétention et reconstruit le filtre
+     */
+    @Scheduled(cron = "${siop.ledger.compaction-cron:0 30 2 * * *}")
+    public synchronized void compact() {
+        LocalDate limit = LocalDate.now().minusDays(siopProperties.getLedger().getRetentionDays());
+        int deleted = jdbcTemplate.update(
+            "DELETE FROM siop_notification_ledger WHERE business_date < ?", java.sql.Date.valueOf(limit));
+        
+        // Un filtre de Bloom ne supporte pas la suppression : reconstruction complète
+        if (!shared) {
+            bloomFilter = loadBloomFilter();
+        }
+        
+        logger.info("Journal des notifications compacté : {} entrée(s) antérieure(s) au {} supprimée(s)",
+            deleted, limit);
+    }
+    
+    /**
+     * Identifiant de l'opération : transaction, à défaut lot ou message
+     * 
+     * @param operation Opération SIOP
+     * @return Clé de l'opération
+     */
+    static String operationKey(SiopReportDto operation) {
+        if (operation.getIdtx() != null) {
+            return "TX:" + operation.getIdtx().trim();
+        }
+        if (operation.getIdlot() != null) {
+            return "LOT:" + operation.getIdlot().trim();
+        }
+        return "MSG:" + (operation.getIdmsg() != null ? operation.getIdmsg().trim() : "");
+    }
+    
+    /**
+     * Triplet de statuts message / lot / transaction
+     * 
+     * @param operation Opération SIOP
+     * @return Clé des statuts
+     */
+    static String statusKey(SiopReportDto operation) {
+        return operation.getMsgStatus() + "|" + operation.getLotStatus() + "|" + operation.getTxtStatus();
+    }
+    
+    private static String ledgerKey(SiopReportDto operation) {
+        return ledgerKey(operationKey(operation), statusKey(operation));
+    }
+    
+    /**
+     * Clé du journal : opération et statuts
+     * 
+     * @param operationKey Clé de l'opération
+     * @param statusKey Clé des statuts
+     * @return Clé utilisée par le filtre et les recherches
+     */
+    static String ledgerKey(String operationKey, String statusKey) {
+        return operationKey + SEPARATOR + statusKey;
+    }
+    
+    /**
+     * Vérifie en base, par lots, les opérations signalées par le filtre
+     * 
+     * @param suspects Opérations peut-être déjà notifiées
+     * @return Clés présentes dans le journal ou dans un message en attente d'envoi
+     */
+    private Set<String> findNotified(List<SiopReportDto> suspects) {
+        List<String> operationKeys = new ArrayList<>(suspects.stream()
+            .map(NotificationLedger::operationKey)
+            .collect(Collectors.toCollection(LinkedHashSet::new)));
+        
+        Set<String> notified = new HashSet<>();
+        for (int i = 0; i < operationKeys.size(); i += LOOKUP_BATCH_SIZE) {
+            List<String> batch = operationKeys.subList(i, Math.min(i + LOOKUP_BATCH_SIZE, operationKeys.size()));
+            namedJdbcTemplate.query(
+                "SELECT op_key, status_key FROM siop_notification_ledger WHERE op_key IN (:keys)",
+                new MapSqlParameterSource("keys", batch),
+                rs -> {
+                    notified.add(ledgerKey(rs.getString("op_key"), rs.getString("status_key")));
+                });
+            notified.addAll(emailOutbox.findInFlight(batch));
+        }
+        return notified;
+    }
+    
+    /**
+     * Charge toutes les entrées du journal dans un nouveau filtre
+     * 
+     * @return Filtre de Bloom
+     */
+    private BloomFilter loadBloomFilter() {
+        SiopProperties.Ledger ledger = siopProperties.getLedger();
+        BloomFilter filter = new BloomFilter(ledger.getExpectedEntries(), ledger.getFalsePositiveRate());
+        
+        jdbcTemplate.query(
+            "SELECT op_key, status_key FROM siop_notification_ledger",
+            rs -> {
+                filter.add(ledgerKey(rs.getString("op_key"), rs.getString("status_key")));
+            });
+        emailOutbox.forEachInFlight(filter::add);
+        return filter;
+    }
+}
@@ -0,0 +1,222 @@
+package com.rawbank.siop.store;
+
+import com.rawbank.siop.dto.LabelDictionary;
+import com.rawbank.siop.dto.SiopReportDto;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Format binaire des instantanés SIOP
+ * 
+ * Fichier compressé (gzip) : en-tête, lignes, puis marqueur de fin et nombre de lignes.
+ * Chaque ligne commence par un masque des champs renseignés, seuls ces champs suivent :
+ * - dates : secondes epoch (long) et nanosecondes (int)
+ * - montant : échelle (int) et valeur non mise à l'échelle (octets)
+ * - textes : UTF-8 modifié (DataOutput.writeUTF)
+ * 
+ * Seuls les champs lus par la requête SIOP sont conservés, avec le message d'erreur
+ * BKMOPERROR résolu à l'écriture (version 2) : une relecture n'interroge pas BKMOPERROR.
+ * La fiche du gestionnaire est complétée à la lecture, comme après Oracle.
+ * Les instantanés de version 1, sans message d'erreur, restent lisibles.
+ */
+final class SnapshotFormat {
+    
+    static final int MAGIC = 0x53494F50; // "SIOP"
+    static final int VERSION = 2;
+    
+    // Première version portant les messages d'erreur résolus
+    private static final int ERROR_MSG_VERSION = 2;
+    
+    private static final byte ROW = 1;
+    private static final byte END = 0;
+    
+    private static final int DATE_CREATION = 1;
+    private static final int INCOM_TIME = 1 << 1;
+    private static final int FILENAME = 1 << 2;
+    private static final int IDMSG = 1 << 3;
+    private static final int IDLOT = 1 << 4;
+    private static final int IDTX = 1 << 5;
+    private static final int CANAL = 1 << 6;
+    private static final int SERVICE = 1 << 7;
+    private static final int TYPE_MSG = 1 << 8;
+    private static final int BENEFICIAIRE = 1 << 9;
+    private static final int MONTANT = 1 << 10;
+    private static final int MOTIF = 1 << 11;
+    private static final int FRAIS = 1 << 12;
+    private static final int MSG_STATUS = 1 << 13;
+    private static final int LOT_STATUS = 1 << 14;
+    private static final int TXT_STATUS = 1 << 15;
+    private static final int GEST_CODE = 1 << 16;
+    private static final int ERROR_MSG = 1 << 17;
+    
+    private SnapshotFormat() {
+    }
+    
+    static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+    
+    /**
+     * Lit et vérifie l'en-tête
+     * 
+     * @param in Flux de l'instantané
+     * @return Version du fichier, à passer à readRow
+     * @throws IOException Fichier invalide ou version non supportée
+     */
+    static int readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Fichier d'instantané invalide");
+        }
+        int version = in.readInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Version d'instantané non supportée : " + version);
+        }
+        return version;
+    }
+    
+    static void writeFooter(DataOutputStream out, long rowCount) throws IOException {
+        out.writeByte(END);
+        out.writeLong(rowCount);
+    }
+    
+    static void writeRow(DataOutputStream out, SiopReportDto dto) throws IOException {
+        // Montant lu une fois : getMontantTx crée un BigDecimal à chaque appel
+        BigDecimal montant = dto.getMontantTx();
+        int mask = 0;
+        mask |= dto.getDateCreation() != null ? DATE_CREATION : 0;
+        mask |= dto.getIncomTime() != null ? INCOM_TIME : 0;
+        mask |= dto.getFilename() != null ? FILENAME : 0;
+        mask |= dto.getIdmsg() != null ? IDMSG : 0;
+        mask |= dto.getIdlot() != null ? IDLOT : 0;
+        mask |= dto.getIdtx() != null ? IDTX : 0;
+        mask |= dto.getCanal() != null ? CANAL : 0;
+        mask |= dto.getService() != null ? SERVICE : 0;
+        mask |= dto.getTypeMsg() != null ? TYPE_MSG : 0;
+        mask |= dto.getBeneficiaire() != null ? BENEFICIAIRE : 0;
+        mask |= montant != null ? MONTANT : 0;
+        mask |= dto.getMotif() != null ? MOTIF : 0;
+        mask |= dto.getFrais() != null ? FRAIS : 0;
+        mask |= dto.getMsgStatus() != null ? MSG_STATUS : 0;
+        mask |= dto.getLotStatus() != null ? LOT_STATUS : 0;
+        mask |= dto.getTxtStatus() != null ? TXT_STATUS : 0;
+        mask |= dto.getGestCode() != null ? GEST_CODE : 0;
+        mask |= dto.getErrorMsg() != null ? ERROR_MSG : 0;
+        
+        out.writeByte(ROW);
+        out.writeInt(mask);
+        writeDate(out, dto.getDateCreation());
+        writeDate(out, dto.getIncomTime());
+        writeText(out, dto.getFilename());
+        writeText(out, dto.getIdmsg());
+        writeText(out, dto.getIdlot());
+        writeText(out, dto.getIdtx());
+        writeText(out, dto.getCanal());
+        writeText(out, dto.getService());
+        writeText(out, dto.getTypeMsg());
+        writeText(out, dto.getBeneficiaire());
+        if (montant != null) {
+            byte[] unscaled = montant.unscaledValue().toByteArray();
+            out.writeInt(montant.scale());
+            out.writeByte(unscaled.length);
+            out.write(unscaled);
+        }
+        writeText(out, dto.getMotif());
+        writeText(out, dto.getFrais());
+        writeText(out, dto.getMsgStatus());
+        writeText(out, dto.getLotStatus());
+        writeText(out, dto.getTxtStatus());
+        writeText(out, dto.getGestCode());
+        writeText(out, dto.getErrorMsg());
+    }
+    
+    /**
+     * Lit la ligne suivante
+     * 
+     * Comme pour SiopReportRowMapper, les valeurs identiques à celles de la ligne
+     * précédente (date, fichier, message, lot, gestionnaire) réutilisent son instance.
+     * 
+     * @param in Flux de l'instantané, en-tête déjà lu
+     * @param version Version du fichier (readHeader)
+     * @param previous Ligne précédente, ou null
+     * @param labels Dictionnaire des libellés de cette lecture
+     * @return Opération, ou null en fin de fichier
+     * @throws IOException Fichier tronqué ou corrompu
+     */
+    static SiopReportDto readRow(DataInputStream in, int version, SiopReportDto previous, LabelDictionary labels)
+            throws IOException {
+        byte marker = in.readByte();
+        if (marker == END) {
+            return null;
+        }
+        if (marker != ROW) {
+            throw new IOException("Marqueur de ligne invalide : " + marker);
+        }
+        
+        int mask = in.readInt();
+        SiopReportDto last = previous != null ? previous : new SiopReportDto();
+        SiopReportDto dto = new SiopReportDto();
+        dto.setDateCreation(reuse(last.getDateCreation(), readDate(in, mask, DATE_CREATION)));
+        dto.setIncomTime(reuse(last.getIncomTime(), readDate(in, mask, INCOM_TIME)));
+        dto.setFilename(reuse(last.getFilename(), readText(in, mask, FILENAME)));
+        dto.setIdmsg(reuse(last.getIdmsg(), readText(in, mask, IDMSG)));
+        dto.setIdlot(reuse(last.getIdlot(), readText(in, mask, IDLOT)));
+        dto.setIdtx(readText(in, mask, IDTX));
+        dto.setCanal(labels.canonical(readText(in, mask, CANAL)));
+        dto.setService(labels.canonical(readText(in, mask, SERVICE)));
+        dto.setTypeMsg(labels.canonical(readText(in, mask, TYPE_MSG)));
+        dto.setBeneficiaire(readText(in, mask, BENEFICIAIRE));
+        if ((mask & MONTANT) != 0) {
+            int scale = in.readInt();
+            byte[] unscaled = new byte[in.readUnsignedByte()];
+            in.readFully(unscaled);
+            dto.setMontantTx(new BigDecimal(new BigInteger(unscaled), scale));
+        }
+        dto.setMotif(readText(in, mask, MOTIF));
+        dto.setFrais(labels.canonical(readText(in, mask, FRAIS)));
+        dto.setMsgStatus(labels.canonical(readText(in, mask, MSG_STATUS)));
+        dto.setLotStatus(labels.canonical(readText(in, mask, LOT_STATUS)));
+        dto.setTxtStatus(labels.canonical(readText(in, mask, TXT_STATUS)));
+        dto.setGestCode(reuse(last.getGestCode(), readText(in, mask, GEST_CODE)));
+        if (version >= ERROR_MSG_VERSION) {
+            dto.setErrorMsg(readText(in, mask, ERROR_MSG));
+            dto.setErrorMsgResolved(true);
+        }
+        return dto;
+    }
+    
+    private static void writeDate(DataOutputStream out, LocalDateTime value) throws IOException {
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+    
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static LocalDateTime readDate(DataInputStream in, int mask, int field) throws IOException {
+        if ((mask & field) == 0) {
+            return null;
+        }
+        long seconds = in.readLong();
+        return LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC);
+    }
+    
+    private static String readText(DataInputStream in, int mask, int field) throws IOException {
+        return (mask & field) != 0 ? in.readUTF() : null;
+    }
+    
+    private static <T> T reuse(T previousValue, T value) {
+        return value != null && value.equals(previousValue) ? previousValue : value;
+    }
+}
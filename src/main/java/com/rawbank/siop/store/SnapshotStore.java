@@ -0,0 +1,492 @@
+package com.rawbank.siop.store;
+
+import com.rawbank.siop.cluster.ShardAssignment;
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.LabelDictionary;
+import com.rawbank.siop.dto.SiopReportDto;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Instantanés sur disque des journées clôturées
+ * 
+ * Responsable de :
+ * - Écrire une seule fois les opérations d'une date clôturée (par canal et part)
+ * - Relire ces opérations à la place de la requête Oracle
+ * - Invalider les instantanés d'une date ou d'un canal
+ * - Supprimer les instantanés au-delà de la durée de rétention
+ * 
+ * Un instantané est écrit dans un fichier temporaire puis renommé :
+ * un fichier présent est toujours complet. Le format est décrit dans SnapshotFormat.
+ */
+@Component
+public class SnapshotStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+    
+    private static final DateTimeFormatter QUERY_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    
+    private static final String EXTENSION = ".snap";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    @Autowired
+    private SiopProperties siopProperties;
+    
+    private Path directory;
+    
+    @PostConstruct
+    public void init() {
+        directory = Paths.get(siopProperties.getSnapshot().getDirectory()).toAbsolutePath();
+        if (!siopProperties.getSnapshot().isEnabled()) {
+            logger.info("Instantanés des journées clôturées désactivés");
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            deleteTempFiles();
+        } catch (IOException e) {
+            throw new RuntimeException("Impossible de préparer le répertoire des instantanés " + directory, e);
+        }
+        logger.info("Instantanés des journées clôturées dans {}", directory);
+    }
+    
+    /**
+     * Indique si une date est clôturée et peut être figée dans un instantané
+     * 
+     * @param queryDate Date au format DD/MM/YYYY
+     * @return true si la date est antérieure d'au moins siop.snapshot.closed-after-days jours
+     */
+    public boolean isClosed(String queryDate) {
+        if (!siopProperties.getSnapshot().isEnabled()) {
+            return false;
+        }
+        LocalDate date = LocalDate.parse(queryDate, QUERY_DATE);
+        return !date.isAfter(LocalDate.now().minusDays(siopProperties.getSnapshot().getClosedAfterDays()));
+    }
+    
+    /**
+     * Indique si un instantané existe
+     * 
+     * @param queryDate Date au format DD/MM/YYYY
+     * @param canal Canal des opérations
+     * @param shard Part des gestionnaires
+     * @return true si les opérations peuvent être relues depuis le disque
+     */
+    public boolean exists(String queryDate, String canal, ShardAssignment shard) {
+        return siopProperties.getSnapshot().isEnabled() && Files.isRegularFile(path(queryDate, canal, shard));
+    }
+    
+    /**
+     * Relit les opérations d'un instantané, dans l'ordre de la requête
+     * 
+     * Un instantané illisible est supprimé avant que l'erreur ne remonte
+     * 
+     * @param queryDate Date au format DD/MM/YYYY
+     * @param canal Canal des opérations
+     * @param shard Part des gestionnaires
+     * @param consumer Reçoit chaque opération
+     * @return Nombre d'opérations lues
+     */
+    public long read(String queryDate, String canal, ShardAssignment shard, Consumer<SiopReportDto> consumer) {
+        try (RowIterator rows = new RowIterator(path(queryDate, canal, shard))) {
+            while (rows.hasNext()) {
+                consumer.accept(rows.next());
+            }
+            return rows.count;
+        }
+    }
+    
+    /**
+     * Relit les opérations d'un instantané à la demande, dans l'ordre de la requête
+     * 
+     * Le fichier reste ouvert jusqu'à la fermeture du flux, qui peut être abandonné
+     * avant la fin ; le contrôle du nombre de lignes n'a lieu qu'en lecture complète.
+     * 
+     * @param queryDate Date au format DD/MM/YYYY
+     * @param canal Canal des opérations
+     * @param shard Part des gestionnaires
+     * @return Flux des opérations, à fermer après usage
+     */
+    public Stream<SiopReportDto> stream(String queryDate, String canal, ShardAssignment shard) {
+        RowIterator rows = new RowIterator(path(queryDate, canal, shard));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(rows::close);
+    }
+    
+    /**
+     * Ouvre l'écriture d'un instantané
+     * 
+     * L'instantané n'est visible qu'après commit() ; close() sans commit l'abandonne
+     * 
+     * @param queryDate Date au format DD/MM/YYYY
+     * @param canal Canal des opérations
+     * @param shard Part des gestionnaires
+     * @param errorResolver Complète les messages d'erreur d'un paquet d'opérations avant leur écriture
+     * @return Écriture en cours
+     */
+    public Writer openWriter(String queryDate, String canal, ShardAssignment shard,
+                             Consumer<List<SiopReportDto>> errorResolver) {
+        return new Writer(path(queryDate, canal, shard), errorResolver);
+    }
+    
+    /**
+     * Supprime les instantanés d'une date
+     * 
+     * @param queryDate Date au format DD/MM/YYYY
+     * @param canal Canal, ou null pour tous les canaux
+     * @return Nombre de fichiers supprimés
+     */
+    public int invalidate(String queryDate, String canal) {
+        String prefix = LocalDate.parse(queryDate, QUERY_DATE).format(FILE_DATE) + "_"
+            + (canal != null ? sanitize(canal) + "_" : "");
+        int deleted = delete(file -> file.getFileName().toString().startsWith(prefix));
+        logger.info("{} instantané(s) invalidé(s) pour le {}{}", deleted, queryDate,
+            canal != null ? " (canal " + canal + ")" : "");
+        return deleted;
+    }
+    
+    /**
+     * Supprime les instantanés dont la date dépasse la rétention
+     * 
+     * @return Nombre de fichiers supprimés
+     */
+    @Scheduled(cron = "${siop.snapshot.purge-cron:0 45 2 * * *}")
+    public int purgeExpired() {
+        if (!siopProperties.getSnapshot().isEnabled()) {
+            return 0;
+        }
+        String limit = LocalDate.now().minusDays(siopProperties.getSnapshot().getRetentionDays()).format(FILE_DATE);
+        int deleted = delete(file -> file.getFileName().toString().compareTo(limit) < 0);
+        logger.info("Purge des instantanés : {} fichier(s) antérieur(s) au {} supprimé(s)", deleted, limit);
+        return deleted;
+    }
+    
+    /**
+     * Instantanés présents sur disque
+     * 
+     * @return Nom et taille de chaque fichier
+     */
+    public List<Map<String, Object>> list() {
+        List<Map<String, Object>> snapshots = new ArrayList<>();
+        for (Path file : snapshotFiles()) {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("file", file.getFileName().toString());
+            try {
+                snapshot.put("bytes", Files.size(file));
+                snapshot.put("createdAt", Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException e) {
+                snapshot.put("error", e.getMessage());
+            }
+            snapshots.add(snapshot);
+        }
+        return snapshots;
+    }
+    
+    /**
+     * Chemin d'un instantané : date_canal_part.snap
+     */
+    private Path path(String queryDate, String canal, ShardAssignment shard) {
+        String name = String.format("%s_%s_%d-%d%s", LocalDate.parse(queryDate, QUERY_DATE).format(FILE_DATE),
+            sanitize(canal), shard.getIndex(), shard.getCount(), EXTENSION);
+        return directory.resolve(name);
+    }
+    
+    private static String sanitize(String canal) {
+        return canal.trim().toUpperCase().replaceAll("[^A-Z0-9]", "-");
+    }
+    
+    private List<Path> snapshotFiles() {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            throw new RuntimeException("Impossible de lister les instantanés", e);
+        }
+        files.sort(null);
+        return files;
+    }
+    
+    private int delete(Predicate<Path> filter) {
+        int deleted = 0;
+        for (Path file : snapshotFiles()) {
+            if (!filter.test(file)) {
+                continue;
+            }
+            try {
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            } catch (IOException e) {
+                logger.warn("Impossible de supprimer l'instantané {}", file, e);
+            }
+        }
+        return deleted;
+    }
+    
+    private void deleteTempFiles() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path file : stream) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+    
+    /**
+     * Lecture ligne à ligne d'un instantané
+     * 
+     * Un instantané illisible est supprimé avant que l'erreur ne remonte
+     */
+    private final class RowIterator implements Iterator<SiopReportDto>, AutoCloseable {
+        
+        private final Path file;
+        private final DataInputStream in;
+        private SiopReportDto next;
+        private SiopReportDto previous;
+        private int version;
+        private final LabelDictionary labels = new LabelDictionary();
+        private boolean finished;
+        private long count;
+        
+        private RowIterator(Path file) {
+            this.file = file;
+            try {
+                in = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+            } catch (IOException e) {
+                throw corrupted(e);
+            }
+            try {
+                version = SnapshotFormat.readHeader(in);
+            } catch (IOException e) {
+                close();
+                throw corrupted(e);
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                try {
+                    next = SnapshotFormat.readRow(in, version, previous, labels);
+                    if (next == null) {
+                        finished = true;
+                        long expected = in.readLong();
+                        if (count != expected) {
+                            throw new IOException(String.format("Instantané incomplet : %d ligne(s) sur %d", count, expected));
+                        }
+                    }
+                } catch (IOException e) {
+                    close();
+                    throw corrupted(e);
+                }
+            }
+            return next != null;
+        }
+        
+        @Override
+        public SiopReportDto next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SiopReportDto operation = next;
+            previous = operation;
+            next = null;
+            count++;
+            return operation;
+        }
+        
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                logger.debug("Fermeture de l'instantané {} en échec", file, e);
+            }
+        }
+        
+        private RuntimeException corrupted(IOException e) {
+            // Fichier corrompu : supprimé pour que la prochaine exécution relise Oracle
+            logger.error("Instantané illisible, suppression : {}", file, e);
+            delete(file::equals);
+            return new RuntimeException("Erreur lors de la lecture de l'instantané " + file.getFileName(), e);
+        }
+    }
+    
+    /**
+     * Écriture d'un instantané, par paquets
+     * 
+     * Les opérations sont écrites par paquets (siop.query.error-batch-size) après résolution
+     * de leurs messages d'erreur : les opérations écrites sortent donc avec leur message,
+     * que le pipeline n'a plus à lire. flush() écrit le paquet en cours avant que ses
+     * opérations ne soient transmises.
+     * 
+     * Une erreur d'écriture ne remonte pas à l'appelant : l'instantané
+     * est abandonné et la date sera de nouveau lue dans Oracle.
+     * Une erreur de lecture de BKMOPERROR remonte, comme une erreur de la requête.
+     */
+    public final class Writer implements AutoCloseable {
+        
+        private final Path target;
+        private final Path temp;
+        private final Consumer<List<SiopReportDto>> errorResolver;
+        private final int batchSize;
+        private final List<SiopReportDto> pending = new ArrayList<>();
+        private DataOutputStream out;
+        private long rowCount;
+        private boolean committed;
+        
+        private Writer(Path target, Consumer<List<SiopReportDto>> errorResolver) {
+            this.target = target;
+            this.errorResolver = errorResolver;
+            this.batchSize = Math.max(1, siopProperties.getQuery().getErrorBatchSize());
+            this.temp = target.resolveSibling(target.getFileName() + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+            try {
+                OutputStream file = Files.newOutputStream(temp);
+                out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(file, BUFFER_SIZE), BUFFER_SIZE));
+                SnapshotFormat.writeHeader(out);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        
+        /**
+         * Ajoute une opération à l'instantané
+         * 
+         * @param operation Opération lue dans Oracle
+         */
+        public void write(SiopReportDto operation) {
+            if (out == null) {
+                return;
+            }
+            pending.add(operation);
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+        
+        /**
+         * Résout les messages d'erreur du paquet en cours puis l'écrit
+         * 
+         * À appeler avant de transmettre des opérations déjà passées par write()
+         */
+        public void flush() {
+            if (out == null || pending.isEmpty()) {
+                return;
+            }
+            errorResolver.accept(pending);
+            try {
+                for (SiopReportDto operation : pending) {
+                    SnapshotFormat.writeRow(out, operation);
+                    rowCount++;
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+            pending.clear();
+        }
+        
+        /**
+         * Termine et publie l'instantané
+         * 
+         * @return true si l'instantané est disponible
+         */
+        public boolean commit() {
+            flush();
+            if (out == null) {
+                return false;
+            }
+            try {
+                SnapshotFormat.writeFooter(out, rowCount);
+                out.close();
+                out = null;
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                committed = true;
+                logger.info("Instantané écrit : {} ({} opération(s), {} octets)",
+                    target.getFileName(), rowCount, Files.size(target));
+                return true;
+            } catch (IOException e) {
+                fail(e);
+                return false;
+            }
+        }
+        
+        /**
+         * Abandonne l'instantané s'il n'a pas été publié
+         */
+        @Override
+        public void close() {
+            if (!committed) {
+                closeQuietly();
+                deleteTemp();
+            }
+        }
+        
+        private void fail(IOException e) {
+            logger.warn("Écriture de l'instantané {} abandonnée", target.getFileName(), e);
+            closeQuietly();
+            deleteTemp();
+        }
+        
+        private void closeQuietly() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    logger.debug("Fermeture de l'instantané {} en échec", temp, e);
+                }
+                out = null;
+            }
+        }
+        
+        private void deleteTemp() {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                logger.warn("Impossible de supprimer le fichier temporaire {}", temp, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+-- Schéma de test de charge (H2, MODE=Oracle, profil loadtest)
+-- Seules les colonnes lues par siop_send_mail.sql et ErrorMessageResolver sont créées
+
+CREATE TABLE BKMOPMSG (
+  idmsg         VARCHAR2(35) NOT NULL,
+  msgid         VARCHAR2(35),
+  dcre          DATE NOT NULL,
+  incomtime     TIMESTAMP NOT NULL,
+  dco           DATE,
+  nomfic        VARCHAR2(100),
+  canal         VARCHAR2(20) NOT NULL,
+  typmsg        CHAR(3),
+  nbtx          NUMBER(10),
+  ctrlsum       NUMBER(18,2),
+  flowindicator VARCHAR2(10),
+  status        CHAR(2),
+  CONSTRAINT PK_BKMOPMSG PRIMARY KEY (idmsg)
+);
+
+CREATE TABLE BKMOPLOT (
+  idlot       VARCHAR2(35) NOT NULL,
+  idmsg       VARCHAR2(35) NOT NULL,
+  service_val VARCHAR2(20),
+  nbtx        NUMBER(10),
+  name        VARCHAR2(100),
+  acc_dev     CHAR(3),
+  pmtmtd      VARCHAR2(10),
+  btchbookg   CHAR(1),
+  eta         CHAR(2),
+  bank_bic    VARCHAR2(11),
+  age         CHAR(5),
+  ncp         VARCHAR2(20),
+  CONSTRAINT PK_BKMOPLOT PRIMARY KEY (idlot)
+);
+
+CREATE TABLE BKMOPTX (
+  idtx         VARCHAR2(35) NOT NULL,
+  idlot        VARCHAR2(35) NOT NULL,
+  cdtr_name    VARCHAR2(100),
+  instdamt_amt NUMBER(18,2),
+  fees         CHAR(1),
+  eta          CHAR(2),
+  age          CHAR(5),
+  ope          CHAR(3),
+  eve          CHAR(6),
+  typ          CHAR(3),
+  deve         DATE,
+  age2         CHAR(5),
+  ncp2         VARCHAR2(20),
+  cdtracc_nb   VARCHAR2(34),
+  CONSTRAINT PK_BKMOPTX PRIMARY KEY (idtx)
+);
+
+CREATE TABLE BKEVE (
+  age   CHAR(5) NOT NULL,
+  ope   CHAR(3) NOT NULL,
+  eve   CHAR(6) NOT NULL,
+  typ   CHAR(3) NOT NULL,
+  mon2  NUMBER(18,2),
+  lib1  VARCHAR2(100),
+  eta   CHAR(2),
+  desc1 VARCHAR2(50),
+  desc2 VARCHAR2(50),
+  desc3 VARCHAR2(50),
+  desc4 VARCHAR2(50),
+  desc5 VARCHAR2(50),
+  etab  CHAR(5),
+  guib  CHAR(5),
+  nome  VARCHAR2(100),
+  domi  VARCHAR2(100),
+  adb2  VARCHAR2(100),
+  ges1  VARCHAR2(10),
+  uti   VARCHAR2(10),
+  CONSTRAINT PK_BKEVE PRIMARY KEY (age, ope, eve, typ)
+);
+
+CREATE TABLE BKNOM (
+  ctab CHAR(3) NOT NULL,
+  cacc VARCHAR2(10) NOT NULL,
+  lib1 VARCHAR2(100),
+  lib2 VARCHAR2(100),
+  lib4 VARCHAR2(100),
+  lib5 VARCHAR2(100),
+  CONSTRAINT PK_BKNOM PRIMARY KEY (ctab, cacc)
+);
+
+CREATE TABLE BKMOPERROR (
+  idmsg VARCHAR2(35),
+  idlot VARCHAR2(35),
+  idtx  VARCHAR2(35),
+  mess  VARCHAR2(200),
+  lvl   VARCHAR2(10)
+);
+
+CREATE INDEX IX_BKMOPMSG_DCRE ON BKMOPMSG (dcre, canal);
+CREATE INDEX IX_BKMOPLOT_MSG ON BKMOPLOT (idmsg);
+CREATE INDEX IX_BKMOPTX_LOT ON BKMOPTX (idlot);
+CREATE INDEX IX_BKMOPERROR_TX ON BKMOPERROR (idtx);
+CREATE INDEX IX_BKMOPERROR_LOT ON BKMOPERROR (idlot);
+CREATE INDEX IX_BKMOPERROR_MSG ON BKMOPERROR (idmsg);
@@ -0,0 +1,7 @@
+-- Battements des instances (siop.shard.membership: heartbeat)
+-- A créer une fois dans le schéma de l'utilisateur Oracle de l'application
+CREATE TABLE SIOP_NODE_HEARTBEAT (
+  node_id   VARCHAR2(200) NOT NULL,
+  last_seen TIMESTAMP NOT NULL,
+  CONSTRAINT PK_SIOP_NODE_HEARTBEAT PRIMARY KEY (node_id)
+)
@@ -0,0 +1,9 @@
+-- Baux d'exécution partagés entre instances (siop.lock.provider: database)
+-- A créer une fois dans le schéma de l'utilisateur Oracle de l'application
+CREATE TABLE SIOP_RUN_LOCK (
+  lock_key     VARCHAR2(100) NOT NULL,
+  owner        VARCHAR2(200) NOT NULL,
+  locked_at    TIMESTAMP NOT NULL,
+  locked_until TIMESTAMP NOT NULL,
+  CONSTRAINT PK_SIOP_RUN_LOCK PRIMARY KEY (lock_key)
+)
@@ -80,24 +80,33 @@ SELECT
   BKEVE.domi,
   BKEVE.adb2,
   BKEVE.ges1 AS gest_code,
-  BKNOM.lib1 AS nom_gest,
-  BKNOM.lib2 AS prenom_gest,
-  BKNOM.lib4 AS email_gest,
-  BKNOM.lib5 AS phone_gest,
-  BKEVE.uti,
-  (
-    SELECT LISTAGG(TRIM(mess) || ' au niveau de ' || lvl, ' | ') 
-           WITHIN GROUP (ORDER BY lvl)
-    FROM BKMOPERROR 
-    WHERE idtx = BKMOPTX.idtx 
-       OR idlot = BKMOPLOT.idlot 
-       OR idmsg = BKMOPMSG.idmsg
-  ) AS errormsg
+  BKEVE.uti
 FROM BKMOPMSG 
 LEFT JOIN BKMOPLOT ON BKMOPMSG.idmsg = BKMOPLOT.idmsg
 LEFT JOIN BKMOPTX ON BKMOPLOT.idlot = BKMOPTX.idlot
 LEFT JOIN BKEVE ON BKMOPTX.age = BKEVE.age AND BKMOPTX.ope = BKEVE.ope AND BKMOPTX.eve = BKEVE.eve AND BKMOPTX.typ = BKEVE.typ
-LEFT JOIN BKNOM ON BKEVE.ges1 = BKNOM.cacc AND BKNOM.ctab = '035'
-WHERE BKMOPMSG.dcre = TO_DATE('14/10/2025', 'DD/MM/YYYY') AND (BKMOPMSG.status NOT IN ('OK')  OR bkmoptx.eta NOT IN ('TR') OR bkmoptx.eta NOT IN ('TR') OR bkeve.eta NOT IN ('VA'))
-  AND BKMOPMSG.canal = 'VODACOM'
-ORDER BY BKMOPMSG.dcre, BKMOPMSG.incomtime DESC;
+WHERE BKMOPMSG.dcre = TO_DATE(:queryDate, 'DD/MM/YYYY') AND (BKMOPMSG.status NOT IN ('OK')  OR bkmoptx.eta NOT IN ('TR') OR bkmoptx.eta NOT IN ('TR') OR bkeve.eta NOT IN ('VA'))
+  AND BKMOPMSG.canal = :canal
+  AND (:fullDay = 1 OR BKMOPMSG.incomtime > :sinceIncomtime)
+  -- Part d'un gestionnaire : celle du plus petit code partageant son email (BKNOM), pour qu'un même
+  -- destinataire soit lu par une seule instance (sous-requête mise en cache par code par Oracle)
+  AND (:shardCount = 1 OR ORA_HASH(NVL((
+    SELECT MIN(TRIM(shared.cacc)) FROM BKNOM own
+    JOIN BKNOM shared ON shared.ctab = '035' AND LOWER(TRIM(shared.lib4)) = LOWER(TRIM(own.lib4))
+    WHERE own.ctab = '035' AND TRIM(own.cacc) = TRIM(BKEVE.ges1)), TRIM(BKEVE.ges1)), :shardCount - 1) = :shardIndex)
+  AND (:allManagers = 1 OR TRIM(BKEVE.ges1) = :gestCode)
+  -- Aperçu : les opérations sans gestionnaire n'ont pas de destinataire, elles ne sont pas lues
+  AND (:managedOnly = 0 OR TRIM(BKEVE.ges1) IS NOT NULL)
+  -- Pagination de l'aperçu : lignes strictement après le curseur, dans l'ordre du ORDER BY
+  -- (dcre est fixé par le filtre de date ; un incomtime absent est trié en premier et comparé
+  -- par :cursorIncomtimeNull ; lot et transaction sont renseignés dès que ges1 l'est)
+  AND (:afterCursor = 0
+    OR TRIM(BKEVE.ges1) > :cursorGestCode
+    OR (TRIM(BKEVE.ges1) = :cursorGestCode AND (BKMOPMSG.incomtime < :cursorIncomtime
+      OR (:cursorIncomtimeNull = 1 AND BKMOPMSG.incomtime IS NOT NULL)
+      OR ((BKMOPMSG.incomtime = :cursorIncomtime OR (:cursorIncomtimeNull = 1 AND BKMOPMSG.incomtime IS NULL))
+        AND (BKMOPMSG.idmsg > :cursorIdmsg
+        OR (BKMOPMSG.idmsg = :cursorIdmsg AND (BKMOPLOT.idlot > :cursorIdlot
+          OR (BKMOPLOT.idlot = :cursorIdlot AND BKMOPTX.idtx > :cursorIdtx))))))))
+ORDER BY TRIM(BKEVE.ges1) NULLS LAST, BKMOPMSG.dcre, BKMOPMSG.incomtime DESC NULLS FIRST,
+  BKMOPMSG.idmsg, BKMOPLOT.idlot, BKMOPTX.idtx
@@ -0,0 +1,38 @@
+-- Base partagée des marqueurs incrémentaux et du journal des notifications (siop.store.shared: true)
+-- Migration à exécuter une fois dans le schéma de l'utilisateur Oracle de l'application,
+-- avant de démarrer les instances avec siop.store.shared: true. Relançable : les objets
+-- existants sont conservés.
+--
+-- Au premier démarrage avec la base partagée, chaque instance y reprend son journal local ;
+-- les marqueurs locaux ne sont pas repris (la première exécution incrémentale relit la journée).
+-- Retour arrière : siop.store.shared: false, puis DROP TABLE des deux tables.
+DECLARE
+  PROCEDURE create_if_absent(p_name VARCHAR2, p_ddl VARCHAR2) IS
+    v_count NUMBER;
+  BEGIN
+    SELECT COUNT(*) INTO v_count FROM user_objects WHERE object_name = p_name;
+    IF v_count = 0 THEN
+      EXECUTE IMMEDIATE p_ddl;
+    END IF;
+  END;
+BEGIN
+  create_if_absent('SIOP_HIGH_WATER_MARK',
+    'CREATE TABLE SIOP_HIGH_WATER_MARK ('
+    || '  business_date DATE NOT NULL,'
+    || '  canal         VARCHAR2(50) NOT NULL,'
+    || '  high_water    TIMESTAMP NOT NULL,'
+    || '  updated_at    TIMESTAMP NOT NULL,'
+    || '  CONSTRAINT PK_SIOP_HIGH_WATER_MARK PRIMARY KEY (business_date, canal))');
+
+  create_if_absent('SIOP_NOTIFICATION_LEDGER',
+    'CREATE TABLE SIOP_NOTIFICATION_LEDGER ('
+    || '  op_key        VARCHAR2(100) NOT NULL,'
+    || '  status_key    VARCHAR2(200) NOT NULL,'
+    || '  business_date DATE NOT NULL,'
+    || '  notified_at   TIMESTAMP NOT NULL,'
+    || '  CONSTRAINT PK_SIOP_NOTIFICATION_LEDGER PRIMARY KEY (op_key, status_key))');
+
+  create_if_absent('IDX_SIOP_LEDGER_DATE',
+    'CREATE INDEX IDX_SIOP_LEDGER_DATE ON SIOP_NOTIFICATION_LEDGER (business_date)');
+END;
+/
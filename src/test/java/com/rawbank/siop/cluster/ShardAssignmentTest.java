@@ -0,0 +1,36 @@
+package com.rawbank.siop.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class ShardAssignmentTest {
+    
+    @Test
+    void relitLaPartEcriteParToString() {
+        ShardAssignment shard = ShardAssignment.parse(new ShardAssignment(2, 3).toString());
+        
+        assertThat(shard.getIndex()).isEqualTo(2);
+        assertThat(shard.getCount()).isEqualTo(3);
+        assertThat(shard.isSharded()).isTrue();
+        assertThat(ShardAssignment.parse("0/1").isSharded()).isFalse();
+    }
+    
+    @Test
+    void refuseUnFormatInvalide() {
+        assertThatIllegalArgumentException().isThrownBy(() -> ShardAssignment.parse("2"))
+            .withMessage("Part invalide : 2");
+        // NumberFormatException est une IllegalArgumentException
+        assertThatIllegalArgumentException().isThrownBy(() -> ShardAssignment.parse("a/3"));
+        assertThatIllegalArgumentException().isThrownBy(() -> ShardAssignment.parse("1/"));
+    }
+    
+    @Test
+    void refuseUnePartHorsDuNombreDeParts() {
+        assertThatIllegalArgumentException().isThrownBy(() -> ShardAssignment.parse("3/3"))
+            .withMessage("Part 3 invalide pour 3 part(s)");
+        assertThatIllegalArgumentException().isThrownBy(() -> ShardAssignment.parse("-1/3"));
+        assertThatIllegalArgumentException().isThrownBy(() -> ShardAssignment.parse("0/0"));
+    }
+}
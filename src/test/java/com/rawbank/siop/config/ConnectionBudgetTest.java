@@ -0,0 +1,83 @@
+package com.rawbank.siop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.entry;
+
+class ConnectionBudgetTest {
+    
+    private final SiopProperties properties = new SiopProperties();
+    
+    @Test
+    void demandeParDefautSansBasePartagee() {
+        Map<String, Integer> demand = ConnectionBudget.demand(properties);
+        
+        assertThat(demand).containsExactly(
+            entry("extraction", 4),
+            entry("génération", 2),
+            entry("envoi", 0),
+            entry("à la demande", 4),
+            entry("tâches planifiées", 1),
+            entry("annuaire", 1));
+    }
+    
+    @Test
+    void envoiEtBauxComptesAvecLaBasePartagee() {
+        properties.getStore().setShared(true);
+        properties.getLock().setProvider("database");
+        properties.getOutbox().setSenderThreads(6);
+        
+        Map<String, Integer> demand = ConnectionBudget.demand(properties);
+        
+        assertThat(demand).containsEntry("envoi", 6).containsEntry("tâches planifiées", 2);
+    }
+    
+    @Test
+    void envoiDirectParLePipelineSansFileDEnvoi() {
+        properties.getStore().setShared(true);
+        properties.getOutbox().setEnabled(false);
+        properties.getPipeline().setSendThreads(3);
+        
+        assertThat(ConnectionBudget.demand(properties)).containsEntry("envoi", 3);
+    }
+    
+    @Test
+    void parallelismesNulsComptentUneConnexion() {
+        properties.getQuery().setCanalParallelism(0);
+        properties.getQuery().setOnDemandParallelism(0);
+        properties.getPipeline().setRenderThreads(0);
+        
+        assertThat(ConnectionBudget.demand(properties))
+            .containsEntry("extraction", 2)
+            .containsEntry("génération", 1)
+            .containsEntry("à la demande", 2);
+    }
+    
+    @Test
+    void refuseLeDemarrageAvecUnPoolTropPetit() {
+        assertThatIllegalStateException()
+            .isThrownBy(() -> budget(11).check())
+            .withMessageContaining("jusqu'à 12 connexion(s)");
+    }
+    
+    @Test
+    void accepteUnPoolSuffisant() {
+        budget(12).check();
+    }
+    
+    private ConnectionBudget budget(int poolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setMaximumPoolSize(poolSize);
+        
+        ConnectionBudget budget = new ConnectionBudget();
+        ReflectionTestUtils.setField(budget, "dataSource", dataSource);
+        ReflectionTestUtils.setField(budget, "siopProperties", properties);
+        return budget;
+    }
+}
@@ -0,0 +1,94 @@
+package com.rawbank.siop.dto;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SiopReportDtoTest {
+    
+    @Test
+    void montantRenduAvecSonEchelle() {
+        assertThat(montant("1234.50").getMontantTx()).isEqualTo(new BigDecimal("1234.50"));
+        assertThat(montant("1E+3").getMontantTx()).isEqualTo(new BigDecimal("1E+3"));
+        assertThat(montant("-0.001").getMontantTx()).isEqualTo(new BigDecimal("-0.001"));
+        assertThat(new SiopReportDto().getMontantTx()).isNull();
+    }
+    
+    @Test
+    void montantHorsCapaciteConserveTelQuel() {
+        BigDecimal large = new BigDecimal("123456789012345678901234567890.125");
+        BigDecimal fineScale = new BigDecimal("1E-200");
+        
+        assertThat(montant(large).getMontantTx()).isSameAs(large);
+        assertThat(montant(fineScale).getMontantTx()).isSameAs(fineScale);
+        assertThat(montant(large).getMontantCents()).isEqualTo(SiopReportDto.NO_CENTS);
+    }
+    
+    @Test
+    void nouveauMontantRemplaceLePrecedent() {
+        SiopReportDto operation = montant(new BigDecimal("123456789012345678901234567890"));
+        
+        operation.setMontantTx(new BigDecimal("5.5"));
+        assertThat(operation.getMontantTx()).isEqualTo(new BigDecimal("5.5"));
+        
+        operation.setMontantTx(null);
+        assertThat(operation.getMontantTx()).isNull();
+        assertThat(operation.getMontantCents()).isEqualTo(SiopReportDto.NO_CENTS);
+    }
+    
+    @Test
+    void centimesArrondisAuPair() {
+        assertThat(montant("12.345").getMontantCents()).isEqualTo(1234);
+        assertThat(montant("12.355").getMontantCents()).isEqualTo(1236);
+        assertThat(montant("12.3451").getMontantCents()).isEqualTo(1235);
+        assertThat(montant("-12.345").getMontantCents()).isEqualTo(-1234);
+        assertThat(montant("-0.015").getMontantCents()).isEqualTo(-2);
+        assertThat(montant("-0.005").getMontantCents()).isZero();
+        assertThat(montant("7").getMontantCents()).isEqualTo(700);
+        assertThat(montant("1E+3").getMontantCents()).isEqualTo(100_000);
+    }
+    
+    @Test
+    void centimesHorsCapaciteDUnLong() {
+        assertThat(montant("92233720368547758.07").getMontantCents()).isEqualTo(Long.MAX_VALUE);
+        assertThat(montant("92233720368547758.08").getMontantCents()).isEqualTo(SiopReportDto.NO_CENTS);
+        assertThat(montant("1E+17").getMontantCents()).isEqualTo(SiopReportDto.NO_CENTS);
+        assertThat(montant("0E+30").getMontantCents()).isZero();
+        assertThat(montant("1E-30").getMontantCents()).isEqualTo(SiopReportDto.NO_CENTS);
+    }
+    
+    @Test
+    void centimesIdentiquesAuMontantArrondi() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextLong() >> random.nextInt(64), random.nextInt(9) - 2);
+            BigInteger cents = amount.setScale(2, RoundingMode.HALF_EVEN).unscaledValue();
+            long expected = cents.bitLength() < 64 ? cents.longValueExact() : SiopReportDto.NO_CENTS;
+            
+            assertThat(montant(amount).getMontantCents()).as("%s", amount).isEqualTo(expected);
+        }
+    }
+    
+    @Test
+    void centimesAbsentsDuJson() throws Exception {
+        String json = JsonMapper.builder().findAndAddModules().build().writeValueAsString(montant("1234.50"));
+        
+        assertThat(json).contains("\"montantTx\":1234.50").doesNotContain("montantCents");
+    }
+    
+    private static SiopReportDto montant(String value) {
+        return montant(new BigDecimal(value));
+    }
+    
+    private static SiopReportDto montant(BigDecimal value) {
+        SiopReportDto operation = new SiopReportDto();
+        operation.setMontantTx(value);
+        return operation;
+    }
+}
@@ -0,0 +1,174 @@
+package com.rawbank.siop.lock;
+
+import com.rawbank.siop.config.SiopProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RunCoordinatorTest {
+    
+    private static final String KEY = "20240115-VODACOM";
+    
+    private final SiopProperties properties = new SiopProperties();
+    private final LocalRunLockProvider lockProvider = new LocalRunLockProvider();
+    private final ExecutorService requests = Executors.newCachedThreadPool();
+    private RunCoordinator coordinator;
+    
+    @BeforeEach
+    void startCoordinator() {
+        properties.getLock().setInstanceId("node-1");
+        
+        coordinator = new RunCoordinator();
+        ReflectionTestUtils.setField(coordinator, "runLockProvider", lockProvider);
+        ReflectionTestUtils.setField(coordinator, "siopProperties", properties);
+        coordinator.init();
+    }
+    
+    @AfterEach
+    void stopCoordinator() {
+        coordinator.shutdown();
+        requests.shutdownNow();
+    }
+    
+    @Test
+    void demandeDeMemeVarianteRegroupeeAvecLExecutionEnCours() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        CompletableFuture<RunCoordinator.Outcome<String>> first = submit("MANAGER", "progression", () -> {
+            executions.incrementAndGet();
+            started.countDown();
+            await(finish);
+            return "résultat";
+        });
+        await(started);
+        
+        CountDownLatch coalesced = new CountDownLatch(1);
+        AtomicReference<Object> sharedContext = new AtomicReference<>();
+        CompletableFuture<RunCoordinator.Outcome<String>> second = CompletableFuture.supplyAsync(() ->
+            coordinator.execute(KEY, "MANAGER", "autre progression", () -> {
+                executions.incrementAndGet();
+                return "autre résultat";
+            }, context -> {
+                sharedContext.set(context);
+                coalesced.countDown();
+            }), requests);
+        await(coalesced);
+        finish.countDown();
+        
+        assertThat(first.get(10, TimeUnit.SECONDS).getStatus()).isEqualTo(RunCoordinator.Status.EXECUTED);
+        RunCoordinator.Outcome<String> outcome = second.get(10, TimeUnit.SECONDS);
+        assertThat(outcome.getStatus()).isEqualTo(RunCoordinator.Status.COALESCED);
+        assertThat(outcome.getResult()).isEqualTo("résultat");
+        assertThat(sharedContext.get()).isEqualTo("progression");
+        assertThat(executions.get()).isEqualTo(1);
+    }
+    
+    @Test
+    void demandeDUneAutreVarianteExecuteeApresLaFinDeLExecutionEnCours() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        List<String> events = new CopyOnWriteArrayList<>();
+        CompletableFuture<RunCoordinator.Outcome<String>> first = submit("MANAGER", null, () -> {
+            started.countDown();
+            await(finish);
+            events.add("MANAGER");
+            return "gestionnaires";
+        });
+        await(started);
+        
+        CompletableFuture<RunCoordinator.Outcome<String>> second = submit("SINGLE", null, () -> {
+            events.add("SINGLE");
+            return "consolidé";
+        });
+        Thread.sleep(200);
+        assertThat(second).isNotDone();
+        finish.countDown();
+        
+        assertThat(first.get(10, TimeUnit.SECONDS).getStatus()).isEqualTo(RunCoordinator.Status.EXECUTED);
+        RunCoordinator.Outcome<String> outcome = second.get(10, TimeUnit.SECONDS);
+        assertThat(outcome.getStatus()).isEqualTo(RunCoordinator.Status.EXECUTED);
+        assertThat(outcome.getResult()).isEqualTo("consolidé");
+        assertThat(events).containsExactly("MANAGER", "SINGLE");
+    }
+    
+    @Test
+    void cleDetenueParUneAutreInstanceIgnoree() {
+        assertThat(lockProvider.tryAcquire(KEY, "node-2", 600)).isTrue();
+        AtomicInteger executions = new AtomicInteger();
+        
+        RunCoordinator.Outcome<Integer> outcome = coordinator.execute(KEY, "MANAGER", executions::incrementAndGet);
+        
+        assertThat(outcome.getStatus()).isEqualTo(RunCoordinator.Status.SKIPPED);
+        assertThat(outcome.getResult()).isNull();
+        assertThat(executions.get()).isZero();
+    }
+    
+    @Test
+    void bailLibereEnFinDExecution() {
+        RunCoordinator.Outcome<String> outcome = coordinator.execute(KEY, "MANAGER", () -> "résultat");
+        
+        assertThat(outcome.getStatus()).isEqualTo(RunCoordinator.Status.EXECUTED);
+        assertThat(lockProvider.tryAcquire(KEY, "node-2", 600)).isTrue();
+    }
+    
+    @Test
+    void erreurTransmiseAuxDemandesRegroupees() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<RunCoordinator.Outcome<String>> first = submit("MANAGER", null, () -> {
+            started.countDown();
+            await(finish);
+            throw new IllegalStateException("Extraction interrompue");
+        });
+        await(started);
+        
+        CountDownLatch coalesced = new CountDownLatch(1);
+        AtomicReference<RuntimeException> error = new AtomicReference<>();
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> {
+            try {
+                coordinator.execute(KEY, "MANAGER", null, () -> "autre résultat", context -> coalesced.countDown());
+            } catch (RuntimeException e) {
+                error.set(e);
+            }
+        }, requests);
+        await(coalesced);
+        finish.countDown();
+        
+        assertThatThrownBy(() -> first.get(10, TimeUnit.SECONDS))
+            .hasCauseInstanceOf(IllegalStateException.class);
+        second.get(10, TimeUnit.SECONDS);
+        assertThat(error.get()).isInstanceOf(IllegalStateException.class).hasMessage("Extraction interrompue");
+        // Bail libéré malgré l'erreur
+        assertThat(lockProvider.tryAcquire(KEY, "node-2", 600)).isTrue();
+    }
+    
+    private <T> CompletableFuture<RunCoordinator.Outcome<T>> submit(String variant, Object context, Supplier<T> work) {
+        return CompletableFuture.supplyAsync(
+            () -> coordinator.execute(KEY, variant, context, work, ignored -> { }), requests);
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.rawbank.siop.service;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnWidthEstimatorTest {
+    
+    @Test
+    void longueurDuMontantFormateSansLeFormater() {
+        assertThat(ColumnWidthEstimator.amountLength(new BigDecimal("0"))).isEqualTo("0.00".length());
+        assertThat(ColumnWidthEstimator.amountLength(new BigDecimal("999.995"))).isEqualTo("1,000.00".length());
+        assertThat(ColumnWidthEstimator.amountLength(new BigDecimal("1234567.891"))).isEqualTo("1,234,567.89".length());
+        assertThat(ColumnWidthEstimator.amountLength(new BigDecimal("-12.5"))).isEqualTo("-12.50".length());
+        // Arrondi à zéro : plus de signe affiché
+        assertThat(ColumnWidthEstimator.amountLength(new BigDecimal("-0.004"))).isEqualTo("0.00".length());
+    }
+    
+    @Test
+    void longueurEnCentimesIdentiqueAuBigDecimal() {
+        long[] amounts = {0, 5, -5, 99, 100, 99_999, 100_000, -123_456_789, Long.MAX_VALUE, Long.MIN_VALUE + 1};
+        for (long cents : amounts) {
+            assertThat(ColumnWidthEstimator.amountLength(cents))
+                .as("%d centimes", cents)
+                .isEqualTo(ColumnWidthEstimator.amountLength(BigDecimal.valueOf(cents, 2)));
+        }
+    }
+    
+    @Test
+    void largeurDeLaValeurLaPlusLongueAvecMargeEtPlafond() throws IOException {
+        ColumnWidthEstimator widths = new ColumnWidthEstimator(new String[] {"Date", "Motif", "Montant"});
+        widths.trackDate(0);
+        widths.track(1, "x".repeat(80));
+        widths.track(1, null);
+        widths.trackAmount(2, 123_456L);
+        
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet();
+            widths.applyTo(sheet);
+            
+            assertThat(sheet.getColumnWidth(0)).isEqualTo((16 + 2) * 256);
+            assertThat(sheet.getColumnWidth(1)).isEqualTo(50 * 256);
+            // "1,234.56" (8 caractères) plus long que l'en-tête "Montant"
+            assertThat(sheet.getColumnWidth(2)).isEqualTo((8 + 2) * 256);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.SiopReportDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvReportRendererTest {
+    
+    private static final String HEADER = "\uFEFFDate;Fichier;Canal;Service;Type Message;Bénéficiaire;Montant;Motif;"
+        + "Frais;Status Message;Status Lot;Status TX;Erreur\r\n";
+    
+    private final CsvReportRenderer renderer = new CsvReportRenderer();
+    
+    @Test
+    void enTeteEtLigneAuFormatExcel() {
+        SiopReportDto operation = operation("Jean Dupont", new BigDecimal("1234.5"));
+        operation.setDateCreation(LocalDateTime.of(2024, 1, 15, 9, 30, 45));
+        operation.setCanal("VODACOM");
+        
+        assertThat(render(operation)).isEqualTo(HEADER
+            + "15/01/2024 09:30;;VODACOM;;;Jean Dupont;1234,50;;;;;;\r\n");
+    }
+    
+    @Test
+    void guillemetsSeulementSiNecessaire() {
+        assertThat(beneficiaire("Dupont; Jean")).isEqualTo("\"Dupont; Jean\"");
+        assertThat(beneficiaire("Le \"Grand\" Jean")).isEqualTo("\"Le \"\"Grand\"\" Jean\"");
+        assertThat(beneficiaire("Ligne 1\nLigne 2")).isEqualTo("\"Ligne 1\nLigne 2\"");
+        assertThat(beneficiaire("Jean Dupont")).isEqualTo("Jean Dupont");
+    }
+    
+    @Test
+    void formulesNeutraliseesParUneApostrophe() {
+        assertThat(beneficiaire("=HYPERLINK(\"x\")")).isEqualTo("\"'=HYPERLINK(\"\"x\"\")\"");
+        assertThat(beneficiaire("+243 81")).isEqualTo("'+243 81");
+        assertThat(beneficiaire("-5")).isEqualTo("'-5");
+        assertThat(beneficiaire("@SUM")).isEqualTo("'@SUM");
+        assertThat(beneficiaire("5-")).isEqualTo("5-");
+    }
+    
+    @Test
+    void montantsADeuxDecimalesAvecVirgule() {
+        assertThat(amount("0")).isEqualTo("0,00");
+        assertThat(amount("-0.5")).isEqualTo("-0,50");
+        assertThat(amount("7")).isEqualTo("7,00");
+        assertThat(amount("100.10")).isEqualTo("100,10");
+        // Arrondi bancaire au centime
+        assertThat(amount("0.005")).isEqualTo("0,00");
+        assertThat(amount("0.015")).isEqualTo("0,02");
+        assertThat(amount("-2.675")).isEqualTo("-2,68");
+        assertThat(amount("1E+3")).isEqualTo("1000,00");
+        // Hors capacité d'un long en centimes : écrit depuis le BigDecimal
+        assertThat(amount("123456789012345678901234567890.125")).isEqualTo("123456789012345678901234567890,12");
+        assertThat(amount("-92233720368547758.08")).isEqualTo("-92233720368547758,08");
+        assertThat(amount(null)).isEmpty();
+    }
+    
+    @Test
+    void partieArreteeAvantLeDepassementDuBudget() throws IOException {
+        List<SiopReportDto> operations = List.of(
+            operation("Bénéficiaire 1", BigDecimal.ONE),
+            operation("Bénéficiaire 2", BigDecimal.ONE),
+            operation("Bénéficiaire 3", BigDecimal.ONE));
+        long header = renderer.render(Collections.emptyList()).length;
+        long row = renderer.render(operations.subList(0, 1)).length - header;
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int end = renderer.renderPart(operations, 0, out, header + 2 * row + 1);
+        
+        assertThat(end).isEqualTo(2);
+        assertThat(out.toByteArray()).isEqualTo(renderer.render(operations.subList(0, 2)));
+        
+        out.reset();
+        assertThat(renderer.renderPart(operations, end, out, header + 2 * row + 1)).isEqualTo(3);
+        assertThat(out.toByteArray()).isEqualTo(renderer.render(operations.subList(2, 3)));
+    }
+    
+    @Test
+    void premiereLigneToujoursEcrite() throws IOException {
+        List<SiopReportDto> operations = List.of(
+            operation("Bénéficiaire 1", BigDecimal.ONE),
+            operation("Bénéficiaire 2", BigDecimal.ONE));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        assertThat(renderer.renderPart(operations, 1, out, 1)).isEqualTo(2);
+        assertThat(out.toByteArray()).isEqualTo(renderer.render(operations.subList(1, 2)));
+    }
+    
+    private String beneficiaire(String value) {
+        return field(render(operation(value, null)), ReportColumn.BENEFICIAIRE);
+    }
+    
+    private String amount(String value) {
+        return field(render(operation(null, value == null ? null : new BigDecimal(value))), ReportColumn.MONTANT);
+    }
+    
+    private String render(SiopReportDto operation) {
+        return new String(renderer.render(List.of(operation)), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Champ d'une colonne de la ligne unique, dont seule cette colonne peut contenir un séparateur
+     */
+    private static String field(String csv, ReportColumn column) {
+        String row = csv.substring(HEADER.length(), csv.length() - 2);
+        int start = 0;
+        for (int i = 0; i < column.ordinal(); i++) {
+            start = row.indexOf(';', start) + 1;
+        }
+        int end = row.length();
+        for (int i = ReportColumn.COLUMNS.length - 1; i > column.ordinal(); i--) {
+            end = row.lastIndexOf(';', end - 1);
+        }
+        return row.substring(start, end);
+    }
+    
+    private static SiopReportDto operation(String beneficiaire, BigDecimal montant) {
+        SiopReportDto operation = new SiopReportDto();
+        operation.setBeneficiaire(beneficiaire);
+        operation.setMontantTx(montant);
+        return operation;
+    }
+}
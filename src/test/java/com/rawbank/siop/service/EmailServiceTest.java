@@ -0,0 +1,22 @@
+package com.rawbank.siop.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmailServiceTest {
+    
+    @Test
+    void nomDuFichierAvecLeCodeGestionnaire() {
+        assertThat(EmailService.reportFilename("jean.dupont@rawbank.cd", " G01 ", "15/01/2024", ReportFormat.CSV_GZIP))
+            .isEqualTo("siop_operations_jean_dupont_rawbank_cd_G01_15_01_2024.csv.gz");
+    }
+    
+    @Test
+    void nomDuFichierSansCodePourUnEmailPartage() {
+        assertThat(EmailService.reportFilename("agence@rawbank.cd", null, "15/01/2024", ReportFormat.XLSX))
+            .isEqualTo("siop_operations_agence_rawbank_cd_15_01_2024.xlsx");
+        assertThat(EmailService.reportFilename("agence@rawbank.cd", "  ", "15/01/2024", ReportFormat.CSV))
+            .isEqualTo("siop_operations_agence_rawbank_cd_15_01_2024.csv");
+    }
+}
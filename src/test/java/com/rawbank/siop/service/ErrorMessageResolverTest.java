@@ -0,0 +1,157 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.SiopReportDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorMessageResolverTest {
+    
+    private final SiopProperties properties = new SiopProperties();
+    private JdbcTemplate jdbc;
+    private ErrorMessageResolver resolver;
+    
+    @BeforeEach
+    void openDatabase() {
+        jdbc = new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:h2:mem:errors-" + UUID.randomUUID() + ";MODE=Oracle;DB_CLOSE_DELAY=-1"));
+        
+        resolver = new ErrorMessageResolver();
+        ReflectionTestUtils.setField(resolver, "namedParameterJdbcTemplate", new NamedParameterJdbcTemplate(jdbc));
+        ReflectionTestUtils.setField(resolver, "siopProperties", properties);
+    }
+    
+    @Test
+    void ligneRetrouveeParPlusieursIdentifiantsListeeUneFois() {
+        createTable("NUMBER");
+        error("MSG1", "LOT1", "TX1", "Compte inexistant ", "1");
+        
+        SiopReportDto operation = resolve(operation("MSG1", "LOT1", "TX1"));
+        
+        assertThat(operation.getErrorMsg()).isEqualTo("Compte inexistant au niveau de 1");
+    }
+    
+    @Test
+    void lignesIdentiquesListeesChacune() {
+        createTable("NUMBER");
+        error(null, null, "TX1", "Plafond", "1");
+        error(null, null, "TX1", "Plafond", "1");
+        
+        SiopReportDto operation = resolve(operation("MSG1", "LOT1", "TX1"));
+        
+        assertThat(operation.getErrorMsg()).isEqualTo("Plafond au niveau de 1 | Plafond au niveau de 1");
+    }
+    
+    @Test
+    void erreursDuLotEtDuMessageCommunesAuxTransactions() {
+        createTable("NUMBER");
+        error(null, "LOT1", null, "Lot rejeté", "2");
+        error("MSG1", null, null, "Message rejeté", "3");
+        // Erreur d'une autre transaction du lot : retenue par la condition sur idlot
+        error(null, "LOT1", "TX2", "Autre transaction", "1");
+        
+        SiopReportDto first = operation("MSG1", "LOT1", "TX1");
+        SiopReportDto other = operation("MSG2", "LOT2", "TX3");
+        resolver.resolve(List.of(first, other));
+        
+        assertThat(first.getErrorMsg()).isEqualTo(
+            "Autre transaction au niveau de 1 | Lot rejeté au niveau de 2 | Message rejeté au niveau de 3");
+        assertThat(other.getErrorMsg()).isNull();
+        assertThat(other.isErrorMsgResolved()).isTrue();
+    }
+    
+    @Test
+    void niveauNumeriqueTrieEtEcritCommeOracle() {
+        createTable("NUMBER");
+        error(null, null, "TX1", "C", "10");
+        error(null, null, "TX1", "B", "2");
+        error(null, null, "TX1", "A", "0.5");
+        error(null, null, "TX1", "D", null);
+        
+        SiopReportDto operation = resolve(operation("MSG1", "LOT1", "TX1"));
+        
+        assertThat(operation.getErrorMsg()).isEqualTo(
+            "A au niveau de .5 | B au niveau de 2 | C au niveau de 10 | D au niveau de ");
+    }
+    
+    @Test
+    void niveauTexteTrieAlphabetiquement() {
+        createTable("VARCHAR2(10)");
+        error(null, null, "TX1", "C", "10");
+        error(null, null, "TX1", "B", "2");
+        
+        SiopReportDto operation = resolve(operation("MSG1", "LOT1", "TX1"));
+        
+        assertThat(operation.getErrorMsg()).isEqualTo("C au niveau de 10 | B au niveau de 2");
+    }
+    
+    @Test
+    void recherchesParLotsDIdentifiants() {
+        createTable("NUMBER");
+        properties.getQuery().setErrorBatchSize(1);
+        error(null, null, "TX1", "Premier", "1");
+        error(null, null, "TX2", "Second", "1");
+        
+        SiopReportDto first = operation("MSG1", "LOT1", "TX1");
+        SiopReportDto second = operation("MSG1", "LOT1", "TX2");
+        resolver.resolve(List.of(first, second));
+        
+        assertThat(first.getErrorMsg()).isEqualTo("Premier au niveau de 1");
+        assertThat(second.getErrorMsg()).isEqualTo("Second au niveau de 1");
+    }
+    
+    @Test
+    void operationDejaResolueLaisseeTelleQuelle() {
+        createTable("NUMBER");
+        error(null, null, "TX1", "Plafond", "1");
+        SiopReportDto operation = operation("MSG1", "LOT1", "TX1");
+        operation.setErrorMsg("Lu dans l'instantané");
+        operation.setErrorMsgResolved(true);
+        
+        resolve(operation);
+        
+        assertThat(operation.getErrorMsg()).isEqualTo("Lu dans l'instantané");
+    }
+    
+    @Test
+    void conversionImpliciteOracleDUnNombre() {
+        assertThat(ErrorMessageResolver.oracleNumberText(new BigDecimal("0.5"))).isEqualTo(".5");
+        assertThat(ErrorMessageResolver.oracleNumberText(new BigDecimal("-0.50"))).isEqualTo("-.5");
+        assertThat(ErrorMessageResolver.oracleNumberText(new BigDecimal("10.00"))).isEqualTo("10");
+        assertThat(ErrorMessageResolver.oracleNumberText(new BigDecimal("1E+1"))).isEqualTo("10");
+        assertThat(ErrorMessageResolver.oracleNumberText(new BigDecimal("0.000"))).isEqualTo("0");
+    }
+    
+    private SiopReportDto resolve(SiopReportDto operation) {
+        resolver.resolve(List.of(operation));
+        return operation;
+    }
+    
+    private void createTable(String levelType) {
+        jdbc.execute("CREATE TABLE BKMOPERROR (idmsg VARCHAR2(35), idlot VARCHAR2(35), idtx VARCHAR2(35), "
+            + "mess VARCHAR2(200), lvl " + levelType + ")");
+    }
+    
+    private void error(String idmsg, String idlot, String idtx, String mess, String level) {
+        jdbc.update("INSERT INTO BKMOPERROR (idmsg, idlot, idtx, mess, lvl) VALUES (?, ?, ?, ?, ?)",
+            idmsg, idlot, idtx, mess, level);
+    }
+    
+    private static SiopReportDto operation(String idmsg, String idlot, String idtx) {
+        SiopReportDto operation = new SiopReportDto();
+        operation.setIdmsg(idmsg);
+        operation.setIdlot(idlot);
+        operation.setIdtx(idtx);
+        return operation;
+    }
+}
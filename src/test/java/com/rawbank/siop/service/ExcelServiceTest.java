@@ -0,0 +1,162 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.SiopReportDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExcelServiceTest {
+    
+    private static final int HEADER_BYTES = 10;
+    private static final int ROW_BYTES = 10;
+    
+    @TempDir
+    Path tempDirectory;
+    
+    private final OvershootingRenderer renderer = new OvershootingRenderer();
+    private ExcelService excelService;
+    
+    @BeforeEach
+    void startService() {
+        SiopProperties properties = new SiopProperties();
+        properties.getReport().setFormat("csv");
+        properties.getReport().setTempDirectory(tempDirectory.toString());
+        
+        excelService = new ExcelService();
+        ReflectionTestUtils.setField(excelService, "siopProperties", properties);
+        ReflectionTestUtils.setField(excelService, "renderers", List.of(renderer));
+        excelService.init();
+    }
+    
+    @Test
+    void rapportSousLeBudgetEnUneSeulePiece() throws IOException {
+        List<ReportAttachment> parts = excelService.generateReportParts(operations(3), "gest@rawbank.cd", 100);
+        
+        assertThat(parts).singleElement().satisfies(part -> {
+            assertThat(part.isPart()).isFalse();
+            assertThat(part.getRowCount()).isEqualTo(3);
+        });
+        assertThat(rows(parts)).containsExactly("op-0", "op-1", "op-2");
+    }
+    
+    @Test
+    void partieAuDelaDuBudgetReecriteEnDeuxMoities() throws IOException {
+        // L'estimation du rendu compte 5 octets par ligne : 6 lignes par partie au lieu de 3
+        long maxBytes = HEADER_BYTES + 3 * ROW_BYTES;
+        
+        List<ReportAttachment> parts = excelService.generateReportParts(operations(12), "gest@rawbank.cd", maxBytes);
+        
+        assertThat(parts).hasSize(4);
+        for (int i = 0; i < parts.size(); i++) {
+            ReportAttachment part = parts.get(i);
+            assertThat(part.getPart()).isEqualTo(i + 1);
+            assertThat(part.getPartCount()).isEqualTo(4);
+            assertThat(part.getRowCount()).isEqualTo(3);
+            assertThat(part.getSize()).isLessThanOrEqualTo(maxBytes);
+        }
+        assertThat(rows(parts)).containsExactlyElementsOf(
+            operations(12).stream().map(SiopReportDto::getBeneficiaire).toList());
+        // Les parties réécrites ne laissent pas de fichier temporaire
+        assertThat(temporaryFiles()).containsExactlyInAnyOrderElementsOf(
+            parts.stream().map(ReportAttachment::getFile).toList());
+    }
+    
+    @Test
+    void moitiesReecritesJusquALaLigneSeule() throws IOException {
+        long maxBytes = HEADER_BYTES + ROW_BYTES;
+        
+        List<ReportAttachment> parts = excelService.generateReportParts(operations(4), "gest@rawbank.cd", maxBytes);
+        
+        assertThat(parts).extracting(ReportAttachment::getRowCount).containsExactly(1, 1, 1, 1);
+        assertThat(rows(parts)).containsExactly("op-0", "op-1", "op-2", "op-3");
+    }
+    
+    @Test
+    void ligneSeulePlusGrandeQueLeBudgetFormeUnePartie() throws IOException {
+        List<ReportAttachment> parts = excelService.generateReportParts(operations(2), "gest@rawbank.cd", 5);
+        
+        assertThat(parts).extracting(ReportAttachment::getRowCount).containsExactly(1, 1);
+        assertThat(parts).extracting(ReportAttachment::getSize)
+            .containsOnly((long) HEADER_BYTES + ROW_BYTES);
+    }
+    
+    @Test
+    void suppressionDesPiecesJointes() throws IOException {
+        List<ReportAttachment> parts = excelService.generateReportParts(operations(12), "gest@rawbank.cd", 40);
+        
+        ReportAttachment.deleteAll(parts);
+        
+        assertThat(temporaryFiles()).isEmpty();
+    }
+    
+    private List<Path> temporaryFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDirectory)) {
+            return files.toList();
+        }
+    }
+    
+    private static List<String> rows(List<ReportAttachment> parts) throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (ReportAttachment part : parts) {
+            String content = Files.readString(part.getFile(), StandardCharsets.US_ASCII);
+            for (int i = HEADER_BYTES; i < content.length(); i += ROW_BYTES) {
+                rows.add(content.substring(i, i + ROW_BYTES).trim());
+            }
+        }
+        return rows;
+    }
+    
+    private static List<SiopReportDto> operations(int count) {
+        List<SiopReportDto> operations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SiopReportDto operation = new SiopReportDto();
+            operation.setBeneficiaire("op-" + i);
+            operations.add(operation);
+        }
+        return operations;
+    }
+    
+    /**
+     * Rendu de taille fixe par ligne, dont le suivi de partie sous-estime chaque ligne de moitié
+     */
+    private static final class OvershootingRenderer implements ReportRenderer {
+        
+        @Override
+        public ReportFormat format() {
+            return ReportFormat.CSV;
+        }
+        
+        @Override
+        public void render(Iterable<SiopReportDto> operations, OutputStream out) throws IOException {
+            out.write(String.format("%-" + HEADER_BYTES + "s", "EN-TETE").getBytes(StandardCharsets.US_ASCII));
+            for (SiopReportDto operation : operations) {
+                out.write(String.format("%-" + ROW_BYTES + "s", operation.getBeneficiaire())
+                    .getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        
+        @Override
+        public int renderPart(List<SiopReportDto> operations, int from, OutputStream out, long maxBytes)
+                throws IOException {
+            int end = from + 1;
+            while (end < operations.size() && HEADER_BYTES + (end - from + 1) * (ROW_BYTES / 2) <= maxBytes) {
+                end++;
+            }
+            render(operations.subList(from, end), out);
+            return end;
+        }
+    }
+}
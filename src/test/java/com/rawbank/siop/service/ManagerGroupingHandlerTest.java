@@ -0,0 +1,66 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.SiopReportDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ManagerGroupingHandlerTest {
+    
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 10, 14, 8, 0);
+    
+    private final List<List<SiopReportDto>> groups = new ArrayList<>();
+    private final ManagerGroupingHandler handler = new ManagerGroupingHandler(new SiopReportRowMapper(), groups::add);
+    
+    @Test
+    void emetChaqueGroupeDesQueLeGestionnaireChange() {
+        handler.accept(operation("G1", "TX1", T0));
+        handler.accept(operation("G1", "TX2", T0));
+        assertThat(groups).isEmpty();
+        
+        handler.accept(operation("G2", "TX3", T0));
+        assertThat(groups).hasSize(1);
+        assertThat(groups.get(0)).extracting(SiopReportDto::getIdtx).containsExactly("TX1", "TX2");
+        
+        handler.finish();
+        assertThat(groups).hasSize(2);
+        assertThat(groups.get(1)).extracting(SiopReportDto::getIdtx).containsExactly("TX3");
+        assertThat(handler.getGroupCount()).isEqualTo(2);
+        assertThat(handler.getRowCount()).isEqualTo(3);
+    }
+    
+    @Test
+    void ignoreLesOperationsSansGestionnaireMaisSuitLeurIncomtime() {
+        handler.accept(operation("G1", "TX1", T0));
+        handler.accept(operation(null, "TX2", T0.plusHours(2)));
+        handler.accept(operation("", "TX3", T0.plusHours(1)));
+        handler.accept(operation("G1", "TX4", null));
+        handler.finish();
+        
+        assertThat(groups).hasSize(1);
+        assertThat(groups.get(0)).extracting(SiopReportDto::getIdtx).containsExactly("TX1", "TX4");
+        assertThat(handler.getRowCount()).isEqualTo(4);
+        assertThat(handler.getMaxIncomTime()).isEqualTo(T0.plusHours(2));
+    }
+    
+    @Test
+    void finSansOperationNEmetRien() {
+        handler.finish();
+        
+        assertThat(groups).isEmpty();
+        assertThat(handler.getGroupCount()).isZero();
+        assertThat(handler.getMaxIncomTime()).isNull();
+    }
+    
+    private static SiopReportDto operation(String gestCode, String idtx, LocalDateTime incomTime) {
+        SiopReportDto operation = new SiopReportDto();
+        operation.setGestCode(gestCode);
+        operation.setIdtx(idtx);
+        operation.setIncomTime(incomTime);
+        return operation;
+    }
+}
@@ -0,0 +1,56 @@
+package com.rawbank.siop.service;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboxSenderTest {
+    
+    @Test
+    void messageDisparuDefinitif() {
+        assertThat(OutboxSender.isPermanent(new NoSuchFileException("data/outbox/1.eml"))).isTrue();
+        assertThat(OutboxSender.isPermanent(
+            new UncheckedIOException(new NoSuchFileException("data/outbox/1.eml")))).isTrue();
+    }
+    
+    @Test
+    void destinataireRefuseDefinitif() throws Exception {
+        assertThat(OutboxSender.isPermanent(refused(new InternetAddress("inconnu@rawbank.cd")))).isTrue();
+        assertThat(OutboxSender.isPermanent(new MessagingException("Envoi", refused(
+            new InternetAddress("inconnu@rawbank.cd"))))).isTrue();
+    }
+    
+    @Test
+    void erreursDuPoolSmtpExaminees() throws Exception {
+        MailSendException refused = new MailSendException(
+            Map.of("message", refused(new InternetAddress("inconnu@rawbank.cd"))));
+        MailSendException timeout = new MailSendException(
+            Map.of("message", new MessagingException("Relais injoignable", new SocketTimeoutException())));
+        
+        assertThat(OutboxSender.isPermanent(refused)).isTrue();
+        assertThat(OutboxSender.isPermanent(timeout)).isFalse();
+    }
+    
+    @Test
+    void erreursTransitoiresRejouees() {
+        assertThat(OutboxSender.isPermanent(new MessagingException("Relais injoignable",
+            new SocketTimeoutException()))).isFalse();
+        // Refus sans adresse invalide (relais indisponible)
+        assertThat(OutboxSender.isPermanent(refused())).isFalse();
+        assertThat(OutboxSender.isPermanent(new MailSendException("Connexion refusée"))).isFalse();
+    }
+    
+    private static SendFailedException refused(Address... invalid) {
+        return new SendFailedException("Destinataire refusé", null, new Address[0], new Address[0], invalid);
+    }
+}
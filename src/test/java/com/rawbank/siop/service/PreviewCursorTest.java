@@ -0,0 +1,118 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.SiopReportDto;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class PreviewCursorTest {
+    
+    private static final LocalDateTime NINE = LocalDateTime.of(2024, 1, 15, 9, 0, 0, 250_000_000);
+    private static final LocalDateTime TEN = LocalDateTime.of(2024, 1, 15, 10, 0);
+    
+    @Test
+    void relitLaCleDeLaDerniereOperation() {
+        PreviewCursor cursor = PreviewCursor.decode(
+            PreviewCursor.encode("15/01/2024", "VODACOM", operation("G01", NINE, "MSG1", "LOT1", "TX1")));
+        
+        assertThat(cursor.getDate()).isEqualTo("15/01/2024");
+        assertThat(cursor.getCanal()).isEqualTo("VODACOM");
+        assertThat(cursor.getGestCode()).isEqualTo("G01");
+        assertThat(cursor.getIncomTime()).isEqualTo(NINE);
+        assertThat(cursor.getIdmsg()).isEqualTo("MSG1");
+        assertThat(cursor.getIdlot()).isEqualTo("LOT1");
+        assertThat(cursor.getIdtx()).isEqualTo("TX1");
+    }
+    
+    @Test
+    void champsAbsentsConservesCommeAbsents() {
+        PreviewCursor cursor = PreviewCursor.decode(
+            PreviewCursor.encode("15/01/2024", "VODACOM", operation("G01", null, "MSG1", null, "")));
+        
+        assertThat(cursor.getIncomTime()).isNull();
+        assertThat(cursor.getIdlot()).isNull();
+        assertThat(cursor.getIdtx()).isEmpty();
+    }
+    
+    @Test
+    void refuseUnJetonMalForme() {
+        assertThatIllegalArgumentException().isThrownBy(() -> PreviewCursor.decode("pas un jeton!"))
+            .withMessage("Curseur invalide");
+        assertThatIllegalArgumentException().isThrownBy(() -> PreviewCursor.decode(token("15/01/2024\u001FVODACOM")))
+            .withMessage("Curseur invalide");
+        assertThatIllegalArgumentException().isThrownBy(() -> PreviewCursor.decode(
+                token("15/01/2024\u001FVODACOM\u001FG01\u001Fhier\u001FMSG1\u001FLOT1\u001FTX1")))
+            .withMessage("Curseur invalide");
+    }
+    
+    @Test
+    void refuseUnJetonSansGestionnaire() {
+        String token = PreviewCursor.encode("15/01/2024", "VODACOM", operation(null, NINE, "MSG1", "LOT1", "TX1"));
+        
+        assertThatIllegalArgumentException().isThrownBy(() -> PreviewCursor.decode(token))
+            .withMessage("Curseur invalide");
+    }
+    
+    @Test
+    void gestionnaireCroissantPuisIncomtimeDecroissant() {
+        PreviewCursor cursor = cursor(operation("G02", TEN, "MSG5", "LOT5", "TX5"));
+        
+        assertThat(cursor.precedes(operation("G03", TEN, "MSG1", "LOT1", "TX1"))).isTrue();
+        assertThat(cursor.precedes(operation("G01", TEN, "MSG9", "LOT9", "TX9"))).isFalse();
+        assertThat(cursor.precedes(operation("G02", NINE, "MSG1", "LOT1", "TX1"))).isTrue();
+        assertThat(cursor.precedes(operation("G02", TEN.plusSeconds(1), "MSG9", "LOT9", "TX9"))).isFalse();
+    }
+    
+    @Test
+    void incomtimeAbsentEnPremier() {
+        PreviewCursor withTime = cursor(operation("G02", TEN, "MSG5", "LOT5", "TX5"));
+        assertThat(withTime.precedes(operation("G02", null, "MSG9", "LOT9", "TX9"))).isFalse();
+        
+        PreviewCursor withoutTime = cursor(operation("G02", null, "MSG5", "LOT5", "TX5"));
+        assertThat(withoutTime.precedes(operation("G02", NINE, "MSG1", "LOT1", "TX1"))).isTrue();
+        assertThat(withoutTime.precedes(operation("G02", null, "MSG6", "LOT1", "TX1"))).isTrue();
+    }
+    
+    @Test
+    void messageLotPuisTransactionCroissants() {
+        PreviewCursor cursor = cursor(operation("G02", TEN, "MSG5", "LOT5", "TX5"));
+        
+        assertThat(cursor.precedes(operation("G02", TEN, "MSG6", "LOT1", "TX1"))).isTrue();
+        assertThat(cursor.precedes(operation("G02", TEN, "MSG5", "LOT6", "TX1"))).isTrue();
+        assertThat(cursor.precedes(operation("G02", TEN, "MSG5", "LOT5", "TX6"))).isTrue();
+        assertThat(cursor.precedes(operation("G02", TEN, "MSG5", "LOT5", "TX4"))).isFalse();
+        // L'opération du curseur elle-même a déjà été renvoyée
+        assertThat(cursor.precedes(operation("G02", TEN, "MSG5", "LOT5", "TX5"))).isFalse();
+    }
+    
+    @Test
+    void operationSansGestionnaireJamaisRetenue() {
+        PreviewCursor cursor = cursor(operation("G02", TEN, "MSG5", "LOT5", "TX5"));
+        
+        assertThat(cursor.precedes(operation(null, TEN, "MSG9", "LOT9", "TX9"))).isFalse();
+    }
+    
+    private static PreviewCursor cursor(SiopReportDto last) {
+        return PreviewCursor.decode(PreviewCursor.encode("15/01/2024", "VODACOM", last));
+    }
+    
+    private static String token(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static SiopReportDto operation(String gestCode, LocalDateTime incomTime, String idmsg, String idlot,
+                                           String idtx) {
+        SiopReportDto operation = new SiopReportDto();
+        operation.setGestCode(gestCode);
+        operation.setIncomTime(incomTime);
+        operation.setIdmsg(idmsg);
+        operation.setIdlot(idlot);
+        operation.setIdtx(idtx);
+        return operation;
+    }
+}
@@ -0,0 +1,97 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.SiopReportDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class ReportDownloadTest {
+    
+    private final Map<String, List<String>> rowsByCanal = Map.of(
+        "VODACOM", List.of("TX1", "TX2", "TX3"),
+        "AIRTEL", List.of(),
+        "ORANGE", List.of("TX4", "TX5"));
+    private final List<String> opened = new ArrayList<>();
+    private final List<String> closed = new ArrayList<>();
+    private final List<List<String>> resolvedChunks = new ArrayList<>();
+    
+    @Test
+    void paquetsDeTailleFixeCanalApresCanal() {
+        ReportDownload download = download(List.of("VODACOM", "AIRTEL", "ORANGE"), 2);
+        
+        assertThat(download.open().getIdtx()).isEqualTo("TX1");
+        assertThat(idtx(download)).containsExactly("TX1", "TX2", "TX3", "TX4", "TX5");
+        assertThat(download.getCount()).isEqualTo(5);
+        assertThat(resolvedChunks).containsExactly(List.of("TX1", "TX2"), List.of("TX3", "TX4"), List.of("TX5"));
+        assertThat(closed).containsExactly("VODACOM", "AIRTEL", "ORANGE");
+    }
+    
+    @Test
+    void canalOuvertSeulementQuandLePaquetLeDemande() {
+        ReportDownload download = download(List.of("VODACOM", "AIRTEL", "ORANGE"), 3);
+        
+        download.open();
+        
+        assertThat(opened).containsExactly("VODACOM");
+        assertThat(resolvedChunks).containsExactly(List.of("TX1", "TX2", "TX3"));
+    }
+    
+    @Test
+    void gestionnaireSansOperation() {
+        ReportDownload download = download(List.of("AIRTEL"), 2);
+        
+        assertThat(download.open()).isNull();
+        assertThat(idtx(download)).isEmpty();
+        assertThat(resolvedChunks).isEmpty();
+    }
+    
+    @Test
+    void parcoursUniqueDesOperations() {
+        ReportDownload download = download(List.of("VODACOM"), 2);
+        download.open();
+        idtx(download);
+        
+        assertThatIllegalStateException().isThrownBy(download::iterator)
+            .withMessage("Opérations du rapport déjà parcourues");
+    }
+    
+    @Test
+    void fermetureDuCurseurEnCoursPuisActionUnique() {
+        AtomicInteger released = new AtomicInteger();
+        ReportDownload download = download(List.of("VODACOM", "ORANGE"), 2);
+        download.onClose(released::incrementAndGet);
+        download.open();
+        
+        download.close();
+        download.close();
+        
+        assertThat(closed).containsExactly("VODACOM");
+        assertThat(released.get()).isEqualTo(1);
+    }
+    
+    private ReportDownload download(List<String> canals, int chunkSize) {
+        return new ReportDownload(canals, canal -> {
+            opened.add(canal);
+            return rowsByCanal.get(canal).stream().map(ReportDownloadTest::operation)
+                .onClose(() -> closed.add(canal));
+        }, chunk -> resolvedChunks.add(chunk.stream().map(SiopReportDto::getIdtx).toList()), chunkSize);
+    }
+    
+    private static List<String> idtx(ReportDownload download) {
+        List<String> idtx = new ArrayList<>();
+        download.forEach(operation -> idtx.add(operation.getIdtx()));
+        return idtx;
+    }
+    
+    private static SiopReportDto operation(String idtx) {
+        SiopReportDto operation = new SiopReportDto();
+        operation.setIdtx(idtx);
+        return operation;
+    }
+}
@@ -0,0 +1,28 @@
+package com.rawbank.siop.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class ReportFormatTest {
+    
+    @Test
+    void resoutLeCodeLeNomOuLExtension() {
+        assertThat(ReportFormat.fromCode("csv-gzip")).isEqualTo(ReportFormat.CSV_GZIP);
+        assertThat(ReportFormat.fromCode("CSV_GZIP")).isEqualTo(ReportFormat.CSV_GZIP);
+        assertThat(ReportFormat.fromCode("csv.gz")).isEqualTo(ReportFormat.CSV_GZIP);
+        assertThat(ReportFormat.fromCode(" XLSX ")).isEqualTo(ReportFormat.XLSX);
+        assertThat(ReportFormat.fromCode("Csv")).isEqualTo(ReportFormat.CSV);
+    }
+    
+    @Test
+    void refuseUnFormatAbsentOuInconnu() {
+        assertThatIllegalArgumentException().isThrownBy(() -> ReportFormat.fromCode(null))
+            .withMessage("Format de rapport non renseigné");
+        assertThatIllegalArgumentException().isThrownBy(() -> ReportFormat.fromCode(" "))
+            .withMessage("Format de rapport non renseigné");
+        assertThatIllegalArgumentException().isThrownBy(() -> ReportFormat.fromCode("pdf"))
+            .withMessage("Format de rapport inconnu : pdf");
+    }
+}
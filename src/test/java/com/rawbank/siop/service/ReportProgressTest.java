@@ -0,0 +1,72 @@
+package com.rawbank.siop.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReportProgressTest {
+    
+    @Test
+    void additionneLesCanauxSuivis() {
+        ReportProgress progress = new ReportProgress();
+        ReportProgress.Canal vodacom = new ReportProgress.Canal();
+        ReportProgress.Canal airtel = new ReportProgress.Canal();
+        progress.track(vodacom);
+        progress.track(airtel);
+        
+        vodacom.addRows(100);
+        airtel.addRows(20);
+        vodacom.managerSubmitted();
+        airtel.managerSubmitted();
+        airtel.managerSubmitted();
+        
+        assertThat(progress.getRowCount()).isEqualTo(120);
+        assertThat(progress.getManagersSubmitted()).isEqualTo(3);
+        // Pipeline pas encore démarré
+        assertThat(progress.getManagersSent()).isZero();
+    }
+    
+    @Test
+    void demandeRegroupeeSuitLAvancementDeLExecutionRejointe() {
+        ReportProgress owner = new ReportProgress();
+        ReportProgress coalesced = new ReportProgress();
+        ReportProgress.Canal canal = new ReportProgress.Canal();
+        owner.track(canal);
+        
+        canal.addRows(50);
+        coalesced.track(canal);
+        canal.addRows(25);
+        canal.attach(run(4, 1, 2));
+        
+        assertThat(coalesced.getRowCount()).isEqualTo(owner.getRowCount()).isEqualTo(75);
+        assertThat(coalesced.getManagersSent()).isEqualTo(4);
+        assertThat(coalesced.getManagersQueued()).isEqualTo(1);
+        assertThat(coalesced.getManagersFailed()).isEqualTo(2);
+    }
+    
+    @Test
+    void compteurDesEnvoisParExecutionDeCanal() {
+        ReportProgress progress = new ReportProgress();
+        ReportProgress.Canal first = new ReportProgress.Canal();
+        ReportProgress.Canal second = new ReportProgress.Canal();
+        progress.track(first);
+        progress.track(second);
+        first.attach(run(3, 0, 0));
+        second.attach(run(2, 5, 1));
+        
+        assertThat(progress.getManagersSent()).isEqualTo(5);
+        assertThat(progress.getManagersQueued()).isEqualTo(5);
+        assertThat(progress.getManagersFailed()).isEqualTo(1);
+        assertThat(progress.getStage()).isEqualTo(ReportStage.QUEUED);
+    }
+    
+    private static ReportPipeline.Run run(int sent, int queued, int failed) {
+        ReportPipeline.Run run = mock(ReportPipeline.Run.class);
+        when(run.getSent()).thenReturn(sent);
+        when(run.getQueued()).thenReturn(queued);
+        when(run.getFailed()).thenReturn(failed);
+        return run;
+    }
+}
@@ -0,0 +1,64 @@
+package com.rawbank.siop.service;
+
+import com.rawbank.siop.dto.SiopReportDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SharedEmailMergerTest {
+    
+    private final List<List<String>> emitted = new ArrayList<>();
+    private final SharedEmailMerger merger = new SharedEmailMerger(Set.of("agence@rawbank.cd"),
+        group -> emitted.add(group.stream().map(SiopReportDto::getIdtx).toList()));
+    
+    @Test
+    void emailDUnSeulCodeTransmisImmediatement() {
+        merger.accept(group("jean@rawbank.cd", "TX1", "TX2"));
+        
+        assertThat(emitted).containsExactly(List.of("TX1", "TX2"));
+        assertThat(merger.getGroupCount()).isEqualTo(1);
+    }
+    
+    @Test
+    void emailPartageRetenuJusquALaFinPuisFusionne() {
+        merger.accept(group("Agence@Rawbank.cd ", "TX1"));
+        merger.accept(group("jean@rawbank.cd", "TX2"));
+        merger.accept(group("agence@rawbank.cd", "TX3", "TX4"));
+        
+        assertThat(emitted).containsExactly(List.of("TX2"));
+        
+        merger.finish();
+        
+        assertThat(emitted).containsExactly(List.of("TX2"), List.of("TX1", "TX3", "TX4"));
+        assertThat(merger.getGroupCount()).isEqualTo(2);
+    }
+    
+    @Test
+    void emailsPartagesEmisDansLOrdreDeLeurPremierCode() {
+        SharedEmailMerger twoShared = new SharedEmailMerger(Set.of("agence@rawbank.cd", "siege@rawbank.cd"),
+            group -> emitted.add(group.stream().map(SiopReportDto::getIdtx).toList()));
+        twoShared.accept(group("siege@rawbank.cd", "TX1"));
+        twoShared.accept(group("agence@rawbank.cd", "TX2"));
+        twoShared.accept(group("siege@rawbank.cd", "TX3"));
+        
+        twoShared.finish();
+        twoShared.finish();
+        
+        assertThat(emitted).containsExactly(List.of("TX1", "TX3"), List.of("TX2"));
+    }
+    
+    private static List<SiopReportDto> group(String email, String... idtx) {
+        List<SiopReportDto> group = new ArrayList<>();
+        for (String id : idtx) {
+            SiopReportDto operation = new SiopReportDto();
+            operation.setEmailGest(email);
+            operation.setIdtx(id);
+            group.add(operation);
+        }
+        return group;
+    }
+}
@@ -0,0 +1,59 @@
+package com.rawbank.siop.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SiopServiceTest {
+    
+    private static final LocalDateTime T1 = LocalDateTime.of(2024, 1, 15, 9, 0);
+    private static final LocalDateTime T2 = LocalDateTime.of(2024, 1, 15, 10, 0);
+    private static final LocalDateTime T3 = LocalDateTime.of(2024, 1, 15, 11, 0);
+    
+    @Test
+    void marqueurDuCanalSansRepartition() {
+        assertThat(SiopService.coveringHighWaterMark("VODACOM", Map.of("VODACOM   ", T2))).isEqualTo(T2);
+    }
+    
+    @Test
+    void repartitionIncompleteIgnoree() {
+        assertThat(SiopService.coveringHighWaterMark("VODACOM", Map.of("VODACOM#0/2", T2))).isNull();
+        assertThat(SiopService.coveringHighWaterMark("VODACOM", Map.of())).isNull();
+    }
+    
+    @Test
+    void plusAncienMarqueurDUneRepartitionComplete() {
+        Map<String, LocalDateTime> marks = Map.of(
+            "VODACOM#0/2", T3,
+            "VODACOM#1/2", T1);
+        
+        assertThat(SiopService.coveringHighWaterMark("VODACOM", marks)).isEqualTo(T1);
+    }
+    
+    @Test
+    void plusRecentDesMinimumsDesRepartitionsCompletes() {
+        Map<String, LocalDateTime> marks = Map.of(
+            "VODACOM", T1,
+            "VODACOM#0/2", T3,
+            "VODACOM#1/2", T2,
+            // Répartition en trois parts incomplète
+            "VODACOM#0/3", T3);
+        
+        assertThat(SiopService.coveringHighWaterMark("VODACOM", marks)).isEqualTo(T2);
+    }
+    
+    @Test
+    void canauxDeMemePrefixeEtPartsIllisiblesIgnores() {
+        Map<String, LocalDateTime> marks = Map.of(
+            "VODACOM2", T3,
+            "VODACOM2#0/1", T3,
+            "VODACOM#x", T3,
+            "VODACOM#1/1", T3,
+            "VODACOM#0/1", T1);
+        
+        assertThat(SiopService.coveringHighWaterMark("VODACOM", marks)).isEqualTo(T1);
+    }
+}
@@ -0,0 +1,43 @@
+package com.rawbank.siop.store;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+    
+    @Test
+    void aucuneCleAjouteeNEstDeclareeAbsente() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("TX:" + i + "\u001FRejeté|En erreur|En erreur");
+        }
+        
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("TX:" + i + "\u001FRejeté|En erreur|En erreur")).isTrue();
+        }
+    }
+    
+    @Test
+    void fauxPositifsBornesParLeDimensionnement() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("TX:" + i);
+        }
+        
+        int falsePositives = 0;
+        for (int i = 10_000; i < 110_000; i++) {
+            falsePositives += filter.mightContain("TX:" + i) ? 1 : 0;
+        }
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+    
+    @Test
+    void filtreVideOuSousDimensionne() {
+        BloomFilter filter = new BloomFilter(0, 0.01);
+        assertThat(filter.mightContain("TX:1")).isFalse();
+        
+        filter.add("TX:1");
+        assertThat(filter.mightContain("TX:1")).isTrue();
+    }
+}
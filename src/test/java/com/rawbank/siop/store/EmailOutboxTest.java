@@ -0,0 +1,196 @@
+package com.rawbank.siop.store;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.SiopReportDto;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class EmailOutboxTest {
+    
+    private static final LocalDate BUSINESS_DATE = LocalDate.of(2024, 1, 15);
+    
+    @TempDir
+    Path directory;
+    
+    private final SiopProperties properties = new SiopProperties();
+    private LocalStore localStore;
+    private EmailOutbox outbox;
+    
+    @BeforeEach
+    void openOutbox() {
+        properties.getStore().setUrl("jdbc:h2:mem:outbox-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        properties.getOutbox().setDirectory(directory.toString());
+        properties.getOutbox().setMaxAttempts(3);
+        
+        localStore = new LocalStore();
+        ReflectionTestUtils.setField(localStore, "siopProperties", properties);
+        localStore.init();
+        outbox = newOutbox();
+    }
+    
+    @AfterEach
+    void closeOutbox() {
+        localStore.close();
+    }
+    
+    @Test
+    void messageMisEnFileAttribueUneFois() throws Exception {
+        outbox.enqueue("gest@rawbank.cd", "VODACOM", "15/01/2024", List.of(message("Rapport SIOP")));
+        
+        EmailOutbox.Entry entry = outbox.claimNext();
+        
+        assertThat(entry.getRecipient()).isEqualTo("gest@rawbank.cd");
+        assertThat(entry.getCanal()).isEqualTo("VODACOM");
+        assertThat(entry.getAttempts()).isZero();
+        assertThat(entry.getFile()).exists();
+        assertThat(outbox.claimNext()).isNull();
+        assertThat(outbox.count(EmailOutbox.Status.SENDING)).isEqualTo(1);
+    }
+    
+    @Test
+    void envoiInterrompuRejoueAuRedemarrage() throws Exception {
+        outbox.enqueue("gest@rawbank.cd", "VODACOM", "15/01/2024", List.of(message("Rapport SIOP")));
+        EmailOutbox.Entry interrupted = outbox.claimNext();
+        
+        EmailOutbox restarted = newOutbox();
+        
+        EmailOutbox.Entry replayed = restarted.claimNext();
+        assertThat(replayed.getId()).isEqualTo(interrupted.getId());
+        assertThat(replayed.getFile()).exists();
+    }
+    
+    @Test
+    void echecReprogrammeAvecDelai() throws Exception {
+        outbox.enqueue("gest@rawbank.cd", "VODACOM", "15/01/2024", List.of(message("Rapport SIOP")));
+        
+        EmailOutbox.Status status = outbox.markFailed(outbox.claimNext(), "Relais injoignable", false);
+        
+        assertThat(status).isEqualTo(EmailOutbox.Status.PENDING);
+        // Prochain essai dans initial-backoff-seconds
+        assertThat(outbox.claimNext()).isNull();
+        assertThat(outbox.count(EmailOutbox.Status.PENDING)).isEqualTo(1);
+    }
+    
+    @Test
+    void lettreMorteApresLeDernierEssaiPuisRemiseEnFile() throws Exception {
+        properties.getOutbox().setInitialBackoffSeconds(0);
+        outbox.enqueue("gest@rawbank.cd", "VODACOM", "15/01/2024", List.of(message("Rapport SIOP")));
+        
+        assertThat(outbox.markFailed(outbox.claimNext(), "Relais injoignable", false))
+            .isEqualTo(EmailOutbox.Status.PENDING);
+        assertThat(outbox.markFailed(outbox.claimNext(), "Relais injoignable", false))
+            .isEqualTo(EmailOutbox.Status.PENDING);
+        EmailOutbox.Entry last = outbox.claimNext();
+        assertThat(last.getAttempts()).isEqualTo(2);
+        assertThat(outbox.markFailed(last, "Relais injoignable", false)).isEqualTo(EmailOutbox.Status.DEAD);
+        assertThat(outbox.claimNext()).isNull();
+        // Fichier conservé pour la remise en file
+        assertThat(last.getFile()).exists();
+        
+        assertThat(outbox.requeue(null)).isEqualTo(1);
+        assertThat(outbox.claimNext().getAttempts()).isZero();
+    }
+    
+    @Test
+    void echecDefinitifEnLettreMorteDesLePremierEssai() throws Exception {
+        outbox.enqueue("gest@rawbank.cd", "VODACOM", "15/01/2024", List.of(message("Rapport SIOP")));
+        
+        assertThat(outbox.markFailed(outbox.claimNext(), "Destinataire refusé", true))
+            .isEqualTo(EmailOutbox.Status.DEAD);
+        assertThat((List<?>) outbox.stats().get("deadLetters")).singleElement()
+            .hasFieldOrPropertyWithValue("lastError", "Destinataire refusé");
+    }
+    
+    @Test
+    void operationsEnCoursDeNotificationJusquALEnvoi() throws Exception {
+        SiopReportDto early = operation("TX1", LocalDateTime.of(2024, 1, 15, 9, 0));
+        SiopReportDto late = operation("TX2", LocalDateTime.of(2024, 1, 15, 11, 0));
+        String earlyKey = NotificationLedger.operationKey(early);
+        outbox.enqueue("gest@rawbank.cd", "VODACOM", "15/01/2024", List.of(message("Rapport SIOP")),
+            new EmailOutbox.Notification(BUSINESS_DATE, "VODACOM", List.of(List.of(late, early))));
+        
+        assertThat(outbox.findInFlight(List.of(earlyKey))).containsExactly(
+            NotificationLedger.ledgerKey(earlyKey, NotificationLedger.statusKey(early)));
+        
+        EmailOutbox.Entry entry = outbox.claimNext();
+        assertThat(entry.getBusinessDate()).isEqualTo(BUSINESS_DATE);
+        assertThat(entry.getHighWaterKey()).isEqualTo("VODACOM");
+        assertThat(outbox.earliestIncomTime(entry)).isEqualTo(early.getIncomTime());
+        assertThat(outbox.notifiedKeys(entry)).hasSize(2);
+        assertThat(outbox.findInFlight(List.of(earlyKey))).hasSize(1);
+        
+        outbox.markSent(entry);
+        
+        assertThat(outbox.findInFlight(List.of(earlyKey))).isEmpty();
+        assertThat(outbox.notifiedKeys(entry)).isEmpty();
+        assertThat(entry.getFile()).doesNotExist();
+    }
+    
+    @Test
+    void refuseDesOperationsSansLeurMessage() throws Exception {
+        EmailOutbox.Notification notification = new EmailOutbox.Notification(BUSINESS_DATE, "VODACOM", List.of());
+        
+        assertThatIllegalArgumentException().isThrownBy(() -> outbox.enqueue("gest@rawbank.cd", "VODACOM",
+            "15/01/2024", List.of(message("Rapport SIOP")), notification));
+        assertThat(outbox.count(EmailOutbox.Status.PENDING)).isZero();
+    }
+    
+    @Test
+    void fichiersSansMessageSupprimesAuDemarrage() throws Exception {
+        Files.writeString(directory.resolve("orphelin.eml"), "");
+        Files.writeString(directory.resolve("interrompu.eml.tmp"), "");
+        outbox.enqueue("gest@rawbank.cd", "VODACOM", "15/01/2024", List.of(message("Rapport SIOP")));
+        
+        newOutbox();
+        
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                .singleElement().asString().endsWith(".eml");
+        }
+        assertThat(outbox.claimNext().getFile()).exists();
+    }
+    
+    private EmailOutbox newOutbox() {
+        EmailOutbox emailOutbox = new EmailOutbox();
+        ReflectionTestUtils.setField(emailOutbox, "localStore", localStore);
+        ReflectionTestUtils.setField(emailOutbox, "siopProperties", properties);
+        emailOutbox.init();
+        return emailOutbox;
+    }
+    
+    private static MimeMessage message(String subject) throws Exception {
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setSubject(subject);
+        message.setText("Bonjour");
+        return message;
+    }
+    
+    private static SiopReportDto operation(String idtx, LocalDateTime incomTime) {
+        SiopReportDto operation = new SiopReportDto();
+        operation.setIdmsg("MSG1");
+        operation.setIdlot("LOT1");
+        operation.setIdtx(idtx);
+        operation.setIncomTime(incomTime);
+        operation.setMsgStatus("Rejeté");
+        operation.setLotStatus("En erreur");
+        operation.setTxtStatus("En erreur");
+        return operation;
+    }
+}
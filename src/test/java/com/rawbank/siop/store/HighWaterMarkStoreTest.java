@@ -0,0 +1,97 @@
+package com.rawbank.siop.store;
+
+import com.rawbank.siop.config.SiopProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HighWaterMarkStoreTest {
+    
+    private static final LocalDate DATE = LocalDate.of(2025, 10, 14);
+    private static final LocalDateTime T8 = LocalDateTime.of(2025, 10, 14, 8, 0);
+    private static final LocalDateTime T9 = T8.plusHours(1);
+    private static final LocalDateTime T10 = T8.plusHours(2);
+    
+    private LocalStore localStore;
+    private HighWaterMarkStore store;
+    
+    @BeforeEach
+    void openStore() {
+        SiopProperties properties = new SiopProperties();
+        properties.getStore().setUrl("jdbc:h2:mem:hwm-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        
+        localStore = new LocalStore();
+        ReflectionTestUtils.setField(localStore, "siopProperties", properties);
+        localStore.init();
+        
+        store = new HighWaterMarkStore();
+        ReflectionTestUtils.setField(store, "localStore", localStore);
+        ReflectionTestUtils.setField(store, "siopProperties", properties);
+        store.init();
+    }
+    
+    @AfterEach
+    void closeStore() {
+        localStore.close();
+    }
+    
+    @Test
+    void enregistreEtRemplaceLeMarqueur() {
+        assertThat(store.find(DATE, "VODACOM")).isEmpty();
+        
+        store.save(DATE, "VODACOM", T9);
+        store.save(DATE, "VODACOM", T8);
+        
+        assertThat(store.find(DATE, "VODACOM")).contains(T8);
+        assertThat(store.find(DATE.plusDays(1), "VODACOM")).isEmpty();
+    }
+    
+    @Test
+    void avanceSeulementDepuisLeMarqueurLuEnDebutDExecution() {
+        assertThat(store.advance(DATE, "VODACOM", null, T9)).isTrue();
+        // Marqueur créé entre-temps : non écrasé
+        assertThat(store.advance(DATE, "VODACOM", null, T10)).isFalse();
+        assertThat(store.find(DATE, "VODACOM")).contains(T9);
+        
+        assertThat(store.advance(DATE, "VODACOM", T8, T10)).isFalse();
+        assertThat(store.advance(DATE, "VODACOM", T9, T10)).isTrue();
+        assertThat(store.find(DATE, "VODACOM")).contains(T10);
+    }
+    
+    @Test
+    void reculeUnMarqueurPlusRecentOuLeCree() {
+        assertThat(store.rewind(DATE, "VODACOM", T9)).isTrue();
+        assertThat(store.find(DATE, "VODACOM")).contains(T9);
+        
+        assertThat(store.rewind(DATE, "VODACOM", T10)).isFalse();
+        assertThat(store.rewind(DATE, "VODACOM", T8)).isTrue();
+        assertThat(store.find(DATE, "VODACOM")).contains(T8);
+    }
+    
+    @Test
+    void marqueurReculePendantLExecutionConserve() {
+        store.save(DATE, "VODACOM", T9);
+        store.rewind(DATE, "VODACOM", T8);
+        
+        assertThat(store.advance(DATE, "VODACOM", T9, T10)).isFalse();
+        assertThat(store.find(DATE, "VODACOM")).contains(T8);
+    }
+    
+    @Test
+    void rechercheParPrefixeDeCanal() {
+        store.save(DATE, "VODACOM", T8);
+        store.save(DATE, "VODACOM#1/2", T9);
+        store.save(DATE, "AIRTEL", T10);
+        
+        assertThat(store.findByPrefix(DATE, "VODACOM"))
+            .containsOnlyKeys("VODACOM", "VODACOM#1/2")
+            .containsEntry("VODACOM#1/2", T9);
+    }
+}
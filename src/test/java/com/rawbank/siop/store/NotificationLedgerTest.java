@@ -0,0 +1,124 @@
+package com.rawbank.siop.store;
+
+import com.rawbank.siop.config.SiopProperties;
+import com.rawbank.siop.dto.SiopReportDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NotificationLedgerTest {
+    
+    private final SiopProperties properties = new SiopProperties();
+    private final EmailOutbox emailOutbox = mock(EmailOutbox.class);
+    private LocalStore localStore;
+    private NotificationLedger ledger;
+    
+    @BeforeEach
+    void openLedger() {
+        properties.getStore().setUrl("jdbc:h2:mem:ledger-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        properties.getLedger().setExpectedEntries(1_000);
+        
+        localStore = new LocalStore();
+        ReflectionTestUtils.setField(localStore, "siopProperties", properties);
+        localStore.init();
+        
+        ledger = new NotificationLedger();
+        ReflectionTestUtils.setField(ledger, "localStore", localStore);
+        ReflectionTestUtils.setField(ledger, "emailOutbox", emailOutbox);
+        ReflectionTestUtils.setField(ledger, "siopProperties", properties);
+        ledger.init();
+    }
+    
+    @AfterEach
+    void closeLedger() {
+        localStore.close();
+    }
+    
+    @Test
+    void ecarteLesOperationsDejaNotifieesAvecLesMemesStatuts() {
+        SiopReportDto first = operation("TX1", "En erreur");
+        SiopReportDto second = operation("TX2", "En erreur");
+        assertThat(ledger.filterUnnotified(List.of(first, second))).containsExactly(first, second);
+        
+        ledger.record(LocalDate.now(), List.of(first));
+        
+        assertThat(ledger.filterUnnotified(List.of(first, second))).containsExactly(second);
+    }
+    
+    @Test
+    void notifieDeNouveauUnChangementDeStatut() {
+        ledger.record(LocalDate.now(), List.of(operation("TX1", "En erreur")));
+        
+        SiopReportDto rejected = operation("TX1", "Rejeté");
+        assertThat(ledger.filterUnnotified(List.of(rejected))).containsExactly(rejected);
+    }
+    
+    @Test
+    void journalDesactiveSansFiltreNiEnregistrement() {
+        properties.getLedger().setEnabled(false);
+        SiopReportDto operation = operation("TX1", "En erreur");
+        ledger.record(LocalDate.now(), List.of(operation));
+        
+        properties.getLedger().setEnabled(true);
+        assertThat(ledger.filterUnnotified(List.of(operation))).containsExactly(operation);
+    }
+    
+    @Test
+    void operationsEnAttenteDEnvoiTraiteesCommeNotifiees() {
+        SiopReportDto operation = operation("TX1", "En erreur");
+        String key = NotificationLedger.ledgerKey(
+            NotificationLedger.operationKey(operation), NotificationLedger.statusKey(operation));
+        when(emailOutbox.findInFlight(anyCollection())).thenReturn(Set.of(key));
+        
+        ledger.markInFlight(List.of(operation));
+        
+        assertThat(ledger.filterUnnotified(List.of(operation))).isEmpty();
+    }
+    
+    @Test
+    void compactageOublieLesDatesHorsRetention() {
+        SiopReportDto old = operation("TX1", "En erreur");
+        SiopReportDto recent = operation("TX2", "En erreur");
+        ledger.record(LocalDate.now().minusDays(properties.getLedger().getRetentionDays() + 1), List.of(old));
+        ledger.record(LocalDate.now(), List.of(recent));
+        
+        ledger.compact();
+        
+        assertThat(ledger.filterUnnotified(List.of(old, recent))).containsExactly(old);
+    }
+    
+    @Test
+    void cleDOperationTransactionPuisLotPuisMessage() {
+        SiopReportDto operation = new SiopReportDto();
+        operation.setIdmsg(" MSG1 ");
+        assertThat(NotificationLedger.operationKey(operation)).isEqualTo("MSG:MSG1");
+        
+        operation.setIdlot("LOT1 ");
+        assertThat(NotificationLedger.operationKey(operation)).isEqualTo("LOT:LOT1");
+        
+        operation.setIdtx("TX1 ");
+        assertThat(NotificationLedger.operationKey(operation)).isEqualTo("TX:TX1");
+    }
+    
+    private static SiopReportDto operation(String idtx, String txtStatus) {
+        SiopReportDto operation = new SiopReportDto();
+        operation.setIdmsg("MSG1");
+        operation.setIdlot("LOT1");
+        operation.setIdtx(idtx);
+        operation.setMsgStatus("Rejeté");
+        operation.setLotStatus("En erreur");
+        operation.setTxtStatus(txtStatus);
+        return operation;
+    }
+}
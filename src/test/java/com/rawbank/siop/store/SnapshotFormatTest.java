@@ -0,0 +1,134 @@
+package com.rawbank.siop.store;
+
+import com.rawbank.siop.dto.LabelDictionary;
+import com.rawbank.siop.dto.SiopReportDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+class SnapshotFormatTest {
+    
+    @Test
+    void relitLesLignesEcrites() throws IOException {
+        SiopReportDto full = operation("TX1");
+        full.setErrorMsg("Compte inexistant au niveau de 1");
+        SiopReportDto sparse = new SiopReportDto();
+        sparse.setIdtx("TX2");
+        sparse.setMontantTx(new BigDecimal("-123456789012345678901234567890.125"));
+        
+        List<SiopReportDto> rows = read(write(full, sparse));
+        
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0)).usingRecursiveComparison().ignoringFields("errorMsgResolved").isEqualTo(full);
+        assertThat(rows.get(1)).usingRecursiveComparison().ignoringFields("errorMsgResolved").isEqualTo(sparse);
+        assertThat(rows.get(1).getMontantTx()).isEqualTo(sparse.getMontantTx());
+    }
+    
+    @Test
+    void messageDErreurResoluALEcriture() throws IOException {
+        SiopReportDto withError = operation("TX1");
+        withError.setErrorMsg("Plafond au niveau de 2");
+        SiopReportDto withoutError = operation("TX2");
+        
+        List<SiopReportDto> rows = read(write(withError, withoutError));
+        
+        assertThat(rows).extracting(SiopReportDto::getErrorMsg).containsExactly("Plafond au niveau de 2", null);
+        // Aucune erreur est aussi un résultat : BKMOPERROR n'est pas relue
+        assertThat(rows).allMatch(SiopReportDto::isErrorMsgResolved);
+    }
+    
+    @Test
+    void instantaneVersionUnSansMessageDErreur() throws IOException {
+        byte[] snapshot = write(operation("TX1"));
+        ByteBuffer.wrap(snapshot).putInt(Integer.BYTES, 1);
+        
+        List<SiopReportDto> rows = read(snapshot);
+        
+        assertThat(rows).singleElement().satisfies(row -> {
+            assertThat(row.getIdtx()).isEqualTo("TX1");
+            assertThat(row.getErrorMsg()).isNull();
+            // Message à résoudre auprès de BKMOPERROR
+            assertThat(row.isErrorMsgResolved()).isFalse();
+        });
+    }
+    
+    @Test
+    void valeursRepeteesPartageesAvecLaLignePrecedente() throws IOException {
+        List<SiopReportDto> rows = read(write(operation("TX1"), operation("TX2")));
+        
+        assertThat(rows.get(1).getIdmsg()).isSameAs(rows.get(0).getIdmsg());
+        assertThat(rows.get(1).getGestCode()).isSameAs(rows.get(0).getGestCode());
+        assertThat(rows.get(1).getCanal()).isSameAs(rows.get(0).getCanal());
+    }
+    
+    @Test
+    void refuseUnEnTeteInconnu() throws IOException {
+        byte[] snapshot = write();
+        ByteBuffer.wrap(snapshot).putInt(Integer.BYTES, SnapshotFormat.VERSION + 1);
+        assertThatIOException().isThrownBy(() -> read(snapshot))
+            .withMessage("Version d'instantané non supportée : " + (SnapshotFormat.VERSION + 1));
+        
+        ByteBuffer.wrap(snapshot).putInt(0, 0);
+        assertThatIOException().isThrownBy(() -> read(snapshot)).withMessage("Fichier d'instantané invalide");
+    }
+    
+    private static byte[] write(SiopReportDto... operations) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            SnapshotFormat.writeHeader(out);
+            for (SiopReportDto operation : operations) {
+                SnapshotFormat.writeRow(out, operation);
+            }
+            SnapshotFormat.writeFooter(out, operations.length);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static List<SiopReportDto> read(byte[] snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot))) {
+            int version = SnapshotFormat.readHeader(in);
+            LabelDictionary labels = new LabelDictionary();
+            List<SiopReportDto> rows = new ArrayList<>();
+            SiopReportDto row = null;
+            while ((row = SnapshotFormat.readRow(in, version, row, labels)) != null) {
+                rows.add(row);
+            }
+            assertThat(in.readLong()).isEqualTo(rows.size());
+            return rows;
+        }
+    }
+    
+    private static SiopReportDto operation(String idtx) {
+        SiopReportDto operation = new SiopReportDto();
+        operation.setDateCreation(LocalDateTime.of(2024, 1, 15, 9, 30, 45, 123_000_000));
+        operation.setIncomTime(LocalDateTime.of(2024, 1, 15, 9, 31));
+        operation.setFilename("pacs008_20240115.xml");
+        operation.setIdmsg("MSG1");
+        operation.setIdlot("LOT1");
+        operation.setIdtx(idtx);
+        operation.setCanal("VODACOM");
+        operation.setService("MOBILE");
+        operation.setTypeMsg("pacs.008");
+        operation.setBeneficiaire("Jean Dupont é");
+        operation.setMontantTx(new BigDecimal("1234.50"));
+        operation.setMotif("Salaire");
+        operation.setFrais("OUR");
+        operation.setMsgStatus("Rejeté");
+        operation.setLotStatus("En erreur");
+        operation.setTxtStatus("En erreur");
+        operation.setGestCode("G01");
+        return operation;
+    }
+}